@@ -0,0 +1,51 @@
+#!/bin/bash
+
+# Script to run the JMH benchmarks (bench/src) on the interpreter, the C generator and the file formats
+# Usage: ./bench.sh [JMH options] [benchmark regex]
+#   e.g. ./bench.sh CodeGeneratorBenchmark -p blocks=10000
+# Results are written as JSON to bench-results.json, or to the file in BENCH_RESULTS
+# Downloads JMH if needed and compiles the application together with the benchmarks
+
+set -e
+
+JMH_VERSION="1.37"
+MAVEN_URL="https://repo1.maven.org/maven2"
+JGRAPHX_VERSION="4.2.2"
+LIB_DIR="lib"
+BENCH_LIB_DIR="${LIB_DIR}/bench"
+JGRAPHX_JAR="${LIB_DIR}/jgraphx-${JGRAPHX_VERSION}.jar"
+BENCH_BUILD_DIR="build-bench"
+RESULTS_FILE="${BENCH_RESULTS:-bench-results.json}"
+
+JMH_JARS=(
+    "org/openjdk/jmh/jmh-core/${JMH_VERSION}/jmh-core-${JMH_VERSION}.jar"
+    "org/openjdk/jmh/jmh-generator-annprocess/${JMH_VERSION}/jmh-generator-annprocess-${JMH_VERSION}.jar"
+    "net/sf/jopt-simple/jopt-simple/5.0.4/jopt-simple-5.0.4.jar"
+    "org/apache/commons/commons-math3/3.6.1/commons-math3-3.6.1.jar"
+)
+
+# JGraphX viene scaricato da build.sh
+if [ ! -f "${JGRAPHX_JAR}" ]; then
+    ./build.sh >&2
+fi
+
+mkdir -p "${BENCH_LIB_DIR}"
+CLASSPATH="${JGRAPHX_JAR}"
+for JAR_PATH in "${JMH_JARS[@]}"; do
+    JAR="${BENCH_LIB_DIR}/$(basename "${JAR_PATH}")"
+    if [ ! -f "${JAR}" ]; then
+        echo "📦 Downloading $(basename "${JAR_PATH}")..." >&2
+        wget -q "${MAVEN_URL}/${JAR_PATH}" -O "${JAR}"
+    fi
+    CLASSPATH="${CLASSPATH}:${JAR}"
+done
+
+echo "🔨 Compiling application and benchmarks..." >&2
+rm -rf "${BENCH_BUILD_DIR}"
+mkdir -p "${BENCH_BUILD_DIR}"
+# Il processore di annotazioni di JMH genera le classi dei benchmark e il loro elenco
+javac -encoding UTF-8 -d "${BENCH_BUILD_DIR}" -cp "${CLASSPATH}" \
+    core/src/*.java src/*.java bench/src/*.java bench/src/benchmarks/*.java
+
+exec java -Djava.awt.headless=true -cp "${BENCH_BUILD_DIR}:${CLASSPATH}" org.openjdk.jmh.Main \
+    -rf json -rff "${RESULTS_FILE}" "$@"
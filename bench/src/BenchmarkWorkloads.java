@@ -0,0 +1,207 @@
+import benchmarks.Workload;
+import benchmarks.Workloads;
+import com.mxgraph.model.mxGraphModel;
+import com.mxgraph.view.mxGraph;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Operazioni misurate dai benchmark JMH (bench/src/benchmarks), preparate con le classi
+ * dell'applicazione. Sta nel package di default per poterle usare: vedi {@link Workloads}.
+ */
+public class BenchmarkWorkloads implements Workloads.Factory {
+
+    @Override
+    public Workload create(String kind, String subject, int size) throws Exception {
+        switch (kind) {
+            case "interpreter":
+                return interpreter(subject, size);
+            case "expression":
+                return expression(subject);
+            case "parseExpression":
+                return blackhole -> blackhole.consume(ExpressionParser.parse(subject));
+            case "condition":
+                return condition(subject);
+            case "generator":
+                return generator(size);
+            case "roundTrip":
+                return roundTrip(subject, size);
+            default:
+                throw new IllegalArgumentException("Unknown workload: " + kind);
+        }
+    }
+
+    // ===== INTERPRETER =====
+
+    private static Workload interpreter(String subject, int size) {
+        Flowchart flowchart = new Flowchart();
+        List<String> inputs;
+        boolean compile = true;
+        switch (subject) {
+            case "loopExample":
+                FlowchartPanel.insertLoopExample(flowchart.graph, flowchart.start, flowchart.end);
+                inputs = Collections.singletonList(Integer.toString(size));
+                break;
+            case "nestedConditionalExample":
+                FlowchartPanel.insertNestedConditionalExample(flowchart.graph, flowchart.start, flowchart.end);
+                inputs = Arrays.asList("3", "4");
+                break;
+            case "interpretedLoop":
+                compile = false;
+                // fallthrough
+            case "compiledLoop":
+                insertCountingLoop(flowchart);
+                inputs = Collections.singletonList(Integer.toString(size));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown flowchart: " + subject);
+        }
+
+        FlowchartRunner.LoadedFlowchart loaded = new FlowchartRunner.LoadedFlowchart(
+            FlowchartProgram.compile(flowchart.graph, flowchart.start, flowchart.end), null, null);
+        boolean compileToBytecode = compile;
+        return blackhole -> {
+            FlowchartRunner.Result result = FlowchartRunner.execute(loaded, new QueueInputProvider(inputs), false,
+                ExecutionLimits.UNLIMITED, compileToBytecode);
+            if (result.getExitCode() != FlowchartRunner.EXIT_OK) {
+                throw new IllegalStateException(result.getError());
+            }
+            blackhole.consume(result.getOutput());
+        };
+    }
+
+    /**
+     * n; i = 0, s = 0; while i < n: s = s + i * i % 7, i = i + 1; output s.
+     */
+    private static void insertCountingLoop(Flowchart flowchart) {
+        mxGraph graph = flowchart.graph;
+        Object parent = graph.getDefaultParent();
+        graph.getModel().beginUpdate();
+        try {
+            graph.removeCells(graph.getEdgesBetween(flowchart.start, flowchart.end));
+            Object input = graph.insertVertex(parent, null, "n", 0, 0, 140, 70, FlowchartPanel.INPUT);
+            graph.insertEdge(parent, null, "", flowchart.start, input);
+            Object init = graph.insertVertex(parent, null, "i = 0\ns = 0", 0, 0, 140, 60, FlowchartPanel.ASSIGNMENT);
+            graph.insertEdge(parent, null, "", input, init);
+            Object loop = graph.insertVertex(parent, null, "i < n", 0, 0, 120, 70, FlowchartPanel.LOOP);
+            graph.insertEdge(parent, null, "", init, loop);
+            Object body = graph.insertVertex(parent, null, "s = s + i * i % 7\ni = i + 1", 0, 0, 140, 60,
+                FlowchartPanel.ASSIGNMENT);
+            graph.insertEdge(parent, null, "Yes", loop, body, "TRUE_BRANCH");
+            graph.insertEdge(parent, null, "", body, loop);
+            Object output = graph.insertVertex(parent, null, "s", 0, 0, 140, 70, FlowchartPanel.OUTPUT);
+            graph.insertEdge(parent, null, "No", loop, output, "FALSE_BRANCH");
+            graph.insertEdge(parent, null, "", output, flowchart.end);
+        } finally {
+            graph.getModel().endUpdate();
+        }
+    }
+
+    // ===== EXPRESSIONS =====
+
+    /**
+     * Variables read by the expression benchmarks, in a frame as the interpreter keeps them.
+     */
+    private static final class Variables implements Expression.Context {
+        final Frame frame;
+
+        Variables(SymbolTable symbols) {
+            frame = new Frame(symbols);
+            frame.set("a", 7);
+            frame.set("b", 12);
+            frame.set("c", 30);
+            frame.set("s", "abc");
+        }
+
+        @Override
+        public void loadVariable(int slot, String name, Value out) {
+            if (!frame.isSet(slot)) {
+                throw new RuntimeException("Variable '" + name + "' is not defined");
+            }
+            frame.load(slot, out);
+        }
+
+        @Override
+        public void callFunction(String name, Object[] args, Value out) {
+            throw new RuntimeException("Function calls are not available in the expression benchmarks");
+        }
+    }
+
+    private static SymbolTable symbols() {
+        SymbolTable symbols = new SymbolTable();
+        for (String name : new String[]{"a", "b", "c", "s"}) {
+            symbols.define(name);
+        }
+        return symbols;
+    }
+
+    private static Workload expression(String text) {
+        SymbolTable symbols = symbols();
+        Expression expression = ExpressionParser.parse(text);
+        expression.resolve(symbols);
+        Variables variables = new Variables(symbols);
+        Value register = new Value();
+        return blackhole -> {
+            expression.evaluate(variables, register);
+            blackhole.consume(register.getType() == Value.STRING ? register.stringValue() : register.doubleValue());
+        };
+    }
+
+    private static Workload condition(String text) {
+        SymbolTable symbols = symbols();
+        Condition condition = ExpressionParser.parseCondition(text);
+        condition.resolve(symbols);
+        Variables variables = new Variables(symbols);
+        Value register = new Value();
+        return blackhole -> blackhole.consume(condition.test(variables, register));
+    }
+
+    // ===== C CODE AND FILES =====
+
+    // Diagrammi sintetici senza funzioni, così il generatore C li traduce per intero
+    private static FlowchartGenerator.GeneratedFlowchart synthetic(int blocks) {
+        return new FlowchartGenerator(blocks, 3, 0, 0, 1).generate();
+    }
+
+    private static Workload generator(int blocks) {
+        FlowchartGenerator.GeneratedFlowchart flowchart = synthetic(blocks);
+        return blackhole -> blackhole.consume(new FlowchartToCGenerator(flowchart.getGraph(),
+            flowchart.getStartCell(), flowchart.getEndCell()).generateCode());
+    }
+
+    private static Workload roundTrip(String format, int blocks) throws Exception {
+        FlowchartGenerator.GeneratedFlowchart flowchart = synthetic(blocks);
+        File file = File.createTempFile("benchmark", "." + format);
+        file.deleteOnExit();
+        return blackhole -> {
+            flowchart.save(file);
+            mxGraphModel model = new mxGraphModel();
+            ProjectFile.load(file).getMainGraph().decodeInto(model);
+            blackhole.consume(model);
+        };
+    }
+
+    /**
+     * A graph with only Start and End, as a new diagram in the editor.
+     */
+    private static final class Flowchart {
+        final mxGraph graph = new mxGraph();
+        final Object start;
+        final Object end;
+
+        Flowchart() {
+            Object parent = graph.getDefaultParent();
+            graph.getModel().beginUpdate();
+            try {
+                start = graph.insertVertex(parent, null, "Start", 300, 50, 100, 50, FlowchartPanel.START);
+                end = graph.insertVertex(parent, null, "End", 300, 450, 100, 50, FlowchartPanel.END);
+                graph.insertEdge(parent, null, "", start, end);
+            } finally {
+                graph.getModel().endUpdate();
+            }
+        }
+    }
+}
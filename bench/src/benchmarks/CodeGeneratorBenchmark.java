@@ -0,0 +1,33 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generazione del codice C di un diagramma sintetico con sequenze, if/else e cicli annidati.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CodeGeneratorBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    public int blocks;
+
+    private Workload workload;
+
+    @Setup
+    public void setup() throws Exception {
+        workload = Workloads.create("generator", "synthetic", blocks);
+    }
+
+    @Benchmark
+    public void generateCode(Blackhole blackhole) throws Exception {
+        workload.run(blackhole);
+    }
+}
@@ -0,0 +1,63 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Valutazione di espressioni e condizioni già analizzate, come fa l'interprete a ogni blocco,
+ * e costo dell'analisi del testo, che avviene una volta per blocco quando il diagramma viene compilato.
+ * Le variabili a, b, c valgono 7, 12 e 30; s è la stringa "abc". Le chiamate alle funzioni
+ * predefinite appartengono all'interprete e sono misurate da {@link InterpreterBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpressionBenchmark {
+
+    @State(Scope.Thread)
+    public static class Expressions {
+        @Param({"a * b + c % 7", "(a + b) * (c - a) / 3 - b", "a / 2.0 + b * 1.5", "s + a"})
+        public String expression;
+
+        Workload evaluate;
+        Workload parse;
+
+        @Setup
+        public void setup() throws Exception {
+            evaluate = Workloads.create("expression", expression, 0);
+            parse = Workloads.create("parseExpression", expression, 0);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Conditions {
+        @Param({"a < b", "a < b && b < c", "!(a == b) || c >= 10", "a % 2 == 1 AND b > 0 AND c != 0"})
+        public String condition;
+
+        Workload evaluate;
+
+        @Setup
+        public void setup() throws Exception {
+            evaluate = Workloads.create("condition", condition, 0);
+        }
+    }
+
+    @Benchmark
+    public void evaluateExpression(Expressions state, Blackhole blackhole) throws Exception {
+        state.evaluate.run(blackhole);
+    }
+
+    @Benchmark
+    public void parseExpression(Expressions state, Blackhole blackhole) throws Exception {
+        state.parse.run(blackhole);
+    }
+
+    @Benchmark
+    public void evaluateCondition(Conditions state, Blackhole blackhole) throws Exception {
+        state.evaluate.run(blackhole);
+    }
+}
@@ -0,0 +1,63 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Esecuzione completa di un diagramma con FlowchartRunner, come dalla riga di comando.
+ * Il programma viene compilato una sola volta nel @Setup: si misura solo l'esecuzione.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InterpreterBenchmark {
+
+    /**
+     * The editor examples: the loop example runs n = 100 iterations.
+     */
+    @State(Scope.Thread)
+    public static class Examples {
+        @Param({"loopExample", "nestedConditionalExample"})
+        public String example;
+
+        Workload workload;
+
+        @Setup
+        public void setup() throws Exception {
+            workload = Workloads.create("interpreter", example, 100);
+        }
+    }
+
+    /**
+     * A synthetic counting loop, interpreted or promoted to bytecode after the compile threshold.
+     */
+    @State(Scope.Thread)
+    public static class Loops {
+        @Param({"interpreted", "compiled"})
+        public String tier;
+
+        @Param({"1000", "100000", "1000000"})
+        public int iterations;
+
+        Workload workload;
+
+        @Setup
+        public void setup() throws Exception {
+            workload = Workloads.create("interpreter", tier + "Loop", iterations);
+        }
+    }
+
+    @Benchmark
+    public void example(Examples state, Blackhole blackhole) throws Exception {
+        state.workload.run(blackhole);
+    }
+
+    @Benchmark
+    public void loop(Loops state, Blackhole blackhole) throws Exception {
+        state.workload.run(blackhole);
+    }
+}
@@ -0,0 +1,37 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Salvataggio e caricamento di un diagramma sintetico su un file temporaneo,
+ * nel formato XML e in quello binario (.fcb).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PersistenceBenchmark {
+
+    @Param({"xml", "fcb"})
+    public String format;
+
+    @Param({"100", "10000"})
+    public int blocks;
+
+    private Workload workload;
+
+    @Setup
+    public void setup() throws Exception {
+        workload = Workloads.create("roundTrip", format, blocks);
+    }
+
+    @Benchmark
+    public void saveAndLoad(Blackhole blackhole) throws Exception {
+        workload.run(blackhole);
+    }
+}
@@ -0,0 +1,12 @@
+package benchmarks;
+
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Operazione misurata da un benchmark, già preparata (grafi costruiti, espressioni analizzate).
+ * I risultati finiscono nel Blackhole, così il JIT non può eliminare il lavoro.
+ */
+public interface Workload {
+
+    void run(Blackhole blackhole) throws Exception;
+}
@@ -0,0 +1,38 @@
+package benchmarks;
+
+/**
+ * Accesso alle classi dell'applicazione, che stanno nel package di default.
+ *
+ * JMH non accetta benchmark nel package di default e Java non permette di importarlo
+ * da un package con nome: i benchmark chiedono quindi le operazioni a BenchmarkWorkloads
+ * (package di default) tramite questa interfaccia. La classe viene caricata una volta
+ * nel @Setup; durante la misura resta solo una chiamata di interfaccia monomorfa.
+ */
+public final class Workloads {
+
+    /**
+     * Implemented by BenchmarkWorkloads in the default package.
+     */
+    public interface Factory {
+        /**
+         * Prepares a workload.
+         *
+         * @param kind     What to measure, e.g. "interpreter" or "generator"
+         * @param subject  The example, expression or format to use
+         * @param size     Blocks or loop iterations; ignored when the subject has a fixed size
+         */
+        Workload create(String kind, String subject, int size) throws Exception;
+    }
+
+    private static Factory factory;
+
+    private Workloads() {
+    }
+
+    public static synchronized Workload create(String kind, String subject, int size) throws Exception {
+        if (factory == null) {
+            factory = (Factory) Class.forName("BenchmarkWorkloads").getDeclaredConstructor().newInstance();
+        }
+        return factory.create(kind, subject, size);
+    }
+}
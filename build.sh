@@ -1,7 +1,9 @@
 #!/bin/bash
 
 # Script to build the Flowchart Editor application
-# Downloads JGraphX library if needed and compiles the project
+# Downloads JGraphX library if needed and compiles the project in two artifacts:
+#   build/flowchart-core.jar    model, interpreter, C generator and files (core/src, no Swing)
+#   build/flowchart-editor.jar  the Swing editor (src), which needs the core
 
 set -e
 
@@ -10,6 +12,8 @@ JGRAPHX_URL="https://repo1.maven.org/maven2/com/github/jgraph/jgraphx/${JGRAPHX_
 LIB_DIR="lib"
 JGRAPHX_JAR="${LIB_DIR}/jgraphx-${JGRAPHX_VERSION}.jar"
 BUILD_DIR="build"
+CORE_JAR="${BUILD_DIR}/flowchart-core.jar"
+EDITOR_JAR="${BUILD_DIR}/flowchart-editor.jar"
 
 echo "======================================"
 echo "Flowchart Editor - Build Script"
@@ -32,8 +36,13 @@ fi
 echo ""
 echo "🔨 Compiling Java sources..."
 
-# Compile all Java files
-javac -d "${BUILD_DIR}" -cp "${JGRAPHX_JAR}" src/*.java
+# Il nucleo si compila da solo: se usasse l'editor, la compilazione fallirebbe qui
+rm -rf "${BUILD_DIR}/core" "${BUILD_DIR}/editor"
+mkdir -p "${BUILD_DIR}/core" "${BUILD_DIR}/editor"
+javac -encoding UTF-8 -d "${BUILD_DIR}/core" -cp "${JGRAPHX_JAR}" core/src/*.java
+jar cf "${CORE_JAR}" -C "${BUILD_DIR}/core" .
+javac -encoding UTF-8 -d "${BUILD_DIR}/editor" -cp "${JGRAPHX_JAR}:${CORE_JAR}" src/*.java
+jar cfe "${EDITOR_JAR}" FlowchartEditorApp -C "${BUILD_DIR}/editor" .
 
 if [ $? -eq 0 ]; then
     echo "✅ Compilation successful!"
@@ -0,0 +1,405 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Correzione automatica di molti diagrammi con molti casi di test.
+ * Ogni coppia (diagramma, test) viene eseguita in parallelo su un pool
+ * work-stealing, con un interprete separato per ogni esecuzione.
+ *
+ * Uso: java BatchGrader [--threads n] [--max-steps n] [--time-limit ms]
+ *      [--max-depth n] cartella-diagrammi cartella-test
+ *
+ * La cartella dei test contiene coppie nome.in (valori di input, uno per riga)
+ * e nome.out (output atteso). Un test è superato se l'output coincide con
+ * quello atteso, ignorando gli spazi a fine riga e le righe vuote finali.
+ * Ogni esecuzione ha limiti di passi, tempo e profondità delle chiamate:
+ * un diagramma che non termina viene segnato LIMIT senza bloccare gli altri.
+ */
+public class BatchGrader {
+
+    public static final int EXIT_ALL_PASSED = 0;
+    public static final int EXIT_FAILURES = 1;
+    public static final int EXIT_USAGE = 2;
+
+    /** Limiti predefiniti: 10 milioni di blocchi, 10 secondi, 1000 chiamate annidate. */
+    public static final ExecutionLimits DEFAULT_LIMITS = new ExecutionLimits(10_000_000L, 10_000L, 1000);
+
+    /**
+     * Esito di una singola esecuzione.
+     */
+    public enum Status {
+        PASS, FAIL, ERROR, LIMIT
+    }
+
+    /**
+     * A test case: input lines and expected output.
+     */
+    public static class TestCase {
+        private final String name;
+        private final List<String> inputs;
+        private final String expectedOutput;
+
+        public TestCase(String name, List<String> inputs, String expectedOutput) {
+            this.name = name;
+            this.inputs = inputs;
+            this.expectedOutput = expectedOutput;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public List<String> getInputs() {
+            return inputs;
+        }
+
+        public String getExpectedOutput() {
+            return expectedOutput;
+        }
+    }
+
+    /**
+     * Result of one (flowchart, test) pair.
+     */
+    public static class RunResult {
+        private final Status status;
+        private final long nanos;
+        private final String output;
+        private final String message;
+
+        RunResult(Status status, long nanos, String output, String message) {
+            this.status = status;
+            this.nanos = nanos;
+            this.output = output;
+            this.message = message;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public String getOutput() {
+            return output;
+        }
+
+        /**
+         * Error message, or null.
+         */
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    /**
+     * Pass/fail matrix: one row per flowchart, one column per test.
+     */
+    public static class Report {
+        private final List<String> flowchartNames;
+        private final List<String> testNames;
+        private final RunResult[][] results;
+        private final long wallNanos;
+
+        Report(List<String> flowchartNames, List<String> testNames, RunResult[][] results, long wallNanos) {
+            this.flowchartNames = flowchartNames;
+            this.testNames = testNames;
+            this.results = results;
+            this.wallNanos = wallNanos;
+        }
+
+        public List<String> getFlowchartNames() {
+            return flowchartNames;
+        }
+
+        public List<String> getTestNames() {
+            return testNames;
+        }
+
+        public RunResult getResult(int flowchart, int test) {
+            return results[flowchart][test];
+        }
+
+        public long getWallNanos() {
+            return wallNanos;
+        }
+
+        public int countPassed(int flowchart) {
+            int passed = 0;
+            for (RunResult result : results[flowchart]) {
+                if (result.getStatus() == Status.PASS) {
+                    passed++;
+                }
+            }
+            return passed;
+        }
+
+        public boolean allPassed() {
+            for (int i = 0; i < results.length; i++) {
+                if (countPassed(i) != testNames.size()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Prints the matrix with the time of each run in milliseconds.
+         */
+        public void print(PrintStream out) {
+            int nameWidth = "Flowchart".length();
+            for (String name : flowchartNames) {
+                nameWidth = Math.max(nameWidth, name.length());
+            }
+
+            StringBuilder header = new StringBuilder(pad("Flowchart", nameWidth));
+            for (String test : testNames) {
+                header.append(" | ").append(pad(test, 14));
+            }
+            header.append(" | Passed");
+            out.println(header);
+
+            for (int i = 0; i < flowchartNames.size(); i++) {
+                StringBuilder row = new StringBuilder(pad(flowchartNames.get(i), nameWidth));
+                for (int j = 0; j < testNames.size(); j++) {
+                    RunResult result = results[i][j];
+                    String cell = result.getStatus() + String.format(" %.1fms", result.getNanos() / 1e6);
+                    row.append(" | ").append(pad(cell, Math.max(14, testNames.get(j).length())));
+                }
+                row.append(" | ").append(countPassed(i)).append("/").append(testNames.size());
+                out.println(row);
+            }
+
+            // Dettaglio degli errori
+            for (int i = 0; i < flowchartNames.size(); i++) {
+                for (int j = 0; j < testNames.size(); j++) {
+                    if (results[i][j].getMessage() != null) {
+                        out.println(flowchartNames.get(i) + " / " + testNames.get(j) + ": " + results[i][j].getMessage());
+                    }
+                }
+            }
+
+            out.println(String.format("%d runs in %.1f ms", flowchartNames.size() * testNames.size(), wallNanos / 1e6));
+        }
+
+        private static String pad(String text, int width) {
+            StringBuilder padded = new StringBuilder(text);
+            while (padded.length() < width) {
+                padded.append(' ');
+            }
+            return padded.toString();
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final ExecutionLimits limits;
+
+    public BatchGrader(int parallelism) {
+        this(parallelism, DEFAULT_LIMITS);
+    }
+
+    public BatchGrader(int parallelism, ExecutionLimits limits) {
+        this.pool = new ForkJoinPool(parallelism);
+        this.limits = limits;
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        long maxSteps = DEFAULT_LIMITS.getMaxSteps();
+        long timeLimit = DEFAULT_LIMITS.getTimeLimitMillis();
+        int maxDepth = DEFAULT_LIMITS.getMaxCallDepth();
+        List<String> paths = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if ("--threads".equals(args[i]) && i + 1 < args.length) {
+                    threads = Integer.parseInt(args[++i]);
+                } else if ("--max-steps".equals(args[i]) && i + 1 < args.length) {
+                    maxSteps = Long.parseLong(args[++i]);
+                } else if ("--time-limit".equals(args[i]) && i + 1 < args.length) {
+                    timeLimit = Long.parseLong(args[++i]);
+                } else if ("--max-depth".equals(args[i]) && i + 1 < args.length) {
+                    maxDepth = Integer.parseInt(args[++i]);
+                } else {
+                    paths.add(args[i]);
+                }
+            }
+        } catch (NumberFormatException e) {
+            paths.clear();
+        }
+
+        if (paths.size() != 2 || threads < 1 || maxSteps < 0 || timeLimit < 0 || maxDepth < 0) {
+            System.err.println("Usage: java BatchGrader [--threads n] [--max-steps n] [--time-limit ms] " +
+                "[--max-depth n] flowcharts-dir tests-dir");
+            System.exit(EXIT_USAGE);
+        }
+
+        BatchGrader grader = new BatchGrader(threads, new ExecutionLimits(maxSteps, timeLimit, maxDepth));
+        try {
+            List<File> flowcharts = listFlowcharts(new File(paths.get(0)));
+            List<TestCase> tests = loadTests(new File(paths.get(1)));
+            Report report = grader.grade(flowcharts, tests);
+            report.print(System.out);
+            System.exit(report.allPassed() ? EXIT_ALL_PASSED : EXIT_FAILURES);
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(EXIT_USAGE);
+        } finally {
+            grader.shutdown();
+        }
+    }
+
+    /**
+     * Runs every flowchart against every test case and collects the matrix.
+     */
+    public Report grade(List<File> flowchartFiles, List<TestCase> tests) {
+        long start = System.nanoTime();
+
+        // Ogni diagramma viene letto una sola volta, in parallelo
+        List<Callable<Object>> loads = new ArrayList<>();
+        for (File file : flowchartFiles) {
+            loads.add(() -> {
+                try {
+                    return FlowchartRunner.load(file);
+                } catch (IOException | RuntimeException e) {
+                    return "Cannot load: " + e.getMessage();
+                }
+            });
+        }
+        List<Object> loaded = getAll(pool.invokeAll(loads));
+
+        // Una esecuzione indipendente per ogni coppia (diagramma, test)
+        List<Callable<RunResult>> runs = new ArrayList<>();
+        for (Object flowchart : loaded) {
+            for (TestCase test : tests) {
+                runs.add(() -> runTest(flowchart, test));
+            }
+        }
+        List<RunResult> flat = getAll(pool.invokeAll(runs));
+
+        RunResult[][] results = new RunResult[flowchartFiles.size()][tests.size()];
+        for (int i = 0; i < flat.size(); i++) {
+            results[i / tests.size()][i % tests.size()] = flat.get(i);
+        }
+
+        List<String> flowchartNames = new ArrayList<>();
+        for (File file : flowchartFiles) {
+            flowchartNames.add(file.getName());
+        }
+        List<String> testNames = new ArrayList<>();
+        for (TestCase test : tests) {
+            testNames.add(test.getName());
+        }
+        return new Report(flowchartNames, testNames, results, System.nanoTime() - start);
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private RunResult runTest(Object flowchart, TestCase test) {
+        if (!(flowchart instanceof FlowchartRunner.LoadedFlowchart)) {
+            return new RunResult(Status.ERROR, 0, "", (String) flowchart);
+        }
+
+        long start = System.nanoTime();
+        FlowchartRunner.Result result;
+        try {
+            result = FlowchartRunner.execute((FlowchartRunner.LoadedFlowchart) flowchart,
+                new QueueInputProvider(test.getInputs()), false, limits);
+        } catch (RuntimeException | StackOverflowError e) {
+            return new RunResult(Status.ERROR, System.nanoTime() - start, "", e.toString());
+        }
+        long nanos = System.nanoTime() - start;
+
+        if (result.getLimitExceeded() != null) {
+            return new RunResult(Status.LIMIT, nanos, result.getOutput(), result.getError());
+        }
+        if (result.getError() != null) {
+            return new RunResult(Status.ERROR, nanos, result.getOutput(), result.getError());
+        }
+        boolean passed = normalize(result.getOutput()).equals(normalize(test.getExpectedOutput()));
+        return new RunResult(passed ? Status.PASS : Status.FAIL, nanos, result.getOutput(), null);
+    }
+
+    /**
+     * Removes trailing spaces from each line and trailing empty lines.
+     */
+    static String normalize(String text) {
+        String[] lines = text.replace("\r\n", "\n").split("\n");
+        int count = lines.length;
+        while (count > 0 && lines[count - 1].trim().isEmpty()) {
+            count--;
+        }
+        StringBuilder normalized = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            normalized.append(lines[i].replaceAll("\\s+$", "")).append('\n');
+        }
+        return normalized.toString();
+    }
+
+    private static <T> List<T> getAll(List<Future<T>> futures) {
+        List<T> values = new ArrayList<>(futures.size());
+        for (Future<T> future : futures) {
+            try {
+                values.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Grading interrupted", e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Lists the .xml and binary flowchart files of a directory, sorted by name.
+     */
+    public static List<File> listFlowcharts(File directory) throws IOException {
+        File[] files = directory.listFiles((dir, name) -> name.toLowerCase().endsWith(".xml")
+            || name.toLowerCase().endsWith("." + BinaryProjectFile.EXTENSION));
+        if (files == null) {
+            throw new IOException("'" + directory + "' is not a directory");
+        }
+        Arrays.sort(files);
+        return Arrays.asList(files);
+    }
+
+    /**
+     * Loads the name.in / name.out pairs of a directory, sorted by name.
+     * A test without a .in file has no input.
+     */
+    public static List<TestCase> loadTests(File directory) throws IOException {
+        File[] expected = directory.listFiles((dir, name) -> name.endsWith(".out"));
+        if (expected == null) {
+            throw new IOException("'" + directory + "' is not a directory");
+        }
+        Arrays.sort(expected);
+
+        List<TestCase> tests = new ArrayList<>();
+        for (File out : expected) {
+            String name = out.getName().substring(0, out.getName().length() - ".out".length());
+            File in = new File(directory, name + ".in");
+            List<String> inputs = in.exists()
+                ? Files.readAllLines(in.toPath(), StandardCharsets.UTF_8)
+                : new ArrayList<>();
+            String expectedOutput = new String(Files.readAllBytes(out.toPath()), StandardCharsets.UTF_8);
+            tests.add(new TestCase(name, inputs, expectedOutput));
+        }
+        return tests;
+    }
+}
@@ -0,0 +1,873 @@
+import com.mxgraph.model.mxCell;
+import com.mxgraph.model.mxGeometry;
+import com.mxgraph.model.mxGraphModel;
+import com.mxgraph.model.mxIGraphModel;
+import com.mxgraph.util.mxPoint;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Formato binario compatto dei progetti, per chi apre ed esegue molti diagrammi
+ * (correttore automatico, esecuzione su server). Contiene le stesse informazioni di
+ * {@link ProjectFile}: il grafo main e le funzioni con parametri, tipo di ritorno e grafo.
+ *
+ * <pre>
+ * intestazione  "FCB1", versione, stringhe, offset delle stringhe, funzioni, offset delle funzioni, offset del main
+ * stringhe      offset di fine di ogni stringa (int) seguiti dal testo UTF-8
+ * funzioni      nome, tipo di ritorno, variabile di ritorno, parametri (nome, tipo), offset del grafo
+ * grafo         celle, archi, Start, End, byte di geometria, poi colonne di int per cella
+ *               (id, padre, valore, stile, sorgente, destinazione), archi uscenti in formato
+ *               CSR (offset per cella e celle degli archi), flag per cella e geometria
+ * </pre>
+ *
+ * Tutti i testi (id, valori, stili, nomi) sono indici in un'unica tabella di stringhe
+ * distinte, quindi gli stili ripetuti occupano spazio una sola volta. Le celle seguono
+ * l'ordine in profondità di mxCodec e si riferiscono le une alle altre per indice.
+ * La geometria è codificata a delta rispetto alla cella precedente, con interi di
+ * lunghezza variabile quando le coordinate sono intere.
+ *
+ * In lettura il file viene mappato in memoria: per eseguire un grafo
+ * {@link FlowchartProgram#compile(Graph)} legge stili, testi e archi direttamente
+ * dal buffer, senza creare celle JGraphX né decodificare la geometria, che serve
+ * solo per mostrare il diagramma nell'editor ({@link #toProject}).
+ */
+public final class BinaryProjectFile {
+
+    /** Estensione dei file binari. */
+    public static final String EXTENSION = "fcb";
+
+    private static final int MAGIC = 0x46434231;  // "FCB1"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 28;
+    private static final int GRAPH_HEADER_SIZE = 20;
+    private static final int NONE = FlowchartProgram.NONE;
+
+    // Flag delle celle
+    private static final int VERTEX = 1;
+    private static final int EDGE = 2;
+    private static final int NOT_CONNECTABLE = 4;
+    private static final int HIDDEN = 8;
+    private static final int HAS_GEOMETRY = 16;
+    private static final int RELATIVE = 32;
+
+    // Parti facoltative di una geometria
+    private static final int SOURCE_POINT = 1;
+    private static final int TARGET_POINT = 2;
+    private static final int OFFSET = 4;
+    private static final int POINTS = 8;
+
+    private final ByteBuffer buffer;
+    private final File file;
+    private final int stringCount;
+    private final int stringEnds;    // Offset della tabella dei fine stringa
+    private final int stringData;    // Offset del testo UTF-8
+    private final String[] strings;  // Decodificate al primo accesso
+    private final int functionCount;
+    private final int functionsOffset;
+    private final Graph mainGraph;
+
+    private BinaryProjectFile(ByteBuffer buffer, File file) throws IOException {
+        this.buffer = buffer;
+        this.file = file;
+        int limit = buffer.limit();
+        if (limit < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("'" + file + "' is not a binary flowchart file");
+        }
+        if (buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IOException("'" + file + "' has an unsupported format version " + buffer.getInt(4));
+        }
+        stringCount = buffer.getInt(8);
+        stringEnds = buffer.getInt(12);
+        functionCount = buffer.getInt(16);
+        functionsOffset = buffer.getInt(20);
+        // In long: un file danneggiato non deve far traboccare gli offset.
+        // Ogni funzione occupa almeno 20 byte: intestazione e offset del grafo.
+        long dataOffset = stringEnds + 4L * stringCount;
+        if (stringCount < 0 || stringEnds < HEADER_SIZE || dataOffset > limit
+            || functionCount < 0 || functionsOffset < HEADER_SIZE || functionsOffset > limit
+            || functionCount > (limit - functionsOffset) / 20) {
+            throw new IOException("'" + file + "' is damaged");
+        }
+        stringData = (int) dataOffset;
+        // I fine stringa crescono e restano nel file, così ogni stringa si decodifica senza controlli
+        int previousEnd = 0;
+        for (int id = 0; id < stringCount; id++) {
+            int end = buffer.getInt(stringEnds + 4 * id);
+            if (end < previousEnd || end > limit - stringData) {
+                throw new IOException("'" + file + "' is damaged");
+            }
+            previousEnd = end;
+        }
+        strings = new String[stringCount];
+        mainGraph = new Graph(buffer.getInt(24));
+    }
+
+    // ===== LETTURA =====
+
+    /**
+     * Checks whether a file starts with the binary format signature.
+     */
+    public static boolean isBinary(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return file.length() >= HEADER_SIZE && in.readInt() == MAGIC;
+        }
+    }
+
+    /**
+     * Maps a binary file in memory. Only the headers are read here; the rest is read on access.
+     */
+    public static BinaryProjectFile open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("'" + file + "' is too large");
+            }
+            // La mappatura resta valida anche dopo la chiusura del canale
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new BinaryProjectFile(buffer, file);
+        }
+    }
+
+    public Graph getMainGraph() {
+        return mainGraph;
+    }
+
+    /**
+     * The functions of the file, in file order. Only their headers are read here:
+     * the graphs stay in the buffer, ready for {@link FlowchartProgram#compile(FunctionDefinition, Graph)}.
+     */
+    public List<Function> getFunctions() throws IOException {
+        List<Function> functions = new ArrayList<>(functionCount);
+        int offset = functionsOffset;
+        for (int f = 0; f < functionCount; f++) {
+            if (offset > buffer.limit() - 16) {
+                throw new IOException("'" + file + "' is damaged");
+            }
+            String name = checkedString(buffer.getInt(offset));
+            String returnType = checkedString(buffer.getInt(offset + 4));
+            String returnVariable = checkedString(buffer.getInt(offset + 8));
+            int parameterCount = buffer.getInt(offset + 12);
+            offset += 16;
+            if (parameterCount < 0 || parameterCount > (buffer.limit() - offset - 4) / 8) {
+                throw new IOException("'" + file + "' is damaged");
+            }
+            List<FunctionDefinition.Parameter> parameters = new ArrayList<>();
+            for (int p = 0; p < parameterCount; p++) {
+                parameters.add(new FunctionDefinition.Parameter(checkedString(buffer.getInt(offset)),
+                    checkedString(buffer.getInt(offset + 4))));
+                offset += 8;
+            }
+            Graph graph = new Graph(buffer.getInt(offset));
+            offset += 4;
+            functions.add(new Function(name, parameters, returnType, returnVariable, graph));
+        }
+        return functions;
+    }
+
+    /**
+     * Decodes the whole project for the editor. Function graphs are decoded
+     * into JGraphX cells only when opened, as for {@link ProjectFile}.
+     */
+    public ProjectFile.Project toProject() throws IOException {
+        Map<String, FunctionDefinition> functions = new LinkedHashMap<>();
+        Map<String, ProjectFile.GraphData> functionGraphs = new HashMap<>();
+        for (Function function : getFunctions()) {
+            ProjectFile.GraphData graph = function.getGraph().toGraphData();
+            functions.put(function.getName(), new FunctionDefinition(function.getName(), function.parameters,
+                function.returnType, function.returnVariable, () -> graph));
+            functionGraphs.put(function.getName(), graph);
+        }
+        return new ProjectFile.Project(mainGraph.toGraphData(), functions, functionGraphs);
+    }
+
+    /**
+     * A function of the file: its signature and its graph, still in the buffer.
+     */
+    public static final class Function {
+        private final String name;
+        private final List<FunctionDefinition.Parameter> parameters;
+        private final String returnType;
+        private final String returnVariable;
+        private final Graph graph;
+
+        private Function(String name, List<FunctionDefinition.Parameter> parameters, String returnType,
+                         String returnVariable, Graph graph) {
+            this.name = name;
+            this.parameters = parameters;
+            this.returnType = returnType;
+            this.returnVariable = returnVariable;
+            this.graph = graph;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Graph getGraph() {
+            return graph;
+        }
+
+        /**
+         * A definition with this signature, whose graph is decoded from the buffer only if it is asked for.
+         */
+        public FunctionDefinition toDefinition() {
+            return new FunctionDefinition(name, parameters, returnType, returnVariable, graph::toGraphData);
+        }
+    }
+
+    /**
+     * String of the table, or null for {@link FlowchartProgram#NONE}; fails if the id is not in the table.
+     */
+    private String checkedString(int id) throws IOException {
+        if (id < NONE || id >= stringCount) {
+            throw new IOException("'" + file + "' is damaged");
+        }
+        return string(id);
+    }
+
+    /**
+     * String of the table, or null for {@link FlowchartProgram#NONE}. The id has already
+     * been checked, by {@link #checkedString} or when the graph was opened.
+     */
+    private String string(int id) {
+        if (id == NONE) {
+            return null;
+        }
+        String value = strings[id];
+        if (value == null) {
+            int start = id > 0 ? buffer.getInt(stringEnds + 4 * (id - 1)) : 0;
+            int end = buffer.getInt(stringEnds + 4 * id);
+            byte[] bytes = new byte[end - start];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = buffer.get(stringData + start + i);
+            }
+            // Più thread possono decodificare la stessa stringa: il risultato è identico
+            value = new String(bytes, StandardCharsets.UTF_8);
+            strings[id] = value;
+        }
+        return value;
+    }
+
+    /**
+     * A graph of the file, read directly from the mapped buffer. Cells, edges and
+     * strings are addressed by index; {@link FlowchartProgram#NONE} means no cell.
+     */
+    public final class Graph {
+        private final int cellCount;
+        private final int edgeCount;
+        private final int startCell;
+        private final int endCell;
+        private final int geometryLength;
+        private final int ids;
+        private final int parents;
+        private final int values;
+        private final int styles;
+        private final int sources;
+        private final int targets;
+        private final int edgeOffsets;
+        private final int edgeCells;
+        private final int flags;
+        private final int geometry;
+
+        private Graph(int offset) throws IOException {
+            int limit = buffer.limit();
+            if (offset < HEADER_SIZE || offset > limit - GRAPH_HEADER_SIZE) {
+                throw new IOException("'" + file + "' is damaged");
+            }
+            cellCount = buffer.getInt(offset);
+            edgeCount = buffer.getInt(offset + 4);
+            startCell = buffer.getInt(offset + 8);
+            endCell = buffer.getInt(offset + 12);
+            geometryLength = buffer.getInt(offset + 16);
+
+            if (cellCount < 0 || edgeCount < 0 || geometryLength < 0 || startCell < NONE || startCell >= cellCount
+                || endCell < NONE || endCell >= cellCount) {
+                throw new IOException("'" + file + "' is damaged");
+            }
+            // Offset delle colonne in long: con conteggi danneggiati la somma supererebbe un int
+            long columns = (long) offset + GRAPH_HEADER_SIZE;
+            long edgeColumns = columns + 4L * 6 * cellCount;
+            long flagColumn = edgeColumns + 4L * (cellCount + 1) + 4L * edgeCount;
+            long geometryStart = flagColumn + align(cellCount);
+            if (geometryStart + geometryLength > limit) {
+                throw new IOException("'" + file + "' is damaged");
+            }
+            ids = (int) columns;
+            parents = ids + 4 * cellCount;
+            values = parents + 4 * cellCount;
+            styles = values + 4 * cellCount;
+            sources = styles + 4 * cellCount;
+            targets = sources + 4 * cellCount;
+            edgeOffsets = targets + 4 * cellCount;
+            edgeCells = edgeOffsets + 4 * (cellCount + 1);
+            flags = edgeCells + 4 * edgeCount;
+            geometry = (int) geometryStart;
+            validate();
+        }
+
+        /**
+         * Checks once that every string, cell and edge index of the graph is in range,
+         * so that the accessors can read the buffer without checks.
+         */
+        private void validate() throws IOException {
+            int previousEdge = 0;
+            for (int cell = 0; cell < cellCount; cell++) {
+                int firstEdge = buffer.getInt(edgeOffsets + 4 * cell);
+                if (!isString(buffer.getInt(ids + 4 * cell)) || !isString(buffer.getInt(values + 4 * cell))
+                    || !isString(buffer.getInt(styles + 4 * cell)) || !isCell(buffer.getInt(parents + 4 * cell))
+                    || !isCell(buffer.getInt(sources + 4 * cell)) || !isCell(buffer.getInt(targets + 4 * cell))
+                    || firstEdge < previousEdge) {
+                    throw new IOException("'" + file + "' is damaged");
+                }
+                previousEdge = firstEdge;
+            }
+            if (buffer.getInt(edgeOffsets + 4 * cellCount) != edgeCount || previousEdge > edgeCount) {
+                throw new IOException("'" + file + "' is damaged");
+            }
+            for (int position = 0; position < edgeCount; position++) {
+                int edge = buffer.getInt(edgeCells + 4 * position);
+                if (edge < 0 || edge >= cellCount) {
+                    throw new IOException("'" + file + "' is damaged");
+                }
+            }
+        }
+
+        private boolean isString(int id) {
+            return id >= NONE && id < stringCount;
+        }
+
+        private boolean isCell(int cell) {
+            return cell >= NONE && cell < cellCount;
+        }
+
+        public int getCellCount() {
+            return cellCount;
+        }
+
+        /**
+         * Index of the Start block, or NONE.
+         */
+        public int getStartCell() {
+            return startCell;
+        }
+
+        /**
+         * Index of the End block, or NONE.
+         */
+        public int getEndCell() {
+            return endCell;
+        }
+
+        public String getId(int cell) {
+            return string(buffer.getInt(ids + 4 * cell));
+        }
+
+        public int getParent(int cell) {
+            return buffer.getInt(parents + 4 * cell);
+        }
+
+        /**
+         * Text of the cell, or null.
+         */
+        public String getValue(int cell) {
+            return string(buffer.getInt(values + 4 * cell));
+        }
+
+        public String getStyle(int cell) {
+            return string(buffer.getInt(styles + 4 * cell));
+        }
+
+        public int getSource(int cell) {
+            return buffer.getInt(sources + 4 * cell);
+        }
+
+        public int getTarget(int cell) {
+            return buffer.getInt(targets + 4 * cell);
+        }
+
+        public boolean isVertex(int cell) {
+            return (flagsOf(cell) & VERTEX) != 0;
+        }
+
+        public boolean isEdge(int cell) {
+            return (flagsOf(cell) & EDGE) != 0;
+        }
+
+        /**
+         * Position of the first outgoing edge of a cell in {@link #getOutgoingEdge}; the edges
+         * of {@code cell} end where the ones of {@code cell + 1} start. Self loops are excluded.
+         */
+        public int getFirstOutgoingEdge(int cell) {
+            return buffer.getInt(edgeOffsets + 4 * cell);
+        }
+
+        /**
+         * Edge cell at a position of the outgoing edge list.
+         */
+        public int getOutgoingEdge(int position) {
+            return buffer.getInt(edgeCells + 4 * position);
+        }
+
+        private int flagsOf(int cell) {
+            return buffer.get(flags + cell) & 0xFF;
+        }
+
+        /**
+         * Reads all cells, geometry included, in the form used by the editor.
+         */
+        public ProjectFile.GraphData toGraphData() {
+            ProjectFile.GraphData graph = new ProjectFile.GraphData();
+            GeometryReader reader = new GeometryReader(geometry, geometryLength);
+            for (int cell = 0; cell < cellCount; cell++) {
+                int cellFlags = flagsOf(cell);
+                int parent = getParent(cell);
+                int source = getSource(cell);
+                int target = getTarget(cell);
+                mxGeometry cellGeometry = (cellFlags & HAS_GEOMETRY) != 0 ? reader.read() : null;
+                if (cellGeometry != null) {
+                    cellGeometry.setRelative((cellFlags & RELATIVE) != 0);
+                }
+                graph.addCell(getId(cell), parent != NONE ? getId(parent) : null, getValue(cell), getStyle(cell),
+                    (cellFlags & VERTEX) != 0, (cellFlags & EDGE) != 0, (cellFlags & NOT_CONNECTABLE) == 0,
+                    (cellFlags & HIDDEN) == 0, source != NONE ? getId(source) : null,
+                    target != NONE ? getId(target) : null, cellGeometry);
+            }
+            return graph;
+        }
+    }
+
+    /**
+     * Decodes the geometry stream of a graph, the inverse of {@link GeometryWriter}.
+     */
+    private final class GeometryReader {
+        private int position;
+        private final int end;
+        private final double[] previous = new double[6];  // x, y, larghezza, altezza, x e y dell'ultimo punto
+
+        GeometryReader(int start, int length) {
+            this.position = start;
+            this.end = start + length;
+        }
+
+        mxGeometry read() {
+            mxGeometry geometry = new mxGeometry(coordinate(0), coordinate(1), coordinate(2), coordinate(3));
+            int parts = (int) varLong();
+            if ((parts & SOURCE_POINT) != 0) {
+                geometry.setSourcePoint(point());
+            }
+            if ((parts & TARGET_POINT) != 0) {
+                geometry.setTargetPoint(point());
+            }
+            if ((parts & OFFSET) != 0) {
+                geometry.setOffset(point());
+            }
+            if ((parts & POINTS) != 0) {
+                int count = (int) varLong();
+                List<mxPoint> points = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    points.add(point());
+                }
+                geometry.setPoints(points);
+            }
+            return geometry;
+        }
+
+        private mxPoint point() {
+            return new mxPoint(coordinate(4), coordinate(5));
+        }
+
+        private double coordinate(int field) {
+            long tag = varLong();
+            double value;
+            if ((tag & 1) == 0) {
+                long zigzag = tag >>> 1;
+                value = previous[field] + ((zigzag >>> 1) ^ -(zigzag & 1));
+            } else {
+                value = Double.longBitsToDouble(buffer.getLong(take(8)));
+            }
+            previous[field] = value;
+            return value;
+        }
+
+        private long varLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = buffer.get(take(1));
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalStateException("Malformed geometry");
+        }
+
+        private int take(int bytes) {
+            if (position + bytes > end) {
+                throw new IllegalStateException("Malformed geometry");
+            }
+            int start = position;
+            position += bytes;
+            return start;
+        }
+    }
+
+    // ===== SCRITTURA =====
+
+    /**
+     * Strings of the file, each stored once.
+     */
+    private static final class StringTable {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<byte[]> encoded = new ArrayList<>();
+        private int byteCount;
+
+        int intern(String value) {
+            if (value == null) {
+                return NONE;
+            }
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = encoded.size();
+                ids.put(value, id);
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                encoded.add(bytes);
+                byteCount += bytes.length;
+            }
+            return id;
+        }
+    }
+
+    /**
+     * A graph ready to be written: the cell columns, the outgoing edges and the encoded geometry.
+     */
+    private static final class GraphImage {
+        int cellCount;
+        int startCell = NONE;
+        int endCell = NONE;
+        int[] ids;
+        int[] parents;
+        int[] values;
+        int[] styles;
+        int[] sources;
+        int[] targets;
+        int[] edgeOffsets;
+        int[] edgeCells;
+        byte[] flags;
+        byte[] geometry;
+
+        int size() {
+            return GRAPH_HEADER_SIZE + 4 * (7 * cellCount + 1 + edgeCells.length) + align(cellCount)
+                + align(geometry.length);
+        }
+    }
+
+    /**
+     * Encodes geometries as differences from the previous one: integral values as
+     * variable length integers, all others as raw doubles.
+     */
+    private static final class GeometryWriter {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private final double[] previous = new double[6];
+
+        void write(mxGeometry geometry) {
+            coordinate(0, geometry.getX());
+            coordinate(1, geometry.getY());
+            coordinate(2, geometry.getWidth());
+            coordinate(3, geometry.getHeight());
+
+            List<mxPoint> points = geometry.getPoints();
+            boolean hasPoints = points != null && !points.isEmpty();
+            int parts = (geometry.getSourcePoint() != null ? SOURCE_POINT : 0)
+                | (geometry.getTargetPoint() != null ? TARGET_POINT : 0)
+                | (geometry.getOffset() != null ? OFFSET : 0)
+                | (hasPoints ? POINTS : 0);
+            varLong(parts);
+            if (geometry.getSourcePoint() != null) {
+                point(geometry.getSourcePoint());
+            }
+            if (geometry.getTargetPoint() != null) {
+                point(geometry.getTargetPoint());
+            }
+            if (geometry.getOffset() != null) {
+                point(geometry.getOffset());
+            }
+            if (hasPoints) {
+                varLong(points.size());
+                for (mxPoint point : points) {
+                    point(point);
+                }
+            }
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+
+        private void point(mxPoint point) {
+            coordinate(4, point.getX());
+            coordinate(5, point.getY());
+        }
+
+        private void coordinate(int field, double value) {
+            double delta = value - previous[field];
+            long rounded = (long) delta;
+            // Il delta intero deve ricostruire esattamente il valore
+            if (rounded == delta && Math.abs(rounded) < (1L << 52) && previous[field] + rounded == value) {
+                varLong(((rounded << 1) ^ (rounded >> 63)) << 1);
+            } else {
+                varLong(1);
+                long bits = Double.doubleToRawLongBits(value);
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    out.write((int) (bits >>> shift));
+                }
+            }
+            previous[field] = value;
+        }
+
+        private void varLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+    }
+
+    /**
+     * Writes the main graph and all functions to the file.
+     */
+    public static void save(File file, mxIGraphModel mainModel, Map<String, FunctionDefinition> functions)
+            throws IOException {
+        StringTable strings = new StringTable();
+        GraphImage main = image(mainModel, strings);
+        List<int[]> headers = new ArrayList<>();
+        List<GraphImage> functionImages = new ArrayList<>();
+        for (Map.Entry<String, FunctionDefinition> entry : functions.entrySet()) {
+            FunctionDefinition function = entry.getValue();
+            List<FunctionDefinition.Parameter> parameters = function.getFormalParameters();
+            int[] header = new int[4 + 2 * parameters.size()];
+            header[0] = strings.intern(entry.getKey());
+            header[1] = strings.intern(function.getReturnType());
+            header[2] = strings.intern(function.getReturnVariableName());
+            header[3] = parameters.size();
+            for (int p = 0; p < parameters.size(); p++) {
+                header[4 + 2 * p] = strings.intern(parameters.get(p).getName());
+                header[5 + 2 * p] = strings.intern(parameters.get(p).getType());
+            }
+            headers.add(header);
+
+            // Un grafo mai aperto viene decodificato in un modello temporaneo, senza toccare la funzione
+            mxIGraphModel model;
+            ProjectFile.GraphData pending = function.getPendingGraph();
+            if (pending != null) {
+                model = new mxGraphModel();
+                pending.decodeInto(model);
+            } else if (function.getFunctionModel() != null) {
+                model = function.getFunctionModel();
+            } else {
+                model = new mxGraphModel();
+            }
+            functionImages.add(image(model, strings));
+        }
+
+        // Disposizione: intestazione, stringhe, funzioni, main, grafi delle funzioni
+        int stringCount = strings.encoded.size();
+        int stringsOffset = HEADER_SIZE;
+        int functionsOffset = stringsOffset + 4 * stringCount + align(strings.byteCount);
+        int mainOffset = functionsOffset;
+        for (int[] header : headers) {
+            mainOffset += 4 * (header.length + 1);
+        }
+        long total = mainOffset + (long) main.size();
+        for (GraphImage image : functionImages) {
+            total += image.size();
+        }
+        if (total > Integer.MAX_VALUE) {
+            throw new IOException("Project too large for the binary format");
+        }
+
+        ByteBuffer out = ByteBuffer.allocate((int) total);
+        out.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(stringCount).putInt(stringsOffset)
+            .putInt(headers.size()).putInt(functionsOffset).putInt(mainOffset);
+
+        int end = 0;
+        for (byte[] bytes : strings.encoded) {
+            end += bytes.length;
+            out.putInt(end);
+        }
+        for (byte[] bytes : strings.encoded) {
+            out.put(bytes);
+        }
+        pad(out);
+
+        int graphOffset = mainOffset + main.size();
+        for (int f = 0; f < headers.size(); f++) {
+            for (int value : headers.get(f)) {
+                out.putInt(value);
+            }
+            out.putInt(graphOffset);
+            graphOffset += functionImages.get(f).size();
+        }
+        writeGraph(out, main);
+        for (GraphImage image : functionImages) {
+            writeGraph(out, image);
+        }
+
+        out.flip();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+        }
+    }
+
+    /**
+     * Numbers the cells of a model in depth-first order, as mxCodec does, and builds their columns.
+     */
+    private static GraphImage image(mxIGraphModel model, StringTable strings) {
+        List<mxCell> cells = new ArrayList<>();
+        Deque<Object> stack = new ArrayDeque<>();
+        if (model.getRoot() != null) {
+            stack.push(model.getRoot());
+        }
+        while (!stack.isEmpty()) {
+            mxCell cell = (mxCell) stack.pop();
+            cells.add(cell);
+            for (int i = cell.getChildCount() - 1; i >= 0; i--) {
+                stack.push(cell.getChildAt(i));
+            }
+        }
+        Map<Object, Integer> indexOf = new IdentityHashMap<>();
+        for (int i = 0; i < cells.size(); i++) {
+            indexOf.put(cells.get(i), i);
+        }
+
+        int count = cells.size();
+        GraphImage image = new GraphImage();
+        image.cellCount = count;
+        image.ids = new int[count];
+        image.parents = new int[count];
+        image.values = new int[count];
+        image.styles = new int[count];
+        image.sources = new int[count];
+        image.targets = new int[count];
+        image.edgeOffsets = new int[count + 1];
+        image.flags = new byte[count];
+        List<Integer> edgeCells = new ArrayList<>();
+        GeometryWriter geometry = new GeometryWriter();
+
+        for (int i = 0; i < count; i++) {
+            mxCell cell = cells.get(i);
+            String value = cell.getValue() != null ? cell.getValue().toString() : null;
+            image.ids[i] = strings.intern(cell.getId());
+            image.parents[i] = indexIn(indexOf, cell.getParent());
+            image.values[i] = strings.intern(value);
+            image.styles[i] = strings.intern(cell.getStyle());
+            image.sources[i] = indexIn(indexOf, cell.getSource());
+            image.targets[i] = indexIn(indexOf, cell.getTarget());
+
+            int cellFlags = (cell.isVertex() ? VERTEX : 0) | (cell.isEdge() ? EDGE : 0)
+                | (cell.isConnectable() ? 0 : NOT_CONNECTABLE) | (cell.isVisible() ? 0 : HIDDEN);
+            if (cell.getGeometry() != null) {
+                cellFlags |= HAS_GEOMETRY | (cell.getGeometry().isRelative() ? RELATIVE : 0);
+                geometry.write(cell.getGeometry());
+            }
+            image.flags[i] = (byte) cellFlags;
+
+            // Archi uscenti nell'ordine del modello, come li legge FlowchartProgram
+            image.edgeOffsets[i] = edgeCells.size();
+            for (Object edge : mxGraphModel.getEdges(model, cell, false, true, false)) {
+                Integer edgeIndex = indexOf.get(edge);
+                if (edgeIndex != null) {
+                    edgeCells.add(edgeIndex);
+                }
+            }
+
+            if (cell.isVertex() && cell.getId() != null) {
+                if (ProjectFile.isStartCell(cell.getStyle(), value)) {
+                    image.startCell = i;
+                }
+                if (ProjectFile.isEndCell(cell.getStyle(), value)) {
+                    image.endCell = i;
+                }
+            }
+        }
+        image.edgeOffsets[count] = edgeCells.size();
+        image.edgeCells = new int[edgeCells.size()];
+        for (int e = 0; e < image.edgeCells.length; e++) {
+            image.edgeCells[e] = edgeCells.get(e);
+        }
+        image.geometry = geometry.toByteArray();
+        return image;
+    }
+
+    private static void writeGraph(ByteBuffer out, GraphImage image) {
+        out.putInt(image.cellCount).putInt(image.edgeCells.length).putInt(image.startCell).putInt(image.endCell)
+            .putInt(image.geometry.length);
+        for (int[] column : new int[][] {image.ids, image.parents, image.values, image.styles, image.sources,
+                                         image.targets, image.edgeOffsets, image.edgeCells}) {
+            for (int value : column) {
+                out.putInt(value);
+            }
+        }
+        out.put(image.flags);
+        pad(out);
+        out.put(image.geometry);
+        pad(out);
+    }
+
+    private static int indexIn(Map<Object, Integer> indexOf, Object cell) {
+        Integer index = cell != null ? indexOf.get(cell) : null;
+        return index != null ? index : NONE;
+    }
+
+    /**
+     * Rounds a byte count up to a multiple of 4, so that the int columns stay aligned.
+     */
+    private static int align(int bytes) {
+        return (bytes + 3) & ~3;
+    }
+
+    private static void pad(ByteBuffer out) {
+        while ((out.position() & 3) != 0) {
+            out.put((byte) 0);
+        }
+    }
+
+    /**
+     * Converts a project file to the binary format: java BinaryProjectFile project.xml project.fcb
+     */
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        if (args.length != 2) {
+            System.err.println("Usage: java BinaryProjectFile project.xml project." + EXTENSION);
+            System.exit(FlowchartRunner.EXIT_USAGE);
+        }
+        try {
+            ProjectFile.Project project = ProjectFile.load(new File(args[0]));
+            mxGraphModel model = new mxGraphModel();
+            project.getMainGraph().decodeInto(model);
+            save(new File(args[1]), model, project.getFunctions());
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(FlowchartRunner.EXIT_USAGE);
+        }
+    }
+}
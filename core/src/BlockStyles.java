@@ -0,0 +1,22 @@
+/**
+ * Stili dei blocchi: il tipo di ogni cella è il suo stile JGraphX.
+ * Stanno nel nucleo perché interprete, generatore C e file di progetto li riconoscono
+ * senza dipendere dall'editor, che li registra nel suo foglio di stile.
+ */
+public final class BlockStyles {
+
+    public static final String ASSIGNMENT = "ASSIGNMENT";  // Assignment block (rectangle)
+    public static final String INPUT = "INPUT";  // Input block (parallelogram with I)
+    public static final String OUTPUT = "OUTPUT";  // Output block (parallelogram with O)
+    public static final String CONDITIONAL = "CONDITIONAL";
+    public static final String LOOP = "LOOP";  // While loop
+    public static final String FOR_LOOP = "FOR_LOOP";  // For loop
+    public static final String DO_WHILE = "DO_WHILE";  // Do-While loop
+    public static final String START = "START";
+    public static final String END = "END";
+    public static final String MERGE = "MERGE";  // Merge point for conditionals
+    public static final String FUNCTION_CALL = "FUNCTION_CALL";  // Function call block
+
+    private BlockStyles() {
+    }
+}
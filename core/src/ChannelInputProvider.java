@@ -0,0 +1,103 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Valori di input letti da un canale NIO, una riga per valore.
+ * Le righe vengono lette solo quando servono, quindi il canale può essere
+ * lo stdin di un altro processo o un file grande. Il canale deve essere bloccante;
+ * il separatore '\n' viene cercato sui byte, quindi la codifica deve essere
+ * compatibile con ASCII (UTF-8, ISO-8859-1...). Un '\r' finale viene scartato.
+ */
+public class ChannelInputProvider implements InputProvider, Closeable {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final ReadableByteChannel channel;
+    private final Charset charset;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private byte[] line = new byte[128];
+    private boolean endOfStream;
+
+    public ChannelInputProvider(ReadableByteChannel channel) {
+        this(channel, StandardCharsets.UTF_8);
+    }
+
+    public ChannelInputProvider(ReadableByteChannel channel, Charset charset) {
+        this.channel = channel;
+        this.charset = charset;
+        buffer.flip();  // Inizialmente vuoto
+    }
+
+    @Override
+    public String nextInput(String variableName) throws IOException {
+        return readLine();
+    }
+
+    /**
+     * Reads the next line, or returns null at the end of the channel.
+     */
+    public String readLine() throws IOException {
+        int length = 0;
+        while (true) {
+            if (!buffer.hasRemaining()) {
+                if (endOfStream || !fill()) {
+                    // L'ultima riga può non avere il separatore finale
+                    return length > 0 ? toLine(length) : null;
+                }
+            }
+
+            // Copia fino al separatore senza passare da un byte alla volta dal canale
+            int start = buffer.position();
+            int limit = buffer.limit();
+            byte[] array = buffer.array();
+            int end = start;
+            while (end < limit && array[end] != '\n') {
+                end++;
+            }
+
+            int count = end - start;
+            if (length + count > line.length) {
+                line = Arrays.copyOf(line, Math.max(line.length * 2, length + count));
+            }
+            System.arraycopy(array, start, line, length, count);
+            length += count;
+
+            if (end < limit) {
+                buffer.position(end + 1);
+                return toLine(length);
+            }
+            buffer.position(limit);
+        }
+    }
+
+    private boolean fill() throws IOException {
+        buffer.clear();
+        int read;
+        do {
+            read = channel.read(buffer);
+        } while (read == 0);
+        buffer.flip();
+        if (read < 0) {
+            endOfStream = true;
+            return false;
+        }
+        return true;
+    }
+
+    private String toLine(int length) {
+        if (length > 0 && line[length - 1] == '\r') {
+            length--;
+        }
+        return new String(line, 0, length, charset);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,369 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Base delle classi generate da {@link FlowchartCompiler}.
+ * Il codice generato tiene le variabili in variabili locali Java tipizzate
+ * e riceve da qui lo stato condiviso con l'interprete: output, input,
+ * contatore dei passi, limiti e stack dei loop del programma principale.
+ *
+ * Si entra nel codice compilato in due modi: il programma principale riprende
+ * da un blocco ({@link #run}) oppure l'interprete chiama una funzione utente
+ * compilata ({@link #invoke}). In caso di errore, limite raggiunto o tipo
+ * inatteso il codice torna all'interprete (deottimizzazione): l'output e i passi
+ * della parte in corso vengono annullati e l'interprete la riesegue, producendo
+ * lo stesso risultato o lo stesso errore.
+ */
+public abstract class CompiledFlowchart {
+
+    /** The program reached its End block. */
+    public static final int FINISHED = 0;
+    /** The interpreter must continue from {@link #getExitPc()} and {@link #getExitPart()}. */
+    public static final int DEOPTIMIZED = 1;
+    /** The input provider had no value for {@link #getMissingInput()}. */
+    public static final int INPUT_MISSING = 2;
+
+    /**
+     * Built-in functions of the interpreter (math, string, random, time).
+     */
+    public interface BuiltinFunctions {
+        Object call(String name, Object[] args);
+    }
+
+    /**
+     * Stack of the loops entered by a program, with the same rules as the interpreter's.
+     */
+    public static final class LoopStack {
+        private int[] items = new int[8];
+        private int count;
+
+        public LoopStack() {
+        }
+
+        public void enter(int index) {
+            if (count == 0 || items[count - 1] != index) {
+                if (count == items.length) {
+                    items = Arrays.copyOf(items, count * 2);
+                }
+                items[count++] = index;
+            }
+        }
+
+        public void exit(int index) {
+            if (count > 0 && items[count - 1] == index) {
+                count--;
+            }
+        }
+
+        /**
+         * Whether the innermost loop is {@code index}.
+         */
+        public boolean isTop(int index) {
+            return count > 0 && items[count - 1] == index;
+        }
+    }
+
+    /**
+     * Thrown to abandon the compiled code: preallocated and without stack trace.
+     */
+    private static final class Deoptimization extends RuntimeException {
+        static final Deoptimization INSTANCE = new Deoptimization();
+
+        private Deoptimization() {
+            super(null, null, false, false);
+        }
+    }
+
+    private final int[] slotTypes;  // Tipo (costanti di Value) di ogni variabile del programma principale
+
+    // Stato ricevuto dall'interprete
+    protected StringBuilder output;
+    private InputProvider input;
+    private BuiltinFunctions builtins;
+    private long stepLimit = Long.MAX_VALUE;
+    private int maxCallDepth;
+    private long deadlineNanos;
+    private volatile boolean cancelled;
+    protected long steps;
+    protected int depth;
+    protected LoopStack loops;
+    private int deoptimizations;
+
+    // Punto di uscita del programma principale
+    protected int exitReason;
+    protected int exitPc;
+    protected int exitPart;
+    protected int pendingSlot;
+    protected Object pendingValue;
+    protected String missingInput;
+
+    protected CompiledFlowchart(int[] slotTypes) {
+        this.slotTypes = slotTypes;
+    }
+
+    /**
+     * Runs the main program from block {@code pc}. The variables are read from and written back to {@code frame}.
+     */
+    protected abstract void execute(Frame frame, int pc);
+
+    /**
+     * Calls a compiled user function; returns null if the function was not compiled.
+     */
+    protected abstract Object call(String name, Object[] args);
+
+    /**
+     * Connects the code to the interpreter output, input and built-in functions.
+     */
+    public void attach(StringBuilder output, InputProvider input, BuiltinFunctions builtins, ExecutionLimits limits) {
+        this.output = output;
+        this.input = input;
+        this.builtins = builtins;
+        this.stepLimit = limits.getMaxSteps() > 0 ? limits.getMaxSteps() : Long.MAX_VALUE;
+        this.maxCallDepth = limits.getMaxCallDepth();
+    }
+
+    /**
+     * Checks that the variables of the frame have the types the code was specialized for.
+     */
+    public boolean accepts(Frame frame) {
+        for (int slot = 0; slot < slotTypes.length; slot++) {
+            Object value = frame.get(slot);
+            if (value != null && typeOf(value) != slotTypes[slot]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int typeOf(Object value) {
+        if (value instanceof Integer) {
+            return Value.INT;
+        }
+        return value instanceof Double ? Value.DOUBLE : Value.STRING;
+    }
+
+    /**
+     * Runs the main program from block {@code pc} until it ends or leaves the compiled code.
+     *
+     * @param loopIndexes Loop blocks entered and not yet exited, outermost first
+     */
+    public void run(Frame frame, int pc, long steps, long deadlineNanos, int[] loopIndexes) {
+        this.steps = steps;
+        this.deadlineNanos = deadlineNanos;
+        this.depth = 0;
+        this.loops = new LoopStack();
+        for (int index : loopIndexes) {
+            loops.enter(index);
+        }
+        exitReason = FINISHED;
+        exitPc = FlowchartProgram.NONE;
+        exitPart = 0;
+        pendingSlot = -1;
+        pendingValue = null;
+        missingInput = null;
+
+        execute(frame, pc);
+        if (exitReason == DEOPTIMIZED) {
+            deoptimizations++;
+        }
+    }
+
+    /**
+     * Runs a whole user function call. Returns its result, or null if the function
+     * is not compiled or the call must be interpreted (output and steps are then unchanged).
+     *
+     * @param depth Number of calls already in progress
+     */
+    public Object invoke(String name, Object[] args, long steps, long deadlineNanos, int depth) {
+        this.steps = steps;
+        this.deadlineNanos = deadlineNanos;
+        this.depth = depth;
+        int mark = output.length();
+        try {
+            Object result = call(name, args);
+            if (result != null) {
+                // Il blocco chiamante viene contato di nuovo dall'interprete
+                this.steps--;
+            }
+            return result;
+        } catch (RuntimeException | StackOverflowError e) {
+            output.setLength(mark);
+            this.steps = steps;
+            deoptimizations++;
+            return null;
+        }
+    }
+
+    /**
+     * Asks the running code to return to the interpreter as soon as possible.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Number of times the code returned to the interpreter before finishing.
+     */
+    public int getDeoptimizations() {
+        return deoptimizations;
+    }
+
+    public int getExitReason() {
+        return exitReason;
+    }
+
+    /**
+     * Block from which the interpreter continues (the End block if finished).
+     */
+    public int getExitPc() {
+        return exitPc;
+    }
+
+    /**
+     * Parts of the exit block already completed (statements, input variables).
+     */
+    public int getExitPart() {
+        return exitPart;
+    }
+
+    public String getMissingInput() {
+        return missingInput;
+    }
+
+    public long getSteps() {
+        return steps;
+    }
+
+    public long getDeadlineNanos() {
+        return deadlineNanos;
+    }
+
+    /**
+     * Loop blocks of the main program entered and not yet exited, outermost first.
+     */
+    public int[] getLoopIndexes() {
+        return Arrays.copyOf(loops.items, loops.count);
+    }
+
+    // ===== SUPPORTO AL CODICE GENERATO =====
+
+    /**
+     * Counts a block; leaves the compiled code if a limit is reached or the run was stopped.
+     * Like the interpreter, the clock is read only every 1024 steps.
+     */
+    protected final void step() {
+        long count = ++steps;
+        if (count > stepLimit) {
+            throw Deoptimization.INSTANCE;
+        }
+        if ((count & 1023) == 0
+                && (cancelled || (deadlineNanos != 0 && System.nanoTime() - deadlineNanos > 0))) {
+            throw Deoptimization.INSTANCE;
+        }
+    }
+
+    /**
+     * Enters a user function: one extra step (the interpreter evaluates the calling block
+     * again after the return) and the call depth check.
+     */
+    protected final void enterFunction() {
+        step();
+        if (maxCallDepth > 0 && depth >= maxCallDepth) {
+            throw Deoptimization.INSTANCE;
+        }
+        depth++;
+    }
+
+    protected final void exitFunction() {
+        depth--;
+    }
+
+    protected static void deoptimize() {
+        throw Deoptimization.INSTANCE;
+    }
+
+    protected static int deoptimizeInt() {
+        throw Deoptimization.INSTANCE;
+    }
+
+    protected static double deoptimizeDouble() {
+        throw Deoptimization.INSTANCE;
+    }
+
+    protected static String deoptimizeString() {
+        throw Deoptimization.INSTANCE;
+    }
+
+    protected static boolean deoptimizeBoolean() {
+        throw Deoptimization.INSTANCE;
+    }
+
+    /**
+     * Reads the next input value, or returns null if there is none.
+     * Without an input provider the interpreter must ask the listener.
+     */
+    protected final String readInput(String variableName) {
+        if (input == null) {
+            throw Deoptimization.INSTANCE;
+        }
+        long waitStart = System.nanoTime();
+        String value;
+        try {
+            value = input.nextInput(variableName);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        // Il tempo di attesa dell'input non conta per il limite di tempo
+        if (deadlineNanos != 0) {
+            deadlineNanos += System.nanoTime() - waitStart;
+        }
+        return value;
+    }
+
+    /**
+     * Converts an input text as the interpreter does: Integer, Double or String.
+     */
+    protected static Object parseInput(String value) {
+        try {
+            if (value.matches("-?\\d+")) {
+                return Integer.parseInt(value);
+            } else if (value.matches("-?\\d+\\.\\d+")) {
+                return Double.parseDouble(value);
+            }
+        } catch (NumberFormatException e) {
+            // Fuori dal range degli interi: resta una stringa
+        }
+        return value;
+    }
+
+    protected final Object builtin(String name, Object[] args) {
+        return builtins.call(name, args);
+    }
+
+    /**
+     * A string used as a condition is never true (it is still evaluated for its calls).
+     */
+    protected static boolean isTrue(String value) {
+        return false;
+    }
+
+    protected static boolean isTrue(int value) {
+        return value != 0;
+    }
+
+    protected static boolean isTrue(double value) {
+        return value != 0;
+    }
+
+    /**
+     * Discards the result of an expression evaluated for its calls.
+     */
+    protected static void discard(int value) {
+    }
+
+    protected static void discard(double value) {
+    }
+
+    protected static void discard(String value) {
+    }
+}
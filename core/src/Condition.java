@@ -0,0 +1,232 @@
+/**
+ * Condizione già analizzata di un blocco decisionale (IF, WHILE, DO-WHILE, FOR).
+ * Viene costruita una sola volta da {@link ExpressionParser}: AND e OR
+ * valutano il secondo operando solo se necessario e i confronti numerici
+ * lavorano direttamente sui valori primitivi.
+ */
+public abstract class Condition {
+
+    /**
+     * Evaluates the condition, using {@code register} as scratch space for the operands.
+     */
+    public abstract boolean test(Expression.Context context, Value register);
+
+    /**
+     * Assigns the slots of the variables read by the condition.
+     */
+    public abstract void resolve(SymbolTable symbols);
+
+    // ===== NODES =====
+
+    static final class And extends Condition {
+        private final Condition left;
+        private final Condition right;
+
+        And(Condition left, Condition right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        Condition getLeft() {
+            return left;
+        }
+
+        Condition getRight() {
+            return right;
+        }
+
+        @Override
+        public boolean test(Expression.Context context, Value register) {
+            return left.test(context, register) && right.test(context, register);
+        }
+
+        @Override
+        public void resolve(SymbolTable symbols) {
+            left.resolve(symbols);
+            right.resolve(symbols);
+        }
+    }
+
+    static final class Or extends Condition {
+        private final Condition left;
+        private final Condition right;
+
+        Or(Condition left, Condition right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        Condition getLeft() {
+            return left;
+        }
+
+        Condition getRight() {
+            return right;
+        }
+
+        @Override
+        public boolean test(Expression.Context context, Value register) {
+            return left.test(context, register) || right.test(context, register);
+        }
+
+        @Override
+        public void resolve(SymbolTable symbols) {
+            left.resolve(symbols);
+            right.resolve(symbols);
+        }
+    }
+
+    static final class Not extends Condition {
+        private final Condition operand;
+
+        Not(Condition operand) {
+            this.operand = operand;
+        }
+
+        Condition getOperand() {
+            return operand;
+        }
+
+        @Override
+        public boolean test(Expression.Context context, Value register) {
+            return !operand.test(context, register);
+        }
+
+        @Override
+        public void resolve(SymbolTable symbols) {
+            operand.resolve(symbols);
+        }
+    }
+
+    static final class Compare extends Condition {
+        // Operatori di confronto
+        static final int LESS = 0;
+        static final int LESS_EQUAL = 1;
+        static final int GREATER = 2;
+        static final int GREATER_EQUAL = 3;
+        static final int EQUAL = 4;
+        static final int NOT_EQUAL = 5;
+
+        private final int operator;
+        private final Expression left;
+        private final Expression right;
+
+        Compare(int operator, Expression left, Expression right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        int getOperator() {
+            return operator;
+        }
+
+        Expression getLeft() {
+            return left;
+        }
+
+        Expression getRight() {
+            return right;
+        }
+
+        @Override
+        public boolean test(Expression.Context context, Value register) {
+            left.evaluate(context, register);
+            int leftType = register.getType();
+            int leftInt = leftType == Value.INT ? register.intValue() : 0;
+            double leftDouble = leftType == Value.DOUBLE ? register.doubleValue() : leftInt;
+            String leftString = leftType == Value.STRING ? register.stringValue() : null;
+
+            right.evaluate(context, register);
+            int rightType = register.getType();
+
+            if (leftType == Value.INT && rightType == Value.INT) {
+                return compare(Integer.compare(leftInt, register.intValue()));
+            }
+            if ((leftType == Value.INT || leftType == Value.DOUBLE) && register.isNumber()) {
+                double rightDouble = register.doubleValue();
+                // Confronto diretto per rispettare la semantica IEEE (NaN)
+                switch (operator) {
+                    case LESS: return leftDouble < rightDouble;
+                    case LESS_EQUAL: return leftDouble <= rightDouble;
+                    case GREATER: return leftDouble > rightDouble;
+                    case GREATER_EQUAL: return leftDouble >= rightDouble;
+                    case EQUAL: return leftDouble == rightDouble;
+                    default: return leftDouble != rightDouble;
+                }
+            }
+
+            // Almeno un operando testuale: confronta le rappresentazioni come stringhe
+            String leftText = leftString != null ? leftString
+                : leftType == Value.INT ? Integer.toString(leftInt) : Double.toString(leftDouble);
+            return compare(leftText.compareTo(register.stringValue()));
+        }
+
+        @Override
+        public void resolve(SymbolTable symbols) {
+            left.resolve(symbols);
+            right.resolve(symbols);
+        }
+
+        private boolean compare(int comparison) {
+            switch (operator) {
+                case LESS: return comparison < 0;
+                case LESS_EQUAL: return comparison <= 0;
+                case GREATER: return comparison > 0;
+                case GREATER_EQUAL: return comparison >= 0;
+                case EQUAL: return comparison == 0;
+                default: return comparison != 0;
+            }
+        }
+    }
+
+    /**
+     * A bare expression used as a condition: true when it is a non-zero number.
+     */
+    static final class Truth extends Condition {
+        private final Expression expression;
+
+        Truth(Expression expression) {
+            this.expression = expression;
+        }
+
+        Expression getExpression() {
+            return expression;
+        }
+
+        @Override
+        public boolean test(Expression.Context context, Value register) {
+            expression.evaluate(context, register);
+            switch (register.getType()) {
+                case Value.INT: return register.intValue() != 0;
+                case Value.DOUBLE: return register.doubleValue() != 0;
+                default: return false;
+            }
+        }
+
+        @Override
+        public void resolve(SymbolTable symbols) {
+            expression.resolve(symbols);
+        }
+    }
+
+    /**
+     * Placeholder for a condition that could not be parsed: the error is raised only if it is tested.
+     */
+    static final class Invalid extends Condition {
+        private final String message;
+
+        Invalid(String message) {
+            this.message = message;
+        }
+
+        @Override
+        public boolean test(Expression.Context context, Value register) {
+            throw new RuntimeException(message);
+        }
+
+        @Override
+        public void resolve(SymbolTable symbols) {
+        }
+    }
+}
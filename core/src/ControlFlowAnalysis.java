@@ -0,0 +1,405 @@
+import java.util.Arrays;
+
+/**
+ * Analisi del flusso di controllo di un {@link FlowchartProgram}: albero dei dominatori,
+ * albero dei post-dominatori e foresta dei loop annidati, calcolati una sola volta
+ * per grafo. Serve a ricostruire il codice strutturato (if, while, for, do-while)
+ * senza esplorare di nuovo il grafo per ogni blocco.
+ *
+ * Un blocco A domina B se ogni percorso dallo Start a B passa per A; A post-domina B se
+ * ogni percorso da B alla fine passa per A. Il post-dominatore immediato di un IF è il
+ * punto in cui i due rami si ricongiungono. Un arco verso un blocco che domina la
+ * sorgente è un arco di ritorno: il suo destinatario è l'intestazione di un loop.
+ *
+ * I dominatori usano l'algoritmo iterativo di Cooper, Harvey e Kennedy sull'ordine
+ * postfisso inverso; le visite sono iterative, quindi la profondità del diagramma non
+ * consuma lo stack Java.
+ */
+public final class ControlFlowAnalysis {
+
+    private static final int NONE = FlowchartProgram.NONE;
+    private static final int[] NO_NODES = new int[0];
+
+    private final FlowchartProgram program;
+    private final int[][] successors;
+    private final int[][] predecessors;
+    private final int[] dominators;       // Dominatore immediato (la radice domina se stessa)
+    private final int[] dominatorEnter;   // Intervallo di visita nell'albero dei dominatori,
+    private final int[] dominatorExit;    // per verificare la dominanza in tempo costante
+    private final int[] postDominators;   // Post-dominatore immediato (NONE = uscita o nessun percorso)
+    private final int[] loopHeaders;      // Intestazione del loop più interno che contiene il blocco
+    private final int[] parentLoops;      // Per le intestazioni: intestazione del loop che le contiene
+    private final int[][] latches;        // Per le intestazioni: sorgenti degli archi di ritorno
+
+    private ControlFlowAnalysis(FlowchartProgram program) {
+        this.program = program;
+        int size = program.size();
+
+        successors = new int[size][];
+        for (int i = 0; i < size; i++) {
+            successors[i] = successorsOf(program, i);
+        }
+        predecessors = invert(successors, size);
+
+        dominators = computeDominators(program.getStartIndex(), successors, predecessors, size);
+        dominatorEnter = new int[size];
+        dominatorExit = new int[size];
+        numberDominatorTree(size);
+
+        // Post-dominatori: dominatori del grafo inverso con un'uscita virtuale (indice size)
+        // collegata all'End e ai blocchi senza successori
+        int[][] reverseSuccessors = new int[size + 1][];
+        int[][] reversePredecessors = new int[size + 1][];
+        int exitCount = 0;
+        for (int i = 0; i < size; i++) {
+            if (successors[i].length == 0) {
+                exitCount++;
+            }
+        }
+        int[] exits = new int[exitCount];
+        for (int i = 0, e = 0; i < size; i++) {
+            reverseSuccessors[i] = predecessors[i];
+            if (successors[i].length == 0) {
+                exits[e++] = i;
+                reversePredecessors[i] = new int[] {size};
+            } else {
+                reversePredecessors[i] = successors[i];
+            }
+        }
+        reverseSuccessors[size] = exits;
+        reversePredecessors[size] = NO_NODES;
+        int[] reverseDominators = computeDominators(size, reverseSuccessors, reversePredecessors, size + 1);
+        postDominators = new int[size];
+        for (int i = 0; i < size; i++) {
+            int node = reverseDominators[i];
+            postDominators[i] = node == size ? NONE : node;
+        }
+
+        loopHeaders = new int[size];
+        parentLoops = new int[size];
+        latches = new int[size][];
+        computeLoops(size);
+    }
+
+    /**
+     * Analyzes a compiled program.
+     */
+    public static ControlFlowAnalysis analyze(FlowchartProgram program) {
+        return new ControlFlowAnalysis(program);
+    }
+
+    public FlowchartProgram getProgram() {
+        return program;
+    }
+
+    public int[] getSuccessors(int index) {
+        return successors[index];
+    }
+
+    public int[] getPredecessors(int index) {
+        return predecessors[index];
+    }
+
+    /**
+     * Immediate dominator of a block; the start block is its own dominator, unreachable blocks have NONE.
+     */
+    public int getImmediateDominator(int index) {
+        return dominators[index];
+    }
+
+    /**
+     * Immediate post-dominator of a block: the first block that every path from it
+     * to the end must cross. NONE for the End block and for blocks that cannot reach the end.
+     */
+    public int getImmediatePostDominator(int index) {
+        return postDominators[index];
+    }
+
+    /**
+     * Checks whether every path from the start to {@code index} passes through {@code dominator}.
+     */
+    public boolean dominates(int dominator, int index) {
+        if (dominators[index] == NONE || dominators[dominator] == NONE) {
+            return false;
+        }
+        return dominatorEnter[dominator] <= dominatorEnter[index] && dominatorExit[index] <= dominatorExit[dominator];
+    }
+
+    /**
+     * Checks whether a block is the target of a back edge.
+     */
+    public boolean isLoopHeader(int index) {
+        return latches[index] != null;
+    }
+
+    /**
+     * Header of the innermost loop containing the block (a header contains itself), or NONE.
+     */
+    public int getLoopHeader(int index) {
+        return loopHeaders[index];
+    }
+
+    /**
+     * Header of the loop that contains the loop with the given header, or NONE.
+     */
+    public int getParentLoop(int header) {
+        return parentLoops[header];
+    }
+
+    /**
+     * Sources of the back edges of a loop header (empty if the block is not a header).
+     */
+    public int[] getLatches(int header) {
+        return latches[header] != null ? latches[header] : NO_NODES;
+    }
+
+    // ===== COSTRUZIONE =====
+
+    private static int[] successorsOf(FlowchartProgram program, int index) {
+        if (index == program.getEndIndex()) {
+            return NO_NODES;
+        }
+        int next = program.getNext(index);
+        int falseNext = program.getFalseNext(index);
+        if (next == NONE) {
+            return falseNext == NONE ? NO_NODES : new int[] {falseNext};
+        }
+        if (falseNext == NONE || falseNext == next) {
+            return new int[] {next};
+        }
+        return new int[] {next, falseNext};
+    }
+
+    private static int[][] invert(int[][] edges, int size) {
+        int[] counts = new int[size];
+        for (int[] targets : edges) {
+            for (int target : targets) {
+                counts[target]++;
+            }
+        }
+        int[][] inverted = new int[size][];
+        for (int i = 0; i < size; i++) {
+            inverted[i] = counts[i] == 0 ? NO_NODES : new int[counts[i]];
+            counts[i] = 0;
+        }
+        for (int source = 0; source < edges.length; source++) {
+            for (int target : edges[source]) {
+                inverted[target][counts[target]++] = source;
+            }
+        }
+        return inverted;
+    }
+
+    /**
+     * Nodes reachable from {@code root} in reverse postorder (iterative depth-first visit).
+     */
+    private static int[] reversePostorder(int root, int[][] successors, int size) {
+        int[] order = new int[size];
+        int count = 0;
+        boolean[] visited = new boolean[size];
+        int[] stack = new int[size];
+        int[] nextEdge = new int[size];
+        int depth = 0;
+
+        stack[depth++] = root;
+        visited[root] = true;
+        while (depth > 0) {
+            int node = stack[depth - 1];
+            if (nextEdge[node] < successors[node].length) {
+                int target = successors[node][nextEdge[node]++];
+                if (!visited[target]) {
+                    visited[target] = true;
+                    stack[depth++] = target;
+                }
+            } else {
+                depth--;
+                order[count++] = node;
+            }
+        }
+
+        int[] reversed = new int[count];
+        for (int i = 0; i < count; i++) {
+            reversed[i] = order[count - 1 - i];
+        }
+        return reversed;
+    }
+
+    private static int[] computeDominators(int root, int[][] successors, int[][] predecessors, int size) {
+        int[] idom = new int[size];
+        Arrays.fill(idom, NONE);
+        if (root == NONE) {
+            return idom;
+        }
+
+        int[] order = reversePostorder(root, successors, size);
+        int[] position = new int[size];
+        Arrays.fill(position, NONE);
+        for (int i = 0; i < order.length; i++) {
+            position[order[i]] = i;
+        }
+
+        idom[root] = root;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 1; i < order.length; i++) {
+                int node = order[i];
+                int newIdom = NONE;
+                for (int predecessor : predecessors[node]) {
+                    if (idom[predecessor] == NONE) {
+                        continue;  // Non ancora elaborato o non raggiungibile
+                    }
+                    newIdom = newIdom == NONE ? predecessor : intersect(predecessor, newIdom, idom, position);
+                }
+                if (idom[node] != newIdom) {
+                    idom[node] = newIdom;
+                    changed = true;
+                }
+            }
+        }
+        return idom;
+    }
+
+    private static int intersect(int a, int b, int[] idom, int[] position) {
+        while (a != b) {
+            while (position[a] > position[b]) {
+                a = idom[a];
+            }
+            while (position[b] > position[a]) {
+                b = idom[b];
+            }
+        }
+        return a;
+    }
+
+    /**
+     * Numbers the dominator tree in depth-first order: {@code a} dominates {@code b}
+     * exactly when the visit interval of {@code a} contains the one of {@code b}.
+     */
+    private void numberDominatorTree(int size) {
+        int root = program.getStartIndex();
+        if (root == NONE) {
+            return;
+        }
+        int[][] children = new int[size][];
+        int[] childCounts = new int[size];
+        for (int i = 0; i < size; i++) {
+            if (dominators[i] != NONE && i != root) {
+                childCounts[dominators[i]]++;
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            children[i] = new int[childCounts[i]];
+            childCounts[i] = 0;
+        }
+        for (int i = 0; i < size; i++) {
+            if (dominators[i] != NONE && i != root) {
+                children[dominators[i]][childCounts[dominators[i]]++] = i;
+            }
+        }
+
+        int[] stack = new int[size];
+        int[] nextChild = new int[size];
+        int depth = 0;
+        int clock = 0;
+        stack[depth++] = root;
+        dominatorEnter[root] = clock++;
+        while (depth > 0) {
+            int node = stack[depth - 1];
+            if (nextChild[node] < children[node].length) {
+                int child = children[node][nextChild[node]++];
+                dominatorEnter[child] = clock++;
+                stack[depth++] = child;
+            } else {
+                dominatorExit[node] = clock++;
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Builds the loop nesting forest from the back edges, innermost loops first.
+     * A block already assigned to an inner loop is skipped by jumping to the header of
+     * its outermost known loop, so every block is visited a bounded number of times.
+     */
+    private void computeLoops(int size) {
+        Arrays.fill(loopHeaders, NONE);
+        Arrays.fill(parentLoops, NONE);
+
+        // Archi di ritorno: il destinatario domina la sorgente
+        int[] latchCounts = new int[size];
+        for (int source = 0; source < size; source++) {
+            for (int target : successors[source]) {
+                if (dominates(target, source)) {
+                    latchCounts[target]++;
+                }
+            }
+        }
+        int headerCount = 0;
+        for (int i = 0; i < size; i++) {
+            if (latchCounts[i] > 0) {
+                latches[i] = new int[latchCounts[i]];
+                latchCounts[i] = 0;
+                headerCount++;
+            }
+        }
+        for (int source = 0; source < size; source++) {
+            for (int target : successors[source]) {
+                if (latches[target] != null && dominates(target, source)) {
+                    latches[target][latchCounts[target]++] = source;
+                }
+            }
+        }
+
+        if (headerCount == 0) {
+            return;
+        }
+
+        // Le intestazioni dei loop interni vengono dopo quelle esterne nell'ordine postfisso inverso
+        int[] order = reversePostorder(program.getStartIndex(), successors, size);
+        int[] headers = new int[headerCount];
+        int h = 0;
+        for (int i = order.length - 1; i >= 0; i--) {
+            if (latches[order[i]] != null) {
+                headers[h++] = order[i];
+            }
+        }
+
+        int[] visitedBy = new int[size];
+        Arrays.fill(visitedBy, NONE);
+        // Ogni blocco entra nella lista al più una volta per predecessore, più gli archi di ritorno
+        int[] worklist = new int[3 * size];
+        for (int header : headers) {
+            loopHeaders[header] = header;
+            visitedBy[header] = header;
+            int count = 0;
+            for (int latch : latches[header]) {
+                worklist[count++] = latch;
+            }
+            while (count > 0) {
+                int node = worklist[--count];
+                // Un blocco di un loop interno: si prosegue dall'intestazione più esterna già nota
+                if (loopHeaders[node] != NONE) {
+                    node = loopHeaders[node];
+                    while (parentLoops[node] != NONE) {
+                        node = parentLoops[node];
+                    }
+                }
+                if (visitedBy[node] == header) {
+                    continue;
+                }
+                visitedBy[node] = header;
+                if (loopHeaders[node] == NONE) {
+                    loopHeaders[node] = header;
+                } else {
+                    parentLoops[node] = header;
+                }
+                for (int predecessor : predecessors[node]) {
+                    if (visitedBy[predecessor] != header && dominators[predecessor] != NONE) {
+                        worklist[count++] = predecessor;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Evento di un passo di esecuzione che contiene solo le differenze rispetto
+ * all'evento precedente: le variabili modificate e il testo aggiunto all'output.
+ * Gli eventi sono numerati in sequenza a partire da 1.
+ *
+ * Gli array non viaggiano come riferimenti a quelli dell'interprete: ognuno ha una
+ * copia (snapshot) creata la prima volta che viene notificato o quando la variabile
+ * riceve un nuovo array. In seguito l'evento porta solo gli elementi scritti, che chi
+ * riceve gli eventi applica alla copia con {@link ElementWrites#applyAll}; l'interprete
+ * non legge né modifica più la copia, quindi la può usare un altro thread.
+ */
+public final class ExecutionDelta {
+
+    private final long sequence;
+    private final Object cell;
+    private final boolean variablesReset;
+    private final Map<String, Object> changedVariables;
+    private final String appendedOutput;
+    private final ElementWrites elementWrites;
+
+    /**
+     * Array elements written since the previous event, each addressed by the snapshot
+     * it belongs to. Values are kept as doubles, which hold every int exactly.
+     */
+    public static final class ElementWrites {
+        private Object[] arrays = new Object[4];
+        private int[] indexes = new int[4];
+        private double[] values = new double[4];
+        private int count;
+
+        public void add(Object array, int index, double value) {
+            if (count == arrays.length) {
+                arrays = Arrays.copyOf(arrays, count * 2);
+                indexes = Arrays.copyOf(indexes, count * 2);
+                values = Arrays.copyOf(values, count * 2);
+            }
+            arrays[count] = array;
+            indexes[count] = index;
+            values[count] = value;
+            count++;
+        }
+
+        /**
+         * Appends the writes of a later event, keeping their order.
+         */
+        public void addAll(ElementWrites other) {
+            for (int i = 0; i < other.count; i++) {
+                add(other.arrays[i], other.indexes[i], other.values[i]);
+            }
+        }
+
+        public int size() {
+            return count;
+        }
+
+        /**
+         * Stores the values in the snapshots, in order, and returns the snapshots written.
+         * Must run on the thread that owns the snapshots (the EDT in the editor).
+         */
+        public Set<Object> applyAll() {
+            if (count == 0) {
+                return Collections.emptySet();
+            }
+            Set<Object> written = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (int i = 0; i < count; i++) {
+                Object array = arrays[i];
+                if (array instanceof int[]) {
+                    ((int[]) array)[indexes[i]] = (int) values[i];
+                } else {
+                    ((double[]) array)[indexes[i]] = values[i];
+                }
+                written.add(array);
+            }
+            return written;
+        }
+    }
+
+    public ExecutionDelta(long sequence, Object cell, boolean variablesReset,
+                          Map<String, Object> changedVariables, String appendedOutput) {
+        this(sequence, cell, variablesReset, changedVariables, appendedOutput, new ElementWrites());
+    }
+
+    public ExecutionDelta(long sequence, Object cell, boolean variablesReset,
+                          Map<String, Object> changedVariables, String appendedOutput, ElementWrites elementWrites) {
+        this.sequence = sequence;
+        this.cell = cell;
+        this.variablesReset = variablesReset;
+        this.changedVariables = changedVariables;
+        this.appendedOutput = appendedOutput;
+        this.elementWrites = elementWrites;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * The block that has just been executed.
+     */
+    public Object getCell() {
+        return cell;
+    }
+
+    /**
+     * True when the visible variables must be replaced rather than updated
+     * (first event, or the scope changed on a function call or return).
+     */
+    public boolean isVariablesReset() {
+        return variablesReset;
+    }
+
+    /**
+     * Variables assigned since the previous event, or all visible variables after a reset.
+     * Arrays are their snapshots, not the arrays of the interpreter.
+     */
+    public Map<String, Object> getChangedVariables() {
+        return changedVariables;
+    }
+
+    /**
+     * Output text produced since the previous event.
+     */
+    public String getAppendedOutput() {
+        return appendedOutput;
+    }
+
+    /**
+     * Array elements written since the previous event, to be applied to the snapshots.
+     */
+    public ElementWrites getElementWrites() {
+        return elementWrites;
+    }
+}
@@ -0,0 +1,43 @@
+/**
+ * Errore che interrompe un'esecuzione quando viene superato uno dei limiti
+ * di {@link ExecutionLimits}. Indica quale limite è scattato e il suo valore.
+ */
+public class ExecutionLimitException extends RuntimeException {
+
+    /**
+     * Il limite superato.
+     */
+    public enum Limit {
+        STEPS, TIME, CALL_DEPTH
+    }
+
+    private final Limit limit;
+    private final long value;
+
+    public ExecutionLimitException(Limit limit, long value) {
+        super(describe(limit, value));
+        this.limit = limit;
+        this.value = value;
+    }
+
+    public Limit getLimit() {
+        return limit;
+    }
+
+    /**
+     * The configured value of the limit (steps, milliseconds or call depth).
+     */
+    public long getValue() {
+        return value;
+    }
+
+    private static String describe(Limit limit, long value) {
+        switch (limit) {
+            case STEPS: return "Step limit exceeded: more than " + value + " blocks executed";
+            case TIME: return "Time limit exceeded: execution took more than " + value + " ms";
+            default: return value > 0
+                ? "Call depth limit exceeded: more than " + value + " nested function calls"
+                : "Call depth limit exceeded: too many nested function calls";
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/**
+ * Limiti di esecuzione per fermare i programmi che non terminano:
+ * numero massimo di blocchi eseguiti, tempo massimo e profondità
+ * massima delle chiamate di funzione. Il valore 0 indica nessun limite.
+ */
+public final class ExecutionLimits {
+
+    /** Nessun limite. */
+    public static final ExecutionLimits UNLIMITED = new ExecutionLimits(0, 0, 0);
+
+    private final long maxSteps;
+    private final long timeLimitMillis;
+    private final int maxCallDepth;
+
+    /**
+     * @param maxSteps Numero massimo di blocchi eseguiti (0 = illimitato)
+     * @param timeLimitMillis Tempo massimo di esecuzione in millisecondi (0 = illimitato)
+     * @param maxCallDepth Profondità massima delle chiamate di funzione (0 = illimitata)
+     */
+    public ExecutionLimits(long maxSteps, long timeLimitMillis, int maxCallDepth) {
+        if (maxSteps < 0 || timeLimitMillis < 0 || maxCallDepth < 0) {
+            throw new IllegalArgumentException("Execution limits cannot be negative");
+        }
+        this.maxSteps = maxSteps;
+        this.timeLimitMillis = timeLimitMillis;
+        this.maxCallDepth = maxCallDepth;
+    }
+
+    public long getMaxSteps() {
+        return maxSteps;
+    }
+
+    public long getTimeLimitMillis() {
+        return timeLimitMillis;
+    }
+
+    public int getMaxCallDepth() {
+        return maxCallDepth;
+    }
+
+    @Override
+    public String toString() {
+        return "steps=" + (maxSteps > 0 ? maxSteps : "unlimited") +
+            ", time=" + (timeLimitMillis > 0 ? timeLimitMillis + "ms" : "unlimited") +
+            ", depth=" + (maxCallDepth > 0 ? maxCallDepth : "unlimited");
+    }
+}
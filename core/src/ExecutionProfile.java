@@ -0,0 +1,206 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Profilo di un'esecuzione raccolto da {@link FlowchartInterpreter} in modalità profilazione.
+ * Per ogni blocco registra quante volte è stato completato e il tempo speso a eseguirlo
+ * (senza le funzioni che chiama e senza l'attesa dell'input); per ogni funzione utente
+ * il numero di chiamate e il tempo inclusivo, contato una sola volta nelle chiamate ricorsive.
+ *
+ * I contatori sono array indicizzati come i blocchi del {@link FlowchartProgram}, quindi
+ * registrare un blocco non alloca nulla.
+ */
+public final class ExecutionProfile {
+
+    /**
+     * Counters of one block.
+     */
+    public static final class BlockStats {
+        private final Object cell;
+        private final long count;
+        private final long nanos;
+
+        BlockStats(Object cell, long count, long nanos) {
+            this.cell = cell;
+            this.count = count;
+            this.nanos = nanos;
+        }
+
+        public Object getCell() {
+            return cell;
+        }
+
+        /**
+         * Number of times the block was completed.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Cumulative time spent executing the block, in nanoseconds.
+         */
+        public long getNanos() {
+            return nanos;
+        }
+    }
+
+    /**
+     * Counters of one user function.
+     */
+    public static final class FunctionStats {
+        private final String name;
+        private long calls;
+        private long inclusiveNanos;
+        private int active;  // Chiamate in corso (ricorsione)
+
+        FunctionStats(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCalls() {
+            return calls;
+        }
+
+        /**
+         * Time from the call to the return, including the functions it calls, in nanoseconds.
+         */
+        public long getInclusiveNanos() {
+            return inclusiveNanos;
+        }
+    }
+
+    // Contatori dei blocchi di un programma
+    private static final class BlockTable {
+        final FlowchartProgram program;
+        final long[] counts;
+        final long[] nanos;
+
+        BlockTable(FlowchartProgram program) {
+            this.program = program;
+            this.counts = new long[program.size()];
+            this.nanos = new long[program.size()];
+        }
+    }
+
+    private final Map<FlowchartProgram, BlockTable> tables = new IdentityHashMap<>();
+    private final Map<String, FunctionStats> functions = new LinkedHashMap<>();
+    private BlockTable lastTable;  // Quasi sempre i blocchi consecutivi sono dello stesso programma
+
+    private BlockTable table(FlowchartProgram program) {
+        BlockTable table = lastTable;
+        if (table == null || table.program != program) {
+            table = tables.get(program);
+            if (table == null) {
+                table = new BlockTable(program);
+                tables.put(program, table);
+            }
+            lastTable = table;
+        }
+        return table;
+    }
+
+    /**
+     * Adds time spent in a block; a block suspended by a function call is timed in several pieces.
+     */
+    void addBlockTime(FlowchartProgram program, int index, long nanos) {
+        table(program).nanos[index] += nanos;
+    }
+
+    /**
+     * Counts a completed block.
+     */
+    void countBlock(FlowchartProgram program, int index) {
+        table(program).counts[index]++;
+    }
+
+    void enterFunction(String name) {
+        FunctionStats stats = functions.get(name);
+        if (stats == null) {
+            stats = new FunctionStats(name);
+            functions.put(name, stats);
+        }
+        stats.calls++;
+        stats.active++;
+    }
+
+    /**
+     * Ends a call started {@code nanos} ago; the time is added only by the outermost
+     * call of a recursion, so that it is not counted twice.
+     */
+    void exitFunction(String name, long nanos) {
+        FunctionStats stats = functions.get(name);
+        if (stats != null && --stats.active == 0) {
+            stats.inclusiveNanos += nanos;
+        }
+    }
+
+    /**
+     * Counters of every block executed at least once, in the main program and in the functions.
+     */
+    public List<BlockStats> getBlocks() {
+        List<BlockStats> blocks = new ArrayList<>();
+        for (BlockTable table : tables.values()) {
+            for (int i = 0; i < table.counts.length; i++) {
+                if (table.counts[i] > 0 || table.nanos[i] > 0) {
+                    blocks.add(new BlockStats(table.program.getCell(i), table.counts[i], table.nanos[i]));
+                }
+            }
+        }
+        return blocks;
+    }
+
+    /**
+     * Counters of the called user functions, in order of first call.
+     */
+    public List<FunctionStats> getFunctions() {
+        return Collections.unmodifiableList(new ArrayList<>(functions.values()));
+    }
+
+    /**
+     * Total time spent in all blocks, in nanoseconds.
+     */
+    public long getTotalNanos() {
+        long total = 0;
+        for (BlockTable table : tables.values()) {
+            for (long nanos : table.nanos) {
+                total += nanos;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Text summary: total time and function statistics.
+     */
+    public String formatSummary() {
+        StringBuilder summary = new StringBuilder();
+        summary.append("▶ PROFILE: ").append(formatNanos(getTotalNanos())).append(" in blocks\n");
+        for (FunctionStats stats : functions.values()) {
+            summary.append("  → ").append(stats.getName()).append(": ")
+                .append(stats.getCalls()).append(stats.getCalls() == 1 ? " call, " : " calls, ")
+                .append(formatNanos(stats.getInclusiveNanos())).append(" inclusive\n");
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Formats a duration with a unit suited to its size (µs, ms or s).
+     */
+    public static String formatNanos(long nanos) {
+        if (nanos < 1_000_000L) {
+            return String.format("%.1f µs", nanos / 1_000.0);
+        } else if (nanos < 1_000_000_000L) {
+            return String.format("%.1f ms", nanos / 1_000_000.0);
+        }
+        return String.format("%.2f s", nanos / 1_000_000_000.0);
+    }
+}
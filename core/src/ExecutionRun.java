@@ -0,0 +1,235 @@
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntSupplier;
+
+/**
+ * Esecuzione di un diagramma su un thread dedicato, comandata da altri thread (l'editor).
+ *
+ * Il thread dell'esecuzione è l'unico che usa l'interprete. I comandi PAUSE, STEP,
+ * RESUME e STOP arrivano attraverso una coda senza lock e vengono applicati tra un
+ * blocco e l'altro, nell'ordine di invio: una pausa ha effetto al più dopo il blocco
+ * in corso e ogni STEP esegue esattamente un blocco, anche quando i clic arrivano più
+ * velocemente dei blocchi. Lo stato viene pubblicato come un'istantanea immutabile
+ * ({@link State}) con un numero di versione crescente.
+ *
+ * I valori di input vengono letti dall'{@link InputProvider}
+ * dell'interprete, sul thread dell'esecuzione.
+ */
+public final class ExecutionRun {
+
+    public enum Command {
+        PAUSE,   // Ferma l'esecuzione automatica dopo il blocco in corso
+        STEP,    // Esegue un blocco e resta in pausa
+        RESUME,  // Riprende l'esecuzione automatica
+        STOP     // Termina l'esecuzione
+    }
+
+    public enum Phase {
+        PAUSED,    // In attesa di STEP o RESUME
+        RUNNING,   // Esecuzione automatica
+        FINISHED,  // Programma terminato (anche per un errore)
+        STOPPED    // Terminato dal comando STOP
+    }
+
+    /**
+     * Immutable state of a run. A new version is published when the phase changes
+     * and after every block executed by a STEP command.
+     */
+    public static final class State {
+        private final long version;
+        private final Phase phase;
+        private final long steps;
+
+        State(long version, Phase phase, long steps) {
+            this.version = version;
+            this.phase = phase;
+            this.steps = steps;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public Phase getPhase() {
+            return phase;
+        }
+
+        /**
+         * Blocks executed so far.
+         */
+        public long getSteps() {
+            return steps;
+        }
+
+        public boolean isOver() {
+            return phase == Phase.FINISHED || phase == Phase.STOPPED;
+        }
+
+        @Override
+        public String toString() {
+            return phase + " after " + steps + " steps (version " + version + ")";
+        }
+    }
+
+    public interface StateListener {
+        /**
+         * Called on the run thread after a new state is published.
+         */
+        void onStateChanged(State state);
+    }
+
+    private final FlowchartInterpreter interpreter;
+    private final ConcurrentLinkedQueue<Command> commands = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+    private volatile State state = new State(0, Phase.PAUSED, 0);
+    private volatile StateListener stateListener;
+    private volatile IntSupplier stepDelay = () -> 0;
+
+    // Usati solo dal thread dell'esecuzione
+    private Phase phase = Phase.PAUSED;
+    private long steps;
+
+    public ExecutionRun(FlowchartInterpreter interpreter) {
+        if (interpreter.getInputProvider() == null) {
+            throw new IllegalArgumentException("An execution run reads its input from an InputProvider");
+        }
+        this.interpreter = interpreter;
+        this.thread = new Thread(this::run, "Flowchart run");
+        this.thread.setDaemon(true);
+    }
+
+    public FlowchartInterpreter getInterpreter() {
+        return interpreter;
+    }
+
+    public void setStateListener(StateListener stateListener) {
+        this.stateListener = stateListener;
+    }
+
+    /**
+     * Sets the pause in milliseconds between two blocks of automatic execution,
+     * read before every block. A command interrupts the pause.
+     */
+    public void setStepDelay(IntSupplier stepDelay) {
+        this.stepDelay = stepDelay;
+    }
+
+    /**
+     * Starts the run thread. The run begins paused at the Start block; commands sent
+     * before this call are applied as soon as it starts.
+     */
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * Queues a command for the run thread; can be called from any thread and never blocks.
+     * Commands arriving after the end of the run are ignored.
+     */
+    public void send(Command command) {
+        commands.offer(command);
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * The latest published state; can be read from any thread.
+     */
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Waits until the run is over. Returns false if it is still going after the timeout.
+     */
+    public boolean await(long timeoutMillis) throws InterruptedException {
+        thread.join(timeoutMillis);
+        return !thread.isAlive();
+    }
+
+    // ===== THREAD DELL'ESECUZIONE =====
+
+    private void run() {
+        interpreter.begin(true);
+        while (phase == Phase.PAUSED || phase == Phase.RUNNING) {
+            Command command = commands.poll();
+            if (command != null) {
+                apply(command);
+            } else if (phase == Phase.RUNNING) {
+                advance(false);
+                if (phase == Phase.RUNNING) {
+                    waitStepDelay();
+                }
+            } else {
+                // In pausa: si riparte al prossimo comando (send sveglia il thread)
+                LockSupport.park(this);
+            }
+        }
+    }
+
+    private void apply(Command command) {
+        switch (command) {
+            case PAUSE:
+                if (phase == Phase.RUNNING) {
+                    interpreter.setSteppingMode(true);
+                    publish(Phase.PAUSED);
+                }
+                break;
+            case STEP:
+                if (phase == Phase.RUNNING) {
+                    interpreter.setSteppingMode(true);
+                    phase = Phase.PAUSED;
+                }
+                advance(true);
+                break;
+            case RESUME:
+                if (phase == Phase.PAUSED) {
+                    interpreter.setSteppingMode(false);
+                    publish(Phase.RUNNING);
+                }
+                break;
+            case STOP:
+                interpreter.stop();
+                publish(Phase.STOPPED);
+                break;
+        }
+    }
+
+    /**
+     * Executes one block; the state is published for a STEP command or when the run ends.
+     */
+    private void advance(boolean stepCommand) {
+        boolean more = interpreter.advance();
+        steps++;
+        if (!more) {
+            publish(Phase.FINISHED);
+        } else if (stepCommand) {
+            publish(phase);
+        }
+    }
+
+    private void waitStepDelay() {
+        int delay = stepDelay.getAsInt();
+        if (delay <= 0) {
+            return;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+        while (commands.isEmpty()) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            LockSupport.parkNanos(this, remaining);
+        }
+    }
+
+    private void publish(Phase newPhase) {
+        phase = newPhase;
+        State published = new State(state.getVersion() + 1, newPhase, steps);
+        state = published;
+        StateListener listener = stateListener;
+        if (listener != null) {
+            listener.onStateChanged(published);
+        }
+    }
+}
@@ -0,0 +1,305 @@
+/**
+ * Albero di un'espressione già analizzata.
+ * Viene costruito una sola volta da {@link ExpressionParser} e poi valutato
+ * visitando i nodi, senza alcuna manipolazione di stringhe.
+ */
+public abstract class Expression {
+
+    /**
+     * Accesso a variabili e funzioni durante la valutazione.
+     */
+    public interface Context {
+        void loadVariable(int slot, String name, Value out);
+        void callFunction(String name, Object[] args, Value out);
+    }
+
+    /**
+     * Evaluates the expression, leaving the result in {@code out}.
+     * Nodes read their operands before writing {@code out}, so a single register can be shared.
+     */
+    public abstract void evaluate(Context context, Value out);
+
+    /**
+     * Assigns the slots of the variables read by the expression.
+     */
+    public abstract void resolve(SymbolTable symbols);
+
+    /**
+     * Evaluates the expression and boxes the result.
+     */
+    public Object evaluate(Context context) {
+        Value out = new Value();
+        evaluate(context, out);
+        return out.toObject();
+    }
+
+    // ===== NODES =====
+
+    static final class Literal extends Expression {
+        private final Value value = new Value();
+
+        Literal(Object constant) {
+            value.set(constant);
+        }
+
+        Value getValue() {
+            return value;
+        }
+
+        @Override
+        public void evaluate(Context context, Value out) {
+            out.copyFrom(value);
+        }
+
+        @Override
+        public void resolve(SymbolTable symbols) {
+        }
+    }
+
+    static final class Variable extends Expression {
+        private final String name;
+        private int slot = SymbolTable.UNDEFINED;
+
+        Variable(String name) {
+            this.name = name;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        int getSlot() {
+            return slot;
+        }
+
+        @Override
+        public void evaluate(Context context, Value out) {
+            context.loadVariable(slot, name, out);
+        }
+
+        @Override
+        public void resolve(SymbolTable symbols) {
+            slot = symbols.define(name);
+        }
+    }
+
+    /**
+     * Element of an array variable, "a[i]": the index is evaluated before the array is read.
+     */
+    static final class Index extends Expression {
+        private final Variable array;
+        private final Expression index;
+
+        Index(Variable array, Expression index) {
+            this.array = array;
+            this.index = index;
+        }
+
+        Variable getArray() {
+            return array;
+        }
+
+        Expression getIndex() {
+            return index;
+        }
+
+        @Override
+        public void evaluate(Context context, Value out) {
+            index.evaluate(context, out);
+            int position = out.indexValue();
+            array.evaluate(context, out);
+            if (out.getType() == Value.INT_ARRAY) {
+                int[] elements = out.intArray();
+                checkBounds(position, elements.length);
+                out.setInt(elements[position]);
+            } else if (out.getType() == Value.DOUBLE_ARRAY) {
+                double[] elements = out.doubleArray();
+                checkBounds(position, elements.length);
+                out.setDouble(elements[position]);
+            } else {
+                throw new RuntimeException("Variable '" + array.getName() + "' is not an array");
+            }
+        }
+
+        private void checkBounds(int position, int length) {
+            if (position < 0 || position >= length) {
+                throw new RuntimeException("Index " + position + " out of bounds for array '" +
+                    array.getName() + "' of length " + length);
+            }
+        }
+
+        @Override
+        public void resolve(SymbolTable symbols) {
+            array.resolve(symbols);
+            index.resolve(symbols);
+        }
+    }
+
+    static final class Negate extends Expression {
+        private final Expression operand;
+
+        Negate(Expression operand) {
+            this.operand = operand;
+        }
+
+        Expression getOperand() {
+            return operand;
+        }
+
+        @Override
+        public void evaluate(Context context, Value out) {
+            operand.evaluate(context, out);
+            if (out.getType() == Value.INT) {
+                out.setInt(-out.intValue());
+            } else if (out.getType() == Value.DOUBLE) {
+                out.setDouble(-out.doubleValue());
+            } else {
+                throw new RuntimeException("Operator '-' cannot be applied to '" + out + "'");
+            }
+        }
+
+        @Override
+        public void resolve(SymbolTable symbols) {
+            operand.resolve(symbols);
+        }
+    }
+
+    static final class Binary extends Expression {
+        private final char operator;
+        private final Expression left;
+        private final Expression right;
+
+        Binary(char operator, Expression left, Expression right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        char getOperator() {
+            return operator;
+        }
+
+        Expression getLeft() {
+            return left;
+        }
+
+        Expression getRight() {
+            return right;
+        }
+
+        @Override
+        public void evaluate(Context context, Value out) {
+            left.evaluate(context, out);
+            int leftType = out.getType();
+            int leftInt = leftType == Value.INT ? out.intValue() : 0;
+            double leftDouble = leftType == Value.DOUBLE ? out.doubleValue() : leftInt;
+            String leftString = leftType == Value.STRING ? out.stringValue() : null;
+
+            right.evaluate(context, out);
+            int rightType = out.getType();
+
+            // Operazioni intere (semantica del C: divisione troncata)
+            if (leftType == Value.INT && rightType == Value.INT) {
+                int rightInt = out.intValue();
+                switch (operator) {
+                    case '+': out.setInt(leftInt + rightInt); return;
+                    case '-': out.setInt(leftInt - rightInt); return;
+                    case '*': out.setInt(leftInt * rightInt); return;
+                    case '/':
+                        if (rightInt == 0) throw new RuntimeException("Division by zero");
+                        out.setInt(leftInt / rightInt);
+                        return;
+                    case '%':
+                        if (rightInt == 0) throw new RuntimeException("Division by zero");
+                        out.setInt(leftInt % rightInt);
+                        return;
+                }
+            }
+
+            boolean leftNumber = leftType == Value.INT || leftType == Value.DOUBLE;
+            if (leftNumber && out.isNumber()) {
+                double rightDouble = out.doubleValue();
+                switch (operator) {
+                    case '+': out.setDouble(leftDouble + rightDouble); return;
+                    case '-': out.setDouble(leftDouble - rightDouble); return;
+                    case '*': out.setDouble(leftDouble * rightDouble); return;
+                    case '/': out.setDouble(leftDouble / rightDouble); return;
+                    case '%': out.setDouble(leftDouble % rightDouble); return;
+                }
+            }
+
+            // Concatenazione di stringhe
+            if (operator == '+' && (leftType == Value.STRING || rightType == Value.STRING)) {
+                String leftText = leftString != null ? leftString
+                    : leftType == Value.INT ? Integer.toString(leftInt) : Double.toString(leftDouble);
+                out.setString(leftText + out.stringValue());
+                return;
+            }
+
+            throw new RuntimeException("Operator '" + operator + "' cannot be applied to '" +
+                (leftString != null ? leftString : leftType == Value.INT ? leftInt : leftDouble) +
+                "' and '" + out + "'");
+        }
+
+        @Override
+        public void resolve(SymbolTable symbols) {
+            left.resolve(symbols);
+            right.resolve(symbols);
+        }
+    }
+
+    static final class Call extends Expression {
+        private final String name;
+        private final Expression[] arguments;
+
+        Call(String name, Expression[] arguments) {
+            this.name = name;
+            this.arguments = arguments;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        Expression[] getArguments() {
+            return arguments;
+        }
+
+        @Override
+        public void evaluate(Context context, Value out) {
+            Object[] args = new Object[arguments.length];
+            for (int i = 0; i < arguments.length; i++) {
+                arguments[i].evaluate(context, out);
+                args[i] = out.toObject();
+            }
+            context.callFunction(name, args, out);
+        }
+
+        @Override
+        public void resolve(SymbolTable symbols) {
+            for (Expression argument : arguments) {
+                argument.resolve(symbols);
+            }
+        }
+    }
+
+    /**
+     * Placeholder for text that could not be parsed: the error is raised only if it is executed.
+     */
+    static final class Invalid extends Expression {
+        private final String message;
+
+        Invalid(String message) {
+            this.message = message;
+        }
+
+        @Override
+        public void evaluate(Context context, Value out) {
+            throw new RuntimeException(message);
+        }
+
+        @Override
+        public void resolve(SymbolTable symbols) {
+        }
+    }
+}
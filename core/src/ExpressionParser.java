@@ -0,0 +1,455 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Analizzatore delle espressioni scritte nei blocchi.
+ * Divide il testo in token e costruisce l'albero con un parser a
+ * "precedence climbing": moltiplicazione, divisione e modulo legano più
+ * di somma e sottrazione, le parentesi raggruppano e il meno unario nega.
+ * Le condizioni aggiungono confronti e operatori logici con precedenza
+ * NOT, poi AND, poi OR.
+ */
+public final class ExpressionParser {
+
+    // Tipi di token
+    private static final int EOF = 0;
+    private static final int NUMBER = 1;
+    private static final int STRING = 2;
+    private static final int IDENTIFIER = 3;
+    private static final int OPERATOR = 4;
+
+    // Dichiarazione di array ("int a[10]") e destinazione indicizzata ("a[i]")
+    private static final Pattern ARRAY_DECLARATION = Pattern.compile("^(int|double)\\s+([A-Za-z_]\\w*)\\s*\\[(.+)\\]$");
+    private static final Pattern ELEMENT_TARGET = Pattern.compile("^([A-Za-z_]\\w*)\\s*\\[(.+)\\]$");
+
+    private static final class Token {
+        final int type;
+        final String text;
+        final int position;
+
+        Token(int type, String text, int position) {
+            this.type = type;
+            this.text = text;
+            this.position = position;
+        }
+    }
+
+    private final String source;
+    private final List<Token> tokens;
+    private int index;
+
+    private ExpressionParser(String source) {
+        this.source = source;
+        this.tokens = tokenize(source);
+        this.index = 0;
+    }
+
+    /**
+     * Parses an expression, throwing a RuntimeException if the text is not valid.
+     */
+    public static Expression parse(String text) {
+        ExpressionParser parser = new ExpressionParser(text);
+        Expression expression = parser.parseBinary(0);
+        parser.expectEnd();
+        return expression;
+    }
+
+    /**
+     * Parses an expression; invalid text yields a node that reports the error when evaluated.
+     */
+    public static Expression parseOrDefer(String text) {
+        try {
+            return parse(text);
+        } catch (RuntimeException e) {
+            return new Expression.Invalid(e.getMessage());
+        }
+    }
+
+    /**
+     * Parses a condition, throwing a RuntimeException if the text is not valid.
+     * Question marks (as in "x > 0?") are ignored.
+     */
+    public static Condition parseCondition(String text) {
+        ExpressionParser parser = new ExpressionParser(text.replace("?", "").trim());
+        Condition condition = parser.parseOr();
+        parser.expectEnd();
+        return condition;
+    }
+
+    /**
+     * Parses a condition; invalid text yields a node that reports the error when tested.
+     */
+    public static Condition parseConditionOrDefer(String text) {
+        try {
+            return parseCondition(text);
+        } catch (RuntimeException e) {
+            return new Condition.Invalid(e.getMessage());
+        }
+    }
+
+    /**
+     * Parses the lines of an ASSIGNMENT block (empty lines are skipped).
+     */
+    public static Statement[] parseStatements(String block) {
+        List<Statement> statements = new ArrayList<>();
+        for (String line : block.split("\n")) {
+            line = line.trim();
+            if (!line.isEmpty()) {
+                statements.add(parseStatement(line));
+            }
+        }
+        return statements.toArray(new Statement[0]);
+    }
+
+    /**
+     * Parses "name = expression", "name[index] = expression", an array declaration
+     * "int name[length]" / "double name[length]" or a bare expression evaluated for its effects.
+     */
+    public static Statement parseStatement(String line) {
+        line = line.trim();
+        int equals = findAssignmentOperator(line);
+        if (equals > 0) {
+            String target = line.substring(0, equals).trim();
+            String expressionText = line.substring(equals + 1).trim();
+            if (!target.isEmpty()) {
+                Matcher element = ELEMENT_TARGET.matcher(target);
+                if (element.matches()) {
+                    return new Statement(element.group(1), parseOrDefer(element.group(2)), Value.NONE,
+                        parseOrDefer(expressionText), expressionText);
+                }
+                return new Statement(target, parseOrDefer(expressionText), expressionText);
+            }
+        }
+        Matcher declaration = ARRAY_DECLARATION.matcher(line);
+        if (equals < 0 && declaration.matches()) {
+            int arrayType = declaration.group(1).equals("int") ? Value.INT_ARRAY : Value.DOUBLE_ARRAY;
+            String lengthText = declaration.group(3).trim();
+            return new Statement(declaration.group(2), null, arrayType, parseOrDefer(lengthText), lengthText);
+        }
+        return new Statement(null, parseOrDefer(line), line);
+    }
+
+    /**
+     * Parses the target of an INPUT block, "name" or "name[index]" (the statement has no expression).
+     */
+    public static Statement parseTarget(String text) {
+        text = text.trim();
+        Matcher element = ELEMENT_TARGET.matcher(text);
+        if (element.matches()) {
+            return new Statement(element.group(1), parseOrDefer(element.group(2)), Value.NONE, null, text);
+        }
+        return new Statement(text, null, Value.NONE, null, text);
+    }
+
+    /**
+     * Finds the first '=' that is not part of ==, <=, >= or !=.
+     */
+    private static int findAssignmentOperator(String line) {
+        boolean inString = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                inString = !inString;
+            } else if (c == '=' && !inString) {
+                char previous = i > 0 ? line.charAt(i - 1) : ' ';
+                char next = i + 1 < line.length() ? line.charAt(i + 1) : ' ';
+                if (next != '=' && previous != '=' && previous != '<' && previous != '>' && previous != '!') {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    // ===== TOKENIZER =====
+
+    private static List<Token> tokenize(String text) {
+        List<Token> result = new ArrayList<>();
+        int length = text.length();
+        int i = 0;
+
+        while (i < length) {
+            char c = text.charAt(i);
+
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (Character.isDigit(c) || (c == '.' && i + 1 < length && Character.isDigit(text.charAt(i + 1)))) {
+                int start = i;
+                while (i < length && Character.isDigit(text.charAt(i))) i++;
+                if (i < length && text.charAt(i) == '.') {
+                    i++;
+                    while (i < length && Character.isDigit(text.charAt(i))) i++;
+                }
+                result.add(new Token(NUMBER, text.substring(start, i), start));
+            } else if (Character.isLetter(c) || c == '_') {
+                int start = i;
+                while (i < length && (Character.isLetterOrDigit(text.charAt(i)) || text.charAt(i) == '_')) i++;
+                result.add(new Token(IDENTIFIER, text.substring(start, i), start));
+            } else if (c == '"') {
+                int start = i;
+                i++;
+                while (i < length && text.charAt(i) != '"') {
+                    // Il backslash protegge il carattere successivo ma resta nel testo
+                    i += text.charAt(i) == '\\' && i + 1 < length ? 2 : 1;
+                }
+                if (i >= length) {
+                    throw error(text, start, "unterminated string");
+                }
+                result.add(new Token(STRING, text.substring(start + 1, i), start));
+                i++;
+            } else {
+                // Operatori di due caratteri prima di quelli singoli
+                String two = i + 1 < length ? text.substring(i, i + 2) : "";
+                if (two.equals("==") || two.equals("!=") || two.equals("<=") || two.equals(">=") ||
+                    two.equals("&&") || two.equals("||")) {
+                    result.add(new Token(OPERATOR, two, i));
+                    i += 2;
+                } else if ("+-*/%()<>=!&|,[]".indexOf(c) >= 0) {
+                    result.add(new Token(OPERATOR, String.valueOf(c), i));
+                    i++;
+                } else {
+                    throw error(text, i, "unexpected character '" + c + "'");
+                }
+            }
+        }
+
+        result.add(new Token(EOF, "", length));
+        return result;
+    }
+
+    // ===== PARSER =====
+
+    private static int precedence(Token token) {
+        if (token.type != OPERATOR) {
+            return -1;
+        }
+        switch (token.text) {
+            case "+":
+            case "-":
+                return 1;
+            case "*":
+            case "/":
+            case "%":
+                return 2;
+            default:
+                return -1;
+        }
+    }
+
+    private Condition parseOr() {
+        Condition left = parseAnd();
+        while (accept("||") || accept("|") || acceptWord("OR")) {
+            left = new Condition.Or(left, parseAnd());
+        }
+        return left;
+    }
+
+    private Condition parseAnd() {
+        Condition left = parseNot();
+        while (accept("&&") || accept("&") || acceptWord("AND")) {
+            left = new Condition.And(left, parseNot());
+        }
+        return left;
+    }
+
+    private Condition parseNot() {
+        if (accept("!") || acceptWord("NOT")) {
+            return new Condition.Not(parseNot());
+        }
+
+        // "(" può aprire una condizione raggruppata o un'espressione aritmetica:
+        // si prova la prima e, se non è seguita da un operatore logico, si torna indietro
+        if (isOperator(peek(), "(")) {
+            int saved = index;
+            try {
+                index++;
+                Condition inner = parseOr();
+                expect(")");
+                if (isConditionEnd(peek())) {
+                    return inner;
+                }
+            } catch (RuntimeException e) {
+                // Non è una condizione tra parentesi
+            }
+            index = saved;
+        }
+        return parseComparison();
+    }
+
+    private Condition parseComparison() {
+        Expression left = parseBinary(0);
+        Token token = peek();
+        int operator = comparisonOperator(token);
+        if (operator < 0) {
+            return new Condition.Truth(left);
+        }
+        index++;
+        return new Condition.Compare(operator, left, parseBinary(0));
+    }
+
+    private static int comparisonOperator(Token token) {
+        if (token.type != OPERATOR) {
+            return -1;
+        }
+        switch (token.text) {
+            case "<": return Condition.Compare.LESS;
+            case "<=": return Condition.Compare.LESS_EQUAL;
+            case ">": return Condition.Compare.GREATER;
+            case ">=": return Condition.Compare.GREATER_EQUAL;
+            case "==":
+            case "=": return Condition.Compare.EQUAL;
+            case "!=": return Condition.Compare.NOT_EQUAL;
+            default: return -1;
+        }
+    }
+
+    private static boolean isConditionEnd(Token token) {
+        if (token.type == EOF) {
+            return true;
+        }
+        if (token.type == IDENTIFIER) {
+            return token.text.equals("AND") || token.text.equals("OR");
+        }
+        return token.type == OPERATOR && (token.text.equals(")") || token.text.equals("&&") ||
+            token.text.equals("||") || token.text.equals("&") || token.text.equals("|"));
+    }
+
+    private Expression parseBinary(int minPrecedence) {
+        Expression left = parseUnary();
+        while (true) {
+            Token token = peek();
+            int precedence = precedence(token);
+            if (precedence < 0 || precedence < minPrecedence) {
+                return left;
+            }
+            index++;
+            Expression right = parseBinary(precedence + 1);
+            left = new Expression.Binary(token.text.charAt(0), left, right);
+        }
+    }
+
+    private Expression parseUnary() {
+        Token token = peek();
+        if (isOperator(token, "-")) {
+            index++;
+            // Un numero negativo diventa direttamente una costante
+            Token next = peek();
+            if (next.type == NUMBER) {
+                index++;
+                return new Expression.Literal(parseNumber("-" + next.text));
+            }
+            return new Expression.Negate(parseUnary());
+        }
+        if (isOperator(token, "+")) {
+            index++;
+            return parseUnary();
+        }
+        return parsePrimary();
+    }
+
+    private Expression parsePrimary() {
+        Token token = next();
+        switch (token.type) {
+            case NUMBER:
+                return new Expression.Literal(parseNumber(token.text));
+
+            case STRING:
+                return new Expression.Literal(token.text);
+
+            case IDENTIFIER:
+                if (isOperator(peek(), "(")) {
+                    index++;
+                    List<Expression> arguments = new ArrayList<>();
+                    if (!isOperator(peek(), ")")) {
+                        do {
+                            arguments.add(parseBinary(0));
+                        } while (accept(","));
+                    }
+                    expect(")");
+                    return new Expression.Call(token.text, arguments.toArray(new Expression[0]));
+                }
+                if (accept("[")) {
+                    Expression position = parseBinary(0);
+                    expect("]");
+                    return new Expression.Index(new Expression.Variable(token.text), position);
+                }
+                return new Expression.Variable(token.text);
+
+            case OPERATOR:
+                if (token.text.equals("(")) {
+                    Expression inner = parseBinary(0);
+                    expect(")");
+                    return inner;
+                }
+                throw error(source, token.position, "unexpected '" + token.text + "'");
+
+            default:
+                throw error(source, token.position, "unexpected end of expression");
+        }
+    }
+
+    private static Object parseNumber(String text) {
+        if (text.indexOf('.') < 0) {
+            try {
+                return Integer.parseInt(text);
+            } catch (NumberFormatException e) {
+                // Fuori dal range degli interi: usa un double
+            }
+        }
+        return Double.parseDouble(text);
+    }
+
+    private Token peek() {
+        return tokens.get(index);
+    }
+
+    private Token next() {
+        Token token = tokens.get(index);
+        if (token.type != EOF) {
+            index++;
+        }
+        return token;
+    }
+
+    private static boolean isOperator(Token token, String text) {
+        return token.type == OPERATOR && token.text.equals(text);
+    }
+
+    private boolean accept(String text) {
+        if (isOperator(peek(), text)) {
+            index++;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean acceptWord(String word) {
+        Token token = peek();
+        if (token.type == IDENTIFIER && token.text.equals(word)) {
+            index++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(String text) {
+        Token token = peek();
+        if (!isOperator(token, text)) {
+            throw error(source, token.position, "expected '" + text + "'");
+        }
+        index++;
+    }
+
+    private void expectEnd() {
+        Token token = peek();
+        if (token.type != EOF) {
+            throw error(source, token.position, "unexpected '" + token.text + "'");
+        }
+    }
+
+    private static RuntimeException error(String text, int position, String reason) {
+        return new RuntimeException("Invalid expression '" + text + "': " + reason + " at position " + (position + 1));
+    }
+}
@@ -0,0 +1,1127 @@
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Secondo livello di esecuzione per i diagrammi che eseguono molti blocchi.
+ * Traduce il programma principale e le funzioni utente che chiama in una classe
+ * Java, compilata in memoria con javax.tools e caricata da un class loader
+ * dedicato, così la JVM la ottimizza come codice normale.
+ *
+ * Ogni variabile riceve un tipo statico (int, double o String) dedotto dagli
+ * assegnamenti e dai valori già presenti; se una variabile del programma
+ * principale cambia tipo il diagramma non viene compilato, se succede in una
+ * funzione quella funzione resta interpretata. Le variabili lette dai blocchi
+ * Input vengono ipotizzate intere: un valore di altro tipo riporta l'esecuzione
+ * all'interprete. Lo stesso avviene per gli errori, che l'interprete riproduce
+ * con i suoi messaggi.
+ */
+public final class FlowchartCompiler {
+
+    /**
+     * Access to the user functions called by the program.
+     */
+    public interface FunctionResolver {
+        /** Gets a function by name, or null if it does not exist. */
+        FunctionDefinition getFunction(String name);
+
+        /** Gets the compiled program of a function body, or null if it has no Start block. */
+        FlowchartProgram getProgram(FunctionDefinition function);
+    }
+
+    // Tipi statici: i primi coincidono con le costanti di Value
+    private static final int UNKNOWN = Value.NONE;
+    private static final int INT = Value.INT;
+    private static final int DOUBLE = Value.DOUBLE;
+    private static final int STRING = Value.STRING;
+    private static final int ERROR = 4;     // Espressione che fallisce sempre
+    private static final int CONFLICT = 5;  // Variabile con valori di tipi diversi
+
+    private static final String CLASS_NAME = "GeneratedFlowchart";
+    private static final int CACHE_SIZE = 32;
+
+    // Funzioni predefinite: tipo del risultato (abs dipende dall'argomento)
+    private static final Map<String, Integer> BUILTIN_TYPES = new HashMap<>();
+    private static final List<String> MATH_FUNCTIONS = Arrays.asList(
+        "sqrt", "exp", "log", "log10", "sin", "cos", "tan", "asin", "acos", "atan", "floor", "ceil");
+
+    static {
+        for (String name : MATH_FUNCTIONS) {
+            BUILTIN_TYPES.put(name, DOUBLE);
+        }
+        BUILTIN_TYPES.put("pow", DOUBLE);
+        BUILTIN_TYPES.put("abs", DOUBLE);
+        for (String name : new String[] {"strlen", "strcmp", "strncmp", "strchr", "strstr", "rand", "time"}) {
+            BUILTIN_TYPES.put(name, INT);
+        }
+        for (String name : new String[] {"strncpy", "strcat", "strncat"}) {
+            BUILTIN_TYPES.put(name, STRING);
+        }
+    }
+
+    // Un solo thread per javac: le compilazioni non rallentano le esecuzioni in corso
+    private static final ExecutorService COMPILER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "flowchart-compiler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Classi già compilate, per sorgente generato (lo stesso diagramma eseguito più volte)
+    private static final Map<String, CompletableFuture<Class<? extends CompiledFlowchart>>> CACHE =
+        new LinkedHashMap<String, CompletableFuture<Class<? extends CompiledFlowchart>>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<Class<? extends CompiledFlowchart>>> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        };
+
+    /**
+     * A program or function body being translated, with the types of its variables.
+     */
+    private static final class Unit {
+        final String name;  // null per il programma principale
+        final int id;
+        final FlowchartProgram program;
+        final int[] paramSlots;
+        final int returnSlot;
+        final int[] types;
+        final boolean[] setAtEntry;
+        final List<Statement> statements = new ArrayList<>();
+        final List<Expression> expressions = new ArrayList<>();
+        final List<Condition> conditions = new ArrayList<>();
+        boolean compilable = true;
+        boolean hasForLoop;
+
+        Unit(String name, int id, FlowchartProgram program, int[] paramSlots, int returnSlot) {
+            this.name = name;
+            this.id = id;
+            this.program = program;
+            this.paramSlots = paramSlots;
+            this.returnSlot = returnSlot;
+            this.types = new int[program.getSymbols().size()];
+            this.setAtEntry = new boolean[types.length];
+        }
+
+        /**
+         * Adds a possible type to a variable; returns true if its type changed.
+         */
+        boolean join(int slot, int type) {
+            if (type != INT && type != DOUBLE && type != STRING) {
+                return false;
+            }
+            int current = types[slot];
+            if (current == type || current == CONFLICT) {
+                return false;
+            }
+            types[slot] = current == UNKNOWN ? type : CONFLICT;
+            return true;
+        }
+
+        boolean hasConflict() {
+            for (int type : types) {
+                if (type == CONFLICT) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private final FunctionResolver resolver;
+    private final List<Unit> units = new ArrayList<>();
+    private final Map<String, Unit> functions = new HashMap<>();
+    private boolean settled;  // Seconda fase: i tipi ancora ignoti diventano int
+    private final StringBuilder source = new StringBuilder();
+
+    private FlowchartCompiler(FunctionResolver resolver) {
+        this.resolver = resolver;
+    }
+
+    /**
+     * Translates a program and starts compiling it in the background.
+     * Must be called on the thread that runs the program, since it reads the
+     * current variables and the function definitions. The future yields null
+     * if the program cannot be compiled.
+     */
+    public static CompletableFuture<CompiledFlowchart> compile(FlowchartProgram program, Frame globals,
+                                                                FunctionResolver resolver) {
+        String source = new FlowchartCompiler(resolver).translate(program, globals);
+        if (source == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        CompletableFuture<Class<? extends CompiledFlowchart>> compiled;
+        synchronized (CACHE) {
+            compiled = CACHE.get(source);
+            if (compiled == null) {
+                compiled = CompletableFuture.supplyAsync(() -> compileSource(source), COMPILER);
+                CACHE.put(source, compiled);
+            }
+        }
+        return compiled.thenApply(FlowchartCompiler::instantiate);
+    }
+
+    private static CompiledFlowchart instantiate(Class<? extends CompiledFlowchart> type) {
+        if (type == null) {
+            return null;
+        }
+        try {
+            return type.getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    // ===== ANALISI DEI TIPI =====
+
+    /**
+     * Infers the variable types and generates the source, or returns null if the program cannot be compiled.
+     */
+    private String translate(FlowchartProgram program, Frame globals) {
+        Unit main = new Unit(null, 0, program, new int[0], -1);
+        units.add(main);
+        collect(main);
+        // Gli array restano all'interprete
+        if (!main.compilable) {
+            return null;
+        }
+
+        // Le variabili già assegnate conservano il loro tipo
+        for (int slot = 0; slot < main.types.length; slot++) {
+            Object value = globals.get(slot);
+            if (value instanceof int[] || value instanceof double[]) {
+                return null;
+            }
+            if (value != null) {
+                main.types[slot] = value instanceof Integer ? INT : value instanceof Double ? DOUBLE : STRING;
+                main.setAtEntry[slot] = true;
+            }
+        }
+
+        inferTypes();
+        // Variabili lette solo da Input e funzioni che non assegnano il risultato: int
+        settled = true;
+        for (int index = 0; index < program.size(); index++) {
+            if (program.getOpcode(index) == FlowchartProgram.OP_INPUT) {
+                for (String name : program.getInputNames(index)) {
+                    main.join(program.getSymbols().slotOf(name), INT);
+                }
+            }
+        }
+        inferTypes();
+
+        if (main.hasConflict()) {
+            return null;
+        }
+        return generate();
+    }
+
+    /**
+     * Collects the statements, expressions and conditions of a unit, and the functions it calls.
+     */
+    private void collect(Unit unit) {
+        FlowchartProgram program = unit.program;
+        for (int index = 0; index < program.size(); index++) {
+            switch (program.getOpcode(index)) {
+                case FlowchartProgram.OP_ASSIGNMENT:
+                    unit.statements.addAll(Arrays.asList(program.getStatements(index)));
+                    break;
+                case FlowchartProgram.OP_FUNCTION_CALL:
+                    unit.statements.add(program.getStatement(index));
+                    break;
+                case FlowchartProgram.OP_OUTPUT:
+                    unit.expressions.add(program.getExpression(index));
+                    break;
+                case FlowchartProgram.OP_INPUT:
+                    // Un input dentro una funzione non si può annullare con la deottimizzazione
+                    if (unit.name != null) {
+                        unit.compilable = false;
+                    }
+                    for (Statement target : program.getInputTargets(index)) {
+                        if (target.getIndex() != null) {
+                            unit.compilable = false;
+                        }
+                    }
+                    break;
+                case FlowchartProgram.OP_FOR_LOOP: {
+                    unit.hasForLoop = true;
+                    FlowchartProgram.ForLoop forLoop = program.getForLoop(index);
+                    if (forLoop != null) {
+                        unit.statements.addAll(Arrays.asList(forLoop.getInit()));
+                        unit.statements.addAll(Arrays.asList(forLoop.getIncrement()));
+                        unit.conditions.add(forLoop.getCondition());
+                    } else {
+                        unit.conditions.add(program.getCondition(index));
+                    }
+                    break;
+                }
+                case FlowchartProgram.OP_CONDITIONAL:
+                case FlowchartProgram.OP_LOOP:
+                case FlowchartProgram.OP_DO_WHILE:
+                    unit.conditions.add(program.getCondition(index));
+                    break;
+                default:
+                    break;
+            }
+        }
+        for (Statement statement : unit.statements) {
+            // Dichiarazioni e elementi di array non hanno una traduzione: restano all'interprete
+            if (statement.isArrayDeclaration() || statement.getIndex() != null) {
+                unit.compilable = false;
+            }
+            unit.expressions.add(statement.getExpression());
+        }
+        for (Condition condition : unit.conditions) {
+            collectOperands(condition, unit.expressions);
+        }
+        for (Expression expression : unit.expressions) {
+            if (readsArray(expression)) {
+                unit.compilable = false;
+            }
+        }
+        for (Expression expression : new ArrayList<>(unit.expressions)) {
+            collectFunctions(expression);
+        }
+    }
+
+    private static void collectOperands(Condition condition, List<Expression> expressions) {
+        if (condition instanceof Condition.And) {
+            collectOperands(((Condition.And) condition).getLeft(), expressions);
+            collectOperands(((Condition.And) condition).getRight(), expressions);
+        } else if (condition instanceof Condition.Or) {
+            collectOperands(((Condition.Or) condition).getLeft(), expressions);
+            collectOperands(((Condition.Or) condition).getRight(), expressions);
+        } else if (condition instanceof Condition.Not) {
+            collectOperands(((Condition.Not) condition).getOperand(), expressions);
+        } else if (condition instanceof Condition.Compare) {
+            expressions.add(((Condition.Compare) condition).getLeft());
+            expressions.add(((Condition.Compare) condition).getRight());
+        } else if (condition instanceof Condition.Truth) {
+            expressions.add(((Condition.Truth) condition).getExpression());
+        }
+    }
+
+    private static boolean readsArray(Expression expression) {
+        if (expression instanceof Expression.Index) {
+            return true;
+        } else if (expression instanceof Expression.Negate) {
+            return readsArray(((Expression.Negate) expression).getOperand());
+        } else if (expression instanceof Expression.Binary) {
+            return readsArray(((Expression.Binary) expression).getLeft())
+                || readsArray(((Expression.Binary) expression).getRight());
+        } else if (expression instanceof Expression.Call) {
+            for (Expression argument : ((Expression.Call) expression).getArguments()) {
+                if (readsArray(argument)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void collectFunctions(Expression expression) {
+        if (expression instanceof Expression.Negate) {
+            collectFunctions(((Expression.Negate) expression).getOperand());
+        } else if (expression instanceof Expression.Binary) {
+            collectFunctions(((Expression.Binary) expression).getLeft());
+            collectFunctions(((Expression.Binary) expression).getRight());
+        } else if (expression instanceof Expression.Call) {
+            Expression.Call call = (Expression.Call) expression;
+            for (Expression argument : call.getArguments()) {
+                collectFunctions(argument);
+            }
+            if (!BUILTIN_TYPES.containsKey(call.getName())) {
+                function(call.getName());
+            }
+        }
+    }
+
+    /**
+     * Gets the unit of a user function, translating its body on first use; null if it does not exist.
+     */
+    private Unit function(String name) {
+        if (functions.containsKey(name)) {
+            return functions.get(name);
+        }
+        FunctionDefinition definition = resolver != null ? resolver.getFunction(name) : null;
+        FlowchartProgram program = definition != null ? resolver.getProgram(definition) : null;
+        if (program == null) {
+            functions.put(name, null);
+            return null;
+        }
+
+        List<FunctionDefinition.Parameter> parameters = definition.getFormalParameters() != null
+            ? definition.getFormalParameters() : Collections.<FunctionDefinition.Parameter>emptyList();
+        int[] paramSlots = new int[parameters.size()];
+        for (int i = 0; i < paramSlots.length; i++) {
+            paramSlots[i] = program.getSymbols().slotOf(parameters.get(i).getName());
+        }
+        String returnName = definition.getReturnVariableName();
+        int returnSlot = returnName != null && !returnName.isEmpty() && !"void".equals(definition.getReturnType())
+            ? program.getSymbols().slotOf(returnName) : -1;
+
+        Unit unit = new Unit(name, units.size(), program, paramSlots, returnSlot);
+        units.add(unit);
+        functions.put(name, unit);
+        collect(unit);
+        return unit;
+    }
+
+    /**
+     * Propagates the types of assignments and call arguments until nothing changes.
+     */
+    private void inferTypes() {
+        boolean changed;
+        do {
+            changed = false;
+            for (Unit unit : units) {
+                if (!unit.compilable) {
+                    continue;
+                }
+                for (Statement statement : unit.statements) {
+                    if (statement.isAssignment()) {
+                        changed |= unit.join(statement.getTargetSlot(), typeOf(statement.getExpression(), unit));
+                    }
+                }
+                for (Expression expression : unit.expressions) {
+                    changed |= joinArguments(expression, unit);
+                }
+                if (unit.name != null && unit.hasConflict()) {
+                    unit.compilable = false;
+                    changed = true;
+                }
+            }
+        } while (changed);
+    }
+
+    /**
+     * Adds the argument types of the user calls in an expression to the parameters of the called functions.
+     */
+    private boolean joinArguments(Expression expression, Unit unit) {
+        boolean changed = false;
+        if (expression instanceof Expression.Negate) {
+            changed = joinArguments(((Expression.Negate) expression).getOperand(), unit);
+        } else if (expression instanceof Expression.Binary) {
+            changed = joinArguments(((Expression.Binary) expression).getLeft(), unit);
+            changed |= joinArguments(((Expression.Binary) expression).getRight(), unit);
+        } else if (expression instanceof Expression.Call) {
+            Expression.Call call = (Expression.Call) expression;
+            Expression[] arguments = call.getArguments();
+            for (Expression argument : arguments) {
+                changed |= joinArguments(argument, unit);
+            }
+            Unit callee = BUILTIN_TYPES.containsKey(call.getName()) ? null : functions.get(call.getName());
+            if (callee != null && callee.compilable && callee.paramSlots.length == arguments.length) {
+                for (int i = 0; i < arguments.length; i++) {
+                    changed |= callee.join(callee.paramSlots[i], typeOf(arguments[i], unit));
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Static type of an expression: INT, DOUBLE, STRING, UNKNOWN while the types are
+     * being inferred, or ERROR if its evaluation always fails.
+     */
+    private int typeOf(Expression expression, Unit unit) {
+        if (expression instanceof Expression.Literal) {
+            int type = ((Expression.Literal) expression).getValue().getType();
+            return type != Value.NONE ? type : ERROR;
+        }
+        if (expression instanceof Expression.Variable) {
+            int slot = ((Expression.Variable) expression).getSlot();
+            int type = slot >= 0 ? unit.types[slot] : ERROR;
+            if (type == CONFLICT || (settled && type == UNKNOWN)) {
+                return ERROR;
+            }
+            return type;
+        }
+        if (expression instanceof Expression.Negate) {
+            int type = typeOf(((Expression.Negate) expression).getOperand(), unit);
+            return type == STRING ? ERROR : type;
+        }
+        if (expression instanceof Expression.Binary) {
+            Expression.Binary binary = (Expression.Binary) expression;
+            int left = typeOf(binary.getLeft(), unit);
+            int right = typeOf(binary.getRight(), unit);
+            if (left == ERROR || right == ERROR) {
+                return ERROR;
+            }
+            if (left == UNKNOWN || right == UNKNOWN) {
+                return UNKNOWN;
+            }
+            if (left == INT && right == INT) {
+                return INT;
+            }
+            if (left != STRING && right != STRING) {
+                return DOUBLE;
+            }
+            return binary.getOperator() == '+' ? STRING : ERROR;
+        }
+        if (expression instanceof Expression.Call) {
+            return typeOfCall((Expression.Call) expression, unit);
+        }
+        return ERROR;
+    }
+
+    private int typeOfCall(Expression.Call call, Unit unit) {
+        Expression[] arguments = call.getArguments();
+        int[] argumentTypes = new int[arguments.length];
+        boolean unknown = false;
+        for (int i = 0; i < arguments.length; i++) {
+            argumentTypes[i] = typeOf(arguments[i], unit);
+            if (argumentTypes[i] == ERROR) {
+                return ERROR;
+            }
+            unknown |= argumentTypes[i] == UNKNOWN;
+        }
+        if (unknown) {
+            return UNKNOWN;
+        }
+
+        Integer builtinType = BUILTIN_TYPES.get(call.getName());
+        if (builtinType != null) {
+            if ("abs".equals(call.getName()) && arguments.length == 1 && argumentTypes[0] == INT) {
+                return INT;
+            }
+            return builtinType;
+        }
+
+        Unit callee = functions.get(call.getName());
+        if (callee == null || !callee.compilable || callee.paramSlots.length != arguments.length) {
+            return ERROR;
+        }
+        if (settled) {
+            for (int i = 0; i < arguments.length; i++) {
+                if (argumentTypes[i] != callee.types[callee.paramSlots[i]]) {
+                    return ERROR;
+                }
+            }
+        }
+        return returnType(callee);
+    }
+
+    private int returnType(Unit function) {
+        if (function.returnSlot < 0) {
+            return INT;  // Funzione void: l'interprete restituisce 0
+        }
+        int type = function.types[function.returnSlot];
+        if (type == UNKNOWN) {
+            // Variabile di ritorno mai assegnata: il risultato è sempre 0
+            return settled ? INT : UNKNOWN;
+        }
+        return type == CONFLICT ? ERROR : type;
+    }
+
+    private static boolean isConcrete(int type) {
+        return type == INT || type == DOUBLE || type == STRING;
+    }
+
+    // ===== GENERAZIONE DEL SORGENTE =====
+
+    private String generate() {
+        Unit main = units.get(0);
+        source.append("public final class ").append(CLASS_NAME).append(" extends CompiledFlowchart {\n\n");
+        source.append("    public ").append(CLASS_NAME).append("() {\n");
+        source.append("        super(new int[] {");
+        for (int slot = 0; slot < main.types.length; slot++) {
+            source.append(slot > 0 ? ", " : "").append(isConcrete(main.types[slot]) ? main.types[slot] : UNKNOWN);
+        }
+        source.append("});\n    }\n");
+
+        generateMain(main);
+        generateDispatch();
+        for (Unit unit : units) {
+            if (unit.name != null && unit.compilable) {
+                generateFunction(unit);
+            }
+        }
+        source.append("}\n");
+        return source.toString();
+    }
+
+    private void generateMain(Unit main) {
+        source.append("\n    @Override\n    protected void execute(Frame frame, int pc) {\n");
+        for (int slot = 0; slot < main.types.length; slot++) {
+            int type = main.types[slot];
+            if (isConcrete(type)) {
+                source.append("        boolean s").append(slot).append(" = frame.isSet(").append(slot).append(");\n");
+                source.append("        ").append(javaType(type)).append(" v").append(slot).append(" = s").append(slot)
+                    .append(" ? (").append(boxedType(type)).append(") frame.get(").append(slot).append(") : ")
+                    .append(defaultValue(type)).append(";\n");
+            }
+        }
+        source.append("        int part = 0;\n");
+        source.append("        int mark = output.length();\n");
+        source.append("        long markSteps = steps;\n");
+        source.append("        try {\n");
+        source.append("            loop:\n");
+        source.append("            while (true) {\n");
+        source.append("                switch (pc) {\n");
+        generateBlocks(main, "                    ");
+        source.append("                    default:\n");
+        source.append("                        exitReason = FINISHED;\n");
+        source.append("                        exitPc = pc;\n");
+        source.append("                        break loop;\n");
+        source.append("                }\n");
+        source.append("            }\n");
+        source.append("        } catch (RuntimeException | StackOverflowError e) {\n");
+        source.append("            output.setLength(mark);\n");
+        source.append("            steps = markSteps;\n");
+        source.append("            depth = 0;\n");
+        source.append("            exitReason = DEOPTIMIZED;\n");
+        source.append("            exitPc = pc;\n");
+        source.append("            exitPart = part;\n");
+        source.append("        }\n");
+        for (int slot = 0; slot < main.types.length; slot++) {
+            if (isConcrete(main.types[slot])) {
+                source.append("        if (s").append(slot).append(") frame.set(").append(slot).append(", v")
+                    .append(slot).append(");\n");
+            }
+        }
+        source.append("        if (pendingSlot >= 0) frame.set(pendingSlot, pendingValue);\n");
+        source.append("    }\n");
+    }
+
+    private void generateDispatch() {
+        source.append("\n    @Override\n    protected Object call(String name, Object[] args) {\n");
+        source.append("        switch (name) {\n");
+        for (Unit unit : units) {
+            if (unit.name == null || !unit.compilable || !allConcrete(unit.types, unit.paramSlots)) {
+                continue;
+            }
+            source.append("            case ").append(javaString(unit.name)).append(":\n");
+            source.append("                return f").append(unit.id).append("(");
+            for (int i = 0; i < unit.paramSlots.length; i++) {
+                source.append(i > 0 ? ", " : "").append("(").append(boxedType(unit.types[unit.paramSlots[i]]))
+                    .append(") args[").append(i).append("]");
+            }
+            source.append(");\n");
+        }
+        source.append("            default:\n");
+        source.append("                return null;\n");
+        source.append("        }\n");
+        source.append("    }\n");
+    }
+
+    private static boolean allConcrete(int[] types, int[] slots) {
+        for (int slot : slots) {
+            if (!isConcrete(types[slot])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void generateFunction(Unit unit) {
+        int resultType = returnType(unit);
+        source.append("\n    private ").append(javaType(resultType)).append(" f").append(unit.id).append("(");
+        boolean[] isParam = new boolean[unit.types.length];
+        for (int i = 0; i < unit.paramSlots.length; i++) {
+            int slot = unit.paramSlots[i];
+            isParam[slot] = true;
+            String type = isConcrete(unit.types[slot]) ? javaType(unit.types[slot]) : "int";
+            source.append(i > 0 ? ", " : "").append(type).append(" p").append(i);
+        }
+        source.append(") {\n");
+        source.append("        enterFunction();\n");
+        for (int slot = 0; slot < unit.types.length; slot++) {
+            int type = unit.types[slot];
+            if (!isConcrete(type)) {
+                continue;
+            }
+            int param = indexOf(unit.paramSlots, slot);
+            source.append("        boolean s").append(slot).append(" = ").append(param >= 0).append(";\n");
+            source.append("        ").append(javaType(type)).append(" v").append(slot).append(" = ")
+                .append(param >= 0 ? "p" + param : defaultValue(type)).append(";\n");
+        }
+        if (unit.hasForLoop) {
+            source.append("        LoopStack loops = new LoopStack();\n");
+        }
+        int start = unit.program.getStartIndex();
+        int first = start != FlowchartProgram.NONE ? unit.program.getNext(start) : FlowchartProgram.NONE;
+        source.append("        int pc = ").append(first).append(";\n");
+        source.append("        while (true) {\n");
+        source.append("            switch (pc) {\n");
+        generateBlocks(unit, "                ");
+        source.append("                default:\n");
+        source.append("                    exitFunction();\n");
+        if (unit.returnSlot < 0) {
+            source.append("                    return 0;\n");
+        } else {
+            int slot = unit.returnSlot;
+            String unset = resultType == INT ? "0" : deoptimizeCall(resultType);
+            source.append("                    return ").append(isConcrete(unit.types[slot])
+                ? "s" + slot + " ? v" + slot + " : " + unset : unset).append(";\n");
+        }
+        source.append("            }\n");
+        source.append("        }\n");
+        source.append("    }\n");
+    }
+
+    private static int indexOf(int[] values, int value) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Generates one switch case per block. In the main program every completed part
+     * is recorded, so that a deoptimization resumes the block where it stopped.
+     */
+    private void generateBlocks(Unit unit, String indent) {
+        FlowchartProgram program = unit.program;
+        boolean main = unit.name == null;
+        boolean trackLoops = main || unit.hasForLoop;
+        for (int index = 0; index < program.size(); index++) {
+            int opcode = program.getOpcode(index);
+            if (opcode == FlowchartProgram.OP_END) {
+                continue;
+            }
+            String body = indent + "    ";
+            source.append(indent).append("case ").append(index).append(": {\n");
+            if (main) {
+                source.append(body).append("part = 0;\n");
+                source.append(body).append("mark = output.length();\n");
+                source.append(body).append("markSteps = steps;\n");
+            }
+            source.append(body).append("step();\n");
+
+            int next = program.getNext(index);
+            switch (opcode) {
+                case FlowchartProgram.OP_ASSIGNMENT:
+                    generateStatements(unit, program.getStatements(index), 0, body);
+                    break;
+
+                case FlowchartProgram.OP_FUNCTION_CALL:
+                    generateStatements(unit, new Statement[] {program.getStatement(index)}, 0, body);
+                    break;
+
+                case FlowchartProgram.OP_OUTPUT: {
+                    Expression expression = program.getExpression(index);
+                    if (isConcrete(typeOf(expression, unit))) {
+                        source.append(body).append("output.append(").append(expression(expression, unit))
+                            .append(").append('\\n');\n");
+                    } else {
+                        source.append(body).append("deoptimize();\n");
+                    }
+                    break;
+                }
+
+                case FlowchartProgram.OP_INPUT:
+                    generateInput(unit, index, body);
+                    break;
+
+                case FlowchartProgram.OP_CONDITIONAL:
+                    source.append(body).append("pc = ").append(condition(program.getCondition(index), unit))
+                        .append(" ? ").append(next).append(" : ").append(program.getFalseNext(index)).append(";\n");
+                    source.append(body).append("continue;\n");
+                    source.append(indent).append("}\n");
+                    continue;
+
+                case FlowchartProgram.OP_LOOP:
+                case FlowchartProgram.OP_DO_WHILE:
+                    generateLoopBranch(program, index, condition(program.getCondition(index), unit), trackLoops, body);
+                    source.append(indent).append("}\n");
+                    continue;
+
+                case FlowchartProgram.OP_FOR_LOOP: {
+                    FlowchartProgram.ForLoop forLoop = program.getForLoop(index);
+                    if (forLoop != null) {
+                        // Prima entrata: inizializzazione, altrimenti incremento
+                        source.append(body).append("if (!loops.isTop(").append(index).append(")) {\n");
+                        generateStatements(unit, forLoop.getInit(), 0, body + "    ");
+                        source.append(body).append("} else {\n");
+                        generateStatements(unit, forLoop.getIncrement(), 0, body + "    ");
+                        source.append(body).append("}\n");
+                        generateLoopBranch(program, index, condition(forLoop.getCondition(), unit), true, body);
+                    } else {
+                        generateLoopBranch(program, index, condition(program.getCondition(index), unit), true, body);
+                    }
+                    source.append(indent).append("}\n");
+                    continue;
+                }
+
+                default:
+                    // Start, Merge o tipo sconosciuto
+                    break;
+            }
+            source.append(body).append("pc = ").append(next).append(";\n");
+            source.append(body).append("continue;\n");
+            source.append(indent).append("}\n");
+        }
+    }
+
+    private void generateLoopBranch(FlowchartProgram program, int index, String condition, boolean trackLoops,
+                                    String indent) {
+        source.append(indent).append("if (").append(condition).append(") {\n");
+        if (trackLoops) {
+            source.append(indent).append("    loops.enter(").append(index).append(");\n");
+        }
+        source.append(indent).append("    pc = ").append(program.getNext(index)).append(";\n");
+        source.append(indent).append("} else {\n");
+        if (trackLoops) {
+            source.append(indent).append("    loops.exit(").append(index).append(");\n");
+        }
+        source.append(indent).append("    pc = ").append(program.getFalseNext(index)).append(";\n");
+        source.append(indent).append("}\n");
+        source.append(indent).append("continue;\n");
+    }
+
+    private void generateStatements(Unit unit, Statement[] statements, int firstPart, String indent) {
+        for (int i = 0; i < statements.length; i++) {
+            Statement statement = statements[i];
+            Expression expression = statement.getExpression();
+            int type = typeOf(expression, unit);
+            if (!isConcrete(type) || (statement.isAssignment() && unit.types[statement.getTargetSlot()] != type)) {
+                source.append(indent).append("deoptimize();\n");
+            } else if (statement.isAssignment()) {
+                int slot = statement.getTargetSlot();
+                source.append(indent).append("v").append(slot).append(" = ").append(expression(expression, unit))
+                    .append(";\n");
+                source.append(indent).append("s").append(slot).append(" = true;\n");
+            } else {
+                source.append(indent).append("discard(").append(expression(expression, unit)).append(");\n");
+            }
+            if (unit.name == null) {
+                // Parte completata: l'interprete conterà di nuovo il blocco se deve riprenderlo
+                source.append(indent).append("part = ").append(firstPart + i + 1).append(";\n");
+                source.append(indent).append("mark = output.length();\n");
+                source.append(indent).append("markSteps = steps - 1;\n");
+            }
+        }
+    }
+
+    /**
+     * Reads the input values; a value whose type differs from the variable's is handed
+     * to the interpreter, which continues from the next part.
+     */
+    private void generateInput(Unit main, int index, String indent) {
+        FlowchartProgram program = main.program;
+        String[] names = program.getInputNames(index);
+        int next = program.getNext(index);
+        for (int i = 0; i < names.length; i++) {
+            int slot = program.getSymbols().slotOf(names[i]);
+            int type = main.types[slot];
+            boolean last = i + 1 == names.length;
+            String name = javaString(names[i]);
+            source.append(indent).append("{\n");
+            source.append(indent).append("    String text = readInput(").append(name).append(");\n");
+            source.append(indent).append("    if (text == null) {\n");
+            source.append(indent).append("        missingInput = ").append(name).append(";\n");
+            source.append(indent).append("        exitReason = INPUT_MISSING;\n");
+            source.append(indent).append("        exitPc = ").append(index).append(";\n");
+            source.append(indent).append("        exitPart = ").append(i).append(";\n");
+            source.append(indent).append("        break loop;\n");
+            source.append(indent).append("    }\n");
+            source.append(indent).append("    Object value = parseInput(text);\n");
+            source.append(indent).append("    if (value instanceof ").append(boxedType(type)).append(") {\n");
+            source.append(indent).append("        v").append(slot).append(" = (").append(boxedType(type))
+                .append(") value;\n");
+            source.append(indent).append("        s").append(slot).append(" = true;\n");
+            source.append(indent).append("    } else {\n");
+            source.append(indent).append("        pendingSlot = ").append(slot).append(";\n");
+            source.append(indent).append("        pendingValue = value;\n");
+            source.append(indent).append("        exitReason = DEOPTIMIZED;\n");
+            source.append(indent).append("        exitPc = ").append(last ? next : index).append(";\n");
+            source.append(indent).append("        exitPart = ").append(last ? 0 : i + 1).append(";\n");
+            if (!last) {
+                source.append(indent).append("        steps--;\n");
+            }
+            source.append(indent).append("        break loop;\n");
+            source.append(indent).append("    }\n");
+            source.append(indent).append("    part = ").append(i + 1).append(";\n");
+            source.append(indent).append("    markSteps = steps - 1;\n");
+            source.append(indent).append("}\n");
+        }
+    }
+
+    private String condition(Condition condition, Unit unit) {
+        if (condition instanceof Condition.And) {
+            Condition.And and = (Condition.And) condition;
+            return "(" + condition(and.getLeft(), unit) + " && " + condition(and.getRight(), unit) + ")";
+        }
+        if (condition instanceof Condition.Or) {
+            Condition.Or or = (Condition.Or) condition;
+            return "(" + condition(or.getLeft(), unit) + " || " + condition(or.getRight(), unit) + ")";
+        }
+        if (condition instanceof Condition.Not) {
+            return "(!" + condition(((Condition.Not) condition).getOperand(), unit) + ")";
+        }
+        if (condition instanceof Condition.Truth) {
+            Expression expression = ((Condition.Truth) condition).getExpression();
+            return isConcrete(typeOf(expression, unit))
+                ? "isTrue(" + expression(expression, unit) + ")" : "deoptimizeBoolean()";
+        }
+        if (condition instanceof Condition.Compare) {
+            Condition.Compare compare = (Condition.Compare) condition;
+            int left = typeOf(compare.getLeft(), unit);
+            int right = typeOf(compare.getRight(), unit);
+            if (!isConcrete(left) || !isConcrete(right)) {
+                return "deoptimizeBoolean()";
+            }
+            String operator = COMPARE_OPERATORS[compare.getOperator()];
+            String leftCode = expression(compare.getLeft(), unit);
+            String rightCode = expression(compare.getRight(), unit);
+            if (left != STRING && right != STRING) {
+                return "(" + leftCode + " " + operator + " " + rightCode + ")";
+            }
+            // Almeno un operando testuale: confronto tra le rappresentazioni come stringhe
+            return "(String.valueOf(" + leftCode + ").compareTo(String.valueOf(" + rightCode + ")) "
+                + operator + " 0)";
+        }
+        return "deoptimizeBoolean()";
+    }
+
+    // Nello stesso ordine delle costanti di Condition.Compare
+    private static final String[] COMPARE_OPERATORS = {"<", "<=", ">", ">=", "==", "!="};
+
+    /**
+     * Java code of an expression whose type is concrete.
+     */
+    private String expression(Expression expression, Unit unit) {
+        if (expression instanceof Expression.Literal) {
+            return literal(((Expression.Literal) expression).getValue());
+        }
+        if (expression instanceof Expression.Variable) {
+            int slot = ((Expression.Variable) expression).getSlot();
+            if (unit.setAtEntry[slot] || indexOf(unit.paramSlots, slot) >= 0) {
+                return "v" + slot;
+            }
+            // Nel programma principale è un errore, in una funzione si cercherebbe tra le globali
+            return "(s" + slot + " ? v" + slot + " : " + deoptimizeCall(unit.types[slot]) + ")";
+        }
+        if (expression instanceof Expression.Negate) {
+            return "(-" + expression(((Expression.Negate) expression).getOperand(), unit) + ")";
+        }
+        if (expression instanceof Expression.Binary) {
+            Expression.Binary binary = (Expression.Binary) expression;
+            String left = expression(binary.getLeft(), unit);
+            String right = expression(binary.getRight(), unit);
+            if (typeOf(expression, unit) == STRING) {
+                return "(\"\" + " + left + " + " + right + ")";
+            }
+            // Divisione intera per zero: ArithmeticException, l'interprete segnala l'errore
+            return "(" + left + " " + binary.getOperator() + " " + right + ")";
+        }
+        return call((Expression.Call) expression, unit);
+    }
+
+    private String call(Expression.Call call, Unit unit) {
+        String name = call.getName();
+        Expression[] arguments = call.getArguments();
+        StringBuilder code = new StringBuilder();
+
+        if (BUILTIN_TYPES.containsKey(name)) {
+            boolean numeric = arguments.length > 0;
+            for (Expression argument : arguments) {
+                numeric &= typeOf(argument, unit) != STRING;
+            }
+            if (numeric && arguments.length == 1 && (MATH_FUNCTIONS.contains(name) || "abs".equals(name))) {
+                return "Math." + name + "(" + expression(arguments[0], unit) + ")";
+            }
+            if (numeric && arguments.length == 2 && "pow".equals(name)) {
+                return "Math.pow(" + expression(arguments[0], unit) + ", " + expression(arguments[1], unit) + ")";
+            }
+            // Le altre passano dall'interprete, con gli stessi controlli e messaggi
+            code.append("((").append(boxedType(typeOf(call, unit))).append(") builtin(").append(javaString(name))
+                .append(", new Object[] {");
+            for (int i = 0; i < arguments.length; i++) {
+                code.append(i > 0 ? ", " : "").append(expression(arguments[i], unit));
+            }
+            return code.append("}))").toString();
+        }
+
+        Unit callee = functions.get(name);
+        code.append("f").append(callee.id).append("(");
+        for (int i = 0; i < arguments.length; i++) {
+            code.append(i > 0 ? ", " : "").append(expression(arguments[i], unit));
+        }
+        return code.append(")").toString();
+    }
+
+    private static String literal(Value value) {
+        switch (value.getType()) {
+            case Value.INT: {
+                int number = value.intValue();
+                if (number == Integer.MIN_VALUE) {
+                    return "Integer.MIN_VALUE";
+                }
+                return number < 0 ? "(" + number + ")" : Integer.toString(number);
+            }
+            case Value.DOUBLE: {
+                double number = value.doubleValue();
+                if (Double.isNaN(number)) {
+                    return "Double.NaN";
+                }
+                if (Double.isInfinite(number)) {
+                    return number > 0 ? "Double.POSITIVE_INFINITY" : "Double.NEGATIVE_INFINITY";
+                }
+                return number < 0 || (number == 0 && 1 / number < 0) ? "(" + number + "d)" : number + "d";
+            }
+            default:
+                return javaString(value.stringValue());
+        }
+    }
+
+    private static String javaString(String text) {
+        StringBuilder literal = new StringBuilder("\"");
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"': literal.append("\\\""); break;
+                case '\\': literal.append("\\\\"); break;
+                case '\n': literal.append("\\n"); break;
+                case '\r': literal.append("\\r"); break;
+                case '\t': literal.append("\\t"); break;
+                default:
+                    if (c < 32) {
+                        // Ottale: un \\u di un a capo verrebbe interpretato prima della stringa
+                        literal.append('\\').append(Integer.toOctalString(c));
+                    } else if (c > 126) {
+                        literal.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        literal.append(c);
+                    }
+                    break;
+            }
+        }
+        return literal.append('"').toString();
+    }
+
+    private static String javaType(int type) {
+        switch (type) {
+            case DOUBLE: return "double";
+            case STRING: return "String";
+            default: return "int";
+        }
+    }
+
+    private static String boxedType(int type) {
+        switch (type) {
+            case DOUBLE: return "Double";
+            case STRING: return "String";
+            default: return "Integer";
+        }
+    }
+
+    private static String defaultValue(int type) {
+        switch (type) {
+            case DOUBLE: return "0.0";
+            case STRING: return "null";
+            default: return "0";
+        }
+    }
+
+    private static String deoptimizeCall(int type) {
+        switch (type) {
+            case DOUBLE: return "deoptimizeDouble()";
+            case STRING: return "deoptimizeString()";
+            default: return "deoptimizeInt()";
+        }
+    }
+
+    // ===== COMPILAZIONE IN MEMORIA =====
+
+    /**
+     * Compiles the generated source with javac; returns null if no compiler is
+     * available (JRE without javac) or the source is rejected.
+     */
+    private static Class<? extends CompiledFlowchart> compileSource(String source) {
+        JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        if (javac == null) {
+            return null;
+        }
+
+        Map<String, ByteArrayOutputStream> classFiles = new HashMap<>();
+        StandardJavaFileManager standardManager = javac.getStandardFileManager(null, null, StandardCharsets.UTF_8);
+        JavaFileManager manager = new ForwardingJavaFileManager<StandardJavaFileManager>(standardManager) {
+            @Override
+            public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind,
+                                                       FileObject sibling) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                classFiles.put(className, bytes);
+                return new SimpleJavaFileObject(URI.create("mem:///" + className + kind.extension), kind) {
+                    @Override
+                    public OutputStream openOutputStream() {
+                        return bytes;
+                    }
+                };
+            }
+        };
+        JavaFileObject unit = new SimpleJavaFileObject(URI.create("string:///" + CLASS_NAME + ".java"),
+                JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+
+        List<String> options = Arrays.asList("-classpath", System.getProperty("java.class.path"),
+            "-proc:none", "-g:none", "-nowarn");
+        Writer silent = new Writer() {
+            @Override
+            public void write(char[] buffer, int offset, int length) {
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        try {
+            Boolean success = javac.getTask(silent, manager, diagnostic -> { }, options, null,
+                Collections.singletonList(unit)).call();
+            if (!Boolean.TRUE.equals(success)) {
+                return null;
+            }
+        } catch (RuntimeException e) {
+            return null;
+        }
+
+        // Un class loader per ogni classe: viene scaricata quando non è più usata
+        ClassLoader loader = new ClassLoader(FlowchartCompiler.class.getClassLoader()) {
+            @Override
+            protected Class<?> findClass(String name) throws ClassNotFoundException {
+                ByteArrayOutputStream bytes = classFiles.get(name);
+                if (bytes == null) {
+                    throw new ClassNotFoundException(name);
+                }
+                byte[] code = bytes.toByteArray();
+                return defineClass(name, code, 0, code.length);
+            }
+        };
+        try {
+            return loader.loadClass(CLASS_NAME).asSubclass(CompiledFlowchart.class);
+        } catch (ClassNotFoundException | LinkageError e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,388 @@
+import com.mxgraph.view.mxGraph;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Genera diagrammi validi di dimensione arbitraria, per i benchmark, le prove di layout
+ * e la correzione automatica.
+ *
+ * Uso: java FlowchartGenerator [--blocks n] [--depth n] [--functions n] [--fan-out n]
+ *      [--seed n] diagramma.xml|diagramma.fcb
+ *
+ * I blocchi vengono divisi tra il main e le funzioni; ogni diagramma alterna assegnamenti,
+ * if/else, while e for annidati fino alla profondità indicata, con la stessa struttura che
+ * crea l'editor (punti di merge, rami TRUE_BRANCH/FALSE_BRANCH). Ogni ciclo fa due giri e
+ * la funzione i chiama solo funzioni di indice maggiore, quindi ogni programma termina e
+ * non chiede input: il main stampa il valore finale di v. Lo stesso seme produce lo stesso file.
+ */
+public final class FlowchartGenerator {
+
+    // Giri di ogni ciclo generato
+    private static final int LOOP_TRIPS = 2;
+
+    // Distanza tra i blocchi: una colonna per livello di annidamento, una riga per blocco
+    private static final int COLUMN_WIDTH = 200;
+    private static final int ROW_HEIGHT = 100;
+
+    /**
+     * A generated flowchart: the main graph with its Start and End blocks, and the functions.
+     */
+    public static final class GeneratedFlowchart {
+        private final mxGraph graph;
+        private final Object startCell;
+        private final Object endCell;
+        private final Map<String, FunctionDefinition> functions;
+        private final int blockCount;
+
+        GeneratedFlowchart(mxGraph graph, Object startCell, Object endCell,
+                           Map<String, FunctionDefinition> functions, int blockCount) {
+            this.graph = graph;
+            this.startCell = startCell;
+            this.endCell = endCell;
+            this.functions = functions;
+            this.blockCount = blockCount;
+        }
+
+        public mxGraph getGraph() {
+            return graph;
+        }
+
+        public Object getStartCell() {
+            return startCell;
+        }
+
+        public Object getEndCell() {
+            return endCell;
+        }
+
+        public Map<String, FunctionDefinition> getFunctions() {
+            return functions;
+        }
+
+        /**
+         * Blocks of all the diagrams, Start and End excluded.
+         */
+        public int getBlockCount() {
+            return blockCount;
+        }
+
+        /**
+         * Saves as the editor does: binary for a .fcb file, XML otherwise.
+         */
+        public void save(File file) throws Exception {
+            if (file.getName().toLowerCase().endsWith("." + BinaryProjectFile.EXTENSION)) {
+                BinaryProjectFile.save(file, graph.getModel(), functions);
+            } else {
+                ProjectFile.save(file, graph.getModel(), functions);
+            }
+        }
+    }
+
+    private final int blocks;
+    private final int maxDepth;
+    private final int functionCount;
+    private final int callFanOut;
+    private final long seed;
+
+    /**
+     * @param blocks        Blocchi in totale, divisi tra main e funzioni (Start ed End esclusi)
+     * @param maxDepth      Profondità massima di if e cicli annidati (0 = solo sequenze)
+     * @param functionCount Numero di funzioni
+     * @param callFanOut    Chiamate di funzione in ogni diagramma (se ci sono funzioni da chiamare)
+     * @param seed          Seme dei numeri casuali
+     */
+    public FlowchartGenerator(int blocks, int maxDepth, int functionCount, int callFanOut, long seed) {
+        if (blocks < 0 || maxDepth < 0 || functionCount < 0 || callFanOut < 0) {
+            throw new IllegalArgumentException("Generator parameters cannot be negative");
+        }
+        this.blocks = blocks;
+        this.maxDepth = maxDepth;
+        this.functionCount = functionCount;
+        this.callFanOut = callFanOut;
+        this.seed = seed;
+    }
+
+    public GeneratedFlowchart generate() {
+        Random random = new Random(seed);
+        int perDiagram = blocks / (functionCount + 1);
+
+        // Le funzioni per prime: f0 ... f(n-1), ognuna chiama solo quelle successive
+        Map<String, FunctionDefinition> functions = new LinkedHashMap<>();
+        int blockCount = 0;
+        for (int i = 0; i < functionCount; i++) {
+            FunctionDefinition function = new FunctionDefinition("f" + i,
+                Collections.singletonList(new FunctionDefinition.Parameter("p", "int")), "int", "r");
+            mxGraph graph = function.getFunctionGraph();
+            Diagram diagram = new Diagram(graph, random, "r", "p", callees(i + 1));
+            blockCount += diagram.build(perDiagram);
+            function.setStartCell(diagram.start);
+            function.setEndCell(diagram.end);
+            functions.put(function.getName(), function);
+        }
+
+        mxGraph graph = new mxGraph();
+        Diagram main = new Diagram(graph, random, "v", "1", callees(0));
+        blockCount += main.build(blocks - perDiagram * functionCount);
+        return new GeneratedFlowchart(graph, main.start, main.end, functions, blockCount);
+    }
+
+    private List<String> callees(int first) {
+        List<String> names = new ArrayList<>();
+        for (int i = first; i < functionCount; i++) {
+            names.add("f" + i);
+        }
+        return names;
+    }
+
+    /**
+     * Builds one diagram: Start, the initial assignment, the generated blocks and
+     * (for the main) the output of the result, then End.
+     */
+    private final class Diagram {
+        final mxGraph graph;
+        final Object parent;
+        final Random random;
+        final String variable;
+        final String initialValue;
+        final List<String> callees;
+        Object start;
+        Object end;
+        int row;
+        int callsLeft;
+        int nextCallee;
+
+        // Coda del diagramma: l'arco verso il prossimo blocco parte da qui
+        Object tail;
+        String tailLabel = "";
+        String tailStyle;
+
+        Diagram(mxGraph graph, Random random, String variable, String initialValue, List<String> callees) {
+            this.graph = graph;
+            this.parent = graph.getDefaultParent();
+            this.random = random;
+            this.variable = variable;
+            this.initialValue = initialValue;
+            this.callees = callees;
+            this.callsLeft = callees.isEmpty() ? 0 : callFanOut;
+        }
+
+        /**
+         * Builds the diagram with about {@code budget} blocks; returns the blocks created.
+         */
+        int build(int budget) {
+            graph.getModel().beginUpdate();
+            try {
+                start = graph.insertVertex(parent, null, "Start", 0, 0, 100, 50, BlockStyles.START);
+                tail = start;
+                boolean isMain = variable.equals("v");
+                // Assegnamento iniziale e output finale fanno parte del conteggio
+                int fixed = isMain ? 2 : 1;
+                int body = Math.max(budget - fixed, callsLeft);
+                append(vertex(variable + " = " + initialValue, BlockStyles.ASSIGNMENT, 0));
+                sequence(body, 0, true);
+                if (isMain) {
+                    append(vertex(variable, BlockStyles.OUTPUT, 0));
+                }
+                end = graph.insertVertex(parent, null, "End", 0, row * ROW_HEIGHT, 100, 50, BlockStyles.END);
+                connect(end);
+                return body + fixed;
+            } finally {
+                graph.getModel().endUpdate();
+            }
+        }
+
+        /**
+         * Appends exactly {@code budget} blocks at the given nesting depth.
+         * Function calls are placed only at the top level, so loops do not repeat them.
+         */
+        void sequence(int budget, int depth, boolean topLevel) {
+            while (budget > 0) {
+                if (topLevel && callsLeft > 0 && random.nextInt(budget) < callsLeft) {
+                    String callee = callees.get(nextCallee++ % callees.size());
+                    append(vertex(variable + " = " + callee + "(" + variable + ")", BlockStyles.FUNCTION_CALL, depth));
+                    callsLeft--;
+                    budget--;
+                    continue;
+                }
+                // Gli if e i cicli servono almeno 4 blocchi (il while: inizializzazione, test, merge, incremento)
+                int reserved = topLevel ? callsLeft : 0;
+                int free = budget - reserved;
+                int kind = depth < maxDepth && free >= 4 ? random.nextInt(4) : 0;
+                switch (kind) {
+                    case 1: {
+                        int inner = random.nextInt(free - 2 + 1);
+                        conditional(inner, depth);
+                        budget -= 2 + inner;
+                        break;
+                    }
+                    case 2: {
+                        int inner = random.nextInt(free - 4 + 1);
+                        whileLoop(inner, depth);
+                        budget -= 4 + inner;
+                        break;
+                    }
+                    case 3: {
+                        int inner = random.nextInt(free - 2 + 1);
+                        forLoop(inner, depth);
+                        budget -= 2 + inner;
+                        break;
+                    }
+                    default:
+                        append(vertex(assignment(), BlockStyles.ASSIGNMENT, depth));
+                        budget--;
+                        break;
+                }
+            }
+        }
+
+        void conditional(int inner, int depth) {
+            Object condition = vertex(condition(), BlockStyles.CONDITIONAL, depth);
+            append(condition);
+            Object merge = graph.insertVertex(parent, null, "", 0, 0, 15, 15, BlockStyles.MERGE);
+
+            int trueBlocks = random.nextInt(inner + 1);
+            branch(condition, "Sì", "TRUE_BRANCH", trueBlocks, depth + 1, merge);
+            branch(condition, "No", "FALSE_BRANCH", inner - trueBlocks, depth + 1, merge);
+
+            // Il merge va sotto il ramo più lungo
+            graph.getModel().getGeometry(merge).setY(row++ * ROW_HEIGHT);
+            graph.getModel().getGeometry(merge).setX(depth * COLUMN_WIDTH);
+            tail = merge;
+        }
+
+        void branch(Object condition, String label, String style, int blocks, int depth, Object merge) {
+            tail = condition;
+            tailLabel = label;
+            tailStyle = style;
+            sequence(blocks, depth, false);
+            connect(merge);
+        }
+
+        void whileLoop(int inner, int depth) {
+            String counter = "w" + depth;
+            append(vertex(counter + " = 0", BlockStyles.ASSIGNMENT, depth));
+            Object loop = vertex(counter + " < " + LOOP_TRIPS, BlockStyles.LOOP, depth);
+            loopBody(loop, inner, depth, counter + " = " + counter + " + 1");
+        }
+
+        void forLoop(int inner, int depth) {
+            String counter = "k" + depth;
+            Object loop = vertex(counter + " = 0; " + counter + " < " + LOOP_TRIPS + "; " + counter + " = " + counter + " + 1",
+                BlockStyles.FOR_LOOP, depth);
+            loopBody(loop, inner, depth, null);
+        }
+
+        /**
+         * Loop test, merge point of the body (as the editor creates it), body and back edge.
+         */
+        void loopBody(Object loop, int inner, int depth, String increment) {
+            append(loop);
+            Object bodyMerge = vertex("", BlockStyles.MERGE, depth + 1);
+            tailLabel = "Yes";
+            tailStyle = "TRUE_BRANCH";
+            append(bodyMerge);
+            sequence(inner, depth + 1, false);
+            if (increment != null) {
+                append(vertex(increment, BlockStyles.ASSIGNMENT, depth + 1));
+            }
+            connect(loop);
+            tail = loop;
+            tailLabel = "No";
+            tailStyle = "FALSE_BRANCH";
+        }
+
+        String assignment() {
+            int constant = 1 + random.nextInt(9);
+            switch (random.nextInt(3)) {
+                case 0: return variable + " = " + variable + " + " + constant;
+                case 1: return variable + " = (" + variable + " * 3 + " + constant + ") % 1000";
+                default: return "t = " + variable + " % " + (constant + 1) + "\n" + variable + " = " + variable + " + t";
+            }
+        }
+
+        String condition() {
+            switch (random.nextInt(3)) {
+                case 0: return variable + " % 2 == 0";
+                case 1: return variable + " > " + random.nextInt(500);
+                default: return variable + " < " + random.nextInt(500);
+            }
+        }
+
+        Object vertex(String value, String style, int depth) {
+            boolean merge = BlockStyles.MERGE.equals(style);
+            double width = merge ? 15 : style.equals(BlockStyles.FOR_LOOP) ? 180 : 140;
+            double height = merge ? 15 : 70;
+            return graph.insertVertex(parent, null, value, depth * COLUMN_WIDTH, row++ * ROW_HEIGHT,
+                width, height, style);
+        }
+
+        /**
+         * Connects the tail to {@code cell}, which becomes the new tail.
+         */
+        void append(Object cell) {
+            connect(cell);
+            tail = cell;
+        }
+
+        void connect(Object cell) {
+            graph.insertEdge(parent, null, tailLabel, tail, cell, tailStyle);
+            tailLabel = "";
+            tailStyle = null;
+        }
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+
+        int blocks = 100;
+        int depth = 3;
+        int functions = 0;
+        int fanOut = 2;
+        long seed = 1;
+        String output = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if ("--blocks".equals(args[i]) && i + 1 < args.length) {
+                    blocks = Integer.parseInt(args[++i]);
+                } else if ("--depth".equals(args[i]) && i + 1 < args.length) {
+                    depth = Integer.parseInt(args[++i]);
+                } else if ("--functions".equals(args[i]) && i + 1 < args.length) {
+                    functions = Integer.parseInt(args[++i]);
+                } else if ("--fan-out".equals(args[i]) && i + 1 < args.length) {
+                    fanOut = Integer.parseInt(args[++i]);
+                } else if ("--seed".equals(args[i]) && i + 1 < args.length) {
+                    seed = Long.parseLong(args[++i]);
+                } else if (output == null && !args[i].startsWith("--")) {
+                    output = args[i];
+                } else {
+                    output = null;
+                    break;
+                }
+            }
+        } catch (NumberFormatException e) {
+            output = null;
+        }
+
+        if (output == null || blocks < 0 || depth < 0 || functions < 0 || fanOut < 0) {
+            System.err.println("Usage: java FlowchartGenerator [--blocks n] [--depth n] [--functions n] " +
+                "[--fan-out n] [--seed n] flowchart.xml|flowchart.fcb");
+            System.exit(2);
+        }
+
+        try {
+            GeneratedFlowchart flowchart = new FlowchartGenerator(blocks, depth, functions, fanOut, seed).generate();
+            flowchart.save(new File(output));
+            System.out.println("Generated " + flowchart.getBlockCount() + " blocks in " + (functions + 1) +
+                " diagrams: " + output);
+        } catch (Exception e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
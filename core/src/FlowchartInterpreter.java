@@ -0,0 +1,1692 @@
+import com.mxgraph.model.mxIGraphModel;
+import com.mxgraph.view.mxGraph;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Interprete per eseguire i blocchi del diagramma a blocchi.
+ * Gestisce variabili, input/output, condizioni e loop.
+ *
+ * L'esecuzione è una macchina a stati: le chiamate alle funzioni utente non
+ * usano la ricorsione Java ma salvano lo stato del chiamante in uno stack
+ * sullo heap. Un'espressione che chiama una funzione viene sospesa e, al
+ * ritorno, rivalutata usando i risultati già ottenuti, quindi qualsiasi
+ * profondità di chiamata o sequenza di input usa uno stack Java costante.
+ *
+ * Senza traccia e fuori dalla modalità passo-passo, un programma che esegue
+ * molti blocchi viene compilato in bytecode ({@link FlowchartCompiler}): il
+ * programma principale prosegue nel codice compilato e le chiamate alle funzioni
+ * utente usano la loro versione compilata, tornando all'interprete quando serve.
+ *
+ * In modalità profilazione ({@link #setProfiling}) l'esecuzione resta interpretata e
+ * ogni blocco e ogni chiamata vengono misurati in un {@link ExecutionProfile}.
+ */
+public class FlowchartInterpreter {
+
+    /** Blocks executed before the program is compiled. */
+    public static final long DEFAULT_COMPILE_THRESHOLD = 100_000;
+    // Ritorni all'interprete oltre i quali il codice compilato viene abbandonato
+    private static final int MAX_DEOPTIMIZATIONS = 16;
+    private static final int TIER_CHECK_INTERVAL = 1024;
+
+    // Variabili del programma principale e del frame corrente (diverso dentro una funzione)
+    private Frame globals;
+    private Frame frame;
+    private StringBuilder output;
+    // Compilato alla creazione (o letto da un file binario) e riusato ad ogni esecuzione:
+    // le modifiche fatte in seguito nell'editor non toccano l'esecuzione in corso
+    private final FlowchartProgram precompiledProgram;
+
+    // Programma compilato in esecuzione e indice del blocco corrente
+    private FlowchartProgram program;
+    private FlowchartProgram mainProgram;
+    private int pc;
+    private final Map<FunctionDefinition, FlowchartProgram> functionPrograms;
+    private volatile boolean isRunning;  // volatile: stop() può arrivare da un altro thread
+    private volatile boolean isPaused;
+    private volatile boolean isSteppingMode;  // Aggiunto per tracciare la modalità step-by-step (volatile per thread-safety)
+    private volatile boolean isExecutingStep;  // Flag per prevenire esecuzioni multiple simultanee
+    private ExecutionListener listener;
+    private boolean tracing = true;  // Se false l'output contiene solo i valori dei blocchi Output
+    private boolean stepEvents = true;  // Se false il listener non riceve un evento per ogni blocco
+
+    // Stato per gli eventi incrementali (ExecutionDeltaListener)
+    private long deltaSequence;
+    private int reportedOutputLength;
+    private Frame reportedFrame;
+    // Copia inviata al listener di ogni array: il listener la aggiorna con le scritture degli eventi.
+    // Gli array sono confrontati per identità; quelli non più raggiungibili escono dalla mappa
+    private Map<Object, Object> arraySnapshots = new WeakHashMap<>();
+
+    // Limiti contro i programmi che non terminano
+    private ExecutionLimits limits = ExecutionLimits.UNLIMITED;
+    private long stepCount;
+    private long deadlineNanos;  // 0 = nessun limite di tempo
+    private ExecutionLimitException limitExceeded;
+
+    // Sorgente dei valori per i blocchi Input (null = richiesta tramite il listener)
+    private InputProvider inputProvider;
+    private String missingInput;
+
+    // Stack per gestire i loop (uno per ogni funzione in esecuzione)
+    private Stack<LoopContext> loopStack;
+
+    // Function management: stato dei chiamanti salvato sullo heap
+    private Deque<Activation> callStack;
+    private FunctionRegistry functions;  // Function definitions (the editor panel, or those of a file)
+
+    // Valutazione delle espressioni: registro condiviso e alberi già analizzati
+    private final Value register = new Value();
+    private final Expression.Context evaluationContext = new EvaluationContext();
+
+    // Avanzamento del blocco corrente, per riprenderlo dopo una chiamata di funzione
+    private int blockPart;                 // Parti (istruzioni, variabili di input) già completate
+    private List<Object> callResults;      // Risultati delle chiamate della parte in corso
+    private int callCursor;                // Prossimo risultato da riusare durante la rivalutazione
+    private boolean resuming;              // La parte in corso viene rivalutata dopo un ritorno
+    private String pendingFunction;        // Chiamata che ha sospeso la valutazione
+    private Object[] pendingArgs;
+    private volatile boolean inRunLoop;    // executeAll è attivo su questo o un altro thread
+
+    // Livello compilato
+    private long compileThreshold = DEFAULT_COMPILE_THRESHOLD;
+    private long nextTierCheck;
+    private CompletableFuture<CompiledFlowchart> pendingCode;
+    private volatile CompiledFlowchart compiledCode;  // volatile: stop() lo interrompe da un altro thread
+    private boolean compilationFailed;
+
+    // Profilazione (null = disattivata: un solo controllo per blocco)
+    private boolean profiling;
+    private ExecutionProfile profile;
+    private long inputWaitNanos;  // Attesa dell'input nel blocco corrente, esclusa dal suo tempo
+
+    public interface ExecutionListener {
+        void onExecutionStep(Object cell, Map<String, Object> variables, String output);
+        void onExecutionComplete();
+        void onExecutionError(String error);
+        void onInputRequired(String variableName, InputCallback callback);
+    }
+
+    /**
+     * Listener that receives only what changed at each step instead of full snapshots.
+     */
+    public interface ExecutionDeltaListener extends ExecutionListener {
+        void onExecutionDelta(ExecutionDelta delta);
+
+        @Override
+        default void onExecutionStep(Object cell, Map<String, Object> variables, String output) {
+            // Sostituito da onExecutionDelta
+        }
+    }
+
+    public interface InputCallback {
+        void onInputProvided(String value);
+    }
+
+    /**
+     * Caller state saved while a user function runs.
+     */
+    private static final class Activation {
+        final FunctionContext context;
+        final FunctionDefinition function;
+        final FlowchartProgram callerProgram;
+        final int callerPc;
+        final Frame callerFrame;
+        final Stack<LoopContext> callerLoops;
+        final int callerPart;
+        final List<Object> callerResults;
+        final long startNanos;  // Inizio della chiamata, solo in profilazione
+
+        Activation(FunctionContext context, FunctionDefinition function, FlowchartProgram callerProgram, int callerPc,
+                   Frame callerFrame, Stack<LoopContext> callerLoops, int callerPart, List<Object> callerResults,
+                   long startNanos) {
+            this.context = context;
+            this.function = function;
+            this.callerProgram = callerProgram;
+            this.callerPc = callerPc;
+            this.callerFrame = callerFrame;
+            this.callerLoops = callerLoops;
+            this.callerPart = callerPart;
+            this.callerResults = callerResults;
+            this.startNanos = startNanos;
+        }
+    }
+
+    /**
+     * Thrown by an expression that calls a user function: the evaluation is abandoned
+     * and repeated when the function returns. Preallocated and without stack trace.
+     */
+    private static final class CallSuspension extends RuntimeException {
+        static final CallSuspension INSTANCE = new CallSuspension();
+
+        private CallSuspension() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static class LoopContext {
+        FlowchartProgram program;
+        int loopIndex;
+
+        LoopContext(FlowchartProgram program, int loopIndex) {
+            this.program = program;
+            this.loopIndex = loopIndex;
+        }
+
+        boolean isFor(FlowchartProgram program, int loopIndex) {
+            return this.program == program && this.loopIndex == loopIndex;
+        }
+    }
+
+    public FlowchartInterpreter(mxGraph graph, Object startCell, Object endCell) {
+        this(graph, startCell, endCell, null);
+    }
+
+    public FlowchartInterpreter(mxGraph graph, Object startCell, Object endCell, FunctionRegistry functions) {
+        this(graph.getModel(), startCell, endCell, functions);
+    }
+
+    /**
+     * Creates an interpreter working directly on a graph model, without an {@link mxGraph} (no AWT needed).
+     * The graph and the functions are compiled here, on the calling thread (the EDT in the editor).
+     */
+    public FlowchartInterpreter(mxIGraphModel model, Object startCell, Object endCell, FunctionRegistry functions) {
+        this(FlowchartProgram.compile(model, startCell, endCell), functions);
+    }
+
+    /**
+     * Creates an interpreter for an already compiled program, e.g. one read from a
+     * {@link BinaryProjectFile}. The program is shared by all runs and never recompiled.
+     * The functions of the registry are compiled here.
+     */
+    public FlowchartInterpreter(FlowchartProgram program, FunctionRegistry functions) {
+        this(program, functions, null);
+    }
+
+    /**
+     * Creates an interpreter for an already compiled program and already compiled functions,
+     * e.g. those of a {@link FlowchartRunner.LoadedFlowchart} shared by many runs. Functions
+     * missing from {@code functionPrograms} (or all of them, if it is null) are compiled here.
+     */
+    public FlowchartInterpreter(FlowchartProgram program, FunctionRegistry functions,
+                                Map<FunctionDefinition, FlowchartProgram> functionPrograms) {
+        this.precompiledProgram = program;
+        this.output = new StringBuilder();
+        this.loopStack = new Stack<>();
+        this.callStack = new ArrayDeque<>();
+        this.callResults = new ArrayList<>();
+        this.functionPrograms = new HashMap<>();
+        this.pc = FlowchartProgram.NONE;
+        this.isRunning = false;
+        this.isPaused = false;
+
+        // Istantanea delle funzioni: definizioni e grafi compilati
+        if (functions != null) {
+            Map<String, FunctionDefinition> definitions = new LinkedHashMap<>(functions.getFunctions());
+            this.functions = FunctionRegistry.of(definitions);
+            for (FunctionDefinition definition : definitions.values()) {
+                FlowchartProgram functionProgram = functionPrograms != null && functionPrograms.containsKey(definition)
+                    ? functionPrograms.get(definition)
+                    : FlowchartProgram.compile(definition);
+                if (functionProgram != null) {
+                    this.functionPrograms.put(definition, functionProgram);
+                }
+            }
+        }
+    }
+
+    public void setExecutionListener(ExecutionListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Enables or disables the per-block notifications ({@link ExecutionListener#onExecutionStep},
+     * {@link ExecutionDeltaListener#onExecutionDelta}). When disabled no step event is built,
+     * and the listener only hears about completion, errors and input requests.
+     */
+    public void setStepEvents(boolean stepEvents) {
+        this.stepEvents = stepEvents;
+    }
+
+    public boolean isStepEvents() {
+        return stepEvents;
+    }
+
+    /**
+     * Enables or disables the execution trace. When disabled, the output only
+     * contains the values written by OUTPUT blocks, one per line.
+     */
+    public void setTracing(boolean tracing) {
+        this.tracing = tracing;
+    }
+
+    public boolean isTracing() {
+        return tracing;
+    }
+
+    /**
+     * Sets the source of the values read by INPUT blocks. With a provider the
+     * values are read synchronously, without pausing the execution; without one
+     * they are requested through {@link ExecutionListener#onInputRequired}.
+     */
+    public void setInputProvider(InputProvider inputProvider) {
+        this.inputProvider = inputProvider;
+    }
+
+    public InputProvider getInputProvider() {
+        return inputProvider;
+    }
+
+    /**
+     * Name of the variable whose value the input provider could not supply
+     * in the last run, or null.
+     */
+    public String getMissingInput() {
+        return missingInput;
+    }
+
+    /**
+     * Sets the step, time and call depth limits applied from the next run.
+     */
+    public void setLimits(ExecutionLimits limits) {
+        this.limits = limits != null ? limits : ExecutionLimits.UNLIMITED;
+    }
+
+    public ExecutionLimits getLimits() {
+        return limits;
+    }
+
+    /**
+     * The limit that ended the last run, or null if no limit was exceeded.
+     */
+    public ExecutionLimitException getLimitExceeded() {
+        return limitExceeded;
+    }
+
+    /**
+     * Sets how many blocks a run executes before it is compiled (0 = always interpreted).
+     * Compilation only happens when tracing is off and not in step-by-step mode.
+     */
+    public void setCompileThreshold(long compileThreshold) {
+        if (compileThreshold < 0) {
+            throw new IllegalArgumentException("Compile threshold cannot be negative");
+        }
+        this.compileThreshold = compileThreshold;
+    }
+
+    public long getCompileThreshold() {
+        return compileThreshold;
+    }
+
+    /**
+     * Enables per-block and per-function profiling from the next run.
+     * A profiled run is always interpreted, never compiled.
+     */
+    public void setProfiling(boolean profiling) {
+        this.profiling = profiling;
+    }
+
+    public boolean isProfiling() {
+        return profiling;
+    }
+
+    /**
+     * The profile of the current or last run, or null if profiling was disabled.
+     */
+    public ExecutionProfile getProfile() {
+        return profile;
+    }
+
+    public void reset() {
+        output = new StringBuilder();
+        loopStack = new Stack<>();
+        callStack.clear();
+        callResults = new ArrayList<>();
+        callCursor = 0;
+        blockPart = 0;
+        resuming = false;
+        pendingFunction = null;
+        pendingArgs = null;
+
+        // Programma compilato alla creazione: l'esecuzione non legge mai il grafo
+        program = precompiledProgram;
+        mainProgram = program;
+        globals = new Frame(program.getSymbols());
+        frame = globals;
+        deltaSequence = 0;
+        reportedOutputLength = 0;
+        reportedFrame = null;
+        arraySnapshots = new WeakHashMap<>();
+        stepCount = 0;
+        deadlineNanos = limits.getTimeLimitMillis() > 0
+            ? System.nanoTime() + limits.getTimeLimitMillis() * 1_000_000L
+            : 0;
+        limitExceeded = null;
+        missingInput = null;
+        nextTierCheck = compileThreshold > 0 ? compileThreshold : Long.MAX_VALUE;
+        pendingCode = null;
+        compiledCode = null;
+        compilationFailed = false;
+        profile = profiling ? new ExecutionProfile() : null;
+        inputWaitNanos = 0;
+        pc = program.getStartIndex();
+        isRunning = false;
+        isPaused = false;
+        isSteppingMode = false;
+        isExecutingStep = false;
+    }
+
+    public void start() {
+        reset();
+        isRunning = true;
+        isSteppingMode = false;  // Esecuzione automatica
+        executeAll();
+    }
+
+    public synchronized void step() {
+        // Previeni esecuzioni multiple simultanee
+        if (isExecutingStep) {
+            return;
+        }
+
+        isExecutingStep = true;
+
+        try {
+            if (!isRunning) {
+                reset();
+                isRunning = true;
+                isSteppingMode = true;  // Modalità step-by-step
+            }
+
+            if (!isAtEnd()) {
+                executeStep();
+            } else {
+                stop();
+            }
+        } finally {
+            isExecutingStep = false;
+        }
+    }
+
+    /**
+     * Starts a run whose blocks are executed one at a time by {@link #advance},
+     * as {@link ExecutionRun} does. A run in step-by-step mode is never compiled.
+     */
+    public void begin(boolean stepping) {
+        reset();
+        isRunning = true;
+        isSteppingMode = stepping;
+    }
+
+    /**
+     * Switches a run started with {@link #begin} between step-by-step and automatic execution.
+     */
+    public void setSteppingMode(boolean stepping) {
+        isSteppingMode = stepping;
+    }
+
+    /**
+     * Executes the next block of a run started with {@link #begin} and stops the run
+     * when it reaches the end. The program stays interpreted, so the caller regains
+     * control after every block. Returns false if the run is over.
+     */
+    public boolean advance() {
+        if (!isRunning) {
+            return false;
+        }
+        if (!isAtEnd()) {
+            executeStep();
+        }
+        if (isRunning && isAtEnd()) {
+            stop();
+        }
+        return isRunning;
+    }
+
+    public void stop() {
+        isRunning = false;
+        isPaused = false;
+        CompiledFlowchart code = compiledCode;
+        if (code != null) {
+            code.cancel();
+        }
+        if (listener != null) {
+            listener.onExecutionComplete();
+        }
+    }
+
+    public void pause() {
+        isPaused = true;
+    }
+
+    public void resume() {
+        isPaused = false;
+        isSteppingMode = false;  // Quando si riprende, si passa a esecuzione automatica
+        executeAll();
+    }
+
+    private void executeAll() {
+        inRunLoop = true;
+        try {
+            while (isRunning && !isPaused && !isAtEnd()) {
+                if (stepCount >= nextTierCheck && runCompiled()) {
+                    continue;
+                }
+                executeStep();
+            }
+        } finally {
+            inRunLoop = false;
+        }
+
+        if (isRunning && !isPaused && isAtEnd()) {
+            stop();
+        }
+    }
+
+    /**
+     * Checks whether the main program has no more blocks to execute.
+     */
+    private boolean isAtEnd() {
+        return isAtProgramEnd() && callStack.isEmpty();
+    }
+
+    /**
+     * Checks whether the current program (main or function body) has reached its end.
+     */
+    private boolean isAtProgramEnd() {
+        return pc == FlowchartProgram.NONE || pc == program.getEndIndex();
+    }
+
+    /**
+     * Executes one block. Entering and leaving user functions happen in the same
+     * step, in a loop, so the Java stack does not grow with the call depth.
+     */
+    private void executeStep() {
+        try {
+            while (true) {
+                if (isAtProgramEnd()) {
+                    if (callStack.isEmpty()) {
+                        stop();
+                        return;
+                    }
+                    // Fine del corpo della funzione: si riprende il blocco del chiamante
+                    returnFromFunction();
+                    continue;
+                }
+
+                checkLimits();
+
+                // IMPORTANTE: Salva il blocco che stiamo per eseguire
+                int index = pc;
+                long startNanos = profile != null ? System.nanoTime() : 0;
+                boolean completed;
+                try {
+                    completed = executeBlock(index);
+                } catch (CallSuspension suspension) {
+                    // Chiamata a una funzione utente: il blocco verrà ripreso al ritorno
+                    if (profile != null) {
+                        profileBlock(index, startNanos, false);
+                    }
+                    enterFunction(pendingFunction, pendingArgs);
+                    continue;
+                }
+                if (profile != null) {
+                    profileBlock(index, startNanos, completed);
+                }
+                if (!completed) {
+                    // In attesa di input o esecuzione fermata: il blocco non è completato
+                    return;
+                }
+                completeBlock();
+
+                // Notifica listener DOPO l'esecuzione con il blocco che abbiamo appena eseguito
+                // Ora variabili e output sono già aggiornati dall'esecuzione
+                if (listener != null && !isPaused) {
+                    notifyStep(program.getCell(index));
+                }
+                return;
+            }
+        } catch (ExecutionLimitException e) {
+            abortOnLimit(e);
+        } catch (Exception e) {
+            if (listener != null) {
+                listener.onExecutionError("Errore durante l'esecuzione: " + e.getMessage());
+            }
+            stop();
+        }
+    }
+
+    /**
+     * Executes the block at {@code index} and moves the program counter.
+     * Returns false if the block is waiting for input.
+     */
+    private boolean executeBlock(int index) {
+        String value = program.getText(index);
+
+        // Esegui il blocco in base al tipo
+        switch (program.getOpcode(index)) {
+            case FlowchartProgram.OP_ASSIGNMENT:
+                // Blocco Assignment - esegui assegnamento
+                executeStatements(program.getStatements(index), 0);
+                pc = program.getNext(index);
+                return true;
+
+            case FlowchartProgram.OP_INPUT:
+                // Blocco Input - con un InputProvider i valori arrivano subito,
+                // altrimenti l'avanzamento avviene in requestInput dopo l'input
+                if (executeInput(program.getInputTargets(index))) {
+                    pc = program.getNext(index);
+                    return true;
+                }
+                return false;
+
+            case FlowchartProgram.OP_OUTPUT:
+                // Blocco Output - visualizza output
+                executeOutput(program.getExpression(index));
+                pc = program.getNext(index);
+                return true;
+
+            case FlowchartProgram.OP_CONDITIONAL: {
+                // Blocco Conditional - valuta condizione
+                if (tracing && !resuming) {
+                    output.append("▶ IF: Evaluating condition '").append(value).append("'\n");
+                }
+                boolean result = evaluateCondition(program.getCondition(index), value);
+                if (tracing) {
+                    output.append("  → Condition is ").append(result ? "TRUE" : "FALSE");
+                    output.append(result ? " (taking YES branch)\n" : " (taking NO branch)\n");
+                }
+                pc = result ? program.getNext(index) : program.getFalseNext(index);
+                return true;
+            }
+
+            case FlowchartProgram.OP_LOOP: {
+                // Blocco Loop - valuta condizione loop
+                if (tracing && !resuming) {
+                    output.append("▶ WHILE LOOP: Evaluating condition '").append(value).append("'\n");
+                }
+                boolean result = evaluateCondition(program.getCondition(index), value);
+                if (tracing) {
+                    output.append("  → Condition is ").append(result ? "TRUE" : "FALSE");
+                    output.append(result ? " (entering loop body)\n" : " (exiting loop)\n");
+                }
+                moveToLoopBranch(index, result);
+                return true;
+            }
+
+            case FlowchartProgram.OP_FOR_LOOP:
+                // Blocco For Loop - formato: init; condition; increment
+                executeForLoop(index, value);
+                return true;
+
+            case FlowchartProgram.OP_DO_WHILE: {
+                // Blocco Do-While - valuta condizione dopo il corpo
+                if (tracing && !resuming) {
+                    output.append("▶ DO-WHILE: Evaluating condition '").append(value).append("'\n");
+                }
+                boolean result = evaluateCondition(program.getCondition(index), value);
+                if (tracing) {
+                    output.append("  → Condition is ").append(result ? "TRUE" : "FALSE");
+                    output.append(result ? " (repeating loop body)\n" : " (exiting loop)\n");
+                }
+                moveToLoopBranch(index, result);
+                return true;
+            }
+
+            case FlowchartProgram.OP_FUNCTION_CALL:
+                // Blocco Function Call - chiama una funzione
+                executeFunctionCallBlock(program.getStatement(index));
+                pc = program.getNext(index);
+                return true;
+
+            default:
+                // Start, Merge o tipo sconosciuto - passa al prossimo
+                pc = program.getNext(index);
+                return true;
+        }
+    }
+
+    /**
+     * Adds the time of a block execution to the profile, without the time spent waiting for input.
+     */
+    private void profileBlock(int index, long startNanos, boolean completed) {
+        profile.addBlockTime(program, index, System.nanoTime() - startNanos - inputWaitNanos);
+        inputWaitNanos = 0;
+        if (completed) {
+            profile.countBlock(program, index);
+        }
+    }
+
+    /**
+     * Clears the progress of the block just completed.
+     */
+    private void completeBlock() {
+        blockPart = 0;
+        resuming = false;
+        callResults.clear();
+        callCursor = 0;
+    }
+
+    /**
+     * Marks the current part of the block as completed: the calls of the next part start afresh.
+     */
+    private void completePart(int part) {
+        blockPart = part;
+        resuming = false;
+        callResults.clear();
+        callCursor = 0;
+    }
+
+    /**
+     * Counts the step and throws if the step budget or the deadline is exceeded.
+     * The clock is read only every 1024 steps and never in step-by-step mode.
+     */
+    private void checkLimits() {
+        stepCount++;
+        long maxSteps = limits.getMaxSteps();
+        if (maxSteps > 0 && stepCount > maxSteps) {
+            throw new ExecutionLimitException(ExecutionLimitException.Limit.STEPS, maxSteps);
+        }
+        if (deadlineNanos != 0 && (stepCount & 1023) == 0 && !isSteppingMode
+                && System.nanoTime() - deadlineNanos > 0) {
+            throw new ExecutionLimitException(ExecutionLimitException.Limit.TIME, limits.getTimeLimitMillis());
+        }
+    }
+
+    private void abortOnLimit(ExecutionLimitException e) {
+        limitExceeded = e;
+        if (listener != null) {
+            listener.onExecutionError(e.getMessage());
+        }
+        stop();
+    }
+
+    // ===== LIVELLO COMPILATO =====
+
+    /**
+     * Continues the main program in compiled code, if it is available and the
+     * interpreter is between two blocks of the main program. Returns true if
+     * compiled code ran; it leaves the program at the end, at a block to
+     * interpret, or stopped because an input value is missing.
+     */
+    private boolean runCompiled() {
+        nextTierCheck = stepCount + TIER_CHECK_INTERVAL;
+        CompiledFlowchart code = getCompiledCode();
+        if (code == null || !callStack.isEmpty() || blockPart != 0 || resuming || !callResults.isEmpty()
+                || !code.accepts(globals)) {
+            return false;
+        }
+
+        int[] loopIndexes = new int[loopStack.size()];
+        for (int i = 0; i < loopIndexes.length; i++) {
+            loopIndexes[i] = loopStack.get(i).loopIndex;
+        }
+        code.run(globals, pc, stepCount, deadlineNanos, loopIndexes);
+
+        stepCount = code.getSteps();
+        deadlineNanos = code.getDeadlineNanos();
+        loopStack = new Stack<>();
+        for (int index : code.getLoopIndexes()) {
+            loopStack.push(new LoopContext(program, index));
+        }
+        pc = code.getExitPc();
+        blockPart = code.getExitPart();
+
+        switch (code.getExitReason()) {
+            case CompiledFlowchart.DEOPTIMIZED:
+                // Il blocco viene interpretato; si riprova dopo altri compileThreshold passi
+                nextTierCheck = stepCount + compileThreshold;
+                discardIfUnstable(code);
+                break;
+            case CompiledFlowchart.INPUT_MISSING:
+                missingInput = code.getMissingInput();
+                stop();
+                return true;
+            default:
+                break;
+        }
+        if (listener != null) {
+            notifyStep(program.getCell(pc));
+        }
+        return true;
+    }
+
+    /**
+     * Gets the compiled code, starting the compilation on first use; null while it is
+     * being compiled, if the program cannot be compiled or if compilation is disabled.
+     */
+    private CompiledFlowchart getCompiledCode() {
+        if (tracing || isSteppingMode || compileThreshold <= 0 || compilationFailed || profile != null) {
+            return null;
+        }
+        if (pendingCode == null) {
+            pendingCode = FlowchartCompiler.compile(mainProgram, globals, new FlowchartCompiler.FunctionResolver() {
+                @Override
+                public FunctionDefinition getFunction(String name) {
+                    return functions != null ? functions.getFunction(name) : null;
+                }
+
+                @Override
+                public FlowchartProgram getProgram(FunctionDefinition function) {
+                    return functionPrograms.get(function);
+                }
+            });
+        }
+        if (compiledCode == null && pendingCode.isDone()) {
+            CompiledFlowchart code = pendingCode.isCompletedExceptionally() ? null : pendingCode.join();
+            if (code == null) {
+                compilationFailed = true;
+                return null;
+            }
+            code.attach(output, inputProvider, (name, args) -> executeBuiltinFunction(name, Arrays.asList(args)),
+                limits);
+            compiledCode = code;
+        }
+        return compiledCode;
+    }
+
+    /**
+     * Drops compiled code that keeps returning to the interpreter.
+     */
+    private void discardIfUnstable(CompiledFlowchart code) {
+        if (code.getDeoptimizations() > MAX_DEOPTIMIZATIONS) {
+            compiledCode = null;
+            compilationFailed = true;
+        }
+    }
+
+    private void executeForLoop(int index, String value) {
+        if (tracing && blockPart == 0 && !resuming) {
+            output.append("▶ FOR LOOP: Processing '").append(value).append("'\n");
+        }
+
+        // Parti già separate in fase di compilazione: init; condition; increment
+        FlowchartProgram.ForLoop forLoop = program.getForLoop(index);
+        if (forLoop != null) {
+            String condition = forLoop.getConditionText();
+
+            // Check if this is the first time we enter the for loop
+            // (lo stack dei loop cambia solo in moveToLoopBranch, quindi è stabile durante una ripresa)
+            boolean firstEntry = loopStack.isEmpty() || !loopStack.peek().isFor(program, index);
+            if (tracing && blockPart == 0 && !resuming) {
+                if (firstEntry) {
+                    output.append("  → Initialization: ").append(forLoop.getInitText()).append("\n");
+                } else {
+                    output.append("  → Increment: ").append(forLoop.getIncrementText()).append("\n");
+                }
+            }
+            // First entry: execute initialization; re-entering: execute increment, then check condition
+            executeStatements(firstEntry ? forLoop.getInit() : forLoop.getIncrement(), 0);
+
+            if (tracing && !resuming) {
+                output.append("  → Evaluating condition: ").append(condition).append("\n");
+            }
+            boolean result = evaluateCondition(forLoop.getCondition(), condition);
+            if (tracing) {
+                output.append("  → Condition is ").append(result ? "TRUE" : "FALSE");
+                if (firstEntry) {
+                    output.append(result ? " (entering loop body)\n" : " (exiting loop)\n");
+                } else {
+                    output.append(result ? " (continuing loop)\n" : " (exiting loop)\n");
+                }
+            }
+            moveToLoopBranch(index, result);
+        } else {
+            // Malformed for loop - treat as simple condition
+            boolean result = evaluateCondition(program.getCondition(index), value);
+            if (tracing) {
+                output.append("  → Condition is ").append(result ? "TRUE" : "FALSE");
+                output.append(result ? " (entering loop body)\n" : " (exiting loop)\n");
+            }
+            moveToLoopBranch(index, result);
+        }
+    }
+
+    /**
+     * Executes the parsed statements of an assignment block (one per line),
+     * skipping those already completed. Statement i is the block part {@code firstPart + i}.
+     */
+    private void executeStatements(Statement[] statements, int firstPart) {
+        for (int i = Math.max(blockPart - firstPart, 0); i < statements.length; i++) {
+            Statement statement = statements[i];
+            if (statement.isArrayDeclaration()) {
+                declareArray(statement);
+            } else if (statement.isAssignment()) {
+                String varName = statement.getTarget();
+                if (tracing && !resuming) {
+                    output.append("▶ ASSIGNMENT: Evaluating '").append(statement.getExpressionText()).append("'\n");
+                }
+                int position = statement.getIndex() != null ? evaluateIndex(statement) : 0;
+                statement.getExpression().evaluate(evaluationContext, register);
+                storeTarget(statement, position);
+                if (tracing) {
+                    output.append(statement.getIndex() != null ? "  → Element '" : "  → Variable '")
+                        .append(targetText(statement, position)).append("' = ").append(register.toString()).append("\n");
+                }
+            } else {
+                // Se non è un assegnamento, valuta come espressione
+                statement.getExpression().evaluate(evaluationContext, register);
+            }
+            completePart(firstPart + i + 1);
+        }
+    }
+
+    /**
+     * Creates the zero-filled array of a declaration such as "int a[n]" in the current frame.
+     */
+    private void declareArray(Statement statement) {
+        String name = statement.getTarget();
+        if (tracing && !resuming) {
+            output.append("▶ ASSIGNMENT: Declaring array '").append(name).append("'\n");
+        }
+        statement.getExpression().evaluate(evaluationContext, register);
+        if (register.getType() != Value.INT || register.intValue() < 0) {
+            throw new RuntimeException("Invalid length '" + register + "' for array '" + name + "'");
+        }
+        int length = register.intValue();
+        if (statement.getArrayType() == Value.INT_ARRAY) {
+            register.setArray(new int[length]);
+        } else {
+            register.setArray(new double[length]);
+        }
+        frame.store(statement.getTargetSlot(), register);
+        if (tracing) {
+            output.append("  → Array '").append(name).append("' of ").append(length).append(" elements\n");
+        }
+    }
+
+    /**
+     * Evaluates the index of an array element target.
+     */
+    private int evaluateIndex(Statement statement) {
+        statement.getIndex().evaluate(evaluationContext, register);
+        return register.indexValue();
+    }
+
+    /**
+     * Stores the register into the target of a statement: a variable of the current frame
+     * or the element {@code position} of an array, local or (inside a function) global.
+     */
+    private void storeTarget(Statement statement, int position) {
+        int slot = statement.getTargetSlot();
+        if (statement.getIndex() == null) {
+            frame.store(slot, register);
+            return;
+        }
+        Frame owner = frame;
+        if (!frame.isSet(slot) && frame != globals) {
+            int globalSlot = globals.getSymbols().slotOf(statement.getTarget());
+            if (globalSlot != SymbolTable.UNDEFINED && globals.isSet(globalSlot)) {
+                owner = globals;
+                slot = globalSlot;
+            }
+        }
+        if (!owner.isSet(slot)) {
+            throw new RuntimeException("Variable '" + statement.getTarget() + "' is not defined");
+        }
+        owner.storeElement(slot, position, register);
+    }
+
+    /**
+     * Text of a target for messages: the variable name, or "a[3]" for an element.
+     */
+    private static String targetText(Statement target, int position) {
+        return target.getIndex() != null ? target.getTarget() + "[" + position + "]" : target.getTarget();
+    }
+
+    /**
+     * Reads the values of an INPUT block, one block part per target. Returns true
+     * if they were all read synchronously from the input provider, false if the
+     * execution was paused to wait for the listener or stopped because a value is missing.
+     */
+    private boolean executeInput(Statement[] targets) {
+        // Le destinazioni (separate da virgola) sono già state analizzate in compilazione
+        for (int i = blockPart; i < targets.length; i++) {
+            Statement target = targets[i];
+            int position = target.getIndex() != null ? evaluateIndex(target) : 0;
+            String varName = targetText(target, position);
+            if (tracing) {
+                output.append("▶ INPUT: Requesting value for variable '").append(varName).append("'\n");
+            }
+            if (inputProvider == null) {
+                // Il callback completa questa variabile; le successive vengono chieste ai passi seguenti
+                requestInput(target, position, targets.length);
+                return false;
+            }
+
+            long waitStart = System.nanoTime();
+            String value;
+            try {
+                value = inputProvider.nextInput(varName);
+            } catch (IOException e) {
+                throw new RuntimeException("Cannot read input for variable '" + varName + "': " + e.getMessage(), e);
+            }
+            // Il tempo di attesa dell'input non conta per il limite di tempo né per il profilo
+            long waited = System.nanoTime() - waitStart;
+            if (deadlineNanos != 0) {
+                deadlineNanos += waited;
+            }
+            inputWaitNanos += waited;
+
+            if (value == null) {
+                // Input terminato o annullato dall'utente
+                missingInput = varName;
+                stop();
+                return false;
+            }
+            storeInput(target, position, value);
+            completePart(i + 1);
+        }
+        return true;
+    }
+
+    /**
+     * Stores an input value as Integer, Double or String depending on its text.
+     * An array element converts it to the element type.
+     */
+    private void storeInput(Statement target, int position, String value) {
+        if (target.getIndex() != null) {
+            register.set(parseInput(value));
+            storeTarget(target, position);
+            if (tracing) {
+                output.append("  → User entered: ").append(value).append(" (stored in '")
+                    .append(targetText(target, position)).append("')\n");
+            }
+            return;
+        }
+        String varName = target.getTarget();
+        try {
+            // Prova a convertire in numero
+            if (value.matches("-?\\d+")) {
+                setVariable(varName, Integer.parseInt(value));
+                if (tracing) {
+                    output.append("  → User entered: ").append(value).append(" (stored as Integer)\n");
+                }
+            } else if (value.matches("-?\\d+\\.\\d+")) {
+                setVariable(varName, Double.parseDouble(value));
+                if (tracing) {
+                    output.append("  → User entered: ").append(value).append(" (stored as Double)\n");
+                }
+            } else {
+                setVariable(varName, value);
+                if (tracing) {
+                    output.append("  → User entered: \"").append(value).append("\" (stored as String)\n");
+                }
+            }
+        } catch (Exception e) {
+            setVariable(varName, value);
+            if (tracing) {
+                output.append("  → User entered: \"").append(value).append("\"\n");
+            }
+        }
+    }
+
+    /**
+     * Converts an input text as {@link #storeInput} does for a variable.
+     */
+    private static Object parseInput(String value) {
+        try {
+            if (value.matches("-?\\d+")) {
+                return Integer.parseInt(value);
+            } else if (value.matches("-?\\d+\\.\\d+")) {
+                return Double.parseDouble(value);
+            }
+        } catch (NumberFormatException e) {
+            // Numero fuori range: resta testo
+        }
+        return value;
+    }
+
+    private void executeOutput(Expression expression) {
+        // Se è una stringa tra virgolette viene restituita senza virgolette,
+        // se è una variabile o un'espressione viene valutata
+        if (tracing && !resuming) {
+            output.append("▶ OUTPUT: ");
+        }
+        expression.evaluate(evaluationContext, register);
+        output.append(register.toString()).append("\n");
+    }
+
+    private void requestInput(Statement target, int position, int varCount) {
+        String varName = targetText(target, position);
+        // Richiedi input all'utente
+
+        // Salva il blocco corrente per poterlo avanzare dopo l'input
+        FlowchartProgram programToAdvance = program;
+        int indexToAdvance = pc;
+
+        // IMPORTANTE: Metti in pausa PRIMA di richiedere l'input
+        isPaused = true;
+        long waitStart = System.nanoTime();
+
+        if (listener != null) {
+            listener.onInputRequired(varName, value -> {
+                // Il tempo di attesa dell'utente non conta per il limite di tempo
+                if (deadlineNanos != 0) {
+                    deadlineNanos += System.nanoTime() - waitStart;
+                }
+                storeInput(target, position, value);
+
+                // IMPORTANTE: Avanza al blocco successivo dopo aver ricevuto l'ultima variabile
+                if (blockPart + 1 < varCount) {
+                    completePart(blockPart + 1);
+                } else {
+                    completeBlock();
+                    if (profile != null) {
+                        profile.countBlock(programToAdvance, indexToAdvance);
+                    }
+                    pc = programToAdvance.getNext(indexToAdvance);
+                }
+
+                // Notifica il listener con le variabili aggiornate
+                if (listener != null) {
+                    notifyStep(programToAdvance.getCell(indexToAdvance));
+                }
+
+                // Togliamo la pausa dopo l'input
+                isPaused = false;
+
+                // Riprendi solo se NON siamo in modalità step-by-step. Se il ciclo di
+                // esecuzione è ancora attivo (input fornito subito) prosegue da solo,
+                // senza annidare un'altra chiamata a resume()
+                if (!isSteppingMode && !inRunLoop) {
+                    resume();
+                }
+                // Se siamo in step-by-step, l'esecuzione è completa per questo step
+                // il prossimo click su "Next Step" continuerà dal blocco successivo
+            });
+        }
+    }
+
+    private boolean evaluateCondition(Condition condition, String text) {
+        try {
+            return condition.test(evaluationContext, register);
+        } catch (CallSuspension suspension) {
+            // Non è un errore: la condizione verrà rivalutata al ritorno dalla funzione
+            throw suspension;
+        } catch (Exception e) {
+            if (listener != null) {
+                listener.onExecutionError("Errore nella valutazione della condizione: " + text + " - " + e.getMessage());
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Gives expressions access to the interpreter variables and functions.
+     */
+    private class EvaluationContext implements Expression.Context {
+        @Override
+        public void loadVariable(int slot, String name, Value out) {
+            if (frame.isSet(slot)) {
+                frame.load(slot, out);
+                return;
+            }
+
+            // Dentro una funzione, una variabile non locale viene cercata tra le globali
+            if (frame != globals) {
+                int globalSlot = globals.getSymbols().slotOf(name);
+                if (globalSlot != SymbolTable.UNDEFINED && globals.isSet(globalSlot)) {
+                    globals.load(globalSlot, out);
+                    return;
+                }
+            }
+
+            throw new RuntimeException("Variable '" + name + "' is not defined");
+        }
+
+        @Override
+        public void callFunction(String name, Object[] args, Value out) {
+            // Rivalutazione dopo un ritorno: le chiamate già eseguite restituiscono il loro risultato
+            if (callCursor < callResults.size()) {
+                out.set(callResults.get(callCursor++));
+                return;
+            }
+
+            Object builtinResult = executeBuiltinFunction(name, Arrays.asList(args));
+            if (builtinResult != null) {
+                callResults.add(builtinResult);
+                callCursor++;
+                out.set(builtinResult);
+                return;
+            }
+
+            // Funzione utente: si sospende la valutazione e la si esegue dal ciclo principale
+            pendingFunction = name;
+            pendingArgs = args;
+            throw CallSuspension.INSTANCE;
+        }
+    }
+
+    /**
+     * Notifies the listener that a block has been executed.
+     */
+    private void notifyStep(Object cell) {
+        if (!stepEvents) {
+            return;
+        }
+        if (listener instanceof ExecutionDeltaListener) {
+            ((ExecutionDeltaListener) listener).onExecutionDelta(createDelta(cell));
+        } else {
+            listener.onExecutionStep(cell, globals.toMap(), output.toString());
+        }
+    }
+
+    /**
+     * Collects the variables and output changed since the previous event. Each array
+     * is sent as its snapshot: copied once, then kept up to date by the element writes
+     * of the events, so a step costs as much as the elements it wrote.
+     */
+    private ExecutionDelta createDelta(Object cell) {
+        ExecutionDelta.ElementWrites elementWrites = new ExecutionDelta.ElementWrites();
+        Map<String, Object> changedVariables = new LinkedHashMap<>();
+        boolean variablesReset = frame != reportedFrame;
+        if (variablesReset) {
+            // Primo evento o cambio di funzione: le scritture ancora da notificare aggiornano le copie,
+            // poi si inviano tutte le variabili visibili
+            if (reportedFrame != null && reportedFrame != globals && reportedFrame != frame) {
+                drainElementWrites(reportedFrame, elementWrites, null);
+            }
+            drainElementWrites(globals, elementWrites, changedVariables);
+            if (frame != globals) {
+                drainElementWrites(frame, elementWrites, changedVariables);
+            }
+            globals.clearChanges();
+            frame.clearChanges();
+            reportedFrame = frame;
+            changedVariables = getAllVariables();
+        } else {
+            // Dentro una funzione anche i globali possono cambiare (elementi di array globali):
+            // prima i globali, poi le locali, che vincono in caso di nome uguale
+            if (frame != globals) {
+                drainElementWrites(globals, elementWrites, changedVariables);
+                globals.drainChanges(changedVariables);
+            }
+            drainElementWrites(frame, elementWrites, changedVariables);
+            frame.drainChanges(changedVariables);
+        }
+        for (Map.Entry<String, Object> entry : changedVariables.entrySet()) {
+            Object value = entry.getValue();
+            if (value instanceof int[] || value instanceof double[]) {
+                entry.setValue(snapshotOf(value));
+            }
+        }
+
+        String appendedOutput = output.substring(reportedOutputLength);
+        reportedOutputLength = output.length();
+
+        return new ExecutionDelta(++deltaSequence, cell, variablesReset, changedVariables, appendedOutput,
+            elementWrites);
+    }
+
+    /**
+     * Turns the element writes recorded by a frame into writes of the array snapshots. If the
+     * frame lost some writes, its arrays are copied again and listed in {@code visible}, or
+     * forgotten when the frame is not visible ({@code visible} null) and copied when shown again.
+     */
+    private void drainElementWrites(Frame source, ExecutionDelta.ElementWrites writes, Map<String, Object> visible) {
+        if (source.hasLostElementChanges()) {
+            SymbolTable symbols = source.getSymbols();
+            for (int slot = 0; slot < symbols.size(); slot++) {
+                Object array = source.get(slot);
+                if (array instanceof int[] || array instanceof double[]) {
+                    arraySnapshots.remove(array);
+                    if (visible != null) {
+                        visible.put(symbols.getName(slot), array);
+                    }
+                }
+            }
+            source.clearElementChanges();
+            return;
+        }
+        for (int i = 0; i < source.getElementChangeCount(); i++) {
+            Object array = source.get(source.getElementChangeSlot(i));
+            int index = source.getElementChangeIndex(i);
+            // Un array mai notificato non ha copia: verrà copiato per intero quando compare
+            Object snapshot = array != null ? arraySnapshots.get(array) : null;
+            if (array instanceof int[]) {
+                if (snapshot != null && index < ((int[]) array).length) {
+                    writes.add(snapshot, index, ((int[]) array)[index]);
+                }
+            } else if (array instanceof double[]) {
+                if (snapshot != null && index < ((double[]) array).length) {
+                    writes.add(snapshot, index, ((double[]) array)[index]);
+                }
+            }
+        }
+        source.clearElementChanges();
+    }
+
+    /**
+     * The snapshot of an array sent to the listener, copied the first time the array is sent.
+     */
+    private Object snapshotOf(Object array) {
+        Object snapshot = arraySnapshots.get(array);
+        if (snapshot == null) {
+            snapshot = array instanceof int[] ? ((int[]) array).clone() : ((double[]) array).clone();
+            arraySnapshots.put(array, snapshot);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Moves to the body or the exit of a loop block, keeping the loop stack in sync.
+     */
+    private void moveToLoopBranch(int index, boolean condition) {
+        if (condition) {
+            // Entra nel corpo del loop - salva il contesto del loop
+            if (loopStack.isEmpty() || !loopStack.peek().isFor(program, index)) {
+                loopStack.push(new LoopContext(program, index));
+            }
+            pc = program.getNext(index);
+        } else {
+            // Esci dal loop
+            if (!loopStack.isEmpty() && loopStack.peek().isFor(program, index)) {
+                loopStack.pop();
+            }
+            pc = program.getFalseNext(index);
+        }
+    }
+
+    public Map<String, Object> getVariables() {
+        return getAllVariables();
+    }
+
+    public String getOutput() {
+        return output.toString();
+    }
+
+    public Object getCurrentCell() {
+        return program != null ? program.getCell(pc) : null;
+    }
+
+    public boolean isRunning() {
+        return isRunning;
+    }
+
+    public boolean isPaused() {
+        return isPaused;
+    }
+
+    // ===== FUNCTION CALL MANAGEMENT =====
+
+    /**
+     * Starts a user function call: saves the caller state on the call stack and
+     * moves to the first block of the function.
+     */
+    private void enterFunction(String functionName, Object[] argValues) {
+        if (functions == null) {
+            throw new RuntimeException("No function definitions available, cannot call functions");
+        }
+
+        // Get function definition
+        FunctionDefinition funcDef = functions.getFunction(functionName);
+        if (funcDef == null) {
+            throw new RuntimeException("Function '" + functionName + "' not found");
+        }
+
+        // Get formal parameters from FunctionDefinition
+        List<FunctionDefinition.Parameter> formalParams = funcDef.getFormalParameters();
+        if (formalParams == null) {
+            formalParams = new ArrayList<>();
+        }
+
+        FlowchartProgram funcProgram = getFunctionProgram(funcDef);
+
+        // Validate argument count
+        if (argValues.length != formalParams.size()) {
+            throw new RuntimeException("Function '" + functionName + "' expects " +
+                formalParams.size() + " parameters but got " + argValues.length);
+        }
+
+        int maxCallDepth = limits.getMaxCallDepth();
+        if (maxCallDepth > 0 && callStack.size() >= maxCallDepth) {
+            throw new ExecutionLimitException(ExecutionLimitException.Limit.CALL_DEPTH, maxCallDepth);
+        }
+
+        // Funzione compilata: la chiamata viene eseguita per intero, come una funzione predefinita
+        CompiledFlowchart code = compiledCode;
+        if (code != null && !tracing && !isSteppingMode) {
+            Object result = code.invoke(functionName, argValues, stepCount, deadlineNanos, callStack.size());
+            if (result != null) {
+                stepCount = code.getSteps();
+                callResults.add(result);
+                callCursor = 0;
+                resuming = true;
+                return;
+            }
+            discardIfUnstable(code);
+        }
+
+        // Create function context with its own frame
+        FunctionContext context = new FunctionContext(functionName, getCurrentCell(),
+            funcDef.getReturnVariableName(), new Frame(funcProgram.getSymbols()));
+
+        // Set parameter values in local variables
+        for (int i = 0; i < formalParams.size(); i++) {
+            String paramName = formalParams.get(i).getName();
+            context.setLocalVariable(paramName, argValues[i]);
+        }
+
+        // Push caller state onto call stack and switch to function program
+        long startNanos = 0;
+        if (profile != null) {
+            profile.enterFunction(functionName);
+            startNanos = System.nanoTime();
+        }
+        callStack.push(new Activation(context, funcDef, program, pc, frame, loopStack, blockPart, callResults,
+            startNanos));
+        program = funcProgram;
+        frame = context.getFrame();
+        loopStack = new Stack<>();
+        blockPart = 0;
+        callResults = new ArrayList<>();
+        callCursor = 0;
+        resuming = false;
+
+        // Execute function starting from the block after its start cell
+        int funcStartIndex = funcProgram.getStartIndex();
+        pc = funcStartIndex != FlowchartProgram.NONE ? funcProgram.getNext(funcStartIndex) : FlowchartProgram.NONE;
+
+        if (tracing) {
+            output.append("▶ CALLING FUNCTION: ").append(functionName).append("(");
+            for (int i = 0; i < argValues.length; i++) {
+                if (i > 0) output.append(", ");
+                output.append(formalParams.get(i).getName()).append("=").append(argValues[i]);
+            }
+            output.append(")\n");
+        }
+    }
+
+    /**
+     * Ends the running function: restores the caller state and records the return
+     * value, so that the caller block is evaluated again using it.
+     */
+    private void returnFromFunction() {
+        Activation activation = callStack.pop();
+        if (profile != null) {
+            profile.exitFunction(activation.context.getFunctionName(), System.nanoTime() - activation.startNanos);
+        }
+        program = activation.callerProgram;
+        pc = activation.callerPc;
+        frame = activation.callerFrame;
+        loopStack = activation.callerLoops;
+        blockPart = activation.callerPart;
+        callResults = activation.callerResults;
+
+        // Get return value from the specified return variable name
+        FunctionDefinition funcDef = activation.function;
+        String functionName = activation.context.getFunctionName();
+        Object returnValue = 0;  // Default for void functions
+        String returnVarName = funcDef.getReturnVariableName();
+        String returnType = funcDef.getReturnType();
+
+        if (returnVarName != null && !returnVarName.isEmpty() && !"void".equals(returnType)) {
+            // Read the return variable value
+            returnValue = activation.context.getLocalVariable(returnVarName);
+            if (returnValue == null) {
+                returnValue = 0;  // Default if not set
+            }
+        }
+
+        if (tracing) {
+            if (returnType != null && !"void".equals(returnType)) {
+                output.append("▶ FUNCTION ").append(functionName).append(" RETURNED: ").append(returnValue).append("\n");
+            } else {
+                output.append("▶ FUNCTION ").append(functionName).append(" COMPLETED\n");
+            }
+        }
+
+        callResults.add(returnValue);
+        callCursor = 0;
+        resuming = true;
+    }
+
+    /**
+     * Gets the program of a function, compiled when the interpreter was created.
+     */
+    private FlowchartProgram getFunctionProgram(FunctionDefinition funcDef) {
+        FlowchartProgram funcProgram = functionPrograms.get(funcDef);
+        if (funcProgram == null) {
+            throw new RuntimeException("Function '" + funcDef.getName() + "' has no Start block");
+        }
+        return funcProgram;
+    }
+
+    /**
+     * Executes a FUNCTION_CALL block.
+     * The value can be:
+     * - functionName(args) - for void functions
+     * - result = functionName(args) - for functions with return value
+     */
+    private void executeFunctionCallBlock(Statement statement) {
+        // Evaluate function call
+        statement.getExpression().evaluate(evaluationContext, register);
+
+        if (statement.isAssignment()) {
+            // Store result
+            int position = 0;
+            if (statement.getIndex() != null) {
+                // L'indice viene valutato dopo la chiamata, che lascia il risultato nel registro
+                Value result = new Value();
+                result.copyFrom(register);
+                position = evaluateIndex(statement);
+                register.copyFrom(result);
+            }
+            storeTarget(statement, position);
+            if (tracing) {
+                output.append("▶ ").append(targetText(statement, position)).append(" = ")
+                    .append(register.toString()).append("\n");
+            }
+        }
+        // Senza assegnamento il risultato viene scartato (funzioni void)
+    }
+
+    /**
+     * Sets a variable value in the current scope.
+     */
+    private void setVariable(String name, Object value) {
+        if (!frame.set(name, value)) {
+            throw new RuntimeException("Variable '" + name + "' is not defined");
+        }
+    }
+
+    /**
+     * Gets all visible variables (local + global).
+     */
+    private Map<String, Object> getAllVariables() {
+        if (globals == null) {
+            return new HashMap<>();
+        }
+        Map<String, Object> allVars = globals.toMap(); // Start with global
+
+        // Override with local variables if in a function
+        if (frame != globals) {
+            frame.copyTo(allVars);
+        }
+
+        return allVars;
+    }
+
+    /**
+     * Executes built-in functions (math, string, random, time).
+     * Returns null if the function is not a built-in function.
+     */
+    private Object executeBuiltinFunction(String functionName, List<Object> argValues) {
+        double arg1, arg2;
+
+        switch (functionName) {
+            // === Funzioni Matematiche ===
+            case "sqrt":
+                if (argValues.size() != 1) throw new RuntimeException("sqrt expects 1 argument");
+                return Math.sqrt(toDouble(argValues.get(0)));
+
+            case "pow":
+                if (argValues.size() != 2) throw new RuntimeException("pow expects 2 arguments");
+                return Math.pow(toDouble(argValues.get(0)), toDouble(argValues.get(1)));
+
+            case "exp":
+                if (argValues.size() != 1) throw new RuntimeException("exp expects 1 argument");
+                return Math.exp(toDouble(argValues.get(0)));
+
+            case "log":
+                if (argValues.size() != 1) throw new RuntimeException("log expects 1 argument");
+                return Math.log(toDouble(argValues.get(0)));
+
+            case "log10":
+                if (argValues.size() != 1) throw new RuntimeException("log10 expects 1 argument");
+                return Math.log10(toDouble(argValues.get(0)));
+
+            case "sin":
+                if (argValues.size() != 1) throw new RuntimeException("sin expects 1 argument");
+                return Math.sin(toDouble(argValues.get(0)));
+
+            case "cos":
+                if (argValues.size() != 1) throw new RuntimeException("cos expects 1 argument");
+                return Math.cos(toDouble(argValues.get(0)));
+
+            case "tan":
+                if (argValues.size() != 1) throw new RuntimeException("tan expects 1 argument");
+                return Math.tan(toDouble(argValues.get(0)));
+
+            case "asin":
+                if (argValues.size() != 1) throw new RuntimeException("asin expects 1 argument");
+                return Math.asin(toDouble(argValues.get(0)));
+
+            case "acos":
+                if (argValues.size() != 1) throw new RuntimeException("acos expects 1 argument");
+                return Math.acos(toDouble(argValues.get(0)));
+
+            case "atan":
+                if (argValues.size() != 1) throw new RuntimeException("atan expects 1 argument");
+                return Math.atan(toDouble(argValues.get(0)));
+
+            case "floor":
+                if (argValues.size() != 1) throw new RuntimeException("floor expects 1 argument");
+                return Math.floor(toDouble(argValues.get(0)));
+
+            case "ceil":
+                if (argValues.size() != 1) throw new RuntimeException("ceil expects 1 argument");
+                return Math.ceil(toDouble(argValues.get(0)));
+
+            case "abs":
+                if (argValues.size() != 1) throw new RuntimeException("abs expects 1 argument");
+                Object val = argValues.get(0);
+                if (val instanceof Integer) {
+                    return Math.abs((Integer) val);
+                } else {
+                    return Math.abs(toDouble(val));
+                }
+
+            // === Funzioni per Stringhe ===
+            case "strlen":
+                if (argValues.size() != 1) throw new RuntimeException("strlen expects 1 argument");
+                return argValues.get(0).toString().length();
+
+            case "strncpy":
+                if (argValues.size() != 2) throw new RuntimeException("strncpy expects 2 arguments");
+                String src = argValues.get(0).toString();
+                int n = toInt(argValues.get(1));
+                return src.substring(0, Math.min(n, src.length()));
+
+            case "strcat":
+                if (argValues.size() != 2) throw new RuntimeException("strcat expects 2 arguments");
+                return argValues.get(0).toString() + argValues.get(1).toString();
+
+            case "strncat":
+                if (argValues.size() != 3) throw new RuntimeException("strncat expects 3 arguments");
+                String str1 = argValues.get(0).toString();
+                String str2 = argValues.get(1).toString();
+                int count = toInt(argValues.get(2));
+                return str1 + str2.substring(0, Math.min(count, str2.length()));
+
+            case "strcmp":
+                if (argValues.size() != 2) throw new RuntimeException("strcmp expects 2 arguments");
+                return argValues.get(0).toString().compareTo(argValues.get(1).toString());
+
+            case "strncmp":
+                if (argValues.size() != 3) throw new RuntimeException("strncmp expects 3 arguments");
+                String s1 = argValues.get(0).toString();
+                String s2 = argValues.get(1).toString();
+                int len = toInt(argValues.get(2));
+                s1 = s1.substring(0, Math.min(len, s1.length()));
+                s2 = s2.substring(0, Math.min(len, s2.length()));
+                return s1.compareTo(s2);
+
+            case "strchr":
+                if (argValues.size() != 2) throw new RuntimeException("strchr expects 2 arguments");
+                String str = argValues.get(0).toString();
+                String ch = argValues.get(1).toString();
+                if (ch.length() > 0) {
+                    int index = str.indexOf(ch.charAt(0));
+                    return index >= 0 ? index : -1;
+                }
+                return -1;
+
+            case "strstr":
+                if (argValues.size() != 2) throw new RuntimeException("strstr expects 2 arguments");
+                String haystack = argValues.get(0).toString();
+                String needle = argValues.get(1).toString();
+                int idx = haystack.indexOf(needle);
+                return idx >= 0 ? idx : -1;
+
+            // === Funzioni per Numeri Casuali ===
+            case "rand":
+                // rand() senza argomenti: [0, RAND_MAX)
+                // rand(max): [0, max)
+                // rand(min, max): [min, max)
+                if (argValues.size() == 0) {
+                    return new java.util.Random().nextInt(Integer.MAX_VALUE);
+                } else if (argValues.size() == 1) {
+                    int max = toInt(argValues.get(0));
+                    return new java.util.Random().nextInt(max);
+                } else if (argValues.size() == 2) {
+                    int min = toInt(argValues.get(0));
+                    int max = toInt(argValues.get(1));
+                    return new java.util.Random().nextInt(max - min) + min;
+                } else {
+                    throw new RuntimeException("rand expects 0, 1, or 2 arguments");
+                }
+
+            // === Funzione Tempo ===
+            case "time":
+                // time() ritorna i secondi dall'epoca Unix (1 gennaio 1970)
+                if (argValues.size() != 0) throw new RuntimeException("time expects 0 arguments");
+                return (int)(System.currentTimeMillis() / 1000);
+
+            default:
+                // Not a built-in function
+                return null;
+        }
+    }
+
+    /**
+     * Converts an object to double.
+     */
+    private double toDouble(Object obj) {
+        if (obj instanceof Number) {
+            return ((Number) obj).doubleValue();
+        }
+        try {
+            return Double.parseDouble(obj.toString());
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Cannot convert '" + obj + "' to double");
+        }
+    }
+
+    /**
+     * Converts an object to int.
+     */
+    private int toInt(Object obj) {
+        if (obj instanceof Number) {
+            return ((Number) obj).intValue();
+        }
+        try {
+            return Integer.parseInt(obj.toString());
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Cannot convert '" + obj + "' to int");
+        }
+    }
+}
@@ -0,0 +1,715 @@
+import com.mxgraph.model.mxCell;
+import com.mxgraph.model.mxGraphModel;
+import com.mxgraph.model.mxIGraphModel;
+import com.mxgraph.view.mxGraph;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Rappresentazione compilata e immutabile di un diagramma a blocchi.
+ * I blocchi raggiungibili dallo Start vengono numerati in un array denso di
+ * istruzioni tipizzate, con i successori (ramo vero/falso) già risolti come
+ * indici interi. L'interprete lavora su questa struttura invece di rileggere
+ * stili ed archi dal grafo ad ogni passo.
+ *
+ * Gli archi del grafo restano disponibili in forma CSR (tutti i successori di un blocco,
+ * nell'ordine degli archi) e i testi uguali sono condivisi: il programma non tiene
+ * riferimenti al modello JGraphX se non le celle, usate solo per ritrovare i blocchi
+ * nell'editor. Compilato sull'EDT, può essere eseguito o tradotto in C su altri thread
+ * mentre l'utente continua a modificare il diagramma, e condiviso da più esecuzioni.
+ */
+public final class FlowchartProgram {
+
+    /** Indice usato quando un blocco non ha successore. */
+    public static final int NONE = -1;
+
+    // Codici operativi delle istruzioni
+    public static final int OP_START = 0;
+    public static final int OP_END = 1;
+    public static final int OP_ASSIGNMENT = 2;
+    public static final int OP_INPUT = 3;
+    public static final int OP_OUTPUT = 4;
+    public static final int OP_CONDITIONAL = 5;
+    public static final int OP_LOOP = 6;
+    public static final int OP_FOR_LOOP = 7;
+    public static final int OP_DO_WHILE = 8;
+    public static final int OP_FUNCTION_CALL = 9;
+    public static final int OP_MERGE = 10;
+    public static final int OP_UNKNOWN = 11;
+
+    // Prefissi "I:"/"Input:" e "O:"/"Output:" dei vecchi diagrammi
+    private static final Pattern INPUT_PREFIX = Pattern.compile("(?i)^(?:I\\s*:|input\\s*:)\\s*");
+    private static final Pattern OUTPUT_PREFIX = Pattern.compile("(?i)^(?:O\\s*:|output\\s*:)\\s*");
+
+    /**
+     * Parti già analizzate di un blocco FOR_LOOP "init; condizione; incremento".
+     */
+    public static final class ForLoop {
+        private final String initText;
+        private final Statement[] init;
+        private final String conditionText;
+        private final Condition condition;
+        private final String incrementText;
+        private final Statement[] increment;
+
+        ForLoop(String initText, String conditionText, String incrementText) {
+            this.initText = initText;
+            this.init = ExpressionParser.parseStatements(initText);
+            this.conditionText = conditionText;
+            this.condition = ExpressionParser.parseConditionOrDefer(conditionText);
+            this.incrementText = incrementText;
+            this.increment = ExpressionParser.parseStatements(incrementText);
+        }
+
+        public String getInitText() {
+            return initText;
+        }
+
+        public Statement[] getInit() {
+            return init;
+        }
+
+        public String getConditionText() {
+            return conditionText;
+        }
+
+        public Condition getCondition() {
+            return condition;
+        }
+
+        public String getIncrementText() {
+            return incrementText;
+        }
+
+        public Statement[] getIncrement() {
+            return increment;
+        }
+    }
+
+    private final int[] opcodes;
+    private final String[] texts;
+    private final Object[] cells;
+    private final Object[] code;    // Contenuto analizzato del blocco, dipende dal codice operativo
+    private final int[] trueNext;   // Successore normale o ramo vero
+    private final int[] falseNext;  // Ramo falso (uguale a trueNext per i blocchi lineari)
+    private final int[] successorStart;  // Successori del blocco i: successors[successorStart[i] .. successorStart[i + 1])
+    private final int[] successors;
+    private final int startIndex;
+    private final int endIndex;
+    private final Map<Object, Integer> indexByCell;
+    private final SymbolTable symbols;
+
+    private FlowchartProgram(int[] opcodes, String[] texts, Object[] cells, Object[] code, int[] trueNext,
+                             int[] falseNext, int[] successorStart, int[] successors, int startIndex, int endIndex,
+                             Map<Object, Integer> indexByCell, SymbolTable symbols) {
+        this.opcodes = opcodes;
+        this.texts = texts;
+        this.cells = cells;
+        this.code = code;
+        this.trueNext = trueNext;
+        this.falseNext = falseNext;
+        this.successorStart = successorStart;
+        this.successors = successors;
+        this.startIndex = startIndex;
+        this.endIndex = endIndex;
+        this.indexByCell = indexByCell;
+        this.symbols = symbols;
+    }
+
+    /**
+     * Compiles the part of the graph reachable from the start cell.
+     */
+    public static FlowchartProgram compile(mxGraph graph, Object startCell, Object endCell) {
+        return compile(graph.getModel(), startCell, endCell, new ArrayList<>());
+    }
+
+    /**
+     * Compiles directly from the graph model. Unlike {@link mxGraph}, the model does not
+     * need AWT, so this can be used without a display.
+     */
+    public static FlowchartProgram compile(mxIGraphModel model, Object startCell, Object endCell) {
+        return compile(model, startCell, endCell, new ArrayList<>());
+    }
+
+    /**
+     * Compiles the graph of a user function. Parameters and return variable get the first
+     * slots of the frame; returns null if the function has no graph or no Start block.
+     */
+    public static FlowchartProgram compile(FunctionDefinition function) {
+        mxIGraphModel model = function.getFunctionModel();
+        if (model == null || function.getStartCell() == null) {
+            return null;
+        }
+        return compile(model, function.getStartCell(), function.getEndCell(), declaredNames(function));
+    }
+
+    /**
+     * Compiles the graph of a user function read from a binary project file, without
+     * decoding it into JGraphX cells. Returns null if the graph has no Start block.
+     */
+    public static FlowchartProgram compile(FunctionDefinition function, BinaryProjectFile.Graph graph) {
+        if (graph.getStartCell() == NONE) {
+            return null;
+        }
+        return compile(graph, declaredNames(function));
+    }
+
+    /**
+     * Parameters and return variable of a function, in slot order.
+     */
+    private static List<String> declaredNames(FunctionDefinition function) {
+        List<String> declaredNames = new ArrayList<>();
+        if (function.getFormalParameters() != null) {
+            for (FunctionDefinition.Parameter parameter : function.getFormalParameters()) {
+                declaredNames.add(parameter.getName());
+            }
+        }
+        if (function.getReturnVariableName() != null && !function.getReturnVariableName().isEmpty()) {
+            declaredNames.add(function.getReturnVariableName());
+        }
+        return declaredNames;
+    }
+
+    /**
+     * Compiles a graph whose variable table starts with the given names (function parameters
+     * and return variable), so they get the first slots even if no block mentions them.
+     */
+    public static FlowchartProgram compile(mxIGraphModel model, Object startCell, Object endCell,
+                                           List<String> declaredNames) {
+        Map<Object, Integer> indexByCell = new IdentityHashMap<>();
+        List<Object> order = new ArrayList<>();
+
+        // Visita in ampiezza per numerare i blocchi raggiungibili
+        if (startCell != null) {
+            ArrayDeque<Object> queue = new ArrayDeque<>();
+            indexByCell.put(startCell, 0);
+            order.add(startCell);
+            queue.add(startCell);
+
+            while (!queue.isEmpty()) {
+                Object cell = queue.poll();
+                if (cell == endCell) {
+                    continue;
+                }
+                for (Object edge : outgoingEdges(model, cell)) {
+                    Object target = ((mxCell) edge).getTarget();
+                    if (target != null && !indexByCell.containsKey(target)) {
+                        indexByCell.put(target, order.size());
+                        order.add(target);
+                        queue.add(target);
+                    }
+                }
+            }
+        }
+
+        int size = order.size();
+        int[] opcodes = new int[size];
+        String[] texts = new String[size];
+        Object[] cells = order.toArray();
+        Object[] code = new Object[size];
+        int[] trueNext = new int[size];
+        int[] falseNext = new int[size];
+        Successors successors = new Successors(size);
+        Map<String, String> pool = new HashMap<>();
+
+        for (int i = 0; i < size; i++) {
+            mxCell cell = (mxCell) cells[i];
+            Object value = cell.getValue();
+            texts[i] = intern(pool, value != null ? value.toString() : "");
+            opcodes[i] = cell == endCell ? OP_END : opcodeFor(cell.getStyle());
+            code[i] = opcodes[i] == OP_UNKNOWN ? cell.getStyle() : parseCode(opcodes[i], texts[i]);
+
+            Object[] edges = outgoingEdges(model, cell);
+            String[] edgeStyles = new String[edges.length];
+            String[] edgeLabels = new String[edges.length];
+            int[] edgeTargets = new int[edges.length];
+            for (int e = 0; e < edges.length; e++) {
+                mxCell edge = (mxCell) edges[e];
+                edgeStyles[e] = edge.getStyle();
+                edgeLabels[e] = edge.getValue() != null ? edge.getValue().toString() : null;
+                edgeTargets[e] = indexOf(indexByCell, edge.getTarget());
+            }
+            resolveSuccessors(i, opcodes[i], edgeStyles, edgeLabels, edgeTargets, trueNext, falseNext);
+            successors.add(i, cell == endCell ? new int[0] : edgeTargets);
+        }
+
+        int startIndex = size > 0 ? 0 : NONE;
+        int endIndex = indexOf(indexByCell, endCell);
+        return link(opcodes, texts, cells, code, trueNext, falseNext, successors, startIndex, endIndex, indexByCell,
+            declaredNames);
+    }
+
+    /**
+     * Compiles a graph of a binary project file directly from its buffer, without
+     * creating JGraphX cells. The cell of each block is its index in the file (an Integer).
+     */
+    public static FlowchartProgram compile(BinaryProjectFile.Graph graph) {
+        return compile(graph, new ArrayList<>());
+    }
+
+    private static FlowchartProgram compile(BinaryProjectFile.Graph graph, List<String> declaredNames) {
+        int cellCount = graph.getCellCount();
+        int startCell = graph.getStartCell();
+        int endCell = graph.getEndCell();
+        int[] indexOfCell = new int[cellCount];
+        Arrays.fill(indexOfCell, NONE);
+        int[] order = new int[cellCount];
+        int size = 0;
+
+        // Visita in ampiezza sugli archi CSR: l'ordine di visita è la coda stessa
+        if (startCell != NONE) {
+            indexOfCell[startCell] = size;
+            order[size++] = startCell;
+            for (int head = 0; head < size; head++) {
+                int cell = order[head];
+                if (cell == endCell) {
+                    continue;
+                }
+                for (int k = graph.getFirstOutgoingEdge(cell); k < graph.getFirstOutgoingEdge(cell + 1); k++) {
+                    int target = graph.getTarget(graph.getOutgoingEdge(k));
+                    if (target != NONE && indexOfCell[target] == NONE) {
+                        indexOfCell[target] = size;
+                        order[size++] = target;
+                    }
+                }
+            }
+        }
+
+        int[] opcodes = new int[size];
+        String[] texts = new String[size];
+        Object[] cells = new Object[size];
+        Object[] code = new Object[size];
+        int[] trueNext = new int[size];
+        int[] falseNext = new int[size];
+        Successors successors = new Successors(size);
+        Map<String, String> pool = new HashMap<>();
+        Map<Object, Integer> indexByCell = new HashMap<>();
+
+        for (int i = 0; i < size; i++) {
+            int cell = order[i];
+            String value = graph.getValue(cell);
+            cells[i] = cell;
+            indexByCell.put(cell, i);
+            texts[i] = intern(pool, value != null ? value : "");
+            opcodes[i] = cell == endCell ? OP_END : opcodeFor(graph.getStyle(cell));
+            code[i] = opcodes[i] == OP_UNKNOWN ? graph.getStyle(cell) : parseCode(opcodes[i], texts[i]);
+
+            int first = graph.getFirstOutgoingEdge(cell);
+            int count = graph.getFirstOutgoingEdge(cell + 1) - first;
+            String[] edgeStyles = new String[count];
+            String[] edgeLabels = new String[count];
+            int[] edgeTargets = new int[count];
+            for (int e = 0; e < count; e++) {
+                int edge = graph.getOutgoingEdge(first + e);
+                int target = graph.getTarget(edge);
+                edgeStyles[e] = graph.getStyle(edge);
+                edgeLabels[e] = graph.getValue(edge);
+                edgeTargets[e] = target != NONE ? indexOfCell[target] : NONE;
+            }
+            resolveSuccessors(i, opcodes[i], edgeStyles, edgeLabels, edgeTargets, trueNext, falseNext);
+            successors.add(i, cell == endCell ? new int[0] : edgeTargets);
+        }
+
+        int startIndex = size > 0 ? 0 : NONE;
+        int endIndex = endCell != NONE ? indexOfCell[endCell] : NONE;
+        return link(opcodes, texts, cells, code, trueNext, falseNext, successors, startIndex, endIndex, indexByCell,
+            declaredNames);
+    }
+
+    /**
+     * Builds the CSR successor arrays while the blocks are compiled in index order.
+     */
+    private static final class Successors {
+        final int[] start;
+        int[] targets;
+        int count;
+
+        Successors(int size) {
+            start = new int[size + 1];
+            targets = new int[size];
+        }
+
+        /**
+         * Adds the targets of the outgoing edges of a block, in edge order, without
+         * duplicates and without the edges that leave the program.
+         */
+        void add(int index, int[] edgeTargets) {
+            start[index] = count;
+            for (int target : edgeTargets) {
+                if (target == NONE || contains(start[index], target)) {
+                    continue;
+                }
+                if (count == targets.length) {
+                    targets = Arrays.copyOf(targets, count * 2 + 1);
+                }
+                targets[count++] = target;
+            }
+            start[index + 1] = count;
+        }
+
+        private boolean contains(int from, int target) {
+            for (int k = from; k < count; k++) {
+                if (targets[k] == target) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    // Un blocco ripetuto (per esempio "i = i + 1") tiene una sola copia del testo
+    private static String intern(Map<String, String> pool, String text) {
+        String shared = pool.putIfAbsent(text, text);
+        return shared != null ? shared : text;
+    }
+
+    /**
+     * Resolves the successors of a block from its outgoing edges, in graph order.
+     */
+    private static void resolveSuccessors(int index, int opcode, String[] edgeStyles, String[] edgeLabels,
+                                          int[] edgeTargets, int[] trueNext, int[] falseNext) {
+        int first = edgeTargets.length > 0 ? edgeTargets[0] : NONE;
+        switch (opcode) {
+            case OP_CONDITIONAL:
+                trueNext[index] = resolveConditionalBranch(edgeStyles, edgeLabels, edgeTargets, true, first);
+                falseNext[index] = resolveConditionalBranch(edgeStyles, edgeLabels, edgeTargets, false, first);
+                break;
+            case OP_LOOP:
+            case OP_FOR_LOOP:
+            case OP_DO_WHILE:
+                trueNext[index] = resolveLoopBranch(edgeStyles, edgeLabels, edgeTargets, true, first);
+                falseNext[index] = resolveLoopBranch(edgeStyles, edgeLabels, edgeTargets, false, first);
+                break;
+            case OP_END:
+                trueNext[index] = NONE;
+                falseNext[index] = NONE;
+                break;
+            default:
+                trueNext[index] = first;
+                falseNext[index] = first;
+                break;
+        }
+    }
+
+    /**
+     * Resolves the variable names of the parsed blocks and builds the program.
+     */
+    private static FlowchartProgram link(int[] opcodes, String[] texts, Object[] cells, Object[] code,
+                                         int[] trueNext, int[] falseNext, Successors successors, int startIndex,
+                                         int endIndex, Map<Object, Integer> indexByCell,
+                                         List<String> declaredNames) {
+        // Risoluzione dei nomi: ogni variabile riceve il suo slot nel frame
+        SymbolTable symbols = new SymbolTable();
+        for (String name : declaredNames) {
+            symbols.define(name);
+        }
+        for (Object blockCode : code) {
+            resolve(blockCode, symbols);
+        }
+
+        return new FlowchartProgram(opcodes, texts, cells, code, trueNext, falseNext, successors.start,
+            Arrays.copyOf(successors.targets, successors.count), startIndex, endIndex, indexByCell, symbols);
+    }
+
+    private static void resolve(Object blockCode, SymbolTable symbols) {
+        if (blockCode instanceof Statement[]) {
+            for (Statement statement : (Statement[]) blockCode) {
+                statement.resolve(symbols);
+            }
+        } else if (blockCode instanceof Statement) {
+            ((Statement) blockCode).resolve(symbols);
+        } else if (blockCode instanceof Expression) {
+            ((Expression) blockCode).resolve(symbols);
+        } else if (blockCode instanceof Condition) {
+            ((Condition) blockCode).resolve(symbols);
+        } else if (blockCode instanceof ForLoop) {
+            ForLoop forLoop = (ForLoop) blockCode;
+            resolve(forLoop.getInit(), symbols);
+            forLoop.getCondition().resolve(symbols);
+            resolve(forLoop.getIncrement(), symbols);
+        }
+    }
+
+    /**
+     * Parses the text of a block once, so that execution only walks expression trees.
+     */
+    private static Object parseCode(int opcode, String text) {
+        switch (opcode) {
+            case OP_ASSIGNMENT:
+                return ExpressionParser.parseStatements(text);
+
+            case OP_FUNCTION_CALL:
+                return ExpressionParser.parseStatement(text);
+
+            case OP_OUTPUT:
+                return ExpressionParser.parseOrDefer(OUTPUT_PREFIX.matcher(text.trim()).replaceFirst("").trim());
+
+            case OP_INPUT: {
+                List<Statement> targets = new ArrayList<>();
+                for (String name : splitInputTargets(INPUT_PREFIX.matcher(text.trim()).replaceFirst(""))) {
+                    name = name.trim();
+                    if (!name.isEmpty()) {
+                        targets.add(ExpressionParser.parseTarget(name));
+                    }
+                }
+                return targets.toArray(new Statement[0]);
+            }
+
+            case OP_CONDITIONAL:
+            case OP_LOOP:
+            case OP_DO_WHILE:
+                return ExpressionParser.parseConditionOrDefer(text);
+
+            case OP_FOR_LOOP: {
+                String[] parts = text.split(";");
+                if (parts.length == 3) {
+                    return new ForLoop(parts[0].trim(), parts[1].trim(), parts[2].trim());
+                }
+                // For malformato: trattato come semplice condizione
+                return ExpressionParser.parseConditionOrDefer(text);
+            }
+
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Splits the targets of an INPUT block on the commas that are not inside brackets, as in "a[min(i, j)]".
+     */
+    static List<String> splitInputTargets(String text) {
+        List<String> parts = new ArrayList<>();
+        int depth = 0;
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '[' || c == '(') {
+                depth++;
+            } else if (c == ']' || c == ')') {
+                depth--;
+            } else if (c == ',' && depth == 0) {
+                parts.add(text.substring(start, i));
+                start = i + 1;
+            }
+        }
+        parts.add(text.substring(start));
+        return parts;
+    }
+
+    private static Object[] outgoingEdges(mxIGraphModel model, Object cell) {
+        // Come mxGraph.getOutgoingEdges: archi uscenti, esclusi i cappi
+        return mxGraphModel.getEdges(model, cell, false, true, false);
+    }
+
+    private static int opcodeFor(String style) {
+        if (style == null) {
+            return OP_UNKNOWN;
+        }
+        switch (style) {
+            case BlockStyles.START: return OP_START;
+            case BlockStyles.END: return OP_END;
+            case BlockStyles.ASSIGNMENT: return OP_ASSIGNMENT;
+            case BlockStyles.INPUT: return OP_INPUT;
+            case BlockStyles.OUTPUT: return OP_OUTPUT;
+            case BlockStyles.CONDITIONAL: return OP_CONDITIONAL;
+            case BlockStyles.LOOP: return OP_LOOP;
+            case BlockStyles.FOR_LOOP: return OP_FOR_LOOP;
+            case BlockStyles.DO_WHILE: return OP_DO_WHILE;
+            case BlockStyles.FUNCTION_CALL: return OP_FUNCTION_CALL;
+            case BlockStyles.MERGE: return OP_MERGE;
+            default: return OP_UNKNOWN;
+        }
+    }
+
+    /**
+     * Resolves a branch of a CONDITIONAL block (style or "Sì"/"Yes"/"No" label).
+     */
+    private static int resolveConditionalBranch(String[] edgeStyles, String[] edgeLabels, int[] edgeTargets,
+                                                boolean condition, int fallback) {
+        for (int e = 0; e < edgeTargets.length; e++) {
+            String style = edgeStyles[e];
+            String label = edgeLabels[e];
+
+            boolean matches;
+            if (condition) {
+                matches = "TRUE_BRANCH".equals(style) ||
+                    (label != null && (label.contains("Sì") || label.contains("Yes") || label.contains("True")));
+            } else {
+                matches = "FALSE_BRANCH".equals(style) ||
+                    (label != null && (label.contains("No") || label.contains("False")));
+            }
+
+            if (matches) {
+                return edgeTargets[e];
+            }
+        }
+        return fallback;
+    }
+
+    /**
+     * Resolves a branch of a loop block (LOOP, FOR_LOOP, DO_WHILE).
+     */
+    private static int resolveLoopBranch(String[] edgeStyles, String[] edgeLabels, int[] edgeTargets,
+                                         boolean condition, int fallback) {
+        for (int e = 0; e < edgeTargets.length; e++) {
+            String style = edgeStyles[e];
+            String label = edgeLabels[e];
+
+            boolean matches;
+            if (condition) {
+                matches = (style != null && style.contains("TRUE_BRANCH")) ||
+                    (label != null && (label.equals("Yes") || label.equals("Sì") || label.equals("Si")));
+            } else {
+                matches = (style != null && style.contains("FALSE_BRANCH")) ||
+                    (label != null && label.equals("No"));
+            }
+
+            if (matches) {
+                return edgeTargets[e];
+            }
+        }
+        return fallback;
+    }
+
+    private static int indexOf(Map<Object, Integer> indexByCell, Object cell) {
+        if (cell == null) {
+            return NONE;
+        }
+        Integer index = indexByCell.get(cell);
+        return index != null ? index : NONE;
+    }
+
+    public int size() {
+        return opcodes.length;
+    }
+
+    /**
+     * Variable slots used by this program.
+     */
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    public int getStartIndex() {
+        return startIndex;
+    }
+
+    public int getEndIndex() {
+        return endIndex;
+    }
+
+    public int getOpcode(int index) {
+        return opcodes[index];
+    }
+
+    public String getText(int index) {
+        return texts[index];
+    }
+
+    /**
+     * Style of a block with an unknown style, kept for diagnostics; null for the other blocks.
+     */
+    public String getUnknownStyle(int index) {
+        return opcodes[index] == OP_UNKNOWN ? (String) code[index] : null;
+    }
+
+    /**
+     * Parsed statements of an ASSIGNMENT block.
+     */
+    public Statement[] getStatements(int index) {
+        return (Statement[]) code[index];
+    }
+
+    /**
+     * Parsed statement of a FUNCTION_CALL block.
+     */
+    public Statement getStatement(int index) {
+        return (Statement) code[index];
+    }
+
+    /**
+     * Parsed expression of an OUTPUT block.
+     */
+    public Expression getExpression(int index) {
+        return (Expression) code[index];
+    }
+
+    /**
+     * Targets of an INPUT block: variables or array elements, with no expression.
+     */
+    public Statement[] getInputTargets(int index) {
+        return (Statement[]) code[index];
+    }
+
+    /**
+     * Variable names of an INPUT block (the array name for an element).
+     */
+    public String[] getInputNames(int index) {
+        Statement[] targets = getInputTargets(index);
+        String[] names = new String[targets.length];
+        for (int i = 0; i < targets.length; i++) {
+            names[i] = targets[i].getTarget();
+        }
+        return names;
+    }
+
+    /**
+     * Parsed parts of a FOR_LOOP block, or null if it is not in the "init; condition; increment" form.
+     */
+    public ForLoop getForLoop(int index) {
+        return code[index] instanceof ForLoop ? (ForLoop) code[index] : null;
+    }
+
+    /**
+     * Parsed condition of a decision block (a malformed FOR_LOOP is treated as a plain condition).
+     */
+    public Condition getCondition(int index) {
+        return (Condition) code[index];
+    }
+
+    public Object getCell(int index) {
+        return index >= 0 && index < cells.length ? cells[index] : null;
+    }
+
+    /**
+     * Successor of a linear block, or the TRUE branch of a decision block.
+     */
+    public int getNext(int index) {
+        return trueNext[index];
+    }
+
+    /**
+     * FALSE branch of a decision block.
+     */
+    public int getFalseNext(int index) {
+        return falseNext[index];
+    }
+
+    /**
+     * Number of distinct blocks reached by the outgoing edges of a block (none for the End block).
+     */
+    public int getSuccessorCount(int index) {
+        return successorStart[index + 1] - successorStart[index];
+    }
+
+    /**
+     * The k-th block reached by the outgoing edges of a block, in edge order.
+     */
+    public int getSuccessor(int index, int k) {
+        return successors[successorStart[index] + k];
+    }
+
+    /**
+     * Gets the index of a graph cell, or {@link #NONE} if it is not part of the program.
+     */
+    public int indexOf(Object cell) {
+        return indexOf(indexByCell, cell);
+    }
+}
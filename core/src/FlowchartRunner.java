@@ -0,0 +1,355 @@
+import com.mxgraph.model.mxGraphModel;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Esecuzione da riga di comando di un diagramma salvato, senza interfaccia grafica.
+ * Legge il file XML o binario (.fcb), prende i valori di input da stdin (o da un file,
+ * una riga per valore) e scrive su stdout i valori dei blocchi Output.
+ *
+ * Uso: java FlowchartRunner [--inputs file] [--trace] [--max-steps n]
+ *      [--time-limit ms] [--max-depth n] [--interpret] diagramma.xml|diagramma.fcb
+ *
+ * Senza --trace i programmi che eseguono molti blocchi vengono compilati
+ * in bytecode; --interpret li esegue sempre con l'interprete.
+ *
+ * Codici di uscita: 0 esecuzione completata, 1 errore di esecuzione,
+ * 2 argomenti o file non validi, 3 input mancanti, 4 limite di esecuzione superato.
+ */
+public class FlowchartRunner {
+
+    public static final int EXIT_OK = 0;
+    public static final int EXIT_EXECUTION_ERROR = 1;
+    public static final int EXIT_USAGE = 2;
+    public static final int EXIT_MISSING_INPUT = 3;
+    public static final int EXIT_LIMIT_EXCEEDED = 4;
+
+    /**
+     * Outcome of a run.
+     */
+    public static class Result {
+        private final int exitCode;
+        private final String output;
+        private final String error;
+        private final ExecutionLimitException limitExceeded;
+
+        Result(int exitCode, String output, String error, ExecutionLimitException limitExceeded) {
+            this.exitCode = exitCode;
+            this.output = output;
+            this.error = error;
+            this.limitExceeded = limitExceeded;
+        }
+
+        public int getExitCode() {
+            return exitCode;
+        }
+
+        public String getOutput() {
+            return output;
+        }
+
+        /**
+         * Error message, or null if the run completed.
+         */
+        public String getError() {
+            return error;
+        }
+
+        /**
+         * The limit that stopped the run, or null.
+         */
+        public ExecutionLimitException getLimitExceeded() {
+            return limitExceeded;
+        }
+    }
+
+    /**
+     * A flowchart loaded from a file, with its Start and End blocks and the functions
+     * of the file. A binary file is compiled once when loaded and has a program instead of a model.
+     * The functions are compiled once when loaded, so runs of the same flowchart share their programs.
+     */
+    public static class LoadedFlowchart {
+        private final mxGraphModel model;
+        private final Object startCell;
+        private final Object endCell;
+        private final FlowchartProgram program;
+        private final FunctionRegistry functions;
+        private final Map<FunctionDefinition, FlowchartProgram> functionPrograms;
+
+        LoadedFlowchart(mxGraphModel model, Object startCell, Object endCell, FunctionRegistry functions,
+                        Map<FunctionDefinition, FlowchartProgram> functionPrograms) {
+            this.model = model;
+            this.startCell = startCell;
+            this.endCell = endCell;
+            this.program = null;
+            this.functions = functions;
+            this.functionPrograms = functionPrograms;
+        }
+
+        LoadedFlowchart(FlowchartProgram program, FunctionRegistry functions,
+                        Map<FunctionDefinition, FlowchartProgram> functionPrograms) {
+            this.model = null;
+            this.startCell = null;
+            this.endCell = null;
+            this.program = program;
+            this.functions = functions;
+            this.functionPrograms = functionPrograms;
+        }
+
+        /**
+         * The graph model, or null for a flowchart read from a binary file.
+         */
+        public mxGraphModel getModel() {
+            return model;
+        }
+
+        /**
+         * The compiled program of a binary file, or null.
+         */
+        public FlowchartProgram getProgram() {
+            return program;
+        }
+
+        public Object getStartCell() {
+            return startCell;
+        }
+
+        public Object getEndCell() {
+            return endCell;
+        }
+
+        /**
+         * The functions defined in the file.
+         */
+        public FunctionRegistry getFunctions() {
+            return functions;
+        }
+
+        /**
+         * The compiled function programs, by definition, or null if they are compiled by each run.
+         */
+        public Map<FunctionDefinition, FlowchartProgram> getFunctionPrograms() {
+            return functionPrograms;
+        }
+    }
+
+    public static void main(String[] args) {
+        // Nessun display necessario: JGraphX non deve inizializzare AWT
+        System.setProperty("java.awt.headless", "true");
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Parses the command line, runs the flowchart and returns the exit code.
+     */
+    public static int run(String[] args, PrintStream out, PrintStream err) {
+        String inputsPath = null;
+        String flowchartPath = null;
+        boolean trace = false;
+        boolean interpret = false;
+        long maxSteps = 0;
+        long timeLimit = 0;
+        int maxDepth = 0;
+
+        for (int i = 0; i < args.length; i++) {
+            if ("--inputs".equals(args[i]) && i + 1 < args.length) {
+                inputsPath = args[++i];
+            } else if ("--trace".equals(args[i])) {
+                trace = true;
+            } else if ("--interpret".equals(args[i])) {
+                interpret = true;
+            } else if ("--max-steps".equals(args[i]) && i + 1 < args.length) {
+                maxSteps = parseLimit(args[++i]);
+            } else if ("--time-limit".equals(args[i]) && i + 1 < args.length) {
+                timeLimit = parseLimit(args[++i]);
+            } else if ("--max-depth".equals(args[i]) && i + 1 < args.length) {
+                maxDepth = (int) Math.min(Integer.MAX_VALUE, parseLimit(args[++i]));
+            } else if (flowchartPath == null && !args[i].startsWith("--")) {
+                flowchartPath = args[i];
+            } else {
+                flowchartPath = null;
+                break;
+            }
+        }
+
+        if (flowchartPath == null || maxSteps < 0 || timeLimit < 0 || maxDepth < 0) {
+            err.println("Usage: java FlowchartRunner [--inputs file] [--trace] [--max-steps n] " +
+                "[--time-limit ms] [--max-depth n] [--interpret] flowchart.xml|flowchart.fcb");
+            return EXIT_USAGE;
+        }
+        ExecutionLimits limits = new ExecutionLimits(maxSteps, timeLimit, maxDepth);
+
+        LoadedFlowchart flowchart;
+        ChannelInputProvider inputs;
+        try {
+            flowchart = load(new File(flowchartPath));
+            // I valori vengono letti una riga alla volta, solo quando un blocco Input li chiede
+            inputs = new ChannelInputProvider(inputsPath != null
+                ? FileChannel.open(new File(inputsPath).toPath(), StandardOpenOption.READ)
+                : Channels.newChannel(System.in));
+        } catch (Exception e) {
+            err.println("Error: " + e.getMessage());
+            return EXIT_USAGE;
+        }
+
+        Result result;
+        try {
+            result = execute(flowchart, inputs, trace, limits, !interpret);
+        } finally {
+            if (inputsPath != null) {
+                try {
+                    inputs.close();
+                } catch (IOException e) {
+                    // Solo lettura: niente da salvare
+                }
+            }
+        }
+        out.print(result.getOutput());
+        out.flush();
+        if (result.getError() != null) {
+            err.println("Error: " + result.getError());
+        }
+        return result.getExitCode();
+    }
+
+    /**
+     * Parses a non-negative limit; returns -1 if the text is not valid.
+     */
+    private static long parseLimit(String text) {
+        try {
+            return Math.max(-1, Long.parseLong(text));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Loads the main flowchart of a file saved by the editor (project, JGraphX XML model
+     * or {@link BinaryProjectFile}), with its functions.
+     */
+    public static LoadedFlowchart load(File file) throws IOException {
+        if (BinaryProjectFile.isBinary(file)) {
+            // Compilato direttamente dal file mappato, senza celle JGraphX
+            BinaryProjectFile binary = BinaryProjectFile.open(file);
+            BinaryProjectFile.Graph graph = binary.getMainGraph();
+            if (graph.getStartCell() == FlowchartProgram.NONE || graph.getEndCell() == FlowchartProgram.NONE) {
+                throw new IOException("'" + file + "' has no Start or End block");
+            }
+            // Anche le funzioni si compilano dal buffer; la loro geometria non viene mai letta
+            Map<String, FunctionDefinition> functions = new LinkedHashMap<>();
+            Map<FunctionDefinition, FlowchartProgram> functionPrograms = new IdentityHashMap<>();
+            for (BinaryProjectFile.Function function : binary.getFunctions()) {
+                FunctionDefinition definition = function.toDefinition();
+                functions.put(function.getName(), definition);
+                FlowchartProgram functionProgram = FlowchartProgram.compile(definition, function.getGraph());
+                if (functionProgram != null) {
+                    functionPrograms.put(definition, functionProgram);
+                }
+            }
+            return new LoadedFlowchart(FlowchartProgram.compile(graph), FunctionRegistry.of(functions),
+                functionPrograms);
+        }
+
+        ProjectFile.Project project = ProjectFile.load(file);
+        ProjectFile.GraphData graph = project.getMainGraph();
+
+        // Niente mxGraph: il suo costruttore inizializza AWT. Si lavora direttamente sul modello.
+        mxGraphModel model = new mxGraphModel();
+        graph.decodeInto(model);
+        Object startCell = graph.getStartCell(model);
+        Object endCell = graph.getEndCell(model);
+
+        if (startCell == null || endCell == null) {
+            throw new IOException("'" + file + "' has no Start or End block");
+        }
+        Map<FunctionDefinition, FlowchartProgram> functionPrograms = new IdentityHashMap<>();
+        for (FunctionDefinition definition : project.getFunctions().values()) {
+            FlowchartProgram functionProgram = FlowchartProgram.compile(definition);
+            if (functionProgram != null) {
+                functionPrograms.put(definition, functionProgram);
+            }
+        }
+        return new LoadedFlowchart(model, startCell, endCell, FunctionRegistry.of(project.getFunctions()),
+            functionPrograms);
+    }
+
+    /**
+     * Runs a loaded flowchart on the calling thread. The output contains only the
+     * OUTPUT values, or the full execution trace if {@code trace} is true.
+     */
+    public static Result execute(LoadedFlowchart flowchart, InputProvider inputs, boolean trace) {
+        return execute(flowchart, inputs, trace, ExecutionLimits.UNLIMITED);
+    }
+
+    /**
+     * Runs a loaded flowchart, stopping it when one of {@code limits} is exceeded.
+     */
+    public static Result execute(LoadedFlowchart flowchart, InputProvider inputs, boolean trace, ExecutionLimits limits) {
+        return execute(flowchart, inputs, trace, limits, true);
+    }
+
+    /**
+     * Runs a loaded flowchart; if {@code compile} is false it is never compiled to bytecode.
+     */
+    public static Result execute(LoadedFlowchart flowchart, InputProvider inputs, boolean trace, ExecutionLimits limits,
+                                 boolean compile) {
+        FlowchartProgram program = flowchart.getProgram() != null
+            ? flowchart.getProgram()
+            : FlowchartProgram.compile(flowchart.getModel(), flowchart.getStartCell(), flowchart.getEndCell());
+        FlowchartInterpreter interpreter = new FlowchartInterpreter(program, flowchart.getFunctions(),
+            flowchart.getFunctionPrograms());
+        interpreter.setTracing(trace);
+        // Nessuna interfaccia da aggiornare: niente eventi per blocco
+        interpreter.setStepEvents(false);
+        interpreter.setCompileThreshold(compile ? FlowchartInterpreter.DEFAULT_COMPILE_THRESHOLD : 0);
+        interpreter.setLimits(limits);
+        interpreter.setInputProvider(inputs);
+
+        String[] error = new String[1];
+        interpreter.setExecutionListener(new FlowchartInterpreter.ExecutionListener() {
+            @Override
+            public void onExecutionStep(Object cell, Map<String, Object> variables, String output) {
+                // Non usato: gli eventi per blocco sono disattivati
+            }
+
+            @Override
+            public void onExecutionComplete() {
+            }
+
+            @Override
+            public void onExecutionError(String message) {
+                if (error[0] == null) {
+                    error[0] = message;
+                }
+            }
+
+            @Override
+            public void onInputRequired(String variableName, FlowchartInterpreter.InputCallback callback) {
+                // Non usato: i valori arrivano dall'InputProvider
+            }
+        });
+
+        interpreter.start();
+
+        ExecutionLimitException limitExceeded = interpreter.getLimitExceeded();
+        if (limitExceeded != null) {
+            return new Result(EXIT_LIMIT_EXCEEDED, interpreter.getOutput(), limitExceeded.getMessage(), limitExceeded);
+        }
+        if (interpreter.getMissingInput() != null) {
+            return new Result(EXIT_MISSING_INPUT, interpreter.getOutput(),
+                "Missing input for variable '" + interpreter.getMissingInput() + "'", null);
+        }
+        if (error[0] != null) {
+            return new Result(EXIT_EXECUTION_ERROR, interpreter.getOutput(), error[0], null);
+        }
+        return new Result(EXIT_OK, interpreter.getOutput(), null, null);
+    }
+}
@@ -0,0 +1,951 @@
+import com.mxgraph.view.mxGraph;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Converte un flowchart in codice C-like.
+ * La struttura del codice (if, while, for, do-while) viene ricostruita da
+ * {@link ControlFlowAnalysis}: il ramo di un if termina nel suo post-dominatore
+ * immediato, il corpo di un loop quando torna all'intestazione.
+ *
+ * Sia la generazione sia la raccolta delle variabili usano una lista di lavoro esplicita,
+ * quindi anche diagrammi di migliaia di blocchi non consumano lo stack Java; il codice
+ * viene scritto riga per riga su un {@link Writer}.
+ *
+ * Il generatore lavora solo su {@link FlowchartProgram}: i grafi vengono compilati quando
+ * il generatore viene creato (o dal chiamante), quindi la generazione può avvenire su un
+ * altro thread mentre l'utente modifica il diagramma.
+ */
+public class FlowchartToCGenerator {
+
+    // Dichiarazione di array ("int a[n]") ed elemento di array ("a[i]")
+    private static final java.util.regex.Pattern ARRAY_DECLARATION =
+        java.util.regex.Pattern.compile("^(int|double)\\s+([A-Za-z_]\\w*)\\s*\\[(.+)\\]$");
+    private static final java.util.regex.Pattern ARRAY_ELEMENT =
+        java.util.regex.Pattern.compile("^([A-Za-z_]\\w*)\\s*\\[.+\\]$");
+
+    private final FlowchartProgram mainProgram;
+    private final boolean complete;            // Il main ha sia Start sia End
+    private Writer out;
+    private int indentLevel;
+    private FlowchartProgram program;          // Grafo corrente compilato (main o funzione)
+    private ControlFlowAnalysis analysis;      // Dominatori e loop del grafo corrente
+    private boolean[] emitted;                 // Blocchi già generati
+    private boolean[] openDoWhile;             // Corpi di do-while già aperti
+    private final Deque<Task> pending;         // Lavoro in attesa di generateBody (una pila)
+    private FunctionRegistry functionRegistry;  // For accessing function definitions
+    private Map<String, String> variableTypes;  // Track variable types (varName -> type)
+    private Map<String, String> arrayTypes;     // Tipo degli elementi degli array dichiarati nei blocchi
+
+    public FlowchartToCGenerator(mxGraph graph, Object startCell, Object endCell) {
+        this(graph, startCell, endCell, null);
+    }
+
+    public FlowchartToCGenerator(mxGraph graph, Object startCell, Object endCell, FunctionRegistry functionRegistry) {
+        this(FlowchartProgram.compile(graph.getModel(), startCell, endCell), startCell != null && endCell != null,
+            functionRegistry);
+    }
+
+    /**
+     * Creates a generator for an already compiled main program. The functions of the
+     * registry are compiled when generated, unless their code is passed to {@link #generateCode(Map)}.
+     */
+    public FlowchartToCGenerator(FlowchartProgram mainProgram, FunctionRegistry functionRegistry) {
+        this(mainProgram, mainProgram.getStartIndex() != FlowchartProgram.NONE, functionRegistry);
+    }
+
+    private FlowchartToCGenerator(FlowchartProgram mainProgram, boolean complete, FunctionRegistry functionRegistry) {
+        this.mainProgram = mainProgram;
+        this.complete = complete;
+        this.functionRegistry = functionRegistry;
+        this.pending = new ArrayDeque<>();
+        this.indentLevel = 0;
+        this.variableTypes = new HashMap<>();
+        this.arrayTypes = new HashMap<>();
+    }
+
+    /**
+     * Genera il codice C-like dal flowchart
+     */
+    public String generateCode() {
+        return generateCode(null);
+    }
+
+    /**
+     * Genera il codice C-like riusando il codice già generato delle funzioni.
+     *
+     * @param functionCode Codice delle funzioni per nome (da {@link #generateFunctionCode});
+     *                     le funzioni assenti vengono generate. Può essere null.
+     */
+    public String generateCode(Map<String, String> functionCode) {
+        StringWriter writer = new StringWriter();
+        try {
+            generateCode(functionCode, writer);
+        } catch (IOException e) {
+            // StringWriter non lancia IOException
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Scrive il codice C-like sul writer man mano che viene generato, senza costruirlo
+     * prima in memoria. Il writer non viene chiuso.
+     *
+     * @param functionCode Codice già generato delle funzioni per nome; può essere null
+     */
+    public void generateCode(Map<String, String> functionCode, Writer writer) throws IOException {
+        out = writer;
+        indentLevel = 0;
+        try {
+            writeProgram(functionCode);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            out = null;
+        }
+    }
+
+    private void writeProgram(Map<String, String> functionCode) {
+
+        // Verifica che abbiamo Start e End
+        if (!complete) {
+            appendLine("// Flowchart incompleto: manca Start o End");
+            return;
+        }
+
+        // Collect variable types from the flowchart first (needed to detect used functions)
+        variableTypes.clear();
+        arrayTypes.clear();
+        Set<String> usedFunctions = new HashSet<>();
+        program = mainProgram;
+        collectVariablesAndFunctions(usedFunctions);
+
+        // Header del programma - include solo gli header necessari
+        appendLine("#include <stdio.h>");
+        appendLine("#include <stdlib.h>");
+
+        // Include header opzionali solo se necessario
+        if (needsStringHeader(usedFunctions)) {
+            appendLine("#include <string.h>");
+        }
+        if (needsMathHeader(usedFunctions)) {
+            appendLine("#include <math.h>");
+        }
+        if (needsTimeHeader(usedFunctions)) {
+            appendLine("#include <time.h>");
+        }
+        appendLine("");
+
+        // Genera le funzioni definite (se presenti)
+        if (functionRegistry != null) {
+            Map<String, FunctionDefinition> functions = functionRegistry.getFunctions();
+            if (functions != null && !functions.isEmpty()) {
+                for (Map.Entry<String, FunctionDefinition> entry : functions.entrySet()) {
+                    String cached = functionCode != null ? functionCode.get(entry.getKey()) : null;
+                    if (cached != null) {
+                        write(cached);
+                    } else {
+                        generateFunction(entry.getKey(), entry.getValue(), FlowchartProgram.compile(entry.getValue()));
+                    }
+                    appendLine("");
+                }
+            }
+        }
+
+        // Main function
+        program = mainProgram;
+        appendLine("int main() {");
+        indentLevel++;
+
+        // Declare all variables at the beginning
+        for (Map.Entry<String, String> entry : variableTypes.entrySet()) {
+            appendLine(entry.getValue() + " " + entry.getKey() + ";");
+        }
+
+        if (!variableTypes.isEmpty()) {
+            appendLine("");  // Empty line after declarations
+        }
+
+        // Genera il corpo del main
+        try {
+            generateBody();
+        } catch (UncheckedIOException e) {
+            throw e;
+        } catch (Exception e) {
+            appendLine("// Errore durante la generazione: " + e.getMessage());
+        }
+
+        // Footer del programma
+        indentLevel--;
+        appendLine("    return 0;");
+        appendLine("}");
+    }
+
+    /**
+     * Lavoro in attesa di {@link #generateBody}: una regione da generare oppure una riga
+     * di chiusura già pronta, ciascuna con la sua indentazione.
+     */
+    private static final class Task {
+        final int index;     // Primo blocco della regione (per le righe non usato)
+        final int stop;      // Blocco che chiude la regione, escluso
+        final int indent;
+        final String line;   // Riga da scrivere, null per una regione
+
+        private Task(int index, int stop, int indent, String line) {
+            this.index = index;
+            this.stop = stop;
+            this.indent = indent;
+            this.line = line;
+        }
+
+        static Task region(int index, int stop, int indent) {
+            return new Task(index, stop, indent, null);
+        }
+
+        static Task line(String line, int indent) {
+            return new Task(FlowchartProgram.NONE, FlowchartProgram.NONE, indent, line);
+        }
+    }
+
+    /**
+     * Genera il corpo del grafo corrente (main o funzione) come codice strutturato.
+     * Il grafo viene analizzato una volta; ogni blocco viene poi emesso una sola
+     * volta, seguendo i dominatori per gli if e i loop annidati per i cicli.
+     */
+    private void generateBody() {
+        analysis = ControlFlowAnalysis.analyze(program);
+        emitted = new boolean[program.size()];
+        openDoWhile = new boolean[program.size()];
+
+        int bodyIndent = indentLevel;
+        pending.clear();
+        pending.push(Task.region(program.getStartIndex(), FlowchartProgram.NONE, bodyIndent));
+        try {
+            while (!pending.isEmpty()) {
+                Task task = pending.pop();
+                indentLevel = task.indent;
+                if (task.line != null) {
+                    appendLine(task.line);
+                } else {
+                    generateRegion(task.index, task.stop);
+                }
+            }
+        } finally {
+            indentLevel = bodyIndent;
+        }
+    }
+
+    /**
+     * Genera i blocchi da {@code index} fino a {@code stop} (escluso), alla fine del
+     * programma o a un blocco già generato. Una struttura (if, loop) apre il suo blocco
+     * e mette in {@link #pending} i rami, la chiusura e il seguito, in ordine inverso.
+     */
+    private void generateRegion(int index, int stop) {
+        while (index != FlowchartProgram.NONE && index != stop && index != program.getEndIndex()) {
+            if (emitted[index]) {
+                return;
+            }
+
+            // Inizio del corpo di un do-while: la condizione è in fondo al loop
+            int doWhile = findDoWhileLatch(index);
+            if (doWhile != FlowchartProgram.NONE) {
+                openDoWhile[index] = true;
+                emitted[doWhile] = true;
+                appendLine("do {");
+                pending.push(Task.region(program.getFalseNext(doWhile), stop, indentLevel));
+                pending.push(Task.line("} while (" + program.getText(doWhile).trim() + ");", indentLevel));
+                pending.push(Task.region(index, doWhile, indentLevel + 1));
+                return;
+            }
+
+            emitted[index] = true;
+            String value = program.getText(index);
+
+            switch (program.getOpcode(index)) {
+                case FlowchartProgram.OP_START:
+                case FlowchartProgram.OP_MERGE:
+                    // Start e merge point non generano codice
+                    index = program.getNext(index);
+                    break;
+
+                case FlowchartProgram.OP_ASSIGNMENT:
+                    generateAssignment(value);
+                    index = program.getNext(index);
+                    break;
+
+                case FlowchartProgram.OP_INPUT:
+                    generateInput(value);
+                    index = program.getNext(index);
+                    break;
+
+                case FlowchartProgram.OP_OUTPUT:
+                    generateOutput(value);
+                    index = program.getNext(index);
+                    break;
+
+                case FlowchartProgram.OP_FUNCTION_CALL:
+                    generateFunctionCall(value);
+                    index = program.getNext(index);
+                    break;
+
+                case FlowchartProgram.OP_CONDITIONAL:
+                    generateConditional(index, value, stop);
+                    return;
+
+                case FlowchartProgram.OP_LOOP:
+                    generateLoop(index, "while (" + value.trim() + ") {", stop);
+                    return;
+
+                case FlowchartProgram.OP_FOR_LOOP:
+                    // Il testo è nel formato: "i = 0; i < n; i = i + 1"
+                    generateLoop(index, "for (" + value.trim() + ") {", stop);
+                    return;
+
+                default: {
+                    // Blocco sconosciuto - DEBUG: mostra lo style per capire il problema
+                    String style = program.getUnknownStyle(index);
+                    String debugInfo = value;
+                    if (style != null && !style.isEmpty()) {
+                        debugInfo = value + " [style: " + style + "]";
+                    }
+                    appendLine("// Blocco sconosciuto: " + debugInfo);
+                    index = program.getNext(index);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Genera codice per un assignment (supporta multiple istruzioni separate da newline)
+     */
+    private void generateAssignment(String value) {
+        // Supporto per multiple istruzioni separate da newline
+        String[] statements = value.split("\n");
+        for (String statement : statements) {
+            String cleanValue = statement.trim();
+            if (cleanValue.isEmpty()) {
+                continue; // Salta righe vuote
+            }
+            java.util.regex.Matcher declaration = ARRAY_DECLARATION.matcher(cleanValue);
+            if (declaration.matches()) {
+                generateArrayDeclaration(declaration.group(1), declaration.group(2), declaration.group(3).trim());
+                continue;
+            }
+            if (!cleanValue.endsWith(";")) {
+                cleanValue += ";";
+            }
+            appendLine(cleanValue);
+        }
+    }
+
+    /**
+     * Dichiara un array azzerato come nell'interprete: con una lunghezza costante
+     * basta l'inizializzatore, con una lunghezza variabile serve memset.
+     */
+    private void generateArrayDeclaration(String type, String name, String length) {
+        if (length.matches("\\d+")) {
+            appendLine(type + " " + name + "[" + length + "] = {0};");
+        } else {
+            appendLine(type + " " + name + "[" + length + "];");
+            appendLine("memset(" + name + ", 0, sizeof(" + name + "));");
+        }
+    }
+
+    /**
+     * Type of a variable or of an array element ("a[i]"), int if unknown.
+     */
+    private String typeOfTarget(String target) {
+        java.util.regex.Matcher element = ARRAY_ELEMENT.matcher(target);
+        if (element.matches()) {
+            return arrayTypes.getOrDefault(element.group(1), "int");
+        }
+        return variableTypes.getOrDefault(target, "int");
+    }
+
+    /**
+     * Genera codice per input
+     */
+    private void generateInput(String value) {
+        // Rimuovi eventuale prefisso "I:" o "I: "; più destinazioni sono separate da virgole
+        String targets = value.trim().replaceFirst("^I:\\s*", "");
+        for (String target : FlowchartProgram.splitInputTargets(targets)) {
+            String varName = target.trim();
+            if (varName.isEmpty()) {
+                continue;
+            }
+
+            // Determina il formato in base al tipo della variabile (o dell'elemento)
+            String varType = typeOfTarget(varName);
+            String scanfFormat;
+
+            if (varType.equals("char*") || varType.startsWith("char[")) {
+                scanfFormat = "%s";
+            } else if (varType.equals("double")) {
+                scanfFormat = "%lf";
+            } else {
+                scanfFormat = "%d";
+            }
+
+            appendLine("scanf(\"" + scanfFormat + "\", &" + varName + ");");
+        }
+    }
+
+    /**
+     * Genera codice per output
+     */
+    private void generateOutput(String value) {
+        String outputValue = value.trim();
+        // Rimuovi eventuale prefisso "O:" o "O: "
+        outputValue = outputValue.replaceFirst("^O:\\s*", "");
+
+        // Se è una stringa letterale (tra virgolette)
+        if (outputValue.startsWith("\"") && outputValue.endsWith("\"")) {
+            appendLine("printf(" + outputValue + ");");
+        } else {
+            // È una variabile o espressione - determina il formato
+            String format = "%d\\n";  // default int
+
+            // Se è una singola variabile o un elemento di array, controlla il suo tipo
+            if (outputValue.matches("[a-zA-Z_][a-zA-Z0-9_]*") || ARRAY_ELEMENT.matcher(outputValue).matches()) {
+                String varType = typeOfTarget(outputValue);
+                if (varType != null) {
+                    if (varType.equals("char*") || varType.startsWith("char[")) {
+                        format = "%s\\n";
+                    } else if (varType.equals("double")) {
+                        format = "%lf\\n";
+                    }
+                }
+            }
+
+            appendLine("printf(\"" + format + "\", " + outputValue + ");");
+        }
+    }
+
+    /**
+     * Genera codice per un blocco condizionale (IF): i rami terminano nel punto in cui
+     * si ricongiungono, cioè il suo post-dominatore immediato, da cui prosegue la regione
+     */
+    private void generateConditional(int index, String condition, int stop) {
+        // Rimuovi il "?" finale se presente
+        String cleanCondition = condition.trim();
+        if (cleanCondition.endsWith("?")) {
+            cleanCondition = cleanCondition.substring(0, cleanCondition.length() - 1).trim();
+        }
+
+        int join = analysis.getImmediatePostDominator(index);
+        int trueBranch = program.getNext(index);
+        int falseBranch = program.getFalseNext(index);
+
+        appendLine("if (" + cleanCondition + ") {");
+        pending.push(Task.region(join, stop, indentLevel));
+        pending.push(Task.line("}", indentLevel));
+        // Un ramo No che porta direttamente al merge non ha bisogno di else
+        if (falseBranch != join && falseBranch != FlowchartProgram.NONE) {
+            pending.push(Task.region(falseBranch, join, indentLevel + 1));
+            pending.push(Task.line("} else {", indentLevel));
+        }
+        pending.push(Task.region(trueBranch, join, indentLevel + 1));
+    }
+
+    /**
+     * Genera un while o un for: il corpo (ramo Yes) termina quando torna all'intestazione,
+     * poi la regione prosegue dal ramo No, cioè dall'uscita dal loop
+     */
+    private void generateLoop(int index, String header, int stop) {
+        appendLine(header);
+        pending.push(Task.region(program.getFalseNext(index), stop, indentLevel));
+        pending.push(Task.line("}", indentLevel));
+        pending.push(Task.region(program.getNext(index), index, indentLevel + 1));
+    }
+
+    /**
+     * Se il blocco è l'inizio del corpo di un do-while non ancora aperto, restituisce il
+     * blocco DO_WHILE che con il ramo Yes torna a lui; altrimenti NONE
+     */
+    private int findDoWhileLatch(int index) {
+        if (openDoWhile[index] || !analysis.isLoopHeader(index)) {
+            return FlowchartProgram.NONE;
+        }
+        int opcode = program.getOpcode(index);
+        if (opcode == FlowchartProgram.OP_LOOP || opcode == FlowchartProgram.OP_FOR_LOOP) {
+            return FlowchartProgram.NONE;
+        }
+        for (int latch : analysis.getLatches(index)) {
+            if (program.getOpcode(latch) == FlowchartProgram.OP_DO_WHILE && program.getNext(latch) == index) {
+                return latch;
+            }
+        }
+        return FlowchartProgram.NONE;
+    }
+
+    /**
+     * Aggiunge una riga di codice con indentazione
+     */
+    private void appendLine(String line) {
+        for (int i = 0; i < indentLevel; i++) {
+            write("    ");
+        }
+        write(line);
+        write("\n");
+    }
+
+    private void write(String text) {
+        try {
+            out.write(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // ===== FUNCTION GENERATION =====
+
+    /**
+     * Genera il codice C di una sola funzione, indipendente dal resto del programma
+     */
+    public String generateFunctionCode(String functionName, FunctionDefinition funcDef) {
+        return generateFunctionCode(functionName, funcDef, FlowchartProgram.compile(funcDef));
+    }
+
+    /**
+     * Genera il codice C di una funzione già compilata (null se il suo grafo non ha Start)
+     */
+    public String generateFunctionCode(String functionName, FunctionDefinition funcDef, FlowchartProgram funcProgram) {
+        Writer savedOut = out;
+        int savedIndentLevel = indentLevel;
+        StringWriter writer = new StringWriter();
+        out = writer;
+        indentLevel = 0;
+        try {
+            generateFunction(functionName, funcDef, funcProgram);
+            return writer.toString();
+        } finally {
+            out = savedOut;
+            indentLevel = savedIndentLevel;
+        }
+    }
+
+    /**
+     * Genera il codice C per una funzione definita
+     */
+    private void generateFunction(String functionName, FunctionDefinition funcDef, FlowchartProgram funcProgram) {
+        if (funcProgram == null || funcProgram.getEndIndex() == FlowchartProgram.NONE) {
+            appendLine("// Funzione " + functionName + " incompleta");
+            return;
+        }
+
+        // Get formal parameters from FunctionDefinition
+        List<FunctionDefinition.Parameter> formalParams = funcDef.getFormalParameters();
+        if (formalParams == null) {
+            formalParams = new ArrayList<>();
+        }
+
+        // Get return type from FunctionDefinition
+        String returnType = funcDef.getReturnType();
+        if (returnType == null || returnType.isEmpty()) {
+            returnType = "void";
+        }
+
+        // Convert return type to C type
+        String cReturnType = convertToCType(returnType);
+
+        // Generate function signature
+        StringBuilder signature = new StringBuilder(cReturnType);
+        signature.append(" ").append(functionName).append("(");
+
+        if (formalParams.isEmpty()) {
+            signature.append("void");
+        } else {
+            for (int i = 0; i < formalParams.size(); i++) {
+                if (i > 0) signature.append(", ");
+                FunctionDefinition.Parameter param = formalParams.get(i);
+                String cType = convertToCType(param.getType());
+                signature.append(cType).append(" ").append(param.getName());
+            }
+        }
+        signature.append(") {");
+
+        appendLine(signature.toString());
+        indentLevel++;
+
+        // Save current state
+        FlowchartProgram savedProgram = this.program;
+        ControlFlowAnalysis savedAnalysis = this.analysis;
+        boolean[] savedEmitted = this.emitted;
+        boolean[] savedOpenDoWhile = this.openDoWhile;
+        Map<String, String> savedVariableTypes = this.variableTypes;
+        Map<String, String> savedArrayTypes = this.arrayTypes;
+
+        // Switch to function graph
+        this.program = funcProgram;
+        this.variableTypes = new HashMap<>();
+        this.arrayTypes = new HashMap<>();
+
+        // Collect variable types from function
+        collectVariablesAndFunctions(null);
+
+        // Remove parameters from variable declarations (they're already in signature)
+        for (FunctionDefinition.Parameter param : formalParams) {
+            variableTypes.remove(param.getName());
+        }
+
+        // Declare return variable if not void
+        String returnVarName = funcDef.getReturnVariableName();
+        if (returnVarName != null && !returnVarName.isEmpty() && !"void".equals(returnType)) {
+            variableTypes.put(returnVarName, cReturnType);
+        }
+
+        // Declare local variables (including return variable if present)
+        for (Map.Entry<String, String> entry : variableTypes.entrySet()) {
+            appendLine(entry.getValue() + " " + entry.getKey() + ";");
+        }
+
+        if (!variableTypes.isEmpty()) {
+            appendLine("");  // Empty line after declarations
+        }
+
+        // Generate function body
+        try {
+            generateBody();
+        } catch (UncheckedIOException e) {
+            throw e;
+        } catch (Exception e) {
+            appendLine("// Errore nella generazione della funzione: " + e.getMessage());
+        }
+
+        // Add return statement at the end if not void
+        if (returnVarName != null && !returnVarName.isEmpty() && !"void".equals(returnType)) {
+            appendLine("");
+            appendLine("return " + returnVarName + ";");
+        }
+
+        // Restore state
+        this.program = savedProgram;
+        this.analysis = savedAnalysis;
+        this.emitted = savedEmitted;
+        this.openDoWhile = savedOpenDoWhile;
+        this.variableTypes = savedVariableTypes;
+        this.arrayTypes = savedArrayTypes;
+
+        indentLevel--;
+        appendLine("}");
+    }
+
+    /**
+     * Genera codice per un blocco FUNCTION_CALL
+     */
+    private void generateFunctionCall(String value) {
+        String cleanValue = value.trim();
+        // The value should be in the form: functionName(args) or result = functionName(args)
+        // We just output it as-is with a semicolon
+        if (!cleanValue.endsWith(";")) {
+            cleanValue += ";";
+        }
+        appendLine(cleanValue);
+    }
+
+    // ===== VARIABLE TYPE INFERENCE =====
+
+    /**
+     * Collects all variables, their types, and used functions from the current program.
+     * Visits the blocks depth-first in edge order with an explicit stack.
+     *
+     * @param usedFunctions Receives the built-in functions used; null to collect only variables
+     */
+    private void collectVariablesAndFunctions(Set<String> usedFunctions) {
+        if (program.getStartIndex() == FlowchartProgram.NONE) {
+            return;
+        }
+        boolean[] visited = new boolean[program.size()];
+        Deque<Integer> stack = new ArrayDeque<>();
+        stack.push(program.getStartIndex());
+        while (!stack.isEmpty()) {
+            int index = stack.pop();
+            if (index == program.getEndIndex() || visited[index]) {
+                continue;
+            }
+            visited[index] = true;
+            collectFromBlock(program.getOpcode(index), program.getText(index), usedFunctions);
+
+            // Successori in ordine inverso, così vengono visitati nell'ordine degli archi
+            for (int k = program.getSuccessorCount(index) - 1; k >= 0; k--) {
+                stack.push(program.getSuccessor(index, k));
+            }
+        }
+    }
+
+    /**
+     * Collects the variables (and the used functions, if requested) of a single block
+     */
+    private void collectFromBlock(int opcode, String value, Set<String> usedFunctions) {
+        // Process assignments to infer types and collect function calls
+        if (opcode == FlowchartProgram.OP_ASSIGNMENT) {
+            processAssignmentForTypes(value, usedFunctions);
+            if (usedFunctions != null) {
+                collectFunctionsFromExpression(value, usedFunctions);
+            }
+        } else if (opcode == FlowchartProgram.OP_INPUT) {
+            // INPUT blocks create int variables by default (array elements are declared by their array)
+            String targets = value.trim().replaceFirst("^I:\\s*", "");
+            for (String target : FlowchartProgram.splitInputTargets(targets)) {
+                String varName = target.trim();
+                if (!varName.isEmpty() && !ARRAY_ELEMENT.matcher(varName).matches()
+                        && !variableTypes.containsKey(varName)) {
+                    variableTypes.put(varName, "int");
+                }
+            }
+        } else if (opcode == FlowchartProgram.OP_FUNCTION_CALL) {
+            if (usedFunctions != null) {
+                collectFunctionsFromExpression(value, usedFunctions);
+            }
+            // FUNCTION_CALL blocks may assign return value to a variable
+            // Format: result = functionName(args) or just functionName(args)
+            if (value.contains("=")) {
+                int equalsIndex = value.indexOf('=');
+                String varName = value.substring(0, equalsIndex).trim();
+                if (!varName.isEmpty() && !ARRAY_ELEMENT.matcher(varName).matches()
+                        && !variableTypes.containsKey(varName)) {
+                    // Get function name to determine return type
+                    String funcCallExpr = value.substring(equalsIndex + 1).trim();
+                    int parenIndex = funcCallExpr.indexOf('(');
+                    if (parenIndex > 0) {
+                        String functionName = funcCallExpr.substring(0, parenIndex).trim();
+
+                        // Check if it's a built-in function first
+                        String builtinType = getBuiltinFunctionReturnType(functionName);
+                        if (builtinType != null) {
+                            variableTypes.put(varName, builtinType);
+                        } else {
+                            // Get return type from user-defined function
+                            if (functionRegistry != null) {
+                                FunctionDefinition funcDef = functionRegistry.getFunction(functionName);
+                                if (funcDef != null) {
+                                    String returnType = funcDef.getReturnType();
+                                    if (returnType != null && !"void".equals(returnType)) {
+                                        String cType = convertToCType(returnType);
+                                        variableTypes.put(varName, cType);
+                                    }
+                                }
+                            }
+                            // Default to int if function not found
+                            if (!variableTypes.containsKey(varName)) {
+                                variableTypes.put(varName, "int");
+                            }
+                        }
+                    }
+                }
+            }
+        } else if (opcode == FlowchartProgram.OP_CONDITIONAL || opcode == FlowchartProgram.OP_LOOP ||
+                   opcode == FlowchartProgram.OP_FOR_LOOP || opcode == FlowchartProgram.OP_DO_WHILE) {
+            // Collect functions used in conditions
+            if (usedFunctions != null) {
+                collectFunctionsFromExpression(value, usedFunctions);
+            }
+            // The for initialization declares its counter, if no other block does
+            if (opcode == FlowchartProgram.OP_FOR_LOOP && value.contains(";")) {
+                processAssignmentForTypes(value.substring(0, value.indexOf(';')), null);
+            }
+        }
+    }
+
+    /**
+     * Process an assignment to infer variable type (supporta multiple istruzioni)
+     *
+     * @param usedFunctions Receives memset for arrays of variable length; may be null
+     */
+    private void processAssignmentForTypes(String assignment, Set<String> usedFunctions) {
+        // Supporto per multiple istruzioni separate da newline
+        String[] statements = assignment.split("\n");
+        for (String statement : statements) {
+            statement = statement.trim();
+            if (statement.isEmpty()) {
+                continue; // Salta righe vuote
+            }
+
+            // Gli array vengono dichiarati nel punto del blocco, non all'inizio
+            java.util.regex.Matcher declaration = ARRAY_DECLARATION.matcher(statement);
+            if (declaration.matches()) {
+                arrayTypes.put(declaration.group(2), declaration.group(1));
+                if (usedFunctions != null && !declaration.group(3).trim().matches("\\d+")) {
+                    usedFunctions.add("memset");
+                }
+                continue;
+            }
+
+            // Parse: varName = expression
+            int equalsIndex = statement.indexOf('=');
+            if (equalsIndex == -1) continue;
+
+            String varName = statement.substring(0, equalsIndex).trim();
+            String expression = statement.substring(equalsIndex + 1).trim();
+
+            // Skip if it's a function call (will be handled separately) or an array element
+            if (varName.isEmpty() || ARRAY_ELEMENT.matcher(varName).matches()) continue;
+
+            // Infer type from expression
+            String type = inferType(expression);
+
+            // Only set type if not already set (first assignment wins)
+            if (!variableTypes.containsKey(varName)) {
+                variableTypes.put(varName, type);
+            }
+        }
+    }
+
+    /**
+     * Infers C type from an expression
+     */
+    private String inferType(String expression) {
+        expression = expression.trim();
+
+        // String literal
+        if (expression.startsWith("\"") && expression.endsWith("\"")) {
+            return "char*";
+        }
+
+        // Floating point number
+        if (expression.matches("-?\\d+\\.\\d+.*")) {
+            return "double";
+        }
+
+        // Integer
+        if (expression.matches("-?\\d+.*")) {
+            return "int";
+        }
+
+        // Function call or expression with existing variables
+        // Default to int
+        return "int";
+    }
+
+    /**
+     * Converts a type name (from dialog) to C type
+     */
+    private String convertToCType(String type) {
+        if (type == null || type.isEmpty()) {
+            return "int";
+        }
+
+        switch (type.toLowerCase()) {
+            case "string":
+                return "char*";
+            case "int":
+                return "int";
+            case "double":
+                return "double";
+            case "void":
+                return "void";
+            default:
+                return "int";
+        }
+    }
+
+    /**
+     * Returns the C return type for built-in functions, or null if not a built-in function.
+     */
+    private String getBuiltinFunctionReturnType(String functionName) {
+        switch (functionName) {
+            // Funzioni matematiche - tutte ritornano double
+            case "sqrt":
+            case "pow":
+            case "exp":
+            case "log":
+            case "log10":
+            case "sin":
+            case "cos":
+            case "tan":
+            case "asin":
+            case "acos":
+            case "atan":
+            case "floor":
+            case "ceil":
+            case "abs":
+            case "fabs":
+                return "double";
+
+            // Funzioni per stringhe
+            case "strlen":
+            case "strcmp":
+            case "strncmp":
+            case "strchr":
+            case "strstr":
+                return "int";
+
+            case "strncpy":
+            case "strcat":
+            case "strncat":
+                return "char*";
+
+            // Funzioni per numeri casuali
+            case "rand":
+                return "int";
+
+            // Funzione tempo
+            case "time":
+                return "int";  // time_t is typically int or long
+
+            default:
+                return null; // Not a built-in function
+        }
+    }
+
+    /**
+     * Collects function names used in an expression
+     */
+    private void collectFunctionsFromExpression(String expression, Set<String> usedFunctions) {
+        // Match function calls: functionName(...)
+        java.util.regex.Pattern pattern = java.util.regex.Pattern.compile("\\b([a-zA-Z_][a-zA-Z0-9_]*)\\s*\\(");
+        java.util.regex.Matcher matcher = pattern.matcher(expression);
+        while (matcher.find()) {
+            String funcName = matcher.group(1);
+            // Only track built-in functions
+            if (getBuiltinFunctionReturnType(funcName) != null) {
+                usedFunctions.add(funcName);
+            }
+        }
+    }
+
+    /**
+     * Determines if string.h header is needed
+     */
+    private boolean needsStringHeader(Set<String> usedFunctions) {
+        Set<String> stringFunctions = new HashSet<>(Arrays.asList(
+            "strlen", "strncpy", "strcat", "strncat", "strcmp", "strncmp", "strchr", "strstr", "memset"
+        ));
+        for (String func : usedFunctions) {
+            if (stringFunctions.contains(func)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determines if math.h header is needed
+     */
+    private boolean needsMathHeader(Set<String> usedFunctions) {
+        Set<String> mathFunctions = new HashSet<>(Arrays.asList(
+            "sqrt", "pow", "exp", "log", "log10",
+            "sin", "cos", "tan", "asin", "acos", "atan",
+            "floor", "ceil", "abs", "fabs"
+        ));
+        for (String func : usedFunctions) {
+            if (mathFunctions.contains(func)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determines if time.h header is needed
+     */
+    private boolean needsTimeHeader(Set<String> usedFunctions) {
+        return usedFunctions.contains("time");
+    }
+}
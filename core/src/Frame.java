@@ -0,0 +1,272 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Spazio delle variabili di un programma in esecuzione (principale o funzione).
+ * I valori sono tenuti in array paralleli indicizzati per slot: interi e
+ * decimali restano primitivi, le stringhe e gli array (int[] o double[])
+ * stanno nell'array degli oggetti.
+ * Il frame ricorda anche quali slot sono stati modificati, per notificare
+ * solo le differenze all'interfaccia. Per gli array ricorda i singoli elementi
+ * scritti, così l'interfaccia non deve ricopiare l'intero array ad ogni passo.
+ */
+public final class Frame {
+
+    private final SymbolTable symbols;
+    private final byte[] kinds;       // Tipo del valore (costanti di Value), NONE se non assegnata
+    private final int[] ints;
+    private final double[] doubles;
+    private final Object[] objects;
+    private final boolean[] changed;
+    private final int[] changedSlots;
+    private int changedCount;
+
+    // Elementi di array scritti: coppie (slot, indice). Oltre il limite non vengono più
+    // registrati e chi li legge deve ricopiare gli array del frame
+    private static final int MAX_ELEMENT_CHANGES = 4096;
+    private int[] elementSlots = new int[0];
+    private int[] elementIndexes = new int[0];
+    private int elementCount;
+    private boolean elementChangesLost;
+
+    public Frame(SymbolTable symbols) {
+        int size = symbols.size();
+        this.symbols = symbols;
+        this.kinds = new byte[size];
+        this.ints = new int[size];
+        this.doubles = new double[size];
+        this.objects = new Object[size];
+        this.changed = new boolean[size];
+        this.changedSlots = new int[size];
+    }
+
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    public boolean isSet(int slot) {
+        return kinds[slot] != Value.NONE;
+    }
+
+    /**
+     * Copies a variable into the register.
+     */
+    public void load(int slot, Value out) {
+        switch (kinds[slot]) {
+            case Value.INT: out.setInt(ints[slot]); break;
+            case Value.DOUBLE: out.setDouble(doubles[slot]); break;
+            case Value.STRING: out.setString((String) objects[slot]); break;
+            case Value.INT_ARRAY: out.setArray((int[]) objects[slot]); break;
+            case Value.DOUBLE_ARRAY: out.setArray((double[]) objects[slot]); break;
+            default: out.clear(); break;
+        }
+    }
+
+    /**
+     * Stores the register into a variable.
+     */
+    public void store(int slot, Value value) {
+        markChanged(slot);
+        int type = value.getType();
+        kinds[slot] = (byte) type;
+        switch (type) {
+            case Value.INT: ints[slot] = value.intValue(); objects[slot] = null; break;
+            case Value.DOUBLE: doubles[slot] = value.doubleValue(); objects[slot] = null; break;
+            case Value.STRING: objects[slot] = value.stringValue(); break;
+            case Value.INT_ARRAY:
+            case Value.DOUBLE_ARRAY: objects[slot] = value.toObject(); break;
+            default: objects[slot] = null; break;
+        }
+    }
+
+    /**
+     * Stores the register into an element of an array variable, converting it to the element type.
+     * The register is left holding the converted value.
+     */
+    public void storeElement(int slot, int index, Value value) {
+        Object array = objects[slot];
+        int length;
+        if (kinds[slot] == Value.INT_ARRAY) {
+            length = ((int[]) array).length;
+        } else if (kinds[slot] == Value.DOUBLE_ARRAY) {
+            length = ((double[]) array).length;
+        } else {
+            throw new RuntimeException("Variable '" + symbols.getName(slot) + "' is not an array");
+        }
+        if (index < 0 || index >= length) {
+            throw new RuntimeException("Index " + index + " out of bounds for array '" +
+                symbols.getName(slot) + "' of length " + length);
+        }
+        if (!value.isNumber()) {
+            throw new RuntimeException("Cannot store '" + value + "' in array '" + symbols.getName(slot) + "'");
+        }
+        // Come in C: un decimale assegnato a un elemento intero viene troncato
+        if (kinds[slot] == Value.INT_ARRAY) {
+            int element = value.getType() == Value.INT ? value.intValue() : (int) value.doubleValue();
+            ((int[]) array)[index] = element;
+            value.setInt(element);
+        } else {
+            double element = value.doubleValue();
+            ((double[]) array)[index] = element;
+            value.setDouble(element);
+        }
+        markElementChanged(slot, index);
+    }
+
+    /**
+     * Stores a boxed value (Integer, Double or String) or an int[] or double[] array.
+     */
+    public void set(int slot, Object value) {
+        markChanged(slot);
+        if (value instanceof Integer) {
+            kinds[slot] = Value.INT;
+            ints[slot] = (Integer) value;
+            objects[slot] = null;
+        } else if (value instanceof int[]) {
+            kinds[slot] = Value.INT_ARRAY;
+            objects[slot] = value;
+        } else if (value instanceof double[]) {
+            kinds[slot] = Value.DOUBLE_ARRAY;
+            objects[slot] = value;
+        } else if (value instanceof Number) {
+            kinds[slot] = Value.DOUBLE;
+            doubles[slot] = ((Number) value).doubleValue();
+            objects[slot] = null;
+        } else if (value != null) {
+            kinds[slot] = Value.STRING;
+            objects[slot] = value.toString();
+        } else {
+            kinds[slot] = Value.NONE;
+            objects[slot] = null;
+        }
+    }
+
+    /**
+     * Gets a variable as a boxed value (an array as it is), or null if it has not been assigned.
+     */
+    public Object get(int slot) {
+        switch (kinds[slot]) {
+            case Value.INT: return ints[slot];
+            case Value.DOUBLE: return doubles[slot];
+            case Value.STRING:
+            case Value.INT_ARRAY:
+            case Value.DOUBLE_ARRAY: return objects[slot];
+            default: return null;
+        }
+    }
+
+    /**
+     * Sets a variable by name; returns false if the name has no slot in this frame.
+     */
+    public boolean set(String name, Object value) {
+        int slot = symbols.slotOf(name);
+        if (slot == SymbolTable.UNDEFINED) {
+            return false;
+        }
+        set(slot, value);
+        return true;
+    }
+
+    /**
+     * Gets a variable by name, or null if it is unknown or not assigned.
+     */
+    public Object get(String name) {
+        int slot = symbols.slotOf(name);
+        return slot != SymbolTable.UNDEFINED ? get(slot) : null;
+    }
+
+    private void markChanged(int slot) {
+        if (!changed[slot]) {
+            changed[slot] = true;
+            changedSlots[changedCount++] = slot;
+        }
+    }
+
+    private void markElementChanged(int slot, int index) {
+        if (elementCount == MAX_ELEMENT_CHANGES) {
+            elementChangesLost = true;
+            return;
+        }
+        if (elementCount == elementSlots.length) {
+            int capacity = Math.max(8, elementCount * 2);
+            elementSlots = Arrays.copyOf(elementSlots, capacity);
+            elementIndexes = Arrays.copyOf(elementIndexes, capacity);
+        }
+        elementSlots[elementCount] = slot;
+        elementIndexes[elementCount] = index;
+        elementCount++;
+    }
+
+    /**
+     * Number of array element writes recorded since the last {@link #clearElementChanges}.
+     */
+    public int getElementChangeCount() {
+        return elementCount;
+    }
+
+    public int getElementChangeSlot(int i) {
+        return elementSlots[i];
+    }
+
+    public int getElementChangeIndex(int i) {
+        return elementIndexes[i];
+    }
+
+    /**
+     * True if more element writes were made than could be recorded: the arrays of
+     * this frame may differ from what the recorded writes describe.
+     */
+    public boolean hasLostElementChanges() {
+        return elementChangesLost;
+    }
+
+    public void clearElementChanges() {
+        elementCount = 0;
+        elementChangesLost = false;
+    }
+
+    /**
+     * Copies the variables modified since the last call into {@code target} and forgets them.
+     * Arrays are passed by reference: the receiver sees their later changes too.
+     * The array element writes are kept, see {@link #getElementChangeCount}.
+     */
+    public void drainChanges(Map<String, Object> target) {
+        for (int i = 0; i < changedCount; i++) {
+            int slot = changedSlots[i];
+            changed[slot] = false;
+            target.put(symbols.getName(slot), get(slot));
+        }
+        changedCount = 0;
+    }
+
+    /**
+     * Forgets the modified variables without reporting them.
+     */
+    public void clearChanges() {
+        for (int i = 0; i < changedCount; i++) {
+            changed[changedSlots[i]] = false;
+        }
+        changedCount = 0;
+    }
+
+    /**
+     * Copies the assigned variables into {@code target}, in slot order.
+     */
+    public void copyTo(Map<String, Object> target) {
+        for (int slot = 0; slot < kinds.length; slot++) {
+            if (kinds[slot] != Value.NONE) {
+                target.put(symbols.getName(slot), get(slot));
+            }
+        }
+    }
+
+    /**
+     * Gets the assigned variables as a new map, in slot order.
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        copyTo(map);
+        return map;
+    }
+}
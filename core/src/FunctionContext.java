@@ -1,4 +1,3 @@
-import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -7,7 +6,7 @@ import java.util.Map;
  */
 public class FunctionContext {
     private String functionName;
-    private Map<String, Object> localVariables;
+    private Frame frame;
     private Object returnPoint;
     private String returnVariableName;
 
@@ -17,20 +16,28 @@ public class FunctionContext {
      * @param functionName Nome della funzione
      * @param returnPoint Il blocco a cui tornare dopo la chiamata
      * @param returnVariableName La variabile dove salvare il risultato (null per procedure)
+     * @param frame Le variabili locali della funzione
      */
-    public FunctionContext(String functionName, Object returnPoint, String returnVariableName) {
+    public FunctionContext(String functionName, Object returnPoint, String returnVariableName, Frame frame) {
         this.functionName = functionName;
         this.returnPoint = returnPoint;
         this.returnVariableName = returnVariableName;
-        this.localVariables = new HashMap<>();
+        this.frame = frame;
     }
 
     public String getFunctionName() {
         return functionName;
     }
 
+    public Frame getFrame() {
+        return frame;
+    }
+
+    /**
+     * Gets a copy of the assigned local variables.
+     */
     public Map<String, Object> getLocalVariables() {
-        return localVariables;
+        return frame.toMap();
     }
 
     public Object getReturnPoint() {
@@ -45,20 +52,23 @@ public class FunctionContext {
      * Imposta il valore di una variabile locale.
      */
     public void setLocalVariable(String name, Object value) {
-        localVariables.put(name, value);
+        if (!frame.set(name, value)) {
+            throw new RuntimeException("Variable '" + name + "' is not declared in function '" + functionName + "'");
+        }
     }
 
     /**
      * Ottiene il valore di una variabile locale.
      */
     public Object getLocalVariable(String name) {
-        return localVariables.get(name);
+        return frame.get(name);
     }
 
     /**
      * Verifica se una variabile locale esiste.
      */
     public boolean hasLocalVariable(String name) {
-        return localVariables.containsKey(name);
+        int slot = frame.getSymbols().slotOf(name);
+        return slot != SymbolTable.UNDEFINED && frame.isSet(slot);
     }
 }
@@ -0,0 +1,199 @@
+import com.mxgraph.model.mxGraphModel;
+import com.mxgraph.model.mxIGraphModel;
+import com.mxgraph.view.mxGraph;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Rappresenta la definizione di una funzione nel flowchart.
+ * Ogni funzione ha un proprio diagramma a blocchi con START/END e variabili locali.
+ * Una funzione letta da un {@link ProjectFile} decodifica il suo diagramma al primo accesso.
+ * Il diagramma è un modello JGraphX; l'{@link mxGraph} che lo mostra, il cui costruttore
+ * inizializza AWT, viene creato solo quando l'editor apre la funzione.
+ */
+public class FunctionDefinition {
+
+    /**
+     * Classe interna per rappresentare un parametro formale con nome e tipo
+     */
+    public static class Parameter {
+        private String name;
+        private String type;  // "int", "double", "string"
+
+        public Parameter(String name, String type) {
+            this.name = name;
+            this.type = type;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        @Override
+        public String toString() {
+            return type + " " + name;
+        }
+    }
+
+    private String name;
+    private mxIGraphModel functionModel;
+    private mxGraph functionGraph;  // Creato solo per l'editor
+    private Object startCell;
+    private Object endCell;
+    private List<Parameter> formalParameters;
+    private String returnType;  // "void", "int", "double", "string"
+    private String returnVariableName;  // Nome della variabile di ritorno (null se void)
+    private volatile Supplier<ProjectFile.GraphData> pendingGraph;  // Diagramma letto da file, non ancora decodificato
+
+    public FunctionDefinition(String name) {
+        this.name = name;
+        this.functionModel = new mxGraphModel();
+        this.formalParameters = new ArrayList<>();
+        this.returnType = "void";  // Default to void (procedure)
+    }
+
+    public FunctionDefinition(String name, List<Parameter> formalParameters, String returnType, String returnVariableName) {
+        this(name);
+        if (formalParameters != null) {
+            this.formalParameters = new ArrayList<>(formalParameters);
+        }
+        this.returnType = returnType != null ? returnType : "void";
+        this.returnVariableName = returnVariableName;
+    }
+
+    /**
+     * Function read from a project file: the graph is read from {@code graph} and decoded on first access.
+     */
+    FunctionDefinition(String name, List<Parameter> formalParameters, String returnType, String returnVariableName,
+                       Supplier<ProjectFile.GraphData> graph) {
+        this.name = name;
+        this.formalParameters = formalParameters != null ? new ArrayList<>(formalParameters) : new ArrayList<>();
+        this.returnType = returnType != null ? returnType : "void";
+        this.returnVariableName = returnVariableName;
+        this.pendingGraph = graph;
+    }
+
+    private static mxGraph createGraph(mxIGraphModel model) {
+        mxGraph graph = new mxGraph(model);
+        graph.setAllowDanglingEdges(false);
+        graph.setCellsEditable(false);
+        graph.setConnectableEdges(false);
+        return graph;
+    }
+
+    /**
+     * Builds the model read from the file, once, even if several threads ask for it.
+     */
+    private synchronized void decodePendingGraph() {
+        if (pendingGraph == null) {
+            return;
+        }
+        ProjectFile.GraphData graph = pendingGraph.get();
+        // Solo il modello: niente mxGraph, quindi niente AWT per eseguire la funzione
+        mxGraphModel decoded = new mxGraphModel();
+        graph.decodeInto(decoded);
+        functionModel = decoded;
+        startCell = graph.getStartCell(decoded);
+        endCell = graph.getEndCell(decoded);
+        pendingGraph = null;
+    }
+
+    /**
+     * Graph read from a project file and not decoded yet, or null.
+     */
+    ProjectFile.GraphData getPendingGraph() {
+        Supplier<ProjectFile.GraphData> pending = pendingGraph;
+        return pending != null ? pending.get() : null;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * The graph shown by the editor, created around the function model on the first call.
+     */
+    public synchronized mxGraph getFunctionGraph() {
+        decodePendingGraph();
+        if (functionGraph == null && functionModel != null) {
+            functionGraph = createGraph(functionModel);
+        }
+        return functionGraph;
+    }
+
+    public synchronized void setFunctionGraph(mxGraph functionGraph) {
+        // Il nuovo grafo sostituisce quello letto dal file, che non serve più decodificare
+        this.pendingGraph = null;
+        this.functionGraph = functionGraph;
+        this.functionModel = functionGraph != null ? functionGraph.getModel() : null;
+    }
+
+    /**
+     * The model of the function graph, without creating an {@link mxGraph} (no AWT needed).
+     */
+    public synchronized mxIGraphModel getFunctionModel() {
+        decodePendingGraph();
+        return functionModel;
+    }
+
+    public Object getStartCell() {
+        if (pendingGraph != null) {
+            decodePendingGraph();
+        }
+        return startCell;
+    }
+
+    public void setStartCell(Object startCell) {
+        decodePendingGraph();
+        this.startCell = startCell;
+    }
+
+    public Object getEndCell() {
+        if (pendingGraph != null) {
+            decodePendingGraph();
+        }
+        return endCell;
+    }
+
+    public void setEndCell(Object endCell) {
+        decodePendingGraph();
+        this.endCell = endCell;
+    }
+
+    public List<Parameter> getFormalParameters() {
+        return formalParameters;
+    }
+
+    public void setFormalParameters(List<Parameter> formalParameters) {
+        this.formalParameters = formalParameters != null ? new ArrayList<>(formalParameters) : new ArrayList<>();
+    }
+
+    public void addParameter(String name, String type) {
+        this.formalParameters.add(new Parameter(name, type));
+    }
+
+    public String getReturnType() {
+        return returnType;
+    }
+
+    public void setReturnType(String returnType) {
+        this.returnType = returnType != null ? returnType : "void";
+    }
+
+    public String getReturnVariableName() {
+        return returnVariableName;
+    }
+
+    public void setReturnVariableName(String returnVariableName) {
+        this.returnVariableName = returnVariableName;
+    }
+}
@@ -0,0 +1,37 @@
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Funzioni definite dall'utente, cercate per nome dall'interprete e dal generatore C.
+ * Nell'editor è il pannello del diagramma; da riga di comando sono le funzioni del file caricato.
+ */
+public interface FunctionRegistry {
+
+    /**
+     * Returns the function with the given name, or null if it is not defined.
+     */
+    FunctionDefinition getFunction(String name);
+
+    /**
+     * All the functions, by name.
+     */
+    Map<String, FunctionDefinition> getFunctions();
+
+    /**
+     * A registry over the given functions, e.g. those of a loaded {@link ProjectFile.Project}.
+     */
+    static FunctionRegistry of(Map<String, FunctionDefinition> functions) {
+        Map<String, FunctionDefinition> view = Collections.unmodifiableMap(functions);
+        return new FunctionRegistry() {
+            @Override
+            public FunctionDefinition getFunction(String name) {
+                return view.get(name);
+            }
+
+            @Override
+            public Map<String, FunctionDefinition> getFunctions() {
+                return view;
+            }
+        };
+    }
+}
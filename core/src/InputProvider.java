@@ -0,0 +1,16 @@
+import java.io.IOException;
+
+/**
+ * Sorgente dei valori letti dai blocchi Input.
+ * L'interprete chiede un valore alla volta e lo usa subito, senza mettere
+ * in pausa l'esecuzione: l'implementazione può prenderlo da una coda già
+ * pronta, da uno stream o chiederlo all'utente.
+ */
+public interface InputProvider {
+
+    /**
+     * Returns the value for the given variable, blocking if necessary,
+     * or null if no value is available (end of input or input cancelled).
+     */
+    String nextInput(String variableName) throws IOException;
+}
@@ -0,0 +1,619 @@
+import com.mxgraph.model.mxCell;
+import com.mxgraph.model.mxGeometry;
+import com.mxgraph.model.mxGraphModel;
+import com.mxgraph.model.mxIGraphModel;
+import com.mxgraph.util.mxPoint;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * File di progetto: il diagramma main e tutte le funzioni, con parametri, tipo di ritorno
+ * e diagramma.
+ *
+ * <pre>
+ * &lt;flowchartProject version="1"&gt;
+ *   &lt;mxGraphModel&gt;...&lt;/mxGraphModel&gt;
+ *   &lt;function name="fact" returnType="int" returnVariable="r"&gt;
+ *     &lt;parameter name="n" type="int"/&gt;
+ *     &lt;mxGraphModel&gt;...&lt;/mxGraphModel&gt;
+ *   &lt;/function&gt;
+ * &lt;/flowchartProject&gt;
+ * </pre>
+ *
+ * Ogni mxGraphModel ha lo stesso formato di mxCodec, quindi si leggono anche i file delle
+ * versioni precedenti, che contengono solo il grafo main. Unica differenza: un valore su
+ * più righe è scritto come testo di un elemento {@code value} dentro la cella, perché
+ * XMLStreamWriter non codifica gli a capo negli attributi e in lettura diventerebbero spazi.
+ *
+ * Scrittura e lettura sono in streaming con StAX, senza costruire il DOM del documento:
+ * in lettura le celle vengono raccolte in {@link GraphData} e le celle JGraphX vengono
+ * create solo quando il grafo serve. Il grafo di una funzione viene decodificato al primo
+ * accesso dalla sua {@link FunctionDefinition}.
+ */
+public final class ProjectFile {
+
+    private static final String FORMAT_VERSION = "1";
+
+    private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+    static {
+        // Un progetto non ha DTD né entità esterne
+        INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    /**
+     * A cell as read from the file.
+     */
+    private static final class CellData {
+        String id;
+        String parentId;
+        String value;
+        String style;
+        boolean vertex;
+        boolean edge;
+        boolean connectable = true;
+        boolean visible = true;
+        String sourceId;
+        String targetId;
+        mxGeometry geometry;
+    }
+
+    /**
+     * Cells of a graph read from a project file, not yet turned into JGraphX cells.
+     */
+    public static final class GraphData {
+        private final List<CellData> cells = new ArrayList<>();
+        private String startId;
+        private String endId;
+
+        private void add(CellData cell) {
+            cells.add(cell);
+            if (cell.vertex && cell.id != null) {
+                if (isStartCell(cell.style, cell.value)) {
+                    startId = cell.id;
+                }
+                if (isEndCell(cell.style, cell.value)) {
+                    endId = cell.id;
+                }
+            }
+        }
+
+        /**
+         * Adds a cell read from another format; parents must come before their children.
+         */
+        void addCell(String id, String parentId, String value, String style, boolean vertex, boolean edge,
+                     boolean connectable, boolean visible, String sourceId, String targetId, mxGeometry geometry) {
+            CellData cell = new CellData();
+            cell.id = id;
+            cell.parentId = parentId;
+            cell.value = value;
+            cell.style = style;
+            cell.vertex = vertex;
+            cell.edge = edge;
+            cell.connectable = connectable;
+            cell.visible = visible;
+            cell.sourceId = sourceId;
+            cell.targetId = targetId;
+            cell.geometry = geometry;
+            add(cell);
+        }
+
+        /**
+         * Replaces the content of the model with new cells built from the file.
+         * Can be called more than once; every call creates independent cells.
+         */
+        public void decodeInto(mxIGraphModel model) {
+            Map<String, mxCell> cellsById = new HashMap<>();
+            mxCell root = null;
+            for (CellData data : cells) {
+                mxCell cell = new mxCell(data.value);
+                cell.setId(data.id);
+                cell.setStyle(data.style);
+                cell.setVertex(data.vertex);
+                cell.setEdge(data.edge);
+                cell.setConnectable(data.connectable);
+                cell.setVisible(data.visible);
+                if (data.geometry != null) {
+                    cell.setGeometry((mxGeometry) data.geometry.clone());
+                }
+
+                mxCell parent = data.parentId != null ? cellsById.get(data.parentId) : null;
+                if (parent != null) {
+                    parent.insert(cell);
+                } else if (root == null) {
+                    root = cell;
+                }
+                if (data.id != null) {
+                    cellsById.put(data.id, cell);
+                }
+            }
+
+            // Gli archi possono riferirsi a celle che nel file vengono dopo
+            for (CellData data : cells) {
+                if (data.sourceId == null && data.targetId == null) {
+                    continue;
+                }
+                mxCell edge = cellsById.get(data.id);
+                mxCell source = data.sourceId != null ? cellsById.get(data.sourceId) : null;
+                mxCell target = data.targetId != null ? cellsById.get(data.targetId) : null;
+                if (edge != null && source != null) {
+                    source.insertEdge(edge, true);
+                }
+                if (edge != null && target != null) {
+                    target.insertEdge(edge, false);
+                }
+            }
+
+            if (root == null) {
+                // Grafo vuoto: radice con il livello di default, come mxGraphModel
+                root = new mxCell();
+                root.insert(new mxCell());
+            }
+            model.setRoot(root);
+        }
+
+        /**
+         * Start cell of a model filled by {@link #decodeInto}, or null.
+         */
+        public Object getStartCell(mxIGraphModel model) {
+            return startId != null ? ((mxGraphModel) model).getCell(startId) : null;
+        }
+
+        /**
+         * End cell of a model filled by {@link #decodeInto}, or null.
+         */
+        public Object getEndCell(mxIGraphModel model) {
+            return endId != null ? ((mxGraphModel) model).getCell(endId) : null;
+        }
+    }
+
+    /**
+     * A loaded project: the main graph and the functions in file order.
+     */
+    public static final class Project {
+        private final GraphData mainGraph;
+        private final Map<String, FunctionDefinition> functions;
+        private final Map<String, GraphData> functionGraphs;
+
+        Project(GraphData mainGraph, Map<String, FunctionDefinition> functions, Map<String, GraphData> functionGraphs) {
+            this.mainGraph = mainGraph;
+            this.functions = Collections.unmodifiableMap(functions);
+            this.functionGraphs = functionGraphs;
+        }
+
+        public GraphData getMainGraph() {
+            return mainGraph;
+        }
+
+        /**
+         * Function definitions whose graphs are decoded on first access.
+         */
+        public Map<String, FunctionDefinition> getFunctions() {
+            return functions;
+        }
+
+        /**
+         * Cells of a function graph as read from the file, e.g. to fill the panel of its tab.
+         */
+        public GraphData getFunctionGraph(String name) {
+            return functionGraphs.get(name);
+        }
+    }
+
+    private ProjectFile() {
+    }
+
+    // Start ed End vengono riconosciuti come nell'editor
+
+    static boolean isStartCell(String style, String value) {
+        return BlockStyles.START.equals(style) || "Start".equals(value);
+    }
+
+    static boolean isEndCell(String style, String value) {
+        return BlockStyles.END.equals(style) || "End".equals(value);
+    }
+
+    // ===== SCRITTURA =====
+
+    /**
+     * Writes the main graph and all functions to the file.
+     */
+    public static void save(File file, mxIGraphModel mainModel, Map<String, FunctionDefinition> functions)
+            throws IOException {
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(out, "UTF-8");
+            writer.writeStartDocument("UTF-8", "1.0");
+            writer.writeStartElement("flowchartProject");
+            writer.writeAttribute("version", FORMAT_VERSION);
+
+            writeModel(writer, mainModel);
+            for (Map.Entry<String, FunctionDefinition> entry : functions.entrySet()) {
+                writeFunction(writer, entry.getKey(), entry.getValue());
+            }
+
+            writer.writeEndElement();
+            writer.writeEndDocument();
+            writer.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Cannot write '" + file + "': " + e.getMessage(), e);
+        }
+    }
+
+    private static void writeFunction(XMLStreamWriter writer, String name, FunctionDefinition function)
+            throws XMLStreamException {
+        writer.writeStartElement("function");
+        writer.writeAttribute("name", name);
+        writer.writeAttribute("returnType", function.getReturnType());
+        if (function.getReturnVariableName() != null) {
+            writer.writeAttribute("returnVariable", function.getReturnVariableName());
+        }
+        for (FunctionDefinition.Parameter parameter : function.getFormalParameters()) {
+            writer.writeEmptyElement("parameter");
+            writer.writeAttribute("name", parameter.getName());
+            writer.writeAttribute("type", parameter.getType());
+        }
+
+        // Un grafo mai aperto viene riscritto così come è stato letto, senza decodificarlo
+        GraphData pending = function.getPendingGraph();
+        if (pending != null) {
+            writeGraphData(writer, pending);
+        } else if (function.getFunctionModel() != null) {
+            writeModel(writer, function.getFunctionModel());
+        }
+        writer.writeEndElement();
+    }
+
+    /**
+     * Writes the cells of a model in depth-first order, as mxCodec does.
+     */
+    private static void writeModel(XMLStreamWriter writer, mxIGraphModel model) throws XMLStreamException {
+        writer.writeStartElement("mxGraphModel");
+        writer.writeStartElement("root");
+        Deque<Object> stack = new ArrayDeque<>();
+        if (model.getRoot() != null) {
+            stack.push(model.getRoot());
+        }
+        while (!stack.isEmpty()) {
+            mxCell cell = (mxCell) stack.pop();
+            mxCell parent = (mxCell) cell.getParent();
+            mxCell source = (mxCell) cell.getSource();
+            mxCell target = (mxCell) cell.getTarget();
+            writeCell(writer, cell.getId(), parent != null ? parent.getId() : null,
+                cell.getValue() != null ? cell.getValue().toString() : null, cell.getStyle(),
+                cell.isVertex(), cell.isEdge(), cell.isConnectable(), cell.isVisible(),
+                source != null ? source.getId() : null, target != null ? target.getId() : null,
+                cell.getGeometry());
+            for (int i = cell.getChildCount() - 1; i >= 0; i--) {
+                stack.push(cell.getChildAt(i));
+            }
+        }
+        writer.writeEndElement();
+        writer.writeEndElement();
+    }
+
+    private static void writeGraphData(XMLStreamWriter writer, GraphData graph) throws XMLStreamException {
+        writer.writeStartElement("mxGraphModel");
+        writer.writeStartElement("root");
+        for (CellData cell : graph.cells) {
+            writeCell(writer, cell.id, cell.parentId, cell.value, cell.style, cell.vertex, cell.edge,
+                cell.connectable, cell.visible, cell.sourceId, cell.targetId, cell.geometry);
+        }
+        writer.writeEndElement();
+        writer.writeEndElement();
+    }
+
+    private static void writeCell(XMLStreamWriter writer, String id, String parentId, String value, String style,
+                                  boolean vertex, boolean edge, boolean connectable, boolean visible,
+                                  String sourceId, String targetId, mxGeometry geometry) throws XMLStreamException {
+        boolean multiline = value != null && (value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0
+            || value.indexOf('\t') >= 0);
+        boolean hasChildren = geometry != null || multiline;
+        if (hasChildren) {
+            writer.writeStartElement("mxCell");
+        } else {
+            writer.writeEmptyElement("mxCell");
+        }
+        writeAttribute(writer, "id", id);
+        writeAttribute(writer, "parent", parentId);
+        if (!multiline) {
+            writeAttribute(writer, "value", value);
+        }
+        writeAttribute(writer, "style", style);
+        if (vertex) {
+            writer.writeAttribute("vertex", "1");
+        }
+        if (edge) {
+            writer.writeAttribute("edge", "1");
+        }
+        if (!connectable) {
+            writer.writeAttribute("connectable", "0");
+        }
+        if (!visible) {
+            writer.writeAttribute("visible", "0");
+        }
+        writeAttribute(writer, "source", sourceId);
+        writeAttribute(writer, "target", targetId);
+        if (multiline) {
+            writer.writeStartElement("value");
+            writer.writeCharacters(value);
+            writer.writeEndElement();
+        }
+        if (geometry != null) {
+            writeGeometry(writer, geometry);
+        }
+        if (hasChildren) {
+            writer.writeEndElement();
+        }
+    }
+
+    private static void writeGeometry(XMLStreamWriter writer, mxGeometry geometry) throws XMLStreamException {
+        List<mxPoint> points = geometry.getPoints();
+        boolean hasPoints = points != null && !points.isEmpty();
+        boolean hasChildren = hasPoints || geometry.getSourcePoint() != null
+            || geometry.getTargetPoint() != null || geometry.getOffset() != null;
+
+        if (hasChildren) {
+            writer.writeStartElement("mxGeometry");
+        } else {
+            writer.writeEmptyElement("mxGeometry");
+        }
+        writeNumber(writer, "x", geometry.getX());
+        writeNumber(writer, "y", geometry.getY());
+        writeNumber(writer, "width", geometry.getWidth());
+        writeNumber(writer, "height", geometry.getHeight());
+        if (geometry.isRelative()) {
+            writer.writeAttribute("relative", "1");
+        }
+        writer.writeAttribute("as", "geometry");
+
+        if (hasChildren) {
+            writePoint(writer, geometry.getSourcePoint(), "sourcePoint");
+            writePoint(writer, geometry.getTargetPoint(), "targetPoint");
+            writePoint(writer, geometry.getOffset(), "offset");
+            if (hasPoints) {
+                writer.writeStartElement("Array");
+                writer.writeAttribute("as", "points");
+                for (mxPoint point : points) {
+                    writePoint(writer, point, null);
+                }
+                writer.writeEndElement();
+            }
+            writer.writeEndElement();
+        }
+    }
+
+    private static void writePoint(XMLStreamWriter writer, mxPoint point, String as) throws XMLStreamException {
+        if (point == null) {
+            return;
+        }
+        writer.writeEmptyElement("mxPoint");
+        writeNumber(writer, "x", point.getX());
+        writeNumber(writer, "y", point.getY());
+        writeAttribute(writer, "as", as);
+    }
+
+    private static void writeAttribute(XMLStreamWriter writer, String name, String value) throws XMLStreamException {
+        if (value != null) {
+            writer.writeAttribute(name, value);
+        }
+    }
+
+    private static void writeNumber(XMLStreamWriter writer, String name, double value) throws XMLStreamException {
+        // Come mxCodec, i valori a zero vengono omessi
+        if (value != 0) {
+            writer.writeAttribute(name, String.valueOf(value));
+        }
+    }
+
+    // ===== LETTURA =====
+
+    /**
+     * Reads a project file, a flowchart saved by earlier versions (main graph only)
+     * or a {@link BinaryProjectFile}.
+     */
+    public static Project load(File file) throws IOException {
+        if (BinaryProjectFile.isBinary(file)) {
+            return BinaryProjectFile.open(file).toProject();
+        }
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(in);
+            try {
+                return readProject(reader, file);
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Cannot parse '" + file + "': " + e.getMessage(), e);
+        }
+    }
+
+    private static Project readProject(XMLStreamReader reader, File file) throws XMLStreamException, IOException {
+        reader.nextTag();
+        String rootName = reader.getLocalName();
+        Map<String, FunctionDefinition> functions = new LinkedHashMap<>();
+        Map<String, GraphData> functionGraphs = new HashMap<>();
+
+        if ("mxGraphModel".equals(rootName)) {
+            // Formato precedente: solo il grafo main
+            return new Project(readGraph(reader), functions, functionGraphs);
+        }
+        if (!"flowchartProject".equals(rootName)) {
+            throw new IOException("'" + file + "' is not a flowchart file");
+        }
+
+        GraphData mainGraph = null;
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            String name = reader.getLocalName();
+            if ("mxGraphModel".equals(name) && mainGraph == null) {
+                mainGraph = readGraph(reader);
+            } else if ("function".equals(name)) {
+                readFunction(reader, functions, functionGraphs);
+            } else {
+                skipElement(reader);
+            }
+        }
+
+        if (mainGraph == null) {
+            throw new IOException("'" + file + "' has no main flowchart");
+        }
+        return new Project(mainGraph, functions, functionGraphs);
+    }
+
+    private static void readFunction(XMLStreamReader reader, Map<String, FunctionDefinition> functions,
+                                     Map<String, GraphData> functionGraphs) throws XMLStreamException {
+        String name = reader.getAttributeValue(null, "name");
+        String returnType = reader.getAttributeValue(null, "returnType");
+        String returnVariable = reader.getAttributeValue(null, "returnVariable");
+        List<FunctionDefinition.Parameter> parameters = new ArrayList<>();
+        GraphData graph = null;
+
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            String element = reader.getLocalName();
+            if ("parameter".equals(element)) {
+                parameters.add(new FunctionDefinition.Parameter(reader.getAttributeValue(null, "name"),
+                    reader.getAttributeValue(null, "type")));
+                skipElement(reader);
+            } else if ("mxGraphModel".equals(element) && graph == null) {
+                graph = readGraph(reader);
+            } else {
+                skipElement(reader);
+            }
+        }
+
+        if (name == null || graph == null) {
+            return;  // Funzione incompleta: viene ignorata
+        }
+        GraphData cells = graph;
+        functions.put(name, new FunctionDefinition(name, parameters, returnType, returnVariable, () -> cells));
+        functionGraphs.put(name, cells);
+    }
+
+    /**
+     * Reads the cells of an mxGraphModel element, leaving the reader on its end tag.
+     */
+    private static GraphData readGraph(XMLStreamReader reader) throws XMLStreamException {
+        GraphData graph = new GraphData();
+        CellData cell = null;
+        mxGeometry geometry = null;
+        List<mxPoint> points = null;
+
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+                String name = reader.getLocalName();
+                if ("mxCell".equals(name)) {
+                    cell = readCell(reader);
+                    graph.add(cell);
+                } else if ("value".equals(name) && cell != null) {
+                    // Legge anche il tag di chiusura
+                    cell.value = reader.getElementText();
+                    depth--;
+                } else if ("mxGeometry".equals(name) && cell != null) {
+                    geometry = readGeometry(reader);
+                    cell.geometry = geometry;
+                } else if ("Array".equals(name) && geometry != null
+                           && "points".equals(reader.getAttributeValue(null, "as"))) {
+                    points = new ArrayList<>();
+                    geometry.setPoints(points);
+                } else if ("mxPoint".equals(name) && geometry != null) {
+                    mxPoint point = new mxPoint(readNumber(reader, "x"), readNumber(reader, "y"));
+                    String as = reader.getAttributeValue(null, "as");
+                    if (points != null) {
+                        points.add(point);
+                    } else if ("sourcePoint".equals(as)) {
+                        geometry.setSourcePoint(point);
+                    } else if ("targetPoint".equals(as)) {
+                        geometry.setTargetPoint(point);
+                    } else if ("offset".equals(as)) {
+                        geometry.setOffset(point);
+                    }
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+                String name = reader.getLocalName();
+                if ("mxCell".equals(name)) {
+                    cell = null;
+                } else if ("mxGeometry".equals(name)) {
+                    geometry = null;
+                } else if ("Array".equals(name)) {
+                    points = null;
+                }
+            }
+        }
+        return graph;
+    }
+
+    private static CellData readCell(XMLStreamReader reader) {
+        CellData cell = new CellData();
+        cell.id = reader.getAttributeValue(null, "id");
+        cell.parentId = reader.getAttributeValue(null, "parent");
+        cell.value = reader.getAttributeValue(null, "value");
+        cell.style = reader.getAttributeValue(null, "style");
+        cell.vertex = "1".equals(reader.getAttributeValue(null, "vertex"));
+        cell.edge = "1".equals(reader.getAttributeValue(null, "edge"));
+        cell.connectable = !"0".equals(reader.getAttributeValue(null, "connectable"));
+        cell.visible = !"0".equals(reader.getAttributeValue(null, "visible"));
+        cell.sourceId = reader.getAttributeValue(null, "source");
+        cell.targetId = reader.getAttributeValue(null, "target");
+        return cell;
+    }
+
+    private static mxGeometry readGeometry(XMLStreamReader reader) {
+        mxGeometry geometry = new mxGeometry(readNumber(reader, "x"), readNumber(reader, "y"),
+            readNumber(reader, "width"), readNumber(reader, "height"));
+        geometry.setRelative("1".equals(reader.getAttributeValue(null, "relative")));
+        return geometry;
+    }
+
+    private static double readNumber(XMLStreamReader reader, String name) {
+        String value = reader.getAttributeValue(null, name);
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Skips the current element and its content, leaving the reader on its end tag.
+     */
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+}
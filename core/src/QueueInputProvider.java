@@ -0,0 +1,40 @@
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Valori di input forniti in anticipo, consumati nell'ordine di inserimento.
+ * Usato per le esecuzioni automatiche (riga di comando, correzione dei test).
+ */
+public class QueueInputProvider implements InputProvider {
+
+    private final Deque<String> values = new ArrayDeque<>();
+
+    public QueueInputProvider() {
+    }
+
+    public QueueInputProvider(Iterable<String> values) {
+        addAll(values);
+    }
+
+    public void add(String value) {
+        values.add(value);
+    }
+
+    public void addAll(Iterable<String> values) {
+        for (String value : values) {
+            this.values.add(value);
+        }
+    }
+
+    /**
+     * Number of values not yet consumed.
+     */
+    public int remaining() {
+        return values.size();
+    }
+
+    @Override
+    public String nextInput(String variableName) {
+        return values.poll();
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * Istruzione già analizzata di un blocco: assegnamento "variabile = espressione"
+ * oppure semplice espressione valutata per i suoi effetti (es. chiamata di funzione).
+ * La destinazione può essere un elemento di array ("a[i] = ...") e l'istruzione
+ * può dichiarare un array ("int a[n]"): in quel caso l'espressione è la lunghezza.
+ */
+public final class Statement {
+
+    private final String target;
+    private final Expression index;
+    private final int arrayType;
+    private final Expression expression;
+    private final String expressionText;
+    private int targetSlot = SymbolTable.UNDEFINED;
+
+    public Statement(String target, Expression expression, String expressionText) {
+        this(target, null, Value.NONE, expression, expressionText);
+    }
+
+    /**
+     * @param index     Index of the assigned element, or null to assign the whole variable
+     * @param arrayType Value.INT_ARRAY or Value.DOUBLE_ARRAY for a declaration, otherwise Value.NONE
+     */
+    public Statement(String target, Expression index, int arrayType, Expression expression, String expressionText) {
+        this.target = target;
+        this.index = index;
+        this.arrayType = arrayType;
+        this.expression = expression;
+        this.expressionText = expressionText;
+    }
+
+    /**
+     * Name of the assigned variable (the array for an element), or null for a bare expression.
+     */
+    public String getTarget() {
+        return target;
+    }
+
+    /**
+     * Slot of the assigned variable, valid after {@link #resolve}.
+     */
+    public int getTargetSlot() {
+        return targetSlot;
+    }
+
+    /**
+     * Index of the assigned array element, or null if the whole variable is assigned.
+     */
+    public Expression getIndex() {
+        return index;
+    }
+
+    /**
+     * Value.INT_ARRAY or Value.DOUBLE_ARRAY for an array declaration, otherwise Value.NONE.
+     */
+    public int getArrayType() {
+        return arrayType;
+    }
+
+    public boolean isArrayDeclaration() {
+        return arrayType != Value.NONE;
+    }
+
+    /**
+     * Assigns the slots of the target and of the variables read by the expressions.
+     */
+    public void resolve(SymbolTable symbols) {
+        if (target != null) {
+            targetSlot = symbols.define(target);
+        }
+        if (index != null) {
+            index.resolve(symbols);
+        }
+        if (expression != null) {
+            expression.resolve(symbols);
+        }
+    }
+
+    public boolean isAssignment() {
+        return target != null;
+    }
+
+    /**
+     * The assigned expression (the length for a declaration), or null for an input target.
+     */
+    public Expression getExpression() {
+        return expression;
+    }
+
+    /**
+     * Source text of the expression (of the whole target for an input target).
+     */
+    public String getExpressionText() {
+        return expressionText;
+    }
+}
@@ -0,0 +1,47 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tabella dei simboli di un programma compilato.
+ * Assegna ad ogni nome di variabile un indice (slot) nell'array del frame,
+ * così durante l'esecuzione l'accesso a una variabile è una lettura da array.
+ */
+public final class SymbolTable {
+
+    /** Slot restituito per un nome non dichiarato. */
+    public static final int UNDEFINED = -1;
+
+    private final Map<String, Integer> slots = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+
+    /**
+     * Gets the slot of a name, assigning the next free one if it is new.
+     */
+    public int define(String name) {
+        Integer slot = slots.get(name);
+        if (slot == null) {
+            slot = names.size();
+            slots.put(name, slot);
+            names.add(name);
+        }
+        return slot;
+    }
+
+    /**
+     * Gets the slot of a name, or {@link #UNDEFINED}.
+     */
+    public int slotOf(String name) {
+        Integer slot = slots.get(name);
+        return slot != null ? slot : UNDEFINED;
+    }
+
+    public String getName(int slot) {
+        return names.get(slot);
+    }
+
+    public int size() {
+        return names.size();
+    }
+}
@@ -0,0 +1,170 @@
+import java.util.Arrays;
+
+/**
+ * Registro mutabile usato per valutare le espressioni senza allocare oggetti.
+ * Contiene un valore intero, decimale, stringa o array insieme al suo tipo.
+ * Un array è un riferimento a un int[] o double[]: copiarlo non copia gli elementi.
+ */
+public final class Value {
+
+    public static final int NONE = 0;
+    public static final int INT = 1;
+    public static final int DOUBLE = 2;
+    public static final int STRING = 3;
+    public static final int INT_ARRAY = 4;
+    public static final int DOUBLE_ARRAY = 5;
+
+    private int type;
+    private int intValue;
+    private double doubleValue;
+    private String stringValue;
+    private Object arrayValue;
+
+    public int getType() {
+        return type;
+    }
+
+    public boolean isNumber() {
+        return type == INT || type == DOUBLE;
+    }
+
+    public boolean isArray() {
+        return type == INT_ARRAY || type == DOUBLE_ARRAY;
+    }
+
+    public void setInt(int value) {
+        type = INT;
+        intValue = value;
+        stringValue = null;
+        arrayValue = null;
+    }
+
+    public void setDouble(double value) {
+        type = DOUBLE;
+        doubleValue = value;
+        stringValue = null;
+        arrayValue = null;
+    }
+
+    public void setString(String value) {
+        type = STRING;
+        stringValue = value;
+        arrayValue = null;
+    }
+
+    public void setArray(int[] elements) {
+        type = INT_ARRAY;
+        arrayValue = elements;
+        stringValue = null;
+    }
+
+    public void setArray(double[] elements) {
+        type = DOUBLE_ARRAY;
+        arrayValue = elements;
+        stringValue = null;
+    }
+
+    public void clear() {
+        type = NONE;
+        stringValue = null;
+        arrayValue = null;
+    }
+
+    public void copyFrom(Value other) {
+        type = other.type;
+        intValue = other.intValue;
+        doubleValue = other.doubleValue;
+        stringValue = other.stringValue;
+        arrayValue = other.arrayValue;
+    }
+
+    /**
+     * Stores a boxed Integer, Double or String, or an int[] or double[] array
+     * (anything else is kept as its text).
+     */
+    public void set(Object value) {
+        if (value instanceof Integer) {
+            setInt((Integer) value);
+        } else if (value instanceof int[]) {
+            setArray((int[]) value);
+        } else if (value instanceof double[]) {
+            setArray((double[]) value);
+        } else if (value instanceof Number) {
+            setDouble(((Number) value).doubleValue());
+        } else if (value == null) {
+            clear();
+        } else {
+            setString(value.toString());
+        }
+    }
+
+    public int intValue() {
+        switch (type) {
+            case INT: return intValue;
+            case DOUBLE: return (int) doubleValue;
+            default: throw new RuntimeException("Cannot convert '" + this + "' to int");
+        }
+    }
+
+    public double doubleValue() {
+        switch (type) {
+            case INT: return intValue;
+            case DOUBLE: return doubleValue;
+            default: throw new RuntimeException("Cannot convert '" + this + "' to double");
+        }
+    }
+
+    public String stringValue() {
+        return type == STRING ? stringValue : toString();
+    }
+
+    /**
+     * Converts the value to an array index: only integers are accepted, as in C.
+     */
+    public int indexValue() {
+        if (type != INT) {
+            throw new RuntimeException("Array index must be an integer, not '" + this + "'");
+        }
+        return intValue;
+    }
+
+    /**
+     * The elements of an INT_ARRAY value (the array itself, not a copy).
+     */
+    public int[] intArray() {
+        return (int[]) arrayValue;
+    }
+
+    /**
+     * The elements of a DOUBLE_ARRAY value (the array itself, not a copy).
+     */
+    public double[] doubleArray() {
+        return (double[]) arrayValue;
+    }
+
+    /**
+     * Boxes the current value (Integer, Double or String); arrays are returned as they are.
+     */
+    public Object toObject() {
+        switch (type) {
+            case INT: return intValue;
+            case DOUBLE: return doubleValue;
+            case STRING: return stringValue;
+            case INT_ARRAY:
+            case DOUBLE_ARRAY: return arrayValue;
+            default: return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        switch (type) {
+            case INT: return Integer.toString(intValue);
+            case DOUBLE: return Double.toString(doubleValue);
+            case STRING: return stringValue;
+            case INT_ARRAY: return Arrays.toString((int[]) arrayValue);
+            case DOUBLE_ARRAY: return Arrays.toString((double[]) arrayValue);
+            default: return "null";
+        }
+    }
+}
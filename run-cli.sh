@@ -0,0 +1,19 @@
+#!/bin/bash
+
+# Script to run a saved flowchart from the command line (no display needed)
+# Usage: ./run-cli.sh [--inputs file] [--trace] flowchart.xml|flowchart.fcb
+# Input values are read from stdin (one per line) unless --inputs is given
+
+JGRAPHX_VERSION="4.2.2"
+LIB_DIR="lib"
+JGRAPHX_JAR="${LIB_DIR}/jgraphx-${JGRAPHX_VERSION}.jar"
+BUILD_DIR="build"
+CORE_JAR="${BUILD_DIR}/flowchart-core.jar"
+
+# Check if compiled
+if [ ! -f "${CORE_JAR}" ] || [ ! -f "${JGRAPHX_JAR}" ]; then
+    ./build.sh >&2 || exit 2
+fi
+
+# Solo il nucleo: le classi dell'editor non servono
+exec java -Djava.awt.headless=true -cp "${CORE_JAR}:${JGRAPHX_JAR}" FlowchartRunner "$@"
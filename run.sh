@@ -8,6 +8,8 @@ JGRAPHX_VERSION="4.2.2"
 LIB_DIR="lib"
 JGRAPHX_JAR="${LIB_DIR}/jgraphx-${JGRAPHX_VERSION}.jar"
 BUILD_DIR="build"
+CORE_JAR="${BUILD_DIR}/flowchart-core.jar"
+EDITOR_JAR="${BUILD_DIR}/flowchart-editor.jar"
 
 echo "======================================"
 echo "Flowchart Editor - Run"
@@ -15,7 +17,7 @@ echo "======================================"
 echo ""
 
 # Check if compiled
-if [ ! -d "${BUILD_DIR}" ] || [ ! "$(ls -A ${BUILD_DIR})" ]; then
+if [ ! -f "${CORE_JAR}" ] || [ ! -f "${EDITOR_JAR}" ]; then
     echo "⚠️  Project not compiled yet!"
     echo "Running build script..."
     echo ""
@@ -34,4 +36,4 @@ echo "🚀 Starting Flowchart Editor..."
 echo ""
 
 # Run the application
-java -cp "${BUILD_DIR}:${JGRAPHX_JAR}" FlowchartEditorApp
+java -cp "${EDITOR_JAR}:${CORE_JAR}:${JGRAPHX_JAR}" FlowchartEditorApp
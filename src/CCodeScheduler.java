@@ -0,0 +1,229 @@
+import com.mxgraph.model.mxIGraphModel;
+import com.mxgraph.util.mxEvent;
+import com.mxgraph.util.mxEventObject;
+import com.mxgraph.util.mxEventSource;
+import com.mxgraph.view.mxGraph;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Aggiorna il codice C di {@link CCodePanel} mentre l'utente modifica i diagrammi.
+ *
+ * Ogni modello del grafo ha un solo listener, registrato da {@link #watch}; le modifiche
+ * ravvicinate vengono raccolte in un'unica rigenerazione dopo una breve pausa. I diagrammi
+ * vengono compilati in {@link FlowchartProgram} sull'EDT (solo le funzioni cambiate); la
+ * generazione avviene poi su un thread in background, che non legge mai i grafi, e riusa
+ * il codice delle funzioni il cui programma non è cambiato. Anche parametri e tipi di ritorno
+ * delle funzioni vengono copiati sull'EDT, perché il dialogo delle funzioni può modificarli
+ * durante la generazione. Il risultato viene pubblicato
+ * sull'EDT in un'unica operazione e scartato se nel frattempo un diagramma è stato
+ * modificato di nuovo: in quel caso è già in arrivo una rigenerazione più recente.
+ */
+public class CCodeScheduler {
+
+    // Pausa dopo l'ultima modifica prima di rigenerare il codice
+    private static final int DEBOUNCE_MS = 150;
+
+    /**
+     * Code generated for a function, valid while its program and the function signatures do not change.
+     */
+    private static final class CachedFunction {
+        final FlowchartProgram program;
+        final String signatures;
+        final String code;
+
+        CachedFunction(FunctionSnapshot function, String signatures, String code) {
+            this.program = function.program;
+            this.signatures = signatures;
+            this.code = code;
+        }
+
+        boolean matches(FunctionSnapshot function, String signatures) {
+            return program == function.program && this.signatures.equals(signatures);
+        }
+    }
+
+    /**
+     * A function compiled on the EDT, reused while its graph does not change.
+     */
+    private static final class FunctionSnapshot {
+        final String name;
+        final FunctionDefinition definition;  // Letta solo sull'EDT; in background serve solo da chiave
+        final mxIGraphModel model;
+        final long modelVersion;
+        final Object startCell;
+        final Object endCell;
+        final FlowchartProgram program;  // null se il grafo non ha Start
+
+        FunctionSnapshot(String name, FunctionDefinition definition, mxIGraphModel model, long modelVersion) {
+            this.name = name;
+            this.definition = definition;
+            this.model = model;
+            this.modelVersion = modelVersion;
+            this.startCell = definition.getStartCell();
+            this.endCell = definition.getEndCell();
+            this.program = FlowchartProgram.compile(definition);
+        }
+
+        boolean isCurrent(String name, FunctionDefinition definition, mxIGraphModel model, long modelVersion) {
+            return this.name.equals(name) && this.definition == definition && this.model == model
+                && this.modelVersion == modelVersion && startCell == definition.getStartCell()
+                && endCell == definition.getEndCell();
+        }
+    }
+
+    private final FlowchartPanel mainPanel;
+    private final CCodePanel codePanel;
+    private final Runnable beforeGeneration;
+    private final Timer debounceTimer;
+    private final ExecutorService worker;
+
+    // Stato dell'EDT: versione di ogni modello osservato e numero totale di modifiche
+    private final Map<mxIGraphModel, long[]> modelVersions = new WeakHashMap<>();
+    private long changeCount;
+    private Map<FunctionDefinition, FunctionSnapshot> compiledFunctions = new IdentityHashMap<>();
+
+    // Stato del thread di generazione
+    private final Map<FunctionDefinition, CachedFunction> functionCache = new IdentityHashMap<>();
+
+    /**
+     * @param beforeGeneration Run on the EDT before each regeneration, e.g. to sync the function graphs
+     */
+    public CCodeScheduler(FlowchartPanel mainPanel, CCodePanel codePanel, Runnable beforeGeneration) {
+        this.mainPanel = mainPanel;
+        this.codePanel = codePanel;
+        this.beforeGeneration = beforeGeneration;
+        this.debounceTimer = new Timer(DEBOUNCE_MS, e -> startGeneration());
+        this.debounceTimer.setRepeats(false);
+        this.worker = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "c-code-generator");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Regenerates the code when the graph changes. Watching the same graph again has no effect (EDT only).
+     */
+    public void watch(mxGraph graph) {
+        mxIGraphModel model = graph.getModel();
+        if (modelVersions.containsKey(model)) {
+            return;
+        }
+        long[] version = new long[1];
+        modelVersions.put(model, version);
+        model.addListener(mxEvent.CHANGE, new mxEventSource.mxIEventListener() {
+            @Override
+            public void invoke(Object sender, mxEventObject evt) {
+                version[0]++;
+                requestUpdate();
+            }
+        });
+    }
+
+    /**
+     * Schedules a regeneration after the current burst of changes (EDT only).
+     */
+    public void requestUpdate() {
+        changeCount++;
+        debounceTimer.restart();
+    }
+
+    /**
+     * Reads the diagrams on the EDT and starts the generation in background.
+     */
+    private void startGeneration() {
+        beforeGeneration.run();
+
+        mxGraph mainGraph = mainPanel.getGraph();
+        watch(mainGraph);
+        Object startCell = mainPanel.getStartCell();
+        Object endCell = mainPanel.getEndCell();
+        FlowchartProgram mainProgram = FlowchartProgram.compile(mainGraph.getModel(), startCell, endCell);
+
+        // Solo le funzioni il cui grafo è cambiato vengono ricompilate
+        List<FunctionSnapshot> functions = new ArrayList<>();
+        Map<String, FunctionDefinition> definitions = new LinkedHashMap<>();
+        Map<FunctionDefinition, FunctionSnapshot> compiled = new IdentityHashMap<>();
+        StringBuilder signatures = new StringBuilder();
+        for (Map.Entry<String, FunctionDefinition> entry : mainPanel.getFunctions().entrySet()) {
+            FunctionDefinition definition = entry.getValue();
+            mxGraph graph = definition.getFunctionGraph();
+            if (graph != null) {
+                watch(graph);
+            }
+            mxIGraphModel model = graph != null ? graph.getModel() : null;
+            long version = model != null ? modelVersions.get(model)[0] : 0;
+            FunctionSnapshot function = compiledFunctions.get(definition);
+            if (function == null || !function.isCurrent(entry.getKey(), definition, model, version)) {
+                function = new FunctionSnapshot(entry.getKey(), definition, model, version);
+            }
+            functions.add(function);
+            // Copia della firma: il thread di generazione non legge mai la definizione viva
+            definitions.put(entry.getKey(), new FunctionDefinition(entry.getKey(), definition.getFormalParameters(),
+                definition.getReturnType(), definition.getReturnVariableName()));
+            compiled.put(definition, function);
+
+            // Il codice di una funzione dipende anche dai tipi di ritorno delle altre
+            signatures.append(entry.getKey()).append(definition.getFormalParameters())
+                .append(':').append(definition.getReturnType())
+                .append(':').append(definition.getReturnVariableName()).append(';');
+        }
+
+        compiledFunctions = compiled;
+
+        long requestedAt = changeCount;
+        String functionSignatures = signatures.toString();
+        FunctionRegistry registry = FunctionRegistry.of(definitions);
+        worker.execute(() -> {
+            String code;
+            try {
+                code = generate(mainProgram, registry, functions, functionSignatures);
+            } catch (Exception e) {
+                code = "// Errore nella generazione del codice:\n// " + e.getMessage();
+            }
+            String result = code;
+            SwingUtilities.invokeLater(() -> {
+                // Un diagramma è cambiato durante la generazione: il risultato è già superato
+                if (requestedAt == changeCount) {
+                    codePanel.setCode(result);
+                }
+            });
+        });
+    }
+
+    /**
+     * Generates the program, regenerating only the functions whose program changed (background thread).
+     * The registry holds the copies of the function signatures made on the EDT.
+     */
+    private String generate(FlowchartProgram mainProgram, FunctionRegistry registry,
+                            List<FunctionSnapshot> functions, String signatures) {
+        FlowchartToCGenerator generator = new FlowchartToCGenerator(mainProgram, registry);
+
+        Map<String, String> functionCode = new HashMap<>();
+        Map<FunctionDefinition, CachedFunction> validEntries = new IdentityHashMap<>();
+        for (FunctionSnapshot function : functions) {
+            CachedFunction cached = functionCache.get(function.definition);
+            if (cached == null || !cached.matches(function, signatures)) {
+                cached = new CachedFunction(function, signatures, generator.generateFunctionCode(function.name,
+                    registry.getFunction(function.name), function.program));
+            }
+            validEntries.put(function.definition, cached);
+            functionCode.put(function.name, cached.code);
+        }
+        // Le funzioni eliminate escono dalla cache
+        functionCache.clear();
+        functionCache.putAll(validEntries);
+
+        return generator.generateCode(functionCode);
+    }
+}
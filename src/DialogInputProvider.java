@@ -0,0 +1,47 @@
+import javax.swing.*;
+import java.awt.Component;
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Chiede i valori di input all'utente con una finestra di dialogo.
+ * Viene chiamato dal thread dell'interprete e attende la risposta mostrando
+ * la finestra sull'Event Dispatch Thread.
+ */
+public class DialogInputProvider implements InputProvider {
+
+    private final Component parent;
+
+    public DialogInputProvider(Component parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * Returns the value typed by the user, or null if the dialog was cancelled.
+     */
+    @Override
+    public String nextInput(String variableName) {
+        if (SwingUtilities.isEventDispatchThread()) {
+            return showDialog(variableName);
+        }
+
+        String[] input = new String[1];
+        try {
+            SwingUtilities.invokeAndWait(() -> input[0] = showDialog(variableName));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (InvocationTargetException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        return input[0];
+    }
+
+    private String showDialog(String variableName) {
+        return JOptionPane.showInputDialog(
+            parent,
+            "Enter value for: " + variableName,
+            "Input Required",
+            JOptionPane.QUESTION_MESSAGE
+        );
+    }
+}
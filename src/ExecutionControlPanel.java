@@ -3,15 +3,24 @@ import java.awt.*;
 
 /**
  * Pannello per i controlli di esecuzione del flowchart.
- * Contiene i pulsanti Run, Step, Stop e Reset.
+ * Contiene i pulsanti Run, Step, Pause, Stop e Reset e il cursore della velocità.
  */
 public class ExecutionControlPanel extends JPanel {
 
     private JButton runButton;
     private JButton stepButton;
+    private JButton pauseButton;
     private JButton stopButton;
     private JButton resetButton;
     private JLabel statusLabel;
+    private JSlider speedSlider;
+    private JLabel speedLabel;
+
+    // Pausa tra un blocco e l'altro per ogni posizione del cursore (0 = turbo, senza pause)
+    private static final int[] STEP_DELAYS = {1000, 500, 200, 50, 10, 0};
+    private static final int DEFAULT_SPEED = 1;
+
+    private volatile int stepDelay = STEP_DELAYS[DEFAULT_SPEED];
 
     private ExecutionControlListener listener;
 
@@ -27,6 +36,7 @@ public class ExecutionControlPanel extends JPanel {
     public interface ExecutionControlListener {
         void onRun();
         void onStep();
+        void onPause();
         void onStop();
         void onReset();
     }
@@ -68,6 +78,22 @@ public class ExecutionControlPanel extends JPanel {
             }
         });
 
+        pauseButton = new JButton("⏸ Pause");
+        pauseButton.setToolTipText("<html>Pause the automatic execution after the current block<br>Continue with Run All or Next Step</html>");
+        pauseButton.setFont(new Font("Arial", Font.BOLD, 14));
+        pauseButton.setBackground(new Color(255, 152, 0));
+        pauseButton.setForeground(Color.WHITE);
+        pauseButton.setOpaque(true);
+        pauseButton.setBorderPainted(false);
+        pauseButton.setFocusPainted(false);
+        pauseButton.setEnabled(false);
+        pauseButton.setPreferredSize(new Dimension(100, 35));
+        pauseButton.addActionListener(e -> {
+            if (listener != null) {
+                listener.onPause();
+            }
+        });
+
         stopButton = new JButton("⏹ Stop");
         stopButton.setToolTipText("Stop the current execution");
         stopButton.setFont(new Font("Arial", Font.BOLD, 14));
@@ -101,11 +127,36 @@ public class ExecutionControlPanel extends JPanel {
 
         buttonsPanel.add(runButton);
         buttonsPanel.add(stepButton);
+        buttonsPanel.add(pauseButton);
         buttonsPanel.add(stopButton);
         buttonsPanel.add(resetButton);
 
         add(buttonsPanel, BorderLayout.WEST);
 
+        // Velocità di esecuzione
+        JPanel speedPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 5, 5));
+        speedSlider = new JSlider(0, STEP_DELAYS.length - 1, DEFAULT_SPEED);
+        speedSlider.setToolTipText("<html>Execution speed<br>From animated steps to Turbo (no delay)</html>");
+        speedSlider.setSnapToTicks(true);
+        speedSlider.setMajorTickSpacing(1);
+        speedSlider.setPaintTicks(true);
+        speedSlider.setPreferredSize(new Dimension(140, 35));
+        speedLabel = new JLabel();
+        speedLabel.setFont(new Font("Arial", Font.PLAIN, 12));
+        speedLabel.setPreferredSize(new Dimension(60, 20));
+        speedSlider.addChangeListener(e -> {
+            stepDelay = STEP_DELAYS[speedSlider.getValue()];
+            updateSpeedLabel();
+        });
+        updateSpeedLabel();
+
+        JLabel speedTitle = new JLabel("Speed:");
+        speedTitle.setFont(new Font("Arial", Font.PLAIN, 12));
+        speedPanel.add(speedTitle);
+        speedPanel.add(speedSlider);
+        speedPanel.add(speedLabel);
+        add(speedPanel, BorderLayout.EAST);
+
         // Status label
         statusLabel = new JLabel("Ready");
         statusLabel.setFont(new Font("Arial", Font.PLAIN, 12));
@@ -117,6 +168,18 @@ public class ExecutionControlPanel extends JPanel {
         this.listener = listener;
     }
 
+    /**
+     * Delay in milliseconds between two executed blocks (0 in turbo mode).
+     * Can be read from any thread.
+     */
+    public int getStepDelay() {
+        return stepDelay;
+    }
+
+    private void updateSpeedLabel() {
+        speedLabel.setText(stepDelay == 0 ? "Turbo" : stepDelay + " ms");
+    }
+
     public void setStatus(String status) {
         statusLabel.setText(status);
     }
@@ -138,14 +201,16 @@ public class ExecutionControlPanel extends JPanel {
                 // Pronto per iniziare: Run e Step disponibili
                 runButton.setEnabled(true);
                 stepButton.setEnabled(true);
+                pauseButton.setEnabled(false);
                 stopButton.setEnabled(false);
                 resetButton.setEnabled(true);
                 break;
 
             case RUNNING:
-                // Esecuzione automatica: solo Stop disponibile
+                // Esecuzione automatica: Pause e Stop disponibili
                 runButton.setEnabled(false);
                 stepButton.setEnabled(false);
+                pauseButton.setEnabled(true);
                 stopButton.setEnabled(true);
                 resetButton.setEnabled(false);
                 break;
@@ -155,6 +220,7 @@ public class ExecutionControlPanel extends JPanel {
                 // Step per il prossimo step, Stop per fermare
                 runButton.setEnabled(true);
                 stepButton.setEnabled(true);
+                pauseButton.setEnabled(false);
                 stopButton.setEnabled(true);
                 resetButton.setEnabled(true);
                 break;
@@ -5,8 +5,10 @@ import java.awt.event.*;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * Main application window for the Flowchart Editor using JGraphX.
@@ -17,12 +19,108 @@ public class FlowchartEditorApp extends JFrame {
     private JTabbedPane tabbedPane;
     private FlowchartPanel mainFlowchartPanel;
     private Map<String, FlowchartPanel> functionPanels;  // functionName -> panel
+    private Map<String, ProjectFile.GraphData> pendingFunctionGraphs = new HashMap<>();  // Tab caricati, non ancora aperti
     private FlowchartPanel currentFlowchartPanel;
     private ExecutionControlPanel controlPanel;
     private OutputPanel outputPanel;
     private CCodePanel cCodePanel;
+    private CCodeScheduler cCodeScheduler;
     private VariablesPanel variablesPanel;
     private FlowchartInterpreter interpreter;
+    // Esecuzione in corso o appena terminata (null dopo Stop, Reset o un cambio di tab);
+    // volatile perché il thread dell'esecuzione controlla se è ancora quella corrente
+    private volatile ExecutionRun run;
+    private long shownRunVersion;  // Ultimo stato dell'esecuzione mostrato (EDT)
+    private boolean runFailed;     // L'esecuzione è terminata con un errore già mostrato (EDT)
+    private StepEventBuffer stepEventBuffer;  // Uno per esecuzione: quello di un'esecuzione fermata viene scartato
+    private boolean profilingEnabled;  // Le esecuzioni vengono profilate e mostrate come heat map
+
+    // Sotto questa pausa tra i blocchi l'interfaccia viene aggiornata a frequenza fissa (~60 Hz)
+    private static final int FRAME_INTERVAL_MS = 16;
+
+    // Le chiamate di funzione usano lo heap, non lo stack Java: il limite evita che una
+    // ricorsione infinita esaurisca la memoria
+    private static final int MAX_CALL_DEPTH = 100_000;
+
+    /**
+     * Accumulates the step events produced faster than the screen can show them
+     * and applies them on the EDT at most once per frame, merged into a single delta.
+     */
+    private static class StepEventBuffer {
+        private final Consumer<ExecutionDelta> target;
+        private final Timer timer;
+
+        private long sequence;
+        private Object cell;
+        private boolean variablesReset;
+        private Map<String, Object> variables = new LinkedHashMap<>();
+        private StringBuilder output = new StringBuilder();
+        private ExecutionDelta.ElementWrites elementWrites = new ExecutionDelta.ElementWrites();
+        private boolean pending;
+        private boolean discarded;
+
+        StepEventBuffer(Consumer<ExecutionDelta> target) {
+            this.target = target;
+            this.timer = new Timer(FRAME_INTERVAL_MS, e -> flush());
+        }
+
+        /**
+         * Adds an event (any thread).
+         */
+        synchronized void add(ExecutionDelta delta) {
+            if (discarded) {
+                return;
+            }
+            sequence = delta.getSequence();
+            cell = delta.getCell();
+            if (delta.isVariablesReset()) {
+                variablesReset = true;
+                variables = new LinkedHashMap<>(delta.getChangedVariables());
+            } else {
+                variables.putAll(delta.getChangedVariables());
+            }
+            output.append(delta.getAppendedOutput());
+            // Le scritture valgono anche dopo un reset: aggiornano le copie, non i nomi
+            elementWrites.addAll(delta.getElementWrites());
+            if (!pending) {
+                pending = true;
+                timer.start();
+            }
+        }
+
+        /**
+         * Applies the accumulated events (EDT only).
+         */
+        void flush() {
+            ExecutionDelta merged;
+            synchronized (this) {
+                if (!pending) {
+                    timer.stop();
+                    return;
+                }
+                merged = new ExecutionDelta(sequence, cell, variablesReset, variables, output.toString(),
+                    elementWrites);
+                variablesReset = false;
+                variables = new LinkedHashMap<>();
+                output = new StringBuilder();
+                elementWrites = new ExecutionDelta.ElementWrites();
+                pending = false;
+            }
+            target.accept(merged);
+        }
+
+        /**
+         * Drops the accumulated events and ignores the ones added later (EDT only).
+         */
+        synchronized void discard() {
+            discarded = true;
+            pending = false;
+            variables = new LinkedHashMap<>();
+            output = new StringBuilder();
+            elementWrites = new ExecutionDelta.ElementWrites();
+            timer.stop();
+        }
+    }
 
     public FlowchartEditorApp() {
         setTitle("Flowchart Editor - JGraphX Version");
@@ -80,6 +178,8 @@ public class FlowchartEditorApp extends JFrame {
         outputPanel = new OutputPanel();
         cCodePanel = new CCodePanel();
         variablesPanel = new VariablesPanel();
+        stepEventBuffer = new StepEventBuffer(this::applyExecutionDelta);
+        cCodeScheduler = new CCodeScheduler(mainFlowchartPanel, cCodePanel, this::syncCurrentFunctionToMain);
 
         // Create interpreter with mainFlowchartPanel reference for function support
         interpreter = new FlowchartInterpreter(
@@ -170,6 +270,12 @@ public class FlowchartEditorApp extends JFrame {
 
         // Update interpreter to use the new panel's graph
         if (currentFlowchartPanel != null) {
+            if (run != null && !run.getState().isOver()) {
+                stopRun();
+                controlPanel.setStatus("Stopped");
+                controlPanel.setState(ExecutionControlPanel.ExecutionState.IDLE);
+            }
+
             interpreter = new FlowchartInterpreter(
                 currentFlowchartPanel.getGraph(),
                 currentFlowchartPanel.getStartCell(),
@@ -179,7 +285,6 @@ public class FlowchartEditorApp extends JFrame {
 
             setupInterpreter();
             setupGraphListener();
-            updateCCode();
 
             // Update title
             setTitle("Flowchart Editor - " + tabTitle);
@@ -203,44 +308,67 @@ public class FlowchartEditorApp extends JFrame {
      * Syncs a function's graph from the main panel to its panel
      */
     private void syncFunctionFromMain(String functionName, FlowchartPanel functionPanel) {
-        // Currently the function panel is created fresh, so no need to sync on first creation
-        // This method is here for future enhancements where we might reload tabs
+        // Il pannello di una funzione caricata da file riceve il suo diagramma alla prima apertura
+        ProjectFile.GraphData pending = pendingFunctionGraphs.remove(functionName);
+        if (pending != null && functionPanel != null) {
+            functionPanel.loadGraph(pending);
+        }
     }
 
     private void setupInterpreter() {
-        interpreter.setExecutionListener(new FlowchartInterpreter.ExecutionListener() {
+        // I valori di input vengono chiesti con un dialogo, in modo sincrono dal thread dell'interprete
+        interpreter.setInputProvider(new DialogInputProvider(this));
+        interpreter.setLimits(new ExecutionLimits(0, 0, MAX_CALL_DEPTH));
+        interpreter.setProfiling(profilingEnabled);
+        // Le notifiche arrivano dal thread dell'esecuzione; quelle di un'esecuzione
+        // fermata con Reset o superata da una nuova vengono ignorate
+        FlowchartInterpreter owner = interpreter;
+        StepEventBuffer buffer = stepEventBuffer;
+        interpreter.setExecutionListener(new FlowchartInterpreter.ExecutionDeltaListener() {
             @Override
-            public void onExecutionStep(Object cell, Map<String, Object> variables, String output) {
-                // Update UI
-                SwingUtilities.invokeLater(() -> {
-                    currentFlowchartPanel.highlightCell(cell);
-                    variablesPanel.updateVariables(variables);
-                    outputPanel.setOutput(output);
-                });
-
-                // Add delay for visualization only in automatic mode
-                // In step-by-step mode, the user controls the pace
-                if (!interpreter.isPaused() && interpreter.isRunning()) {
-                    try {
-                        Thread.sleep(500);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                    }
+            public void onExecutionDelta(ExecutionDelta delta) {
+                if (!isCurrentRun(owner)) {
+                    return;
+                }
+                // La pausa tra i blocchi è gestita da ExecutionRun
+                if (controlPanel.getStepDelay() >= FRAME_INTERVAL_MS) {
+                    // Animated mode: show every step (after any events still buffered)
+                    SwingUtilities.invokeLater(() -> {
+                        if (!isCurrentRun(owner)) {
+                            return;
+                        }
+                        buffer.flush();
+                        applyExecutionDelta(delta);
+                    });
+                } else {
+                    // Fast modes: the UI samples the accumulated changes once per frame
+                    buffer.add(delta);
                 }
             }
 
             @Override
             public void onExecutionComplete() {
+                ExecutionProfile profile = owner.getProfile();
                 SwingUtilities.invokeLater(() -> {
+                    if (!isCurrentRun(owner)) {
+                        return;
+                    }
+                    buffer.flush();
                     currentFlowchartPanel.clearHighlight();
-                    controlPanel.setStatus("Execution completed");
-                    controlPanel.setState(ExecutionControlPanel.ExecutionState.IDLE);
+                    if (profile != null) {
+                        showProfile(profile);
+                    }
                 });
             }
 
             @Override
             public void onExecutionError(String error) {
                 SwingUtilities.invokeLater(() -> {
+                    if (!isCurrentRun(owner)) {
+                        return;
+                    }
+                    runFailed = true;
+                    buffer.flush();
                     currentFlowchartPanel.clearHighlight();
                     controlPanel.setStatus("Error: " + error);
                     controlPanel.setState(ExecutionControlPanel.ExecutionState.IDLE);
@@ -255,150 +383,94 @@ public class FlowchartEditorApp extends JFrame {
 
             @Override
             public void onInputRequired(String variableName, FlowchartInterpreter.InputCallback callback) {
-                SwingUtilities.invokeLater(() -> {
-                    String input = JOptionPane.showInputDialog(
-                        FlowchartEditorApp.this,
-                        "Enter value for: " + variableName,
-                        "Input Required",
-                        JOptionPane.QUESTION_MESSAGE
-                    );
-
-                    if (input != null) {
-                        callback.onInputProvided(input);
-                    } else {
-                        // User cancelled
-                        interpreter.stop();
-                    }
-                });
+                // Non usato: i valori arrivano dal DialogInputProvider
+                // (se l'utente annulla il dialogo l'interprete si ferma)
             }
         });
     }
 
-    private void setupGraphListener() {
-        // Aggiungi un listener al modello del grafo per aggiornare il codice C in real-time
-        currentFlowchartPanel.getGraph().getModel().addListener(com.mxgraph.util.mxEvent.CHANGE,
-            (sender, evt) -> {
-                // NON aggiornare il codice C durante l'esecuzione
-                // (quando l'interprete evidenzia le celle, trigger eventi CHANGE)
-                if (interpreter != null && interpreter.isRunning()) {
-                    return;  // Skip update durante esecuzione
-                }
+    /**
+     * Shows a run profile as a heat map on the main and function diagrams (EDT only).
+     */
+    private void showProfile(ExecutionProfile profile) {
+        mainFlowchartPanel.showHeatMap(profile);
+        for (FlowchartPanel panel : functionPanels.values()) {
+            panel.showHeatMap(profile);
+        }
+        outputPanel.appendOutput(profile.formatSummary());
+    }
 
-                // Aggiorna il codice C quando il grafo cambia
-                SwingUtilities.invokeLater(() -> updateCCode());
-            }
-        );
+    private void clearHeatMaps() {
+        mainFlowchartPanel.clearHeatMap();
+        for (FlowchartPanel panel : functionPanels.values()) {
+            panel.clearHeatMap();
+        }
+    }
+
+    /**
+     * Shows the changes of one or more execution steps (EDT only).
+     */
+    private void applyExecutionDelta(ExecutionDelta delta) {
+        currentFlowchartPanel.highlightCell(delta.getCell());
+        variablesPanel.applyDelta(delta);
+        if (!delta.getAppendedOutput().isEmpty()) {
+            outputPanel.appendOutput(delta.getAppendedOutput());
+        }
+    }
 
-        // Genera il codice iniziale
-        SwingUtilities.invokeLater(() -> updateCCode());
+    private void setupGraphListener() {
+        // Un solo listener per modello: il codice C viene rigenerato in background,
+        // una volta sola per ogni raffica di modifiche
+        cCodeScheduler.watch(currentFlowchartPanel.getGraph());
+        cCodeScheduler.requestUpdate();
     }
 
     private void setupControlPanel() {
         controlPanel.setExecutionControlListener(new ExecutionControlPanel.ExecutionControlListener() {
             @Override
             public void onRun() {
-                // Se siamo in modalità stepping, continua da dove eravamo
-                if (controlPanel.getState() == ExecutionControlPanel.ExecutionState.STEPPING) {
-                    // Passa da stepping a running: continua l'esecuzione automatica
-                    controlPanel.setStatus("Running...");
-                    controlPanel.setState(ExecutionControlPanel.ExecutionState.RUNNING);
-
-                    new Thread(() -> {
-                        // Riprendi esecuzione automatica
-                        while (interpreter.isRunning() &&
-                               interpreter.getCurrentCell() != currentFlowchartPanel.getEndCell()) {
-                            interpreter.step();
-                        }
-
-                        // Esecuzione completata
-                        SwingUtilities.invokeLater(() -> {
-                            currentFlowchartPanel.clearHighlight();
-                            controlPanel.setStatus("Execution completed");
-                            controlPanel.setState(ExecutionControlPanel.ExecutionState.IDLE);
-                        });
-                    }).start();
-
-                } else {
-                    // Nuova esecuzione - reset UI
-                    outputPanel.clear();
-                    variablesPanel.clear();
-                    currentFlowchartPanel.clearHighlight();
-
-                    // Update interpreter with current graph state
-                    interpreter = new FlowchartInterpreter(
-                        currentFlowchartPanel.getGraph(),
-                        currentFlowchartPanel.getStartCell(),
-                        currentFlowchartPanel.getEndCell(),
-                        mainFlowchartPanel  // CRITICAL: Pass main panel for function support
-                    );
-                    setupInterpreter();
-
-                    // Start execution in background thread
-                    controlPanel.setStatus("Running...");
-                    controlPanel.setState(ExecutionControlPanel.ExecutionState.RUNNING);
-
-                    new Thread(() -> {
-                        interpreter.start();
-                    }).start();
+                // In pausa (modalità stepping) l'esecuzione continua da dove era rimasta
+                if (run == null || run.getState().isOver()) {
+                    startRun();
                 }
+                controlPanel.setStatus("Running...");
+                controlPanel.setState(ExecutionControlPanel.ExecutionState.RUNNING);
+                run.send(ExecutionRun.Command.RESUME);
             }
 
             @Override
             public void onStep() {
-                if (!interpreter.isRunning()) {
-                    // First step - reset UI
-                    outputPanel.clear();
-                    variablesPanel.clear();
-                    currentFlowchartPanel.clearHighlight();
-
-                    // Update interpreter
-                    interpreter = new FlowchartInterpreter(
-                        currentFlowchartPanel.getGraph(),
-                        currentFlowchartPanel.getStartCell(),
-                        currentFlowchartPanel.getEndCell(),
-                        mainFlowchartPanel  // CRITICAL: Pass main panel for function support
-                    );
-                    setupInterpreter();
-
+                if (run == null || run.getState().isOver()) {
+                    startRun();
                     controlPanel.setStatus("Step-by-step mode - Click 'Next Step' to continue");
                 } else {
                     controlPanel.setStatus("Executing step...");
                 }
 
-                // Imposta stato stepping
+                // Ogni clic viene accodato ed esegue esattamente un blocco
                 controlPanel.setState(ExecutionControlPanel.ExecutionState.STEPPING);
+                run.send(ExecutionRun.Command.STEP);
+            }
 
-                new Thread(() -> {
-                    interpreter.step();
-
-                    SwingUtilities.invokeLater(() -> {
-                        if (!interpreter.isRunning() ||
-                            interpreter.getCurrentCell() == currentFlowchartPanel.getEndCell()) {
-                            // Esecuzione completata
-                            currentFlowchartPanel.clearHighlight();
-                            controlPanel.setStatus("Execution completed");
-                            controlPanel.setState(ExecutionControlPanel.ExecutionState.IDLE);
-                        } else {
-                            // Pronto per il prossimo step
-                            controlPanel.setStatus("Ready for next step - Click 'Next Step' to continue");
-                            controlPanel.setState(ExecutionControlPanel.ExecutionState.STEPPING);
-                        }
-                    });
-                }).start();
+            @Override
+            public void onPause() {
+                if (run != null) {
+                    run.send(ExecutionRun.Command.PAUSE);
+                }
             }
 
             @Override
             public void onStop() {
-                interpreter.stop();
-                currentFlowchartPanel.clearHighlight();
-                controlPanel.setStatus("Stopped");
-                controlPanel.setState(ExecutionControlPanel.ExecutionState.IDLE);
+                if (run != null) {
+                    run.send(ExecutionRun.Command.STOP);
+                }
             }
 
             @Override
             public void onReset() {
-                interpreter.reset();
+                stopRun();
                 currentFlowchartPanel.clearHighlight();
+                clearHeatMaps();
                 outputPanel.clear();
                 variablesPanel.clear();
                 controlPanel.setStatus("Ready");
@@ -407,6 +479,97 @@ public class FlowchartEditorApp extends JFrame {
         });
     }
 
+    /**
+     * Starts a new run of the current diagram on its own thread, paused at the Start block (EDT only).
+     */
+    private void startRun() {
+        discardStepEvents();
+        outputPanel.clear();
+        variablesPanel.clear();
+        currentFlowchartPanel.clearHighlight();
+        clearHeatMaps();
+
+        // Update interpreter with current graph state
+        interpreter = new FlowchartInterpreter(
+            currentFlowchartPanel.getGraph(),
+            currentFlowchartPanel.getStartCell(),
+            currentFlowchartPanel.getEndCell(),
+            mainFlowchartPanel  // CRITICAL: Pass main panel for function support
+        );
+        setupInterpreter();
+
+        ExecutionRun started = new ExecutionRun(interpreter);
+        started.setStepDelay(controlPanel::getStepDelay);
+        // Viene mostrato solo l'ultimo stato pubblicato: quelli superati nel frattempo sono saltati
+        started.setStateListener(state -> SwingUtilities.invokeLater(() -> showRunState(started)));
+        run = started;
+        shownRunVersion = 0;
+        runFailed = false;
+        started.start();
+    }
+
+    /**
+     * Stops the current run, if any; its later notifications are ignored (EDT only).
+     */
+    private void stopRun() {
+        if (run != null) {
+            run.send(ExecutionRun.Command.STOP);
+            run = null;
+        }
+        discardStepEvents();
+    }
+
+    /**
+     * Drops the step events buffered for the previous run and starts a new buffer (EDT only).
+     */
+    private void discardStepEvents() {
+        stepEventBuffer.discard();
+        stepEventBuffer = new StepEventBuffer(this::applyExecutionDelta);
+    }
+
+    private boolean isCurrentRun(FlowchartInterpreter owner) {
+        return run != null && run.getInterpreter() == owner;
+    }
+
+    /**
+     * Shows the latest state of a run in the control panel (EDT only).
+     */
+    private void showRunState(ExecutionRun source) {
+        if (source != run) {
+            return;
+        }
+        ExecutionRun.State state = source.getState();
+        if (state.getVersion() <= shownRunVersion) {
+            return;
+        }
+        shownRunVersion = state.getVersion();
+
+        switch (state.getPhase()) {
+            case RUNNING:
+                controlPanel.setStatus("Running...");
+                controlPanel.setState(ExecutionControlPanel.ExecutionState.RUNNING);
+                break;
+            case PAUSED:
+                controlPanel.setStatus(state.getSteps() == 0
+                    ? "Step-by-step mode - Click 'Next Step' to continue"
+                    : "Ready for next step - Click 'Next Step' to continue");
+                controlPanel.setState(ExecutionControlPanel.ExecutionState.STEPPING);
+                break;
+            case FINISHED:
+                currentFlowchartPanel.clearHighlight();
+                if (!runFailed) {
+                    controlPanel.setStatus("Execution completed");
+                }
+                controlPanel.setState(ExecutionControlPanel.ExecutionState.IDLE);
+                break;
+            case STOPPED:
+                currentFlowchartPanel.clearHighlight();
+                controlPanel.setStatus("Stopped");
+                controlPanel.setState(ExecutionControlPanel.ExecutionState.IDLE);
+                break;
+        }
+    }
+
     private void setupMenuBar() {
         JMenuBar menuBar = new JMenuBar();
 
@@ -505,6 +668,19 @@ public class FlowchartEditorApp extends JFrame {
         resetZoomItem.addActionListener(e -> currentFlowchartPanel.resetZoom());
         viewMenu.add(resetZoomItem);
 
+        viewMenu.addSeparator();
+
+        // Profilazione: tempo e numero di esecuzioni di ogni blocco come heat map
+        JCheckBoxMenuItem heatMapItem = new JCheckBoxMenuItem("Profile Execution (Heat Map)");
+        heatMapItem.addActionListener(e -> {
+            profilingEnabled = heatMapItem.isSelected();
+            interpreter.setProfiling(profilingEnabled);
+            if (!profilingEnabled) {
+                clearHeatMaps();
+            }
+        });
+        viewMenu.add(heatMapItem);
+
         menuBar.add(viewMenu);
 
         // Functions menu
@@ -760,19 +936,27 @@ public class FlowchartEditorApp extends JFrame {
     private void saveFlowchart() {
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setDialogTitle("Save Flowchart");
-        fileChooser.setFileFilter(new FileNameExtensionFilter("Flowchart Files (*.xml)", "xml"));
+        FileNameExtensionFilter xmlFilter = new FileNameExtensionFilter("Flowchart Files (*.xml)", "xml");
+        FileNameExtensionFilter binaryFilter = new FileNameExtensionFilter(
+            "Compact Flowchart Files (*." + BinaryProjectFile.EXTENSION + ")", BinaryProjectFile.EXTENSION);
+        fileChooser.addChoosableFileFilter(binaryFilter);
+        fileChooser.setFileFilter(xmlFilter);
 
         int result = fileChooser.showSaveDialog(this);
         if (result == JFileChooser.APPROVE_OPTION) {
             File file = fileChooser.getSelectedFile();
 
-            // Add .xml extension if not present
-            if (!file.getName().toLowerCase().endsWith(".xml")) {
-                file = new File(file.getAbsolutePath() + ".xml");
+            // Add the extension of the chosen format if not present
+            String name = file.getName().toLowerCase();
+            if (!name.endsWith(".xml") && !name.endsWith("." + BinaryProjectFile.EXTENSION)) {
+                String extension = fileChooser.getFileFilter() == binaryFilter ? BinaryProjectFile.EXTENSION : "xml";
+                file = new File(file.getAbsolutePath() + "." + extension);
             }
 
             try {
-                currentFlowchartPanel.saveFlowchart(file);
+                // Il progetto contiene main e tutte le funzioni, anche quella aperta
+                syncCurrentFunctionToMain();
+                mainFlowchartPanel.saveFlowchart(file);
                 JOptionPane.showMessageDialog(
                     this,
                     "Flowchart saved successfully to:\n" + file.getAbsolutePath(),
@@ -794,7 +978,7 @@ public class FlowchartEditorApp extends JFrame {
     private void loadFlowchart() {
         int choice = JOptionPane.showConfirmDialog(
             this,
-            "Load a flowchart? This will replace the current diagram.",
+            "Load a flowchart? This will replace the current diagram and functions.",
             "Load Flowchart",
             JOptionPane.OK_CANCEL_OPTION,
             JOptionPane.QUESTION_MESSAGE
@@ -803,16 +987,36 @@ public class FlowchartEditorApp extends JFrame {
         if (choice == JOptionPane.OK_OPTION) {
             JFileChooser fileChooser = new JFileChooser();
             fileChooser.setDialogTitle("Load Flowchart");
-            fileChooser.setFileFilter(new FileNameExtensionFilter("Flowchart Files (*.xml)", "xml"));
+            fileChooser.setFileFilter(new FileNameExtensionFilter(
+                "Flowchart Files (*.xml, *." + BinaryProjectFile.EXTENSION + ")", "xml", BinaryProjectFile.EXTENSION));
 
             int result = fileChooser.showOpenDialog(this);
             if (result == JFileChooser.APPROVE_OPTION) {
                 File file = fileChooser.getSelectedFile();
 
                 try {
-                    currentFlowchartPanel.loadFlowchart(file);
+                    ProjectFile.Project project = ProjectFile.load(file);
+
+                    // Torna al main e chiude i tab delle funzioni attuali
+                    tabbedPane.setSelectedIndex(0);
+                    while (tabbedPane.getTabCount() > 1) {
+                        tabbedPane.removeTabAt(tabbedPane.getTabCount() - 1);
+                    }
+                    functionPanels.clear();
+                    pendingFunctionGraphs.clear();
+
+                    mainFlowchartPanel.loadProject(project);
+
+                    // Un tab per funzione: il diagramma viene caricato nel pannello alla prima apertura
+                    for (String functionName : project.getFunctions().keySet()) {
+                        FlowchartPanel functionPanel = new FlowchartPanel();
+                        functionPanels.put(functionName, functionPanel);
+                        pendingFunctionGraphs.put(functionName, project.getFunctionGraph(functionName));
+                        tabbedPane.addTab(functionName, createScrollPaneForPanel(functionPanel));
+                    }
 
                     // Reset execution state
+                    stopRun();
                     interpreter = new FlowchartInterpreter(
                         currentFlowchartPanel.getGraph(),
                         currentFlowchartPanel.getStartCell(),
@@ -861,39 +1065,25 @@ public class FlowchartEditorApp extends JFrame {
     }
 
     /**
-     * Aggiorna il codice C generato dal flowchart corrente
+     * Aggiorna il codice C generato dal flowchart corrente (in background, dopo le modifiche in corso)
      */
     private void updateCCode() {
-        try {
-            // Se siamo su una funzione tab, sincronizza il grafo prima di generare
-            if (currentFlowchartPanel != null && currentFlowchartPanel != mainFlowchartPanel) {
-                // Find the function name for current panel
-                String currentFunctionName = null;
-                for (Map.Entry<String, FlowchartPanel> entry : functionPanels.entrySet()) {
-                    if (entry.getValue() == currentFlowchartPanel) {
-                        currentFunctionName = entry.getKey();
-                        break;
-                    }
-                }
+        cCodeScheduler.requestUpdate();
+    }
 
-                // Sync function graph back to main panel BEFORE generating code
-                if (currentFunctionName != null) {
-                    syncFunctionToMain(currentFunctionName, currentFlowchartPanel);
+    /**
+     * Copies the graph of the function tab being edited into its definition, so that
+     * the C code is always generated from the main panel (EDT only).
+     */
+    private void syncCurrentFunctionToMain() {
+        if (currentFlowchartPanel != null && currentFlowchartPanel != mainFlowchartPanel) {
+            // Find the function name for current panel
+            for (Map.Entry<String, FlowchartPanel> entry : functionPanels.entrySet()) {
+                if (entry.getValue() == currentFlowchartPanel) {
+                    syncFunctionToMain(entry.getKey(), currentFlowchartPanel);
+                    break;
                 }
             }
-
-            // ALWAYS generate from main panel to show complete program
-            // This fixes the bug where function code appears in main() when viewing function tabs
-            FlowchartToCGenerator generator = new FlowchartToCGenerator(
-                mainFlowchartPanel.getGraph(),
-                mainFlowchartPanel.getStartCell(),
-                mainFlowchartPanel.getEndCell(),
-                mainFlowchartPanel  // Pass main panel for function access
-            );
-            String code = generator.generateCode();
-            cCodePanel.setCode(code);
-        } catch (Exception e) {
-            cCodePanel.setCode("// Errore nella generazione del codice:\n// " + e.getMessage());
         }
     }
 
@@ -1395,6 +1585,7 @@ public class FlowchartEditorApp extends JFrame {
         if (mainFlowchartPanel.deleteFunction(functionName)) {
             // Remove from function panels map
             functionPanels.remove(functionName);
+            pendingFunctionGraphs.remove(functionName);
 
             // Remove the tab
             tabbedPane.removeTabAt(tabIndex);
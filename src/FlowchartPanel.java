@@ -1,5 +1,4 @@
 import com.mxgraph.canvas.mxGraphics2DCanvas;
-import com.mxgraph.io.mxCodec;
 import com.mxgraph.layout.hierarchical.mxHierarchicalLayout;
 import com.mxgraph.model.mxCell;
 import com.mxgraph.model.mxGeometry;
@@ -12,11 +11,9 @@ import com.mxgraph.util.mxPoint;
 import com.mxgraph.util.mxRectangle;
 import com.mxgraph.util.mxUndoManager;
 import com.mxgraph.util.mxUndoableEdit;
-import com.mxgraph.util.mxUtils;
-import com.mxgraph.util.mxXmlUtils;
+import com.mxgraph.view.mxCellState;
 import com.mxgraph.view.mxGraph;
 import com.mxgraph.view.mxStylesheet;
-import org.w3c.dom.Document;
 
 import javax.swing.*;
 import java.awt.*;
@@ -35,7 +32,7 @@ import java.util.Map;
  * - Click on EDGES to insert blocks
  * - IF blocks automatically create merge structure
  */
-public class FlowchartPanel extends JPanel {
+public class FlowchartPanel extends JPanel implements FunctionRegistry {
 
     private mxGraph graph;
     private mxGraphComponent graphComponent;
@@ -55,18 +52,18 @@ public class FlowchartPanel extends JPanel {
     private Object mainStartCell = null;
     private Object mainEndCell = null;
 
-    // Block type constants
-    public static final String ASSIGNMENT = "ASSIGNMENT";  // Assignment block (rectangle)
-    public static final String INPUT = "INPUT";  // Input block (parallelogram with I)
-    public static final String OUTPUT = "OUTPUT";  // Output block (parallelogram with O)
-    public static final String CONDITIONAL = "CONDITIONAL";
-    public static final String LOOP = "LOOP";  // While loop
-    public static final String FOR_LOOP = "FOR_LOOP";  // For loop
-    public static final String DO_WHILE = "DO_WHILE";  // Do-While loop
-    public static final String START = "START";
-    public static final String END = "END";
-    public static final String MERGE = "MERGE";  // Merge point for conditionals
-    public static final String FUNCTION_CALL = "FUNCTION_CALL";  // Function call block
+    // Block type constants (defined in the core, see BlockStyles)
+    public static final String ASSIGNMENT = BlockStyles.ASSIGNMENT;
+    public static final String INPUT = BlockStyles.INPUT;
+    public static final String OUTPUT = BlockStyles.OUTPUT;
+    public static final String CONDITIONAL = BlockStyles.CONDITIONAL;
+    public static final String LOOP = BlockStyles.LOOP;
+    public static final String FOR_LOOP = BlockStyles.FOR_LOOP;
+    public static final String DO_WHILE = BlockStyles.DO_WHILE;
+    public static final String START = BlockStyles.START;
+    public static final String END = BlockStyles.END;
+    public static final String MERGE = BlockStyles.MERGE;
+    public static final String FUNCTION_CALL = BlockStyles.FUNCTION_CALL;
 
     @Deprecated
     public static final String PROCESS = ASSIGNMENT;  // Deprecated: use ASSIGNMENT
@@ -76,9 +73,14 @@ public class FlowchartPanel extends JPanel {
     // Track merge points for conditionals
     private Map<Object, Object> conditionalMergePoints = new HashMap<>();
 
-    // Track highlighted cell during execution
+    // Track highlighted cell during execution (drawn as an overlay, the model is not changed)
     private Object highlightedCell = null;
-    private String originalCellStyle = null;
+    private static final Color HIGHLIGHT_COLOR = new Color(0xFF, 0xD7, 0x00);
+    private static final int HIGHLIGHT_WIDTH = 4;
+
+    // Heat map of the last profiled run (null = hidden), drawn over the cells
+    private Map<Object, ExecutionProfile.BlockStats> heatMap = null;
+    private long heatMapMaxNanos = 0;
 
     public FlowchartPanel() {
         setLayout(new BorderLayout());
@@ -114,6 +116,16 @@ public class FlowchartPanel extends JPanel {
         graphComponent.getViewport().setOpaque(true);
         graphComponent.getViewport().setBackground(Color.WHITE);
 
+        // Overlay disegnato dopo il grafo: non modifica gli stili del modello
+        graphComponent.addListener(mxEvent.AFTER_PAINT, new mxEventSource.mxIEventListener() {
+            @Override
+            public void invoke(Object sender, mxEventObject evt) {
+                Graphics2D g = (Graphics2D) evt.getProperty("g");
+                paintHeatMap(g);
+                paintHighlight(g);
+            }
+        });
+
         // CRITICAL: Create a dummy editor that does nothing to prevent inline editing
         graphComponent.setCellEditor(new com.mxgraph.swing.view.mxICellEditor() {
             @Override
@@ -1065,10 +1077,22 @@ public class FlowchartPanel extends JPanel {
      */
     public void createLoopExample() {
         clearFlowchart();
-        Object parent = graph.getDefaultParent();
-        Object start = startCell;
-        Object end = endCell;
 
+        graph.getModel().beginUpdate();
+        try {
+            insertLoopExample(graph, startCell, endCell);
+            applyHierarchicalLayout();
+        } finally {
+            graph.getModel().endUpdate();
+        }
+    }
+
+    /**
+     * Inserts the loop example between start and end, replacing the edges that join them.
+     * Needs no panel, so it also builds the example for headless runs and benchmarks.
+     */
+    static void insertLoopExample(mxGraph graph, Object start, Object end) {
+        Object parent = graph.getDefaultParent();
         graph.getModel().beginUpdate();
         try {
             Object[] edges = graph.getEdgesBetween(start, end);
@@ -1102,9 +1126,6 @@ public class FlowchartPanel extends JPanel {
             // No branch exits loop directly to output (no merge point needed)
             graph.insertEdge(parent, null, "No", loop, output, "FALSE_BRANCH");
             graph.insertEdge(parent, null, "", output, end);
-
-            applyHierarchicalLayout();
-
         } finally {
             graph.getModel().endUpdate();
         }
@@ -1115,10 +1136,21 @@ public class FlowchartPanel extends JPanel {
      */
     public void createNestedConditionalExample() {
         clearFlowchart();
-        Object parent = graph.getDefaultParent();
-        Object start = startCell;
-        Object end = endCell;
 
+        graph.getModel().beginUpdate();
+        try {
+            insertNestedConditionalExample(graph, startCell, endCell);
+            applyHierarchicalLayout();
+        } finally {
+            graph.getModel().endUpdate();
+        }
+    }
+
+    /**
+     * Inserts the nested conditional example between start and end, replacing the edges that join them.
+     */
+    static void insertNestedConditionalExample(mxGraph graph, Object start, Object end) {
+        Object parent = graph.getDefaultParent();
         graph.getModel().beginUpdate();
         try {
             Object[] edges = graph.getEdgesBetween(start, end);
@@ -1157,9 +1189,6 @@ public class FlowchartPanel extends JPanel {
             Object output = graph.insertVertex(parent, null, "result", 0, 0, 140, 70, OUTPUT);
             graph.insertEdge(parent, null, "", outerMerge, output);
             graph.insertEdge(parent, null, "", output, end);
-
-            applyHierarchicalLayout();
-
         } finally {
             graph.getModel().endUpdate();
         }
@@ -1181,54 +1210,134 @@ public class FlowchartPanel extends JPanel {
     // ===== EXECUTION HIGHLIGHTING =====
 
     /**
-     * Highlight a cell during execution
+     * Highlight a cell during execution. Only the areas of the previous and
+     * the new cell are repainted; the model and its undo history are not touched.
      */
     public void highlightCell(Object cell) {
-        // Remove previous highlight
-        clearHighlight();
+        if (cell == highlightedCell) {
+            return;
+        }
+        Object previous = highlightedCell;
+        highlightedCell = cell != null && graph.getModel().isVertex(cell) ? cell : null;
+        repaintHighlight(previous);
+        repaintHighlight(highlightedCell);
+    }
 
-        if (cell != null && graph.getModel().isVertex(cell)) {
-            mxCell vertex = (mxCell) cell;
+    /**
+     * Clear the current highlight
+     */
+    public void clearHighlight() {
+        if (highlightedCell != null) {
+            Object previous = highlightedCell;
+            highlightedCell = null;
+            repaintHighlight(previous);
+        }
+    }
 
-            // Save original style
-            highlightedCell = cell;
-            originalCellStyle = vertex.getStyle();
+    /**
+     * Bounds of the highlight of a cell, in graph control coordinates (null if the cell is not shown).
+     */
+    private Rectangle getHighlightBounds(Object cell) {
+        mxCellState state = cell != null ? graph.getView().getState(cell) : null;
+        if (state == null) {
+            return null;
+        }
+        Rectangle bounds = state.getRectangle();
+        int margin = HIGHLIGHT_WIDTH;
+        bounds.grow(margin, margin);
+        return bounds;
+    }
 
-            // Apply highlight style
-            graph.getModel().beginUpdate();
-            try {
-                String currentStyle = originalCellStyle != null ? originalCellStyle : "";
+    private void repaintHighlight(Object cell) {
+        Rectangle bounds = getHighlightBounds(cell);
+        if (bounds != null) {
+            // Margine per l'antialiasing e l'ombra
+            bounds.grow(HIGHLIGHT_WIDTH, HIGHLIGHT_WIDTH);
+            graphComponent.getGraphControl().repaint(bounds);
+        }
+    }
 
-                // Add yellow border and shadow to highlight
-                String highlightStyle = currentStyle + ";strokeColor=#FFD700;strokeWidth=4;shadow=1";
-                graph.getModel().setStyle(cell, highlightStyle);
+    private void paintHighlight(Graphics2D g) {
+        Rectangle bounds = getHighlightBounds(highlightedCell);
+        if (bounds == null) {
+            return;
+        }
+        Stroke previousStroke = g.getStroke();
+        int inset = HIGHLIGHT_WIDTH / 2;
+
+        // Ombra leggera e bordo giallo attorno al blocco
+        g.setColor(new Color(0, 0, 0, 60));
+        g.setStroke(new BasicStroke(HIGHLIGHT_WIDTH));
+        g.drawRoundRect(bounds.x + inset + 2, bounds.y + inset + 2,
+            bounds.width - HIGHLIGHT_WIDTH, bounds.height - HIGHLIGHT_WIDTH, 8, 8);
+        g.setColor(HIGHLIGHT_COLOR);
+        g.drawRoundRect(bounds.x + inset, bounds.y + inset,
+            bounds.width - HIGHLIGHT_WIDTH, bounds.height - HIGHLIGHT_WIDTH, 8, 8);
+        g.setStroke(previousStroke);
+    }
 
-            } finally {
-                graph.getModel().endUpdate();
-            }
+    // ===== EXECUTION HEAT MAP =====
 
-            // Refresh the view
-            graphComponent.refresh();
+    /**
+     * Show a profile as a heat map over the blocks: from blue (cold) to red (the block
+     * with the most time), with execution count and time below each block.
+     * The cell styles are not changed.
+     */
+    public void showHeatMap(ExecutionProfile profile) {
+        heatMap = new HashMap<>();
+        heatMapMaxNanos = 0;
+        for (ExecutionProfile.BlockStats stats : profile.getBlocks()) {
+            heatMap.put(stats.getCell(), stats);
+            heatMapMaxNanos = Math.max(heatMapMaxNanos, stats.getNanos());
         }
+        graphComponent.getGraphControl().repaint();
     }
 
     /**
-     * Clear the current highlight
+     * Hide the heat map
      */
-    public void clearHighlight() {
-        if (highlightedCell != null) {
-            graph.getModel().beginUpdate();
-            try {
-                // Restore original style
-                graph.getModel().setStyle(highlightedCell, originalCellStyle);
+    public void clearHeatMap() {
+        if (heatMap != null) {
+            heatMap = null;
+            graphComponent.getGraphControl().repaint();
+        }
+    }
 
-            } finally {
-                graph.getModel().endUpdate();
-            }
+    public boolean isHeatMapVisible() {
+        return heatMap != null;
+    }
 
-            highlightedCell = null;
-            originalCellStyle = null;
-            graphComponent.refresh();
+    private void paintHeatMap(Graphics2D g) {
+        if (heatMap == null) {
+            return;
+        }
+
+        Font labelFont = g.getFont().deriveFont(Font.PLAIN, 10f);
+        g.setFont(labelFont);
+        FontMetrics metrics = g.getFontMetrics();
+
+        for (ExecutionProfile.BlockStats stats : heatMap.values()) {
+            // Le celle delle altre funzioni non hanno uno stato in questo grafo
+            mxCellState state = graph.getView().getState(stats.getCell());
+            if (state == null) {
+                continue;
+            }
+            Rectangle bounds = state.getRectangle();
+
+            float heat = heatMapMaxNanos > 0 ? (float) stats.getNanos() / heatMapMaxNanos : 0f;
+            Color color = Color.getHSBColor(0.66f * (1f - heat), 0.9f, 1f);
+            g.setColor(new Color(color.getRed(), color.getGreen(), color.getBlue(), 120));
+            g.fillRect(bounds.x, bounds.y, bounds.width, bounds.height);
+
+            // Etichetta sotto il blocco: esecuzioni e tempo
+            String label = stats.getCount() + "× · " + ExecutionProfile.formatNanos(stats.getNanos());
+            int labelWidth = metrics.stringWidth(label) + 6;
+            int labelX = bounds.x + (bounds.width - labelWidth) / 2;
+            int labelY = bounds.y + bounds.height + 2;
+            g.setColor(new Color(255, 255, 255, 220));
+            g.fillRect(labelX, labelY, labelWidth, metrics.getHeight());
+            g.setColor(color.darker().darker());
+            g.drawString(label, labelX + 3, labelY + metrics.getAscent());
         }
     }
 
@@ -1351,32 +1460,41 @@ public class FlowchartPanel extends JPanel {
     // ===== SAVE/LOAD FUNCTIONALITY =====
 
     /**
-     * Save the flowchart to an XML file
+     * Save the main flowchart and all functions to a project file
+     * (binary format if the file has the {@link BinaryProjectFile#EXTENSION} extension)
      */
     public void saveFlowchart(File file) throws Exception {
-        mxCodec codec = new mxCodec();
-        String xml = mxXmlUtils.getXml(codec.encode(graph.getModel()));
-        mxUtils.writeFile(xml, file.getAbsolutePath());
+        if (file.getName().toLowerCase().endsWith("." + BinaryProjectFile.EXTENSION)) {
+            BinaryProjectFile.save(file, mainGraph.getModel(), functions);
+        } else {
+            ProjectFile.save(file, mainGraph.getModel(), functions);
+        }
     }
 
     /**
-     * Load a flowchart from an XML file
+     * Load a project read by {@link ProjectFile#load}: the main graph replaces the
+     * current one and the functions replace the defined ones.
      */
-    public void loadFlowchart(File file) throws Exception {
-        // Parse XML document
-        Document document = mxXmlUtils.parseXml(mxUtils.readFile(file.getAbsolutePath()));
+    public void loadProject(ProjectFile.Project project) {
+        if (!"main".equals(currentContext)) {
+            switchToContext("main");
+        }
+        loadGraph(project.getMainGraph());
+        mainStartCell = startCell;
+        mainEndCell = endCell;
 
-        // Create codec and decode
-        mxCodec codec = new mxCodec(document);
+        functions.clear();
+        functions.putAll(project.getFunctions());
+    }
 
-        // Clear current graph
+    /**
+     * Replaces the content of the current graph with a graph read from a project file
+     */
+    public void loadGraph(ProjectFile.GraphData graphData) {
         graph.getModel().beginUpdate();
         try {
-            // Remove all cells
-            graph.removeCells(graph.getChildVertices(graph.getDefaultParent()));
-
-            // Decode the model
-            codec.decode(document.getDocumentElement(), graph.getModel());
+            // Il modello riceve una nuova radice con le celle lette dal file
+            graphData.decodeInto(graph.getModel());
 
             // Find Start and End cells after loading
             Object parent = graph.getDefaultParent();
@@ -1642,6 +1760,7 @@ public class FlowchartPanel extends JPanel {
      *
      * @return Map of function names to function definitions
      */
+    @Override
     public Map<String, FunctionDefinition> getFunctions() {
         return functions;
     }
@@ -1652,6 +1771,7 @@ public class FlowchartPanel extends JPanel {
      * @param functionName Name of the function
      * @return FunctionDefinition or null if not found
      */
+    @Override
     public FunctionDefinition getFunction(String functionName) {
         return functions.get(functionName);
     }
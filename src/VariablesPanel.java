@@ -1,15 +1,82 @@
 import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Pannello per visualizzare le variabili durante l'esecuzione.
+ *
+ * Un array occupa una sola riga con le prime posizioni e la lunghezza; selezionandolo,
+ * i suoi elementi compaiono nella tabella sottostante, che disegna solo le righe visibili,
+ * anche per centinaia di migliaia di elementi. L'array mostrato è la copia (snapshot)
+ * ricevuta con gli {@link ExecutionDelta}, non quello che l'interprete sta modificando:
+ * il pannello vi applica gli elementi scritti ad ogni evento, quindi corrisponde al
+ * blocco evidenziato.
  */
 public class VariablesPanel extends JPanel {
 
+    // Elementi mostrati nella riga di riepilogo di un array
+    private static final int PREVIEW_ELEMENTS = 10;
+
     private JTable variablesTable;
     private DefaultTableModel tableModel;
+    private Map<String, Integer> rowByName = new HashMap<>();
+    private Map<String, Object> arrays = new HashMap<>();  // Array correnti per nome
+    private ArrayTableModel elementsModel = new ArrayTableModel();
+    private JLabel elementsLabel;
+    private String shownArray;
+
+    /**
+     * Elementi di un int[] o double[] letti su richiesta: la tabella chiede solo le celle visibili.
+     */
+    private static final class ArrayTableModel extends AbstractTableModel {
+        private Object array;
+        private int length;
+
+        void setArray(Object array) {
+            int newLength = lengthOf(array);
+            boolean sameShape = array != null && this.array != null && array.getClass() == this.array.getClass()
+                && newLength == length;
+            this.array = array;
+            this.length = newLength;
+            if (sameShape && length > 0) {
+                // Nuova copia dello stesso array: basta ridisegnare le righe (solo quelle visibili vengono lette)
+                fireTableRowsUpdated(0, length - 1);
+            } else if (!sameShape) {
+                fireTableDataChanged();
+            }
+        }
+
+        @Override
+        public int getRowCount() {
+            return length;
+        }
+
+        @Override
+        public int getColumnCount() {
+            return 2;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return column == 0 ? "Index" : "Value";
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            if (column == 0) {
+                return row;
+            }
+            if (array instanceof int[]) {
+                return ((int[]) array)[row];
+            }
+            return ((double[]) array)[row];
+        }
+    }
 
     public VariablesPanel() {
         setLayout(new BorderLayout());
@@ -32,10 +99,37 @@ public class VariablesPanel extends JPanel {
         variablesTable.setShowGrid(true);
         variablesTable.setGridColor(new Color(200, 200, 200));
 
+        // La selezione di un array ne mostra gli elementi
+        variablesTable.getSelectionModel().setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        variablesTable.getSelectionModel().addListSelectionListener(e -> {
+            int row = variablesTable.getSelectedRow();
+            if (!e.getValueIsAdjusting() && row >= 0) {
+                String name = (String) tableModel.getValueAt(row, 0);
+                if (arrays.containsKey(name)) {
+                    showArray(name);
+                }
+            }
+        });
+
         JScrollPane scrollPane = new JScrollPane(variablesTable);
         scrollPane.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED);
 
-        add(scrollPane, BorderLayout.CENTER);
+        // Tabella degli elementi: righe di altezza fissa, quindi nessun costo proporzionale alla lunghezza
+        JTable elementsTable = new JTable(elementsModel);
+        elementsTable.setFont(new Font("Monospaced", Font.PLAIN, 12));
+        elementsTable.setRowHeight(20);
+        elementsTable.setShowGrid(true);
+        elementsTable.setGridColor(new Color(200, 200, 200));
+
+        elementsLabel = new JLabel(" Select an array to see its elements");
+        elementsLabel.setFont(new Font("Arial", Font.ITALIC, 11));
+        JPanel elementsPanel = new JPanel(new BorderLayout());
+        elementsPanel.add(elementsLabel, BorderLayout.NORTH);
+        elementsPanel.add(new JScrollPane(elementsTable), BorderLayout.CENTER);
+
+        JSplitPane splitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT, scrollPane, elementsPanel);
+        splitPane.setResizeWeight(0.6);
+        add(splitPane, BorderLayout.CENTER);
 
         // Info label
         JLabel infoLabel = new JLabel(" Variables will appear here during execution");
@@ -46,16 +140,97 @@ public class VariablesPanel extends JPanel {
 
     public void updateVariables(Map<String, Object> variables) {
         // Rimuovi tutte le righe esistenti
-        tableModel.setRowCount(0);
+        clear();
 
         // Aggiungi le nuove variabili
         for (Map.Entry<String, Object> entry : variables.entrySet()) {
-            String name = entry.getKey();
-            Object value = entry.getValue();
-            String type = getTypeString(value);
+            setVariable(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Applies the changes of an execution step, updating only the affected rows.
+     */
+    public void applyDelta(ExecutionDelta delta) {
+        // Prima gli elementi scritti nelle copie, poi le righe degli array toccati
+        Set<Object> written = delta.getElementWrites().applyAll();
+        if (!written.isEmpty()) {
+            for (Map.Entry<String, Object> entry : new ArrayList<>(arrays.entrySet())) {
+                if (written.contains(entry.getValue()) && !delta.getChangedVariables().containsKey(entry.getKey())) {
+                    setVariable(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        if (delta.isVariablesReset()) {
+            updateVariables(delta.getChangedVariables());
+            return;
+        }
+        for (Map.Entry<String, Object> entry : delta.getChangedVariables().entrySet()) {
+            setVariable(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void setVariable(String name, Object value) {
+        boolean isArray = value instanceof int[] || value instanceof double[];
+        Object shown = isArray ? formatArray(value) : value;
+        Integer row = rowByName.get(name);
+        if (row == null) {
+            rowByName.put(name, tableModel.getRowCount());
+            tableModel.addRow(new Object[]{name, shown, getTypeString(value)});
+        } else {
+            tableModel.setValueAt(shown, row, 1);
+            tableModel.setValueAt(getTypeString(value), row, 2);
+        }
+
+        if (isArray) {
+            arrays.put(name, value);
+            // Il primo array compare subito; gli altri quando vengono selezionati
+            if (shownArray == null) {
+                shownArray = name;
+            }
+        } else {
+            arrays.remove(name);
+        }
+        if (name.equals(shownArray)) {
+            showArray(isArray ? name : null);
+        }
+    }
+
+    private void showArray(String name) {
+        shownArray = name;
+        Object array = name != null ? arrays.get(name) : null;
+        elementsModel.setArray(array);
+        elementsLabel.setText(array != null
+            ? " Elements of '" + name + "' (" + getTypeString(array) + ")"
+            : " Select an array to see its elements");
+    }
+
+    /**
+     * Summary of an array for its row: the first elements and the length.
+     */
+    private static String formatArray(Object array) {
+        int length = lengthOf(array);
+        StringBuilder text = new StringBuilder("[");
+        for (int i = 0; i < Math.min(length, PREVIEW_ELEMENTS); i++) {
+            if (i > 0) {
+                text.append(", ");
+            }
+            text.append(array instanceof int[] ? Integer.toString(((int[]) array)[i])
+                : Double.toString(((double[]) array)[i]));
+        }
+        if (length > PREVIEW_ELEMENTS) {
+            text.append(", … (").append(length).append(" elements)");
+        }
+        return text.append(']').toString();
+    }
 
-            tableModel.addRow(new Object[]{name, value, type});
+    private static int lengthOf(Object array) {
+        if (array instanceof int[]) {
+            return ((int[]) array).length;
+        } else if (array instanceof double[]) {
+            return ((double[]) array).length;
         }
+        return 0;
     }
 
     private String getTypeString(Object value) {
@@ -69,6 +244,10 @@ public class VariablesPanel extends JPanel {
             return "Boolean";
         } else if (value instanceof String) {
             return "String";
+        } else if (value instanceof int[]) {
+            return "int[" + ((int[]) value).length + "]";
+        } else if (value instanceof double[]) {
+            return "double[" + ((double[]) value).length + "]";
         } else {
             return value.getClass().getSimpleName();
         }
@@ -76,5 +255,10 @@ public class VariablesPanel extends JPanel {
 
     public void clear() {
         tableModel.setRowCount(0);
+        rowByName.clear();
+        arrays.clear();
+        shownArray = null;
+        elementsModel.setArray(null);
+        elementsLabel.setText(" Select an array to see its elements");
     }
 }